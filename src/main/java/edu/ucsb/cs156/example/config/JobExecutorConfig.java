@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.config;
+
+import edu.ucsb.cs156.example.services.jobs.JobExecutorMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobLogArchiveService;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Configures the executor that JobService runs jobs on, separate from the executor Spring uses for
+ * everything else, so that launching many jobs cannot tie up threads needed to serve requests.
+ *
+ * <p>The pool has a fixed number of threads and a bounded queue; a job launched when the queue is
+ * full is rejected and its Job row is marked "rejected". With app.jobs.executor.virtualThreads set,
+ * jobs run on virtual threads instead, which suits jobs that spend most of their time waiting on
+ * I/O; poolSize then limits how many run at once and can be set much higher.
+ */
+@Configuration
+public class JobExecutorConfig {
+
+  @Value("${app.jobs.executor.virtualThreads:false}")
+  private boolean virtualThreads;
+
+  @Value("${app.jobs.executor.poolSize:4}")
+  private int poolSize;
+
+  @Value("${app.jobs.executor.queueCapacity:100}")
+  private int queueCapacity;
+
+  @Value("${app.jobs.log.archiveQueueCapacity:1000}")
+  private int archiveQueueCapacity;
+
+  /**
+   * Spring Boot only auto-configures its own task executor (used for async request processing and
+   * unqualified @Async methods) when no other Executor bean exists, so defining the job executor
+   * would otherwise switch it off. This declares it explicitly, configured the same way.
+   *
+   * @param builder the builder Spring Boot configures from the spring.task.execution properties
+   * @return the general purpose application task executor
+   */
+  @Primary
+  @Bean(
+      name = {
+        TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+        AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+      })
+  public ThreadPoolTaskExecutor applicationTaskExecutor(
+      ObjectProvider<ThreadPoolTaskExecutorBuilder> builder) {
+    return builder.getIfAvailable(ThreadPoolTaskExecutorBuilder::new).build();
+  }
+
+  @Bean
+  public JobExecutorMetrics jobExecutorMetrics(MeterRegistry meterRegistry) {
+    return new JobExecutorMetrics(virtualThreads, meterRegistry);
+  }
+
+  @Bean(name = JobService.JOB_EXECUTOR)
+  public ThreadPoolTaskExecutor jobExecutor(JobExecutorMetrics jobExecutorMetrics) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setVirtualThreads(virtualThreads);
+    executor.setThreadNamePrefix("job-");
+    executor.setTaskDecorator(jobExecutorMetrics);
+    executor.setRejectedExecutionHandler(jobExecutorMetrics);
+    return executor;
+  }
+
+  /**
+   * The executor that compresses the logs of finished jobs, one at a time on a single low-priority
+   * thread of its own, so that compressing a log never holds a slot of the job executor.
+   *
+   * @return the executor for JobLogArchiveService
+   */
+  @Bean(name = JobLogArchiveService.ARCHIVE_EXECUTOR)
+  public ThreadPoolTaskExecutor jobLogArchiveExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(archiveQueueCapacity);
+    executor.setThreadPriority(Thread.MIN_PRIORITY);
+    executor.setThreadNamePrefix("job-log-archive-");
+    return executor;
+  }
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.auditing.DateTimeProvider;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * Turns on JPA auditing so that fields annotated with @CreatedDate and @LastModifiedDate (for
+ * example on Job) are filled in when an entity is saved.
+ */
+@Configuration
+@EnableJpaAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
+public class JpaAuditingConfig {
+
+  /**
+   * Entities use ZonedDateTime, which the default provider (LocalDateTime) cannot populate.
+   *
+   * @return a provider of the current time as a ZonedDateTime
+   */
+  @Bean
+  public DateTimeProvider auditingDateTimeProvider() {
+    return () -> Optional.of(ZonedDateTime.now());
+  }
+}
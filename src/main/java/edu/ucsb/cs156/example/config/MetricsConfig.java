@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the Micrometer registry that the job metrics (see JobMetrics) are recorded in. Spring
+ * Boot only configures a registry of its own when the actuator is on the classpath, which it is not
+ * here; this one keeps the metrics in memory, where GET /api/jobs/metrics reads them.
+ */
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  @ConditionalOnMissingBean
+  public MeterRegistry meterRegistry() {
+    return new SimpleMeterRegistry();
+  }
+}
@@ -2,10 +2,18 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.repositories.KeysetPagingRepository;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -13,6 +21,9 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 /** This is an abstract class that provides common functionality for all API controllers. */
 @Slf4j
 public abstract class ApiController {
+  /** The most rows keysetPage returns at once, whatever limit it is asked for. */
+  public static final int MAX_PAGE_SIZE = 1000;
+
   @Autowired private CurrentUserService currentUserService;
 
   /**
@@ -34,6 +45,69 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  /**
+   * This method returns a page of rows in keyset order: the rows that follow the row with id after,
+   * sorted by a sort key and then by id. The query seeks to the first of them with an index instead
+   * of skipping the rows before it, so every page costs the same however deep into the table it is;
+   * see KeysetSpecification. Sort keys not in sortKeys are ignored, as are limits outside 1 to
+   * MAX_PAGE_SIZE.
+   *
+   * @param repository the repository of the table
+   * @param type the class of its rows
+   * @param after id of the last row of the previous page, i.e. its nextCursor; null for the first
+   *     page
+   * @param limit the most rows to return
+   * @param sort a sort key, optionally followed by ",desc", e.g. dateReviewed,desc; null for id
+   * @param sortKeys the fields that may be sorted by besides id; each needs an index on the field
+   *     and id together
+   * @return the rows, and the cursor of the page after them
+   * @throws EntityNotFoundException if the rows are sorted by a key other than id and the row with
+   *     id after no longer exists
+   */
+  protected <T> CursorPage<T> keysetPage(
+      KeysetPagingRepository<T, Long> repository,
+      Class<T> type,
+      Long after,
+      int limit,
+      String sort,
+      Set<String> sortKeys) {
+    String key = "id";
+    Sort.Direction direction = Sort.Direction.ASC;
+    if (sort != null) {
+      String[] parts = sort.split(",");
+      if (sortKeys.contains(parts[0])) key = parts[0];
+      if (parts.length > 1) {
+        direction = Sort.Direction.fromOptionalString(parts[1]).orElse(Sort.Direction.ASC);
+      }
+    }
+
+    Object value = null;
+    if (after != null && !key.equals("id")) {
+      T last =
+          repository.findById(after).orElseThrow(() -> new EntityNotFoundException(type, after));
+      value = new BeanWrapperImpl(last).getPropertyValue(key);
+    }
+    KeysetSpecification<T> rows = new KeysetSpecification<>(key, direction, value, after);
+    int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+    // one row more than the page, to tell whether there is a page after it; rows with and without
+    // a key are read by queries of their own, the second only if the first runs out
+    List<T> content =
+        new ArrayList<>(repository.findBy(rows, query -> query.limit(size + 1).all()));
+    for (KeysetSpecification<T> next = rows.following();
+        next != null && content.size() <= size;
+        next = next.following()) {
+      int wanted = size + 1 - content.size();
+      content.addAll(repository.findBy(next, query -> query.limit(wanted).all()));
+    }
+    Long nextCursor = null;
+    if (content.size() > size) {
+      content = content.subList(0, size);
+      nextCursor = (Long) new BeanWrapperImpl(content.get(size - 1)).getPropertyValue("id");
+    }
+    return new CursorPage<>(content, nextCursor);
+  }
+
   /**
    * This method handles the EntityNotFoundException.
    *
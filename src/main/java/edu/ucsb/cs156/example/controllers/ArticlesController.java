@@ -3,12 +3,14 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.Articles;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -27,6 +29,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class ArticlesController extends ApiController {
+  private static final Set<String> SORT_KEYS = Set.of("dateAdded");
 
   @Autowired ArticlesRepository articlesRepository;
 
@@ -38,6 +41,27 @@ public class ArticlesController extends ApiController {
     return articles;
   }
 
+  @Operation(
+      summary =
+          "List articles a page at a time; pass the nextCursor of a page as after to get the next"
+              + " one")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all", params = "limit")
+  public CursorPage<Articles> pageOfArticles(
+      @Parameter(name = "after", description = "nextCursor of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "the most articles to return, up to 1000")
+          @RequestParam
+          int limit,
+      @Parameter(
+              name = "sort",
+              description = "sort by id or dateAdded, e.g. dateAdded,desc (default id)")
+          @RequestParam(required = false)
+          String sort) {
+    return keysetPage(articlesRepository, Articles.class, after, limit, sort, SORT_KEYS);
+  }
+
   @Operation(summary = "Create a new article")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/post")
@@ -2,12 +2,14 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -27,6 +29,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class HelpRequestController extends ApiController {
+  private static final Set<String> SORT_KEYS = Set.of("requestTime");
 
   @Autowired HelpRequestRepository helpRequestRepository;
 
@@ -43,6 +46,35 @@ public class HelpRequestController extends ApiController {
     return requests;
   }
 
+  /**
+   * This method returns a page of help requests, in keyset order.
+   *
+   * @param after the nextCursor of the previous page; null for the first page
+   * @param limit the most help requests to return
+   * @param sort the field to sort by, optionally followed by ",desc"
+   * @return the page, and the cursor of the page after it
+   */
+  @Operation(
+      summary =
+          "List help requests a page at a time; pass the nextCursor of a page as after to get the"
+              + " next one")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all", params = "limit")
+  public CursorPage<HelpRequest> pageOfHelpRequests(
+      @Parameter(name = "after", description = "nextCursor of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "the most help requests to return, up to 1000")
+          @RequestParam
+          int limit,
+      @Parameter(
+              name = "sort",
+              description = "sort by id or requestTime, e.g. requestTime,desc (default id)")
+          @RequestParam(required = false)
+          String sort) {
+    return keysetPage(helpRequestRepository, HelpRequest.class, after, limit, sort, SORT_KEYS);
+  }
+
   /**
    * This method creates a new help request. Accessible only to users with the role "ROLE_ADMIN".
    * creating params based on these:
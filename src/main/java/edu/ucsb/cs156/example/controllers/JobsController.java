@@ -3,55 +3,172 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobDedupPolicy;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.models.JobLogArchiveStats;
+import edu.ucsb.cs156.example.models.JobLogPage;
+import edu.ucsb.cs156.example.models.JobMetricsReport;
+import edu.ucsb.cs156.example.models.JobPipelineStep;
+import edu.ucsb.cs156.example.models.JobRetryPolicy;
+import edu.ucsb.cs156.example.models.JobScheduleUpdate;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.bulk.BulkExportService;
+import edu.ucsb.cs156.example.services.bulk.BulkImportService;
+import edu.ucsb.cs156.example.services.bulk.ExportFormat;
+import edu.ucsb.cs156.example.services.bulk.ExportTable;
+import edu.ucsb.cs156.example.services.bulk.ImportFormat;
+import edu.ucsb.cs156.example.services.bulk.ImportTable;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobLogArchiveService;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobPipeline;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
+import edu.ucsb.cs156.example.services.jobs.JobScheduleService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
 @RestController
 @Slf4j
 public class JobsController extends ApiController {
+  public static final String LOG_CURSOR_HEADER = "X-Log-Cursor";
+
+  private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+  private static final Set<String> SORTABLE_JOB_FIELDS =
+      Set.of("id", "status", "createdAt", "updatedAt");
+
   @Autowired private JobsRepository jobsRepository;
 
   @Autowired private JobService jobService;
 
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired private JobRetentionService jobRetentionService;
+
+  @Autowired private JobLogArchiveService jobLogArchiveService;
+
+  @Autowired private JobSchedulesRepository jobSchedulesRepository;
+
+  @Autowired private JobScheduleService jobScheduleService;
+
+  @Autowired private BulkImportService bulkImportService;
+
+  @Autowired private BulkExportService bulkExportService;
+
   @Autowired ObjectMapper mapper;
 
-  @Operation(summary = "List all jobs")
+  @Operation(summary = "List all jobs, newest first (logs are not included)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/all")
-  public Iterable<Job> allJobs() {
-    Iterable<Job> jobs = jobsRepository.findAll();
-    return jobs;
+  public Iterable<JobSummary> allJobs() {
+    Page<JobSummary> jobs =
+        jobsRepository.findAllSummaries(Pageable.unpaged(Sort.by(Sort.Direction.DESC, "id")));
+    return jobs.getContent();
+  }
+
+  @Operation(
+      summary =
+          "List jobs a page at a time (logs are not included); sort by id, status, createdAt or"
+              + " updatedAt, e.g. sort=createdAt,desc")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "", params = "!id")
+  public PagedModel<JobSummary> pageOfJobs(
+      @ParameterObject @PageableDefault(size = 20, sort = "id", direction = Sort.Direction.DESC)
+          Pageable pageable) {
+    Sort sort =
+        Sort.by(
+            pageable.getSort().filter(o -> SORTABLE_JOB_FIELDS.contains(o.getProperty())).toList());
+    Pageable sanitized = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    return new PagedModel<>(jobsRepository.findAllSummaries(sanitized));
+  }
+
+  @Operation(
+      summary = "Get the state of the job executor: threads in use, queue depth and queue wait")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/executor")
+  public JobExecutorStats executorStats() {
+    return jobService.getExecutorStats();
+  }
+
+  @Operation(
+      summary =
+          "Get job metrics: queue wait, counts and run time by job type, and the throughput of"
+              + " running jobs")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/metrics")
+  public JobMetricsReport metrics() {
+    return jobService.getMetrics();
+  }
+
+  @Operation(
+      summary =
+          "Get how many job logs have been compressed, their size before and after, and the bytes"
+              + " saved")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/compression")
+  public JobLogArchiveStats logCompressionStats() {
+    return jobLogArchiveService.getStats();
   }
 
   @Operation(summary = "Delete all job records")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
-    jobsRepository.deleteAll();
+    jobRetentionService.deleteAllJobs();
     return Map.of("message", "All jobs deleted");
   }
 
   @Operation(summary = "Get a specific Job Log by ID if it is in the database")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
-  @GetMapping("")
+  @GetMapping(value = "", params = "id")
   public Job getJobLogById(
       @Parameter(name = "id", description = "ID of the job") @RequestParam Long id)
       throws JsonProcessingException {
@@ -73,22 +190,310 @@ public class JobsController extends ApiController {
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
 
+  @Operation(summary = "List the steps of a pipeline, in the order they were started or skipped")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/steps")
+  public Iterable<JobSummary> pipelineSteps(
+      @Parameter(name = "id", description = "ID of the job running the pipeline") @RequestParam
+          Long id) {
+    return jobsRepository.findChildSummaries(id);
+  }
+
+  @Operation(
+      summary =
+          "Cancel a job: a running job is interrupted, a job that has not started yet never starts")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/cancel")
+  public Map<String, String> cancelJob(@Parameter(name = "id") @RequestParam Long id) {
+    if (!jobService.cancel(id)) {
+      return Map.of("message", String.format("Job with id %d has already finished", id));
+    }
+    return Map.of("message", String.format("Job with id %d cancelled", id));
+  }
+
+  @Operation(summary = "List the schedules of recurring jobs")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/schedules")
+  public Iterable<JobSchedule> allSchedules() {
+    return jobSchedulesRepository.findAllByOrderByNameAsc();
+  }
+
+  @Operation(
+      summary =
+          "Schedule a recurring job: a job of class jobType, built from params, launched whenever"
+              + " the cron expression fires")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/schedules")
+  public JobSchedule postSchedule(
+      @Parameter(name = "name") @RequestParam String name,
+      @Parameter(
+              name = "cron",
+              description = "second minute hour day-of-month month day-of-week, e.g. 0 0 2 * * *")
+          @RequestParam
+          String cron,
+      @Parameter(
+              name = "jobType",
+              description = "class of the job, e.g. edu.ucsb.cs156.example.jobs.TestJob")
+          @RequestParam
+          String jobType,
+      @Parameter(name = "params", description = "fields of the job, as JSON")
+          @RequestParam(required = false)
+          String params,
+      @Parameter(name = "timeoutMs", description = "stop each run if it runs longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs,
+      @Parameter(name = "enabled") @RequestParam(defaultValue = "true") boolean enabled) {
+
+    JobSchedule schedule =
+        JobSchedule.builder()
+            .name(name)
+            .cron(cron)
+            .jobType(jobType)
+            .params(params)
+            .timeoutMs(timeoutMs)
+            .enabled(enabled)
+            .build();
+    return jobScheduleService.save(schedule);
+  }
+
+  @Operation(summary = "Update the schedule of a recurring job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("/schedules")
+  public JobSchedule updateSchedule(
+      @Parameter(name = "id") @RequestParam Long id, @RequestBody JobScheduleUpdate incoming) {
+    if (incoming.getEnabled() == null) {
+      throw new IllegalArgumentException("A schedule update needs enabled, true or false");
+    }
+    JobSchedule schedule =
+        jobSchedulesRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+
+    schedule.setName(incoming.getName());
+    schedule.setCron(incoming.getCron());
+    schedule.setJobType(incoming.getJobType());
+    schedule.setParams(incoming.getParams());
+    schedule.setTimeoutMs(incoming.getTimeoutMs());
+    schedule.setEnabled(incoming.getEnabled());
+    return jobScheduleService.save(schedule);
+  }
+
+  @Operation(summary = "Delete the schedule of a recurring job; jobs it launched are kept")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("/schedules")
+  public Object deleteSchedule(@Parameter(name = "id") @RequestParam Long id) {
+    JobSchedule schedule =
+        jobSchedulesRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+
+    jobSchedulesRepository.delete(schedule);
+    return genericMessage("JobSchedule with id %s deleted".formatted(id));
+  }
+
+  @Operation(summary = "Launch the job of a schedule now, without waiting for it to fire")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/schedules/run")
+  public Job runSchedule(@Parameter(name = "id") @RequestParam Long id) {
+    return jobScheduleService.runNow(id);
+  }
+
   @Operation(summary = "Launch Test Job (click fail if you want to test exception handling)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/launch/testjob")
   public Job launchTestJob(
       @Parameter(name = "fail") @RequestParam Boolean fail,
-      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs,
+      @Parameter(name = "timeoutMs", description = "stop the job if it runs longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs,
+      @Parameter(name = "maxAttempts", description = "how many times to try the job if it fails")
+          @RequestParam(required = false)
+          Integer maxAttempts,
+      @Parameter(name = "backoffMs", description = "how long to wait before the first retry")
+          @RequestParam(required = false)
+          Long backoffMs,
+      @Parameter(
+              name = "dedup",
+              description =
+                  "return an identical test job that is queued or running, if there is one")
+          @RequestParam(defaultValue = "false")
+          boolean dedup,
+      @Parameter(
+              name = "reuseCompletedForMs",
+              description =
+                  "with dedup, also return an identical test job that completed this recently")
+          @RequestParam(required = false)
+          Long reuseCompletedForMs) {
 
     TestJob testJob = TestJob.builder().fail(fail).sleepMs(sleepMs).build();
-    return jobService.runAsJob(testJob);
+    JobRetryPolicy retryPolicy =
+        JobRetryPolicy.builder().maxAttempts(maxAttempts).backoffMs(backoffMs).build();
+    JobDedupPolicy dedupPolicy =
+        dedup ? JobDedupPolicy.builder().reuseCompletedForMs(reuseCompletedForMs).build() : null;
+    return jobService.runAsJob(testJob, timeoutMs, retryPolicy, dedupPolicy);
+  }
+
+  @Operation(
+      summary =
+          "Launch a pipeline: each step is a job of class jobType, built from params, that starts"
+              + " once the steps named in its dependsOn have completed")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/launch/pipeline")
+  public Job launchPipeline(
+      @RequestBody List<JobPipelineStep> steps,
+      @Parameter(
+              name = "timeoutMs",
+              description = "stop the pipeline, and its steps, if it runs longer than this")
+          @RequestParam(required = false)
+          Long timeoutMs) {
+
+    JobPipeline pipeline = new JobPipeline();
+    for (JobPipelineStep step : steps) {
+      List<String> dependsOn = step.getDependsOn() != null ? step.getDependsOn() : List.of();
+      pipeline.step(step.getName(), loadJob(step), dependsOn.toArray(String[]::new));
+    }
+    return jobService.runPipeline(pipeline, timeoutMs);
+  }
+
+  @Operation(
+      summary =
+          "Launch a job that imports the rows of a CSV or JSON file into a table; rows that cannot"
+              + " be imported are skipped, and listed in the job log")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/launch/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job launchImport(
+      @Parameter(name = "table") @RequestParam ImportTable table,
+      @Parameter(
+              name = "format",
+              description =
+                  "CSV with a header row naming the fields, or JSON: an array of objects, or one"
+                      + " object per line")
+          @RequestParam(defaultValue = "CSV")
+          ImportFormat format,
+      @Parameter(name = "file") @RequestParam MultipartFile file)
+      throws IOException {
+    return bulkImportService.launchImport(table, format, file);
+  }
+
+  @Operation(
+      summary =
+          "Launch a job that exports the rows of a table to a gzip-compressed CSV or NDJSON file;"
+              + " download it with GET /api/jobs/exports/{id}")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/launch/export")
+  public Job launchExport(
+      @Parameter(name = "table") @RequestParam ExportTable table,
+      @Parameter(
+              name = "format",
+              description =
+                  "CSV with a header row naming the fields, or NDJSON: one object per line")
+          @RequestParam(defaultValue = "CSV")
+          ExportFormat format) {
+    return bulkExportService.launchExport(table, format);
+  }
+
+  @Operation(
+      summary =
+          "Download the file an export job wrote; Range requests are supported, so a download that"
+              + " breaks off can be resumed")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/exports/{id}")
+  public ResponseEntity<?> downloadExport(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id) throws IOException {
+    Optional<Path> file = bulkExportService.findExport(id);
+    if (file.isEmpty()) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND)
+          .body(
+              genericMessage(
+                  "Job with id %d has no export on this node; it may not have finished yet"
+                      .formatted(id)));
+    }
+    return ResponseEntity.ok()
+        .contentType(GZIP)
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment()
+                .filename(file.get().getFileName().toString())
+                .build()
+                .toString())
+        .body(new FileSystemResource(file.get()));
+  }
+
+  private JobContextConsumer loadJob(JobPipelineStep step) {
+    String params = step.getParams() != null ? step.getParams() : "{}";
+    try {
+      return jobService.loadJob(step.getJobType(), params);
+    } catch (Exception e) {
+      throw new IllegalArgumentException(
+          "Step %s cannot build a job of type %s: %s"
+              .formatted(step.getName(), step.getJobType(), e.getMessage()),
+          e);
+    }
   }
 
-  @Operation(summary = "Get long job logs")
+  @Operation(
+      summary =
+          "Get long job logs, optionally only a range of lines; the X-Log-Cursor response header"
+              + " is the offset of the next line")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/logs/{id}")
-  public String getJobLogs(@Parameter(name = "id", description = "Job ID") @PathVariable Long id) {
+  public void getJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "offset", description = "first line to return (default 0)")
+          @RequestParam(required = false)
+          Integer offset,
+      @Parameter(name = "limit", description = "maximum number of lines (default all)")
+          @RequestParam(required = false)
+          Integer limit,
+      @Parameter(name = "tail", description = "return only this many lines from the end")
+          @RequestParam(required = false)
+          Integer tail,
+      HttpServletResponse response)
+      throws IOException {
+
+    JobLogPage page = jobService.getJobLogs(id, offset, limit, tail);
+    response.setHeader(LOG_CURSOR_HEADER, Integer.toString(page.getNextCursor()));
+    response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    Writer out = response.getWriter();
+    for (int i = 0; i < page.getLines().size(); i++) {
+      if (i > 0) out.write('\n');
+      out.write(String.valueOf(page.getLines().get(i).getLine()));
+    }
+  }
+
+  @Operation(
+      summary =
+          "Stream a job log as Server-Sent Events: existing lines, then new lines as they are"
+              + " logged, then a final status event")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/logs/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "after", description = "only send lines after this seq")
+          @RequestParam(required = false)
+          Integer after,
+      @Parameter(hidden = true) @RequestHeader(value = "Last-Event-ID", required = false)
+          Integer lastEventId) {
+
+    int afterSeq = lastEventId != null ? lastEventId : (after != null ? after : -1);
+    return jobLogStreamService.subscribe(id, afterSeq);
+  }
 
-    return jobService.getJobLogs(id);
+  /**
+   * This method handles requests with invalid parameters, such as a schedule with an invalid cron
+   * expression or a negative limit on the lines of a log. A job or schedule that does not exist is
+   * reported with an EntityNotFoundException instead, which ApiController answers with 404.
+   *
+   * @param e the exception
+   * @return a map with the type and message of the exception
+   */
+  @ExceptionHandler({IllegalArgumentException.class})
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleIllegalArgumentException(Throwable e) {
+    return Map.of(
+        "type", e.getClass().getSimpleName(),
+        "message", e.getMessage());
   }
 }
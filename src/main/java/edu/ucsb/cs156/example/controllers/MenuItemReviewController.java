@@ -3,15 +3,21 @@ package edu.ucsb.cs156.example.controllers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,15 +33,42 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class MenuItemReviewController extends ApiController {
+  private static final Set<String> SORT_KEYS = Set.of("itemId", "dateReviewed");
 
   @Autowired MenuItemReviewRepository menuItemReviewRepository;
 
+  @Autowired JsonStreamingService jsonStreamingService;
+
   @Operation(summary = "List all menu item reviews")
   @PreAuthorize("hasRole('ROLE_USER')")
-  @GetMapping("/all")
-  public Iterable<MenuItemReview> allMenuItemReviews() {
-    Iterable<MenuItemReview> reviews = menuItemReviewRepository.findAll();
-    return reviews;
+  @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void allMenuItemReviews(HttpServletResponse response) throws IOException {
+    // streamed a row at a time, as there may be too many reviews to hold in memory at once
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    jsonStreamingService.writeAll(menuItemReviewRepository, response.getOutputStream());
+  }
+
+  @Operation(
+      summary =
+          "List menu item reviews a page at a time; pass the nextCursor of a page as after to get"
+              + " the next one")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all", params = "limit")
+  public CursorPage<MenuItemReview> pageOfMenuItemReviews(
+      @Parameter(name = "after", description = "nextCursor of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(name = "limit", description = "the most menu item reviews to return, up to 1000")
+          @RequestParam
+          int limit,
+      @Parameter(
+              name = "sort",
+              description =
+                  "sort by id, itemId or dateReviewed, e.g. dateReviewed,desc (default id)")
+          @RequestParam(required = false)
+          String sort) {
+    return keysetPage(
+        menuItemReviewRepository, MenuItemReview.class, after, limit, sort, SORT_KEYS);
   }
 
   @Operation(summary = "Get a single menu item review")
@@ -2,12 +2,14 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequests;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestsRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -27,6 +29,7 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class RecommendationRequestsController extends ApiController {
+  private static final Set<String> SORT_KEYS = Set.of("dateRequested", "dateNeeded");
 
   @Autowired RecommendationRequestsRepository repository;
 
@@ -37,6 +40,30 @@ public class RecommendationRequestsController extends ApiController {
     return repository.findAll();
   }
 
+  @Operation(
+      summary =
+          "List recommendation requests a page at a time; pass the nextCursor of a page as after"
+              + " to get the next one")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all", params = "limit")
+  public CursorPage<RecommendationRequests> page(
+      @Parameter(name = "after", description = "nextCursor of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(
+              name = "limit",
+              description = "the most recommendation requests to return, up to 1000")
+          @RequestParam
+          int limit,
+      @Parameter(
+              name = "sort",
+              description =
+                  "sort by id, dateRequested or dateNeeded, e.g. dateNeeded,desc (default id)")
+          @RequestParam(required = false)
+          String sort) {
+    return keysetPage(repository, RecommendationRequests.class, after, limit, sort, SORT_KEYS);
+  }
+
   // pls work
   @Operation(summary = "Get a single RecommendationRequest by id")
   @PreAuthorize("hasRole('ROLE_USER')")
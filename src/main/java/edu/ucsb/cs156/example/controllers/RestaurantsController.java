@@ -3,11 +3,15 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,44 +21,55 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for Restaurants */
 @Tag(name = "Restaurants")
 @RequestMapping("/api/restaurants")
 @RestController
 public class RestaurantsController extends ApiController {
+  private static final String TABLE = "restaurants";
 
   @Autowired RestaurantRepository restaurantRepository;
 
+  @Autowired TableVersionService tableVersionService;
+
+  @Autowired JsonResponseCache jsonResponseCache;
+
   /**
    * This method returns a list of all restaurants.
    *
-   * @return a list of all restaurants
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the list, gzipped or not as its Accept-Encoding header asks
+   * @return the JSON of a list of all restaurants
    */
   @Operation(summary = "List all restaurants")
   @PreAuthorize("hasRole('ROLE_USER')")
-  @GetMapping("/all")
-  public Iterable<Restaurant> allRestaurants() {
-    Iterable<Restaurant> restaurants = restaurantRepository.findAll();
-    return restaurants;
+  @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> allRestaurants(WebRequest request) {
+    return jsonResponseCache.respond(TABLE, request, restaurantRepository::findAll);
   }
 
   /**
    * This method returns a single restaurant.
    *
    * @param id id of the restaurant to get
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the table
    * @return a single restaurant
    */
   @Operation(summary = "Get a single restaurant")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public Restaurant getById(@Parameter(name = "id") @RequestParam Long id) {
+  public Restaurant getById(@Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    // the ETag is read before the row, so the row sent with it is never older than it
+    String eTag = tableVersionService.getETag(TABLE);
     Restaurant restaurant =
         restaurantRepository
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
-    return restaurant;
+    return request.checkNotModified(eTag) ? null : restaurant;
   }
 
   /**
@@ -76,6 +91,7 @@ public class RestaurantsController extends ApiController {
     restaurant.setDescription(description);
 
     Restaurant savedrestaurant = restaurantRepository.save(restaurant);
+    tableVersionService.bump(TABLE);
     return savedrestaurant;
   }
 
@@ -95,6 +111,7 @@ public class RestaurantsController extends ApiController {
             .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
     restaurantRepository.delete(restaurant);
+    tableVersionService.bump(TABLE);
     return genericMessage("Restaurant with id %s deleted".formatted(id));
   }
 
@@ -120,6 +137,7 @@ public class RestaurantsController extends ApiController {
     restaurant.setDescription(incoming.getDescription());
 
     restaurantRepository.save(restaurant);
+    tableVersionService.bump(TABLE);
 
     return restaurant;
   }
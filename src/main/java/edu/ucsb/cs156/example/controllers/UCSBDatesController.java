@@ -4,14 +4,20 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
+import edu.ucsb.cs156.example.services.cache.UCSBDatesCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,6 +27,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBDates */
 @Tag(name = "UCSBDates")
@@ -28,38 +35,66 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class UCSBDatesController extends ApiController {
-
   @Autowired UCSBDateRepository ucsbDateRepository;
 
+  @Autowired TableVersionService tableVersionService;
+
+  @Autowired JsonResponseCache jsonResponseCache;
+
+  @Autowired UCSBDatesCache ucsbDatesCache;
+
   /**
    * List all UCSB dates
    *
-   * @return an iterable of UCSBDate
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the list, gzipped or not as its Accept-Encoding header asks
+   * @return the JSON of a list of all UCSBDates
    */
   @Operation(summary = "List all ucsb dates")
   @PreAuthorize("hasRole('ROLE_USER')")
-  @GetMapping("/all")
-  public Iterable<UCSBDate> allUCSBDates() {
-    Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-    return dates;
+  @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> allUCSBDates(WebRequest request) {
+    return jsonResponseCache.respond(UCSBDatesCache.TABLE, request, ucsbDatesCache::findAll);
   }
 
   /**
    * Get a single date by id
    *
    * @param id the id of the date
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the table
    * @return a UCSBDate
    */
   @Operation(summary = "Get a single date")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBDate getById(@Parameter(name = "id") @RequestParam Long id) {
+  public UCSBDate getById(@Parameter(name = "id") @RequestParam Long id, WebRequest request) {
+    // the ETag is read before the row, so the row sent with it is never older than it
+    String eTag = tableVersionService.getETag(UCSBDatesCache.TABLE);
     UCSBDate ucsbDate =
-        ucsbDateRepository
+        ucsbDatesCache
             .findById(id)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
-    return ucsbDate;
+    return request.checkNotModified(eTag) ? null : ucsbDate;
+  }
+
+  /**
+   * List the dates of one quarter
+   *
+   * @param quarterYYYYQ the quarter in the format YYYYQ
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the table
+   * @return the dates in that quarter
+   */
+  @Operation(summary = "List the dates of one quarter")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping("/quarter")
+  public Iterable<UCSBDate> datesOfQuarter(
+      @Parameter(name = "quarterYYYYQ") @RequestParam String quarterYYYYQ, WebRequest request) {
+    String eTag = tableVersionService.getETag(UCSBDatesCache.TABLE);
+    List<UCSBDate> dates = ucsbDatesCache.findAllByQuarterYYYYQ(quarterYYYYQ);
+    return request.checkNotModified(eTag) ? null : dates;
   }
 
   /**
@@ -96,6 +131,7 @@ public class UCSBDatesController extends ApiController {
     ucsbDate.setLocalDateTime(localDateTime);
 
     UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+    tableVersionService.bump(UCSBDatesCache.TABLE);
 
     return savedUcsbDate;
   }
@@ -116,6 +152,7 @@ public class UCSBDatesController extends ApiController {
             .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
     ucsbDateRepository.delete(ucsbDate);
+    tableVersionService.bump(UCSBDatesCache.TABLE);
     return genericMessage("UCSBDate with id %s deleted".formatted(id));
   }
 
@@ -142,6 +179,7 @@ public class UCSBDatesController extends ApiController {
     ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
     ucsbDateRepository.save(ucsbDate);
+    tableVersionService.bump(UCSBDatesCache.TABLE);
 
     return ucsbDate;
   }
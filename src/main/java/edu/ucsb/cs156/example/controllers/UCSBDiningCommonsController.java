@@ -3,12 +3,17 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
+import edu.ucsb.cs156.example.services.cache.UCSBDiningCommonsCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,6 +23,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBDiningCommons */
 @Tag(name = "UCSBDiningCommons")
@@ -25,38 +31,50 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class UCSBDiningCommonsController extends ApiController {
-
   @Autowired UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+  @Autowired TableVersionService tableVersionService;
+
+  @Autowired JsonResponseCache jsonResponseCache;
+
+  @Autowired UCSBDiningCommonsCache ucsbDiningCommonsCache;
+
   /**
    * THis method returns a list of all ucsbdiningcommons.
    *
-   * @return a list of all ucsbdiningcommons
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the list, gzipped or not as its Accept-Encoding header asks
+   * @return the JSON of a list of all ucsbdiningcommons
    */
   @Operation(summary = "List all ucsb dining commons")
   @PreAuthorize("hasRole('ROLE_USER')")
-  @GetMapping("/all")
-  public Iterable<UCSBDiningCommons> allCommonss() {
-    Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-    return commons;
+  @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> allCommonss(WebRequest request) {
+    return jsonResponseCache.respond(
+        UCSBDiningCommonsCache.TABLE, request, ucsbDiningCommonsCache::findAll);
   }
 
   /**
    * This method returns a single diningcommons.
    *
    * @param code code of the diningcommons
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the table
    * @return a single diningcommons
    */
   @Operation(summary = "Get a single commons")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBDiningCommons getById(@Parameter(name = "code") @RequestParam String code) {
+  public UCSBDiningCommons getById(
+      @Parameter(name = "code") @RequestParam String code, WebRequest request) {
+    // the ETag is read before the row, so the row sent with it is never older than it
+    String eTag = tableVersionService.getETag(UCSBDiningCommonsCache.TABLE);
     UCSBDiningCommons commons =
-        ucsbDiningCommonsRepository
+        ucsbDiningCommonsCache
             .findById(code)
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
-    return commons;
+    return request.checkNotModified(eTag) ? null : commons;
   }
 
   /**
@@ -93,6 +111,7 @@ public class UCSBDiningCommonsController extends ApiController {
     commons.setLongitude(longitude);
 
     UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+    tableVersionService.bump(UCSBDiningCommonsCache.TABLE);
 
     return savedCommons;
   }
@@ -113,6 +132,7 @@ public class UCSBDiningCommonsController extends ApiController {
             .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
     ucsbDiningCommonsRepository.delete(commons);
+    tableVersionService.bump(UCSBDiningCommonsCache.TABLE);
     return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
   }
 
@@ -143,6 +163,7 @@ public class UCSBDiningCommonsController extends ApiController {
     commons.setLongitude(incoming.getLongitude());
 
     ucsbDiningCommonsRepository.save(commons);
+    tableVersionService.bump(UCSBDiningCommonsCache.TABLE);
 
     return commons;
   }
@@ -2,11 +2,13 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -24,6 +26,8 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class UCSBDiningCommonsMenuItemController extends ApiController {
+  private static final Set<String> SORT_KEYS = Set.of("diningCommonsCode", "name");
+
   @Autowired UCSBDiningCommonsMenuItemRepository repository;
 
   @Operation(summary = "List all dining commons menu items")
@@ -33,6 +37,29 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     return repository.findAll();
   }
 
+  @Operation(
+      summary =
+          "List dining commons menu items a page at a time; pass the nextCursor of a page as after"
+              + " to get the next one")
+  @PreAuthorize("hasRole('ROLE_USER')")
+  @GetMapping(value = "/all", params = "limit")
+  public CursorPage<UCSBDiningCommonsMenuItem> page(
+      @Parameter(name = "after", description = "nextCursor of the previous page")
+          @RequestParam(required = false)
+          Long after,
+      @Parameter(
+              name = "limit",
+              description = "the most dining commons menu items to return, up to 1000")
+          @RequestParam
+          int limit,
+      @Parameter(
+              name = "sort",
+              description = "sort by id, diningCommonsCode or name, e.g. name,desc (default id)")
+          @RequestParam(required = false)
+          String sort) {
+    return keysetPage(repository, UCSBDiningCommonsMenuItem.class, after, limit, sort, SORT_KEYS);
+  }
+
   @Operation(summary = "Create a new dining commons menu item")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/post")
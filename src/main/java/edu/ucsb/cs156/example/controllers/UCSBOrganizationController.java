@@ -3,12 +3,17 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
+import edu.ucsb.cs156.example.services.cache.UCSBOrganizationCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,6 +23,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /** This is a REST controller for UCSBOrganization */
 @Tag(name = "UCSBOrganizations")
@@ -25,20 +31,27 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @Slf4j
 public class UCSBOrganizationController extends ApiController {
-
   @Autowired UCSBOrganizationRepository ucsbOrganizationRepository;
 
+  @Autowired TableVersionService tableVersionService;
+
+  @Autowired JsonResponseCache jsonResponseCache;
+
+  @Autowired UCSBOrganizationCache ucsbOrganizationCache;
+
   /**
    * This method returns a list of all ucsb organizations.
    *
-   * @return a list of all ucsb organizations
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the list, gzipped or not as its Accept-Encoding header asks
+   * @return the JSON of a list of all ucsb organizations
    */
   @Operation(summary = "List all ucsb organizations")
   @PreAuthorize("hasRole('ROLE_USER')")
-  @GetMapping("/all")
-  public Iterable<UCSBOrganization> allOrganizations() {
-    Iterable<UCSBOrganization> organizations = ucsbOrganizationRepository.findAll();
-    return organizations;
+  @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<byte[]> allOrganizations(WebRequest request) {
+    return jsonResponseCache.respond(
+        UCSBOrganizationCache.TABLE, request, ucsbOrganizationCache::findAll);
   }
 
   /**
@@ -66,6 +79,7 @@ public class UCSBOrganizationController extends ApiController {
     organization.setInactive(inactive);
 
     UCSBOrganization savedOrganization = ucsbOrganizationRepository.save(organization);
+    tableVersionService.bump(UCSBOrganizationCache.TABLE);
 
     return savedOrganization;
   }
@@ -74,18 +88,23 @@ public class UCSBOrganizationController extends ApiController {
    * This method returns a single organization.
    *
    * @param orgCode code of the organization
+   * @param request the request; answered with 304 Not Modified if its If-None-Match header holds
+   *     the current ETag of the table
    * @return a single organization
    */
   @Operation(summary = "Get a single organization")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public UCSBOrganization getById(@Parameter(name = "orgCode") @RequestParam String orgCode) {
+  public UCSBOrganization getById(
+      @Parameter(name = "orgCode") @RequestParam String orgCode, WebRequest request) {
+    // the ETag is read before the row, so the row sent with it is never older than it
+    String eTag = tableVersionService.getETag(UCSBOrganizationCache.TABLE);
     UCSBOrganization organization =
-        ucsbOrganizationRepository
+        ucsbOrganizationCache
             .findById(orgCode)
             .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
-    return organization;
+    return request.checkNotModified(eTag) ? null : organization;
   }
 
   /**
@@ -112,6 +131,7 @@ public class UCSBOrganizationController extends ApiController {
     organization.setInactive(incoming.getInactive());
 
     ucsbOrganizationRepository.save(organization);
+    tableVersionService.bump(UCSBOrganizationCache.TABLE);
 
     return organization;
   }
@@ -132,6 +152,7 @@ public class UCSBOrganizationController extends ApiController {
             .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
     ucsbOrganizationRepository.delete(organization);
+    tableVersionService.bump(UCSBOrganizationCache.TABLE);
     return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
   }
 }
@@ -1,13 +1,13 @@
 package edu.ucsb.cs156.example.controllers;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,20 +24,21 @@ import org.springframework.web.bind.annotation.RestController;
 public class UsersController extends ApiController {
   @Autowired UserRepository userRepository;
 
-  @Autowired ObjectMapper mapper;
+  @Autowired JsonStreamingService jsonStreamingService;
 
   /**
-   * This method returns a list of all users. Accessible only to users with the role "ROLE_ADMIN".
+   * This method writes a list of all users to the response, one user at a time, so that listing
+   * them takes the same memory however many there are. Accessible only to users with the role
+   * "ROLE_ADMIN".
    *
-   * @return a list of all users
-   * @throws JsonProcessingException if there is an error processing the JSON
+   * @param response the response to write the list to
+   * @throws IOException if there is an error writing the JSON
    */
   @Operation(summary = "Get a list of all users")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
-  @GetMapping("")
-  public ResponseEntity<String> users() throws JsonProcessingException {
-    Iterable<User> users = userRepository.findAll();
-    String body = mapper.writeValueAsString(users);
-    return ResponseEntity.ok().body(body);
+  @GetMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
+  public void users(HttpServletResponse response) throws IOException {
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    jsonStreamingService.writeAll(userRepository, response.getOutputStream());
   }
 }
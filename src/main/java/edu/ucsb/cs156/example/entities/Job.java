@@ -29,10 +29,69 @@ public class Job {
 
   private String status;
 
+  // Only set for the steps of a pipeline (see JobPipeline): the job that runs the pipeline, and
+  // the name of the step within it.
+  private Long parentId;
+  private String stepName;
+
+  // How much of its work the job has done, as a percentage; null for jobs that do not say.
+  private Integer progress;
+
+  // Only set for jobs that go through the database queue (app.jobs.queue.mode=database): the
+  // class of the job and its fields as JSON, so that whichever node claims it can rebuild it.
+  private String jobType;
+
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String params;
+
+  // Only set for jobs launched with a JobDedupPolicy: a hash of jobType and params. While the job
+  // is queued or running activeDedupKey holds it too, and the unique index on activeDedupKey stops
+  // an identical job being launched alongside it; it is cleared once the job has finished.
+  private String dedupKey;
+  @JsonIgnore private String activeDedupKey;
+
+  // The node that last started the job (see app.jobs.nodeId) and how many times it has been
+  // started; a job can be started again when the node running it stops part way through.
+  private String nodeId;
+  private int attempts;
+
+  // The node that has claimed the job, and when that claim runs out unless it is renewed.
+  private String leaseOwner;
+  private ZonedDateTime leaseExpiresAt;
+
+  // How long the job may run before it is stopped with status "timed_out"; null for no limit.
+  private Long timeoutMs;
+
+  // Set when a job running on another node is cancelled; that node stops it at its next heartbeat.
+  private boolean cancelRequested;
+
+  // Retry policy, set at launch: a job that fails is started again, up to retryMaxAttempts times
+  // in all, after waiting retryBackoffMs, doubled after each failure and cut short at random by up
+  // to retryJitter (a fraction of the wait). While it waits it is "queued" until nextAttemptAt.
+  private int retryMaxAttempts;
+  private long retryBackoffMs;
+  private double retryJitter;
+  private ZonedDateTime nextAttemptAt;
+
+  // The message of the exception that made the most recent attempt fail.
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String lastError;
+
+  // Legacy: logs are now appended to job_log_lines (see JobLogLine); this column is only read
+  // for jobs that were run before that table existed.
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
       columnDefinition = "TEXT",
       length = 1048576) // needed for long strings, i.e. log entries longer than 255
   // characters
   private String log;
+
+  /** Frees the dedup key of a finished job, so that an identical job can be launched again. */
+  @PrePersist
+  @PreUpdate
+  void releaseDedupKeyOnceFinished() {
+    if (!"running".equals(status) && !"queued".equals(status)) {
+      activeDedupKey = null;
+    }
+  }
 }
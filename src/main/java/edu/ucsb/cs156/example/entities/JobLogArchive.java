@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents the whole log of a finished job, compressed.
+ *
+ * <p>data holds the log lines in order of seq, each written as its seq, its length in bytes (-1 for
+ * a null line) and its UTF-8 bytes, the whole gzipped. Once a job's log has been archived its rows
+ * in job_log_lines are deleted. rawBytes and compressedBytes record how much the compression saved.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "job_log_archives")
+public class JobLogArchive {
+  @Id private long jobId;
+
+  private int lineCount;
+  private long rawBytes;
+  private long compressedBytes;
+  private ZonedDateTime createdAt;
+
+  private byte[] data;
+}
@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents a single line of a job's log.
+ *
+ * <p>Lines are append-only; the full log of a job is the lines for that job in order of seq.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "job_log_lines")
+public class JobLogLine {
+  // a sequence (rather than an identity column) lets Hibernate batch inserts of many lines
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "job_log_lines_seq")
+  @SequenceGenerator(
+      name = "job_log_lines_seq",
+      sequenceName = "job_log_lines_seq",
+      allocationSize = 50)
+  private long id;
+
+  private long jobId;
+  private int seq;
+  private ZonedDateTime createdAt;
+
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String line;
+}
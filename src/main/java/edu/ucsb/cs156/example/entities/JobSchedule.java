@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+/**
+ * This is a JPA entity that represents a recurring job: a job of class jobType, built from params
+ * (its fields as JSON), that is launched every time the cron expression fires (see
+ * JobScheduleService). Each launch is an ordinary job, listed with all the others.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "job_schedules")
+@EntityListeners(AuditingEntityListener.class)
+public class JobSchedule {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private String name;
+
+  // A Spring cron expression: second, minute, hour, day of month, month, day of week.
+  private String cron;
+
+  private String jobType;
+
+  @Column(columnDefinition = "TEXT", length = 1048576)
+  private String params;
+
+  // How long each launch may run before it is stopped; null for app.jobs.defaultTimeoutMs.
+  private Long timeoutMs;
+
+  private boolean enabled;
+
+  // When the schedule next fires; a disabled schedule does not fire, and its nextRunAt is worked
+  // out again from the time it is enabled.
+  private ZonedDateTime nextRunAt;
+
+  // When the schedule last launched a job, and which job that was.
+  private ZonedDateTime lastRunAt;
+  private Long lastJobId;
+
+  @CreatedDate private ZonedDateTime createdAt;
+  @LastModifiedDate private ZonedDateTime updatedAt;
+}
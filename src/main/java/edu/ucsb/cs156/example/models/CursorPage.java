@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents a page of rows read in keyset order.
+ *
+ * <p>nextCursor is the id of the last row of the page; passing it back as after fetches the next
+ * page. It is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CursorPage<T> {
+  private List<T> content;
+  private Long nextCursor;
+}
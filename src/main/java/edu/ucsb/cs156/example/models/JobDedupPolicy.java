@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents how a job launch is deduplicated.
+ *
+ * <p>A job launched with a dedup policy is identified by its class and its fields. If an identical
+ * job is already queued or running, that job is returned instead of a new one being launched. If
+ * reuseCompletedForMs is set, an identical job that completed successfully at most that many
+ * milliseconds ago is returned too, so that the work it did is not done again.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobDedupPolicy {
+  private Long reuseCompletedForMs;
+}
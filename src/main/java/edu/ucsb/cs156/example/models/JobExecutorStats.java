@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents the current state of the executor that runs jobs.
+ *
+ * <p>Queue wait is the time between a job being launched and a thread starting to run it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobExecutorStats {
+  private boolean virtualThreads;
+  private int poolSize;
+  private int activeCount;
+  private int queueDepth;
+  private int queueCapacity;
+  private long started;
+  private long rejected;
+  private double averageQueueWaitMs;
+  private double maxQueueWaitMs;
+}
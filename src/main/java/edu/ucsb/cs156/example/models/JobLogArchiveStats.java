@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents how much space compressing job logs has saved.
+ *
+ * <p>rawBytes is the size of the archived logs as UTF-8 text, compressedBytes the size they take up
+ * in the database.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogArchiveStats {
+  private long archivedLogs;
+  private long rawBytes;
+  private long compressedBytes;
+
+  public long getBytesSaved() {
+    return rawBytes - compressedBytes;
+  }
+
+  /**
+   * @return rawBytes divided by compressedBytes, or 0 if nothing has been archived
+   */
+  public double getCompressionRatio() {
+    return compressedBytes == 0 ? 0 : (double) rawBytes / compressedBytes;
+  }
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents a range of lines from a job log.
+ *
+ * <p>lines are written to the response one at a time, separated by newlines, rather than joined
+ * into one string first. nextCursor is the seq of the line after the last one returned; passing it
+ * back as the offset fetches the lines logged since.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogPage {
+  private List<JobLogLine> lines;
+  private int nextCursor;
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents the job metrics of this node: how long jobs wait for a
+ * worker, what each type of job has done, and how fast the running jobs are going.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobMetricsReport {
+  private JobTimerStats queueWait;
+  private List<JobTypeMetrics> jobTypes;
+  private List<JobThroughput> running;
+}
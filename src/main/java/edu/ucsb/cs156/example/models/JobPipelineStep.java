@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents a step of a pipeline launched through the API: a job of
+ * class jobType, built from params (its fields as JSON), that starts once the steps named in
+ * dependsOn have completed.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobPipelineStep {
+  private String name;
+  private String jobType;
+  private String params;
+  private List<String> dependsOn;
+}
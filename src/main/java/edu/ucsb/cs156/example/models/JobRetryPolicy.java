@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents how a job is retried when it fails.
+ *
+ * <p>maxAttempts is how many times the job may be started in all (1 means it is never retried);
+ * backoffMs is the wait before the first retry, doubled before each one after; jitter is the
+ * largest fraction of each wait that is cut off at random, so that jobs that failed together do not
+ * all retry at the same moment. Any field left null takes its value from the app.jobs.retry
+ * settings.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobRetryPolicy {
+  private Integer maxAttempts;
+  private Long backoffMs;
+  private Double jitter;
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents the new contents of the schedule of a recurring job, as
+ * sent to PUT /api/jobs/schedules. Every field replaces the one of the schedule; enabled is a
+ * Boolean so that a request that leaves it out can be refused, rather than taken to disable the
+ * schedule.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobScheduleUpdate {
+  private String name;
+  private String cron;
+  private String jobType;
+  private String params;
+  private Long timeoutMs;
+  private Boolean enabled;
+}
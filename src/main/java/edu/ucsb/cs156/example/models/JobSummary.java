@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents a row of the jobs listing.
+ *
+ * <p>It is read with a projection query, so listing jobs never loads their logs; logLines is the
+ * number of lines in the log, and progress the percentage of its work the job has done, if it
+ * reports that. A step of a pipeline has the id of the pipeline's job as parentId, and its name as
+ * stepName.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobSummary {
+  private long id;
+  private Long parentId;
+  private String stepName;
+  private String status;
+  private Integer progress;
+  private ZonedDateTime createdAt;
+  private ZonedDateTime updatedAt;
+  private Long createdById;
+  private long logLines;
+}
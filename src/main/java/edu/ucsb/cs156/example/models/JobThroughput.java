@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents how fast a running job is getting through its work, as it
+ * has reported with JobContext.progress.
+ *
+ * <p>itemsPerSecond is itemsDone divided by the time since the current attempt started; progress,
+ * itemsDone and itemsTotal are null if the job has not reported them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobThroughput {
+  private long jobId;
+  private String jobType;
+  private Integer progress;
+  private Long itemsDone;
+  private Long itemsTotal;
+  private double itemsPerSecond;
+}
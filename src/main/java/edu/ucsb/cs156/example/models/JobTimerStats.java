@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that sums up one of the job timers (see JobMetrics): how many times it has
+ * been recorded, and how long those times were.
+ *
+ * <p>count and meanMs cover every time recorded since the node started; maxMs and the percentiles
+ * cover only the last few minutes, so that they show how the job subsystem is doing now.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobTimerStats {
+  private long count;
+  private double meanMs;
+  private double maxMs;
+  private double p50Ms;
+  private double p95Ms;
+  private double p99Ms;
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that represents what jobs of one type have done on this node since it
+ * started.
+ *
+ * <p>jobType is the simple name of the class of the job, or "other" for jobs that cannot be rebuilt
+ * (such as lambdas). failed counts jobs that ended "error", "timed_out", "abandoned" or "rejected";
+ * a job that is retried is only counted once it stops being retried. runTime covers every attempt.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobTypeMetrics {
+  private String jobType;
+  private long launched;
+  private long succeeded;
+  private long failed;
+  private long cancelled;
+  private JobTimerStats runTime;
+  private long itemsProcessed;
+}
@@ -0,0 +1,35 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.models.JobLogArchiveStats;
+import java.util.Collection;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/** The JobLogArchivesRepository is a repository for JobLogArchive entities. */
+@Repository
+public interface JobLogArchivesRepository extends CrudRepository<JobLogArchive, Long> {
+  /**
+   * This method adds up the sizes of all the archived logs.
+   *
+   * @return the number of archived logs and their total size before and after compression
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobLogArchiveStats(count(a),"
+          + " coalesce(sum(a.rawBytes), 0), coalesce(sum(a.compressedBytes), 0))"
+          + " from job_log_archives a")
+  JobLogArchiveStats getStats();
+
+  /**
+   * This method deletes the archived logs of the given jobs in a single statement, without loading
+   * them.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of archives deleted
+   */
+  @Modifying
+  @Query("delete from job_log_archives a where a.jobId in :jobIds")
+  int deleteAllByJobIdIn(Collection<Long> jobIds);
+}
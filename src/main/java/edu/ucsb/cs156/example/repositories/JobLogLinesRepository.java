@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/** The JobLogLinesRepository is a repository for JobLogLine entities. */
+@Repository
+public interface JobLogLinesRepository extends CrudRepository<JobLogLine, Long> {
+  /**
+   * This method returns log lines for a job in the order they were logged, starting at a given
+   * line.
+   *
+   * @param jobId id of the job
+   * @param seq seq of the first line to return
+   * @param limit maximum number of lines to return
+   * @return the matching log lines ordered by seq
+   */
+  List<JobLogLine> findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+      long jobId, int seq, Limit limit);
+
+  /**
+   * This method returns the most recent log lines for a job, newest first.
+   *
+   * @param jobId id of the job
+   * @param limit maximum number of lines to return
+   * @return the last lines of the log ordered by seq, descending
+   */
+  List<JobLogLine> findAllByJobIdOrderBySeqDesc(long jobId, Limit limit);
+
+  /**
+   * This method adds up the length of the lines in the log of a job.
+   *
+   * @param jobId id of the job
+   * @return the number of characters in the log, not counting line breaks
+   */
+  @Query("select coalesce(sum(length(l.line)), 0) from job_log_lines l where l.jobId = :jobId")
+  long sumLineLengths(long jobId);
+
+  /**
+   * This method deletes the log lines of the given jobs in a single statement, without loading
+   * them.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of lines deleted
+   */
+  @Modifying
+  @Query("delete from job_log_lines l where l.jobId in :jobIds")
+  int deleteAllByJobIdIn(Collection<Long> jobIds);
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The JobSchedulesRepository is a repository for JobSchedule entities. */
+@Repository
+public interface JobSchedulesRepository extends CrudRepository<JobSchedule, Long> {
+  Iterable<JobSchedule> findAllByOrderByNameAsc();
+
+  Optional<JobSchedule> findByName(String name);
+
+  /**
+   * This method finds the enabled schedules that are due to fire and locks them, skipping any that
+   * another node has locked, so that a schedule is fired by only one node. It must be called in a
+   * transaction.
+   *
+   * @param now the current time
+   * @return the schedules due at or before now
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+  @Query(
+      "select s from job_schedules s where s.enabled = true and s.nextRunAt <= :now"
+          + " order by s.nextRunAt")
+  List<JobSchedule> findDue(ZonedDateTime now);
+
+  /**
+   * This method records that a schedule has launched a job, without touching anything an admin may
+   * have changed meanwhile.
+   *
+   * @param id id of the schedule
+   * @param runAt when the job was launched
+   * @param jobId id of the job
+   */
+  @Transactional
+  @Modifying
+  @Query("update job_schedules s set s.lastRunAt = :runAt, s.lastJobId = :jobId where s.id = :id")
+  void recordRun(long id, ZonedDateTime runAt, long jobId);
+}
@@ -1,8 +1,313 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobSummary;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+/** The JobsRepository is a repository for Job entities. */
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long> {
+  /** Selects a summary of each job; shared by the summary queries below. */
+  String SUMMARIES =
+      "select new edu.ucsb.cs156.example.models.JobSummary(j.id, j.parentId, j.stepName,"
+          + " j.status, j.progress, j.createdAt, j.updatedAt, u.id,"
+          + " (select count(l) from job_log_lines l where l.jobId = j.id)"
+          + " + coalesce((select a.lineCount from job_log_archives a where a.jobId = j.id),"
+          + " 0))"
+          + " from jobs j left join j.createdBy u";
+
+  /**
+   * This method returns a page of job summaries. Only the columns of the summary are selected, so
+   * the log of each job is never read; the number of log lines is counted from the index on
+   * job_log_lines, plus the lines of the log's archive if it has been compressed.
+   *
+   * @param pageable the page to return; may be sorted by id, status, createdAt or updatedAt
+   * @return a page of job summaries
+   */
+  @Query(value = SUMMARIES, countQuery = "select count(j) from jobs j")
+  Page<JobSummary> findAllSummaries(Pageable pageable);
+
+  /**
+   * This method returns the summaries of the steps of a pipeline, in the order they were started or
+   * skipped.
+   *
+   * @param parentId id of the job that runs the pipeline
+   * @return the summaries of its steps
+   */
+  @Query(SUMMARIES + " where j.parentId = :parentId order by j.id")
+  List<JobSummary> findChildSummaries(long parentId);
+
+  /**
+   * This method locks and returns the oldest queued jobs that are ready to run, i.e. that are not
+   * waiting out the backoff before a retry. Rows that another transaction has already locked are
+   * skipped rather than waited for (a lock timeout of -2 is rendered as FOR UPDATE SKIP LOCKED on
+   * Postgres; databases without SKIP LOCKED, such as H2, fall back to a plain FOR UPDATE), so nodes
+   * polling the queue at the same time claim different jobs. Must be called inside a transaction.
+   *
+   * @param now the current time
+   * @param limit maximum number of jobs to lock
+   * @return the locked jobs, oldest first
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+  @Query(
+      "select j from jobs j where j.status = 'queued'"
+          + " and (j.nextAttemptAt is null or j.nextAttemptAt <= :now) order by j.id")
+  List<Job> findClaimable(ZonedDateTime now, Limit limit);
+
+  /**
+   * This method extends the leases of running jobs, but only those still held by the given owner.
+   *
+   * @param owner node that holds the leases
+   * @param ids ids of the jobs the owner is running
+   * @param expiresAt new expiry time of the leases
+   * @return the number of leases extended
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update jobs j set j.leaseExpiresAt = :expiresAt"
+          + " where j.id in :ids and j.leaseOwner = :owner and j.status = 'running'")
+  int renewLeases(String owner, Collection<Long> ids, ZonedDateTime expiresAt);
+
+  /**
+   * This method records the progress of a running job without loading it. A job that has already
+   * finished is left alone, so that a late update cannot overwrite its final progress.
+   *
+   * @param id id of the job
+   * @param progress percentage of its work the job has done
+   */
+  @Transactional
+  @Modifying
+  @Query("update jobs j set j.progress = :progress where j.id = :id and j.status = 'running'")
+  void updateProgress(long id, int progress);
+
+  /**
+   * This method puts running jobs whose lease has run out back on the queue, so that another node
+   * can claim them, as long as they have been started fewer than maxAttempts times, or than their
+   * own retryMaxAttempts if that is more.
+   *
+   * @param now the current time
+   * @param maxAttempts how many times a job may be started in all
+   * @return the number of jobs put back on the queue
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update jobs j set j.status = 'queued', j.leaseOwner = null, j.leaseExpiresAt = null"
+          + " where j.status = 'running' and j.leaseExpiresAt < :now"
+          + " and (j.attempts < :maxAttempts or j.attempts < j.retryMaxAttempts)")
+  int requeueExpiredLeases(ZonedDateTime now, int maxAttempts);
+
+  /**
+   * This method marks running jobs whose lease has run out as abandoned, if they have already been
+   * started maxAttempts times and as many times as their retryMaxAttempts.
+   *
+   * @param now the current time
+   * @param maxAttempts how many times a job may be started in all
+   * @return the number of jobs abandoned
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update jobs j set j.status = 'abandoned', j.leaseOwner = null, j.leaseExpiresAt = null,"
+          + " j.activeDedupKey = null where j.status = 'running' and j.leaseExpiresAt < :now"
+          + " and j.attempts >= :maxAttempts and j.attempts >= j.retryMaxAttempts")
+  int abandonExpiredLeases(ZonedDateTime now, int maxAttempts);
+
+  /**
+   * This method returns the status of a job, without loading the rest of the job.
+   *
+   * @param id id of the job
+   * @return the status of the job, or empty if there is no such job
+   */
+  @Query("select j.status from jobs j where j.id = :id")
+  Optional<String> findStatusById(long id);
+
+  /**
+   * This method returns the queued or running job with the given dedup key, if there is one.
+   *
+   * @param activeDedupKey dedup key of the job
+   * @return the job
+   */
+  Optional<Job> findByActiveDedupKey(String activeDedupKey);
+
+  /**
+   * This method returns the newest job with the given dedup key and status that was last updated
+   * after the given time, if there is one.
+   *
+   * @param dedupKey dedup key of the job
+   * @param status status of the job
+   * @param after only a job last updated after this time is returned
+   * @return the job
+   */
+  Optional<Job> findFirstByDedupKeyAndStatusAndUpdatedAtAfterOrderByIdDesc(
+      String dedupKey, String status, ZonedDateTime after);
+
+  /**
+   * This method returns the jobs that a previous instance of the given node left running, along
+   * with running jobs from before nodes were recorded on jobs.
+   *
+   * @param nodeId id of the node
+   * @return the jobs
+   */
+  @Query(
+      "select j from jobs j where j.status = 'running' and (j.nodeId = :nodeId or j.nodeId is null)")
+  List<Job> findOrphans(String nodeId);
+
+  /**
+   * This method returns the jobs with the given status that were last started by the given node.
+   *
+   * @param status status of the jobs
+   * @param nodeId id of the node
+   * @return the jobs
+   */
+  List<Job> findAllByStatusAndNodeId(String status, String nodeId);
+
+  /**
+   * This method starts the next attempt at a job that is waiting to be retried, unless it has been
+   * cancelled in the meantime.
+   *
+   * @param id id of the job
+   * @param nodeId id of the node that will run the attempt
+   * @return 1 if the attempt was started, 0 if the job is no longer queued
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update jobs j set j.status = 'running', j.nodeId = :nodeId, j.attempts = j.attempts + 1,"
+          + " j.nextAttemptAt = null where j.id = :id and j.status = 'queued'")
+  int startRetry(long id, String nodeId);
+
+  /**
+   * This method cancels a job, but only if it is still waiting in the queue.
+   *
+   * @param id id of the job
+   * @return 1 if the job was cancelled, 0 if it was not queued
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update jobs j set j.status = 'cancelled', j.activeDedupKey = null"
+          + " where j.id = :id and j.status = 'queued'")
+  int cancelQueued(long id);
+
+  /**
+   * This method flags a running job to be cancelled by the node that is running it.
+   *
+   * @param id id of the job
+   * @return 1 if the job was flagged, 0 if it was not running
+   */
+  @Transactional
+  @Modifying
+  @Query("update jobs j set j.cancelRequested = true where j.id = :id and j.status = 'running'")
+  int requestCancel(long id);
+
+  /**
+   * This method marks a job as "interrupted" while the node shutting down still holds it as
+   * running, for a job that did not stop when it was interrupted.
+   *
+   * @param id id of the job
+   * @return 1 if the job was marked, 0 if it was no longer running
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "update jobs j set j.status = 'interrupted', j.leaseOwner = null, j.leaseExpiresAt = null,"
+          + " j.activeDedupKey = null where j.id = :id and j.status = 'running'")
+  int markInterrupted(long id);
+
+  /**
+   * This method returns which of the given jobs have been flagged to be cancelled.
+   *
+   * @param ids ids of jobs
+   * @return ids of the jobs among them that have been flagged
+   */
+  @Query("select j.id from jobs j where j.id in :ids and j.cancelRequested = true")
+  List<Long> findCancelRequested(Collection<Long> ids);
+
+  /**
+   * This method returns the ids of the oldest jobs, for deleting all jobs a batch at a time.
+   *
+   * @param limit maximum number of ids to return
+   * @return ids of jobs, lowest first
+   */
+  @Query("select j.id from jobs j order by j.id")
+  List<Long> findIds(Limit limit);
+
+  /**
+   * This method returns the ids of finished jobs, i.e. jobs that are neither running nor queued,
+   * that were last updated before the given time, leaving out jobs with any of the given statuses.
+   *
+   * @param before only jobs last updated before this time are returned
+   * @param excludedStatuses statuses of jobs to leave out
+   * @param limit maximum number of ids to return
+   * @return ids of jobs, lowest first
+   */
+  @Query(
+      "select j.id from jobs j where j.status not in ('running', 'queued')"
+          + " and j.status not in :excludedStatuses and j.updatedAt < :before order by j.id")
+  List<Long> findFinishedIdsUpdatedBefore(
+      ZonedDateTime before, Collection<String> excludedStatuses, Limit limit);
+
+  /**
+   * This method returns the ids of jobs with one of the given statuses that were last updated
+   * before the given time.
+   *
+   * @param statuses statuses of the jobs to return
+   * @param before only jobs last updated before this time are returned
+   * @param limit maximum number of ids to return
+   * @return ids of jobs, lowest first
+   */
+  @Query(
+      "select j.id from jobs j where j.status in :statuses and j.updatedAt < :before order by j.id")
+  List<Long> findIdsByStatusUpdatedBefore(
+      Collection<String> statuses, ZonedDateTime before, Limit limit);
+
+  /**
+   * This method returns the ids of finished jobs, newest first.
+   *
+   * @param pageable which ids to return
+   * @return ids of jobs, highest first
+   */
+  @Query("select j.id from jobs j where j.status not in ('running', 'queued') order by j.id desc")
+  List<Long> findFinishedIdsNewestFirst(Pageable pageable);
+
+  /**
+   * This method returns the ids of finished jobs up to and including the given id.
+   *
+   * @param maxId highest id to return
+   * @param limit maximum number of ids to return
+   * @return ids of jobs, lowest first
+   */
+  @Query(
+      "select j.id from jobs j where j.status not in ('running', 'queued') and j.id <= :maxId"
+          + " order by j.id")
+  List<Long> findFinishedIdsUpTo(long maxId, Limit limit);
+
+  /**
+   * This method deletes the given jobs in a single statement, without loading them. Their log lines
+   * must be deleted first (see JobLogLinesRepository.deleteAllByJobIdIn).
+   *
+   * @param ids ids of the jobs
+   * @return the number of jobs deleted
+   */
+  @Modifying
+  @Query("delete from jobs j where j.id in :ids")
+  int deleteAllByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.repositories;
+
+import java.util.function.Function;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+
+/**
+ * A repository that, besides the usual CRUD methods, can read its rows a page at a time in keyset
+ * order; see ApiController.keysetPage.
+ */
+@NoRepositoryBean
+public interface KeysetPagingRepository<T, ID>
+    extends CrudRepository<T, ID>, PagingAndSortingRepository<T, ID> {
+
+  /**
+   * This method runs a query for the rows that match a specification, e.g. a KeysetSpecification,
+   * as JpaSpecificationExecutor.findBy does; the query function can limit how many rows it reads.
+   *
+   * @param spec the rows to find, and their order
+   * @param queryFunction how to read the rows, e.g. query -> query.limit(10).all()
+   * @return the result of the query function
+   */
+  <S extends T, R> R findBy(
+      Specification<T> spec, Function<FetchableFluentQuery<S>, R> queryFunction);
+}
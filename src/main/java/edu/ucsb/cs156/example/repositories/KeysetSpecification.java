@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.repositories;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Sorts rows by a key and then by id, and matches the rows that come after a given row in that
+ * order, e.g. where date_reviewed >= :value and (date_reviewed > :value or (date_reviewed = :value
+ * and id > :id)). The first condition bounds the scan, so with an index on the key and id together
+ * the query seeks straight to the first of them, and reading a page far into a table costs no more
+ * than reading the first one. Find the rows with an unsorted query, as the order is part of the
+ * specification.
+ *
+ * <p>Rows whose key is null come after all others in ascending order and before all others in
+ * descending order, as in a Postgres index. They are a section of their own: a specification
+ * matches the rows of one section only, as or-ing the two together would stop the index from
+ * bounding the scan, and following gives the specification of the section after it, to be read with
+ * a query of its own once this one runs out.
+ */
+@EqualsAndHashCode
+@ToString
+public class KeysetSpecification<T> implements Specification<T> {
+  /** The rows a specification matches: all of them, or those with a key, or those without. */
+  private enum Section {
+    ALL,
+    KEYED,
+    NULL
+  }
+
+  private final String key;
+  private final Sort.Direction direction;
+  private final Comparable<Object> value;
+  private final Long afterId;
+  private final Section section;
+
+  /**
+   * @param key the field the rows are sorted by before id; id to sort by id alone
+   * @param direction whether the rows are sorted in ascending or descending order
+   * @param value the key of the row the rows come after; ignored when sorting by id
+   * @param afterId the id of the row the rows come after, or null for all the rows
+   */
+  public KeysetSpecification(String key, Sort.Direction direction, Object value, Long afterId) {
+    this(
+        key,
+        direction,
+        value,
+        afterId,
+        afterId == null || key.equals("id")
+            ? Section.ALL
+            : value == null ? Section.NULL : Section.KEYED);
+  }
+
+  @SuppressWarnings("unchecked")
+  private KeysetSpecification(
+      String key, Sort.Direction direction, Object value, Long afterId, Section section) {
+    this.key = key;
+    this.direction = direction;
+    this.value = (Comparable<Object>) value;
+    this.afterId = afterId;
+    this.section = section;
+  }
+
+  /**
+   * @return the specification of every row of the section that follows the rows this one matches,
+   *     i.e. the rows without a key after those with one in ascending order, and the other way
+   *     round in descending order; null if the rows this one matches are the last
+   */
+  public KeysetSpecification<T> following() {
+    boolean ascending = direction.isAscending();
+    if (section == Section.KEYED && ascending) {
+      return new KeysetSpecification<>(key, direction, null, null, Section.NULL);
+    }
+    if (section == Section.NULL && !ascending) {
+      return new KeysetSpecification<>(key, direction, null, null, Section.KEYED);
+    }
+    return null;
+  }
+
+  @Override
+  public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+    HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
+    boolean ascending = direction.isAscending();
+    Expression<Long> id = root.get("id");
+    Expression<Comparable<Object>> field = key.equals("id") ? null : root.get(key);
+    if (field == null) {
+      query.orderBy(ascending ? cb.asc(id) : cb.desc(id));
+    } else {
+      query.orderBy(
+          ascending ? hcb.asc(field, false) : hcb.desc(field, true),
+          ascending ? cb.asc(id) : cb.desc(id));
+    }
+
+    Predicate idAfter =
+        afterId == null ? null : ascending ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId);
+    switch (section) {
+      case ALL:
+        return idAfter;
+      case NULL:
+        return idAfter == null ? cb.isNull(field) : cb.and(cb.isNull(field), idAfter);
+      default:
+        if (afterId == null) return cb.isNotNull(field);
+        // the bound is implied by the rest, but it is what lets the index seek to the value
+        Predicate bound =
+            ascending ? cb.greaterThanOrEqualTo(field, value) : cb.lessThanOrEqualTo(field, value);
+        Predicate keyAfter = ascending ? cb.greaterThan(field, value) : cb.lessThan(field, value);
+        return cb.and(bound, cb.or(keyAfter, cb.and(cb.equal(field, value), idAfter)));
+    }
+  }
+}
@@ -1,9 +1,8 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequests;
-import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface RecommendationRequestsRepository
-    extends CrudRepository<RecommendationRequests, Long> {}
+    extends KeysetPagingRepository<RecommendationRequests, Long> {}
@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.repositories;
+
+import jakarta.persistence.QueryHint;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.Repository;
+
+/**
+ * A repository whose whole table can be read as a stream; see JsonStreamingService.
+ *
+ * @param <T> the type of the rows
+ * @param <ID> the type of their ids
+ */
+@NoRepositoryBean
+public interface StreamingRepository<T, ID> extends Repository<T, ID> {
+
+  /**
+   * This method returns every row, read from the database STREAM_FETCH_SIZE rows at a time as the
+   * stream is consumed. The rows are read only, so Hibernate keeps no snapshot of them to check for
+   * changes. Must be called inside a transaction, and the stream closed once it has been read.
+   *
+   * @return a stream of every row
+   */
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  Stream<T> streamAllBy();
+
+  /** How many rows streamAllBy fetches from the database at a time. */
+  String STREAM_FETCH_SIZE = "500";
+}
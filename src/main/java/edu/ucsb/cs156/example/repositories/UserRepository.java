@@ -7,7 +7,8 @@ import org.springframework.stereotype.Repository;
 
 /** The UserRepository is a repository for User entities. */
 @Repository
-public interface UserRepository extends CrudRepository<User, Long> {
+public interface UserRepository
+    extends CrudRepository<User, Long>, StreamingRepository<User, Long> {
   /**
    * This method returns a User entity with a given email.
    *
@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsb.cs156.example.repositories.StreamingRepository;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes a whole table as a JSON array, one row at a time, for endpoints that return every row.
+ *
+ * <p>Rows are read through the stream of a StreamingRepository, which fetches a few hundred rows
+ * from the database at a time, and each row is written with a Jackson generator and then detached
+ * from the persistence context. So neither the rows, nor the entities Hibernate tracks, nor the
+ * JSON are ever held in memory all at once, and a request needs the same memory however large the
+ * table is. The JSON is the same as if the list of rows had been returned from the controller.
+ */
+@Service
+public class JsonStreamingService {
+  @Autowired private ObjectMapper mapper;
+
+  @Autowired private EntityManager entityManager;
+
+  /**
+   * Write every row of a table to out as a JSON array.
+   *
+   * @param repository the repository of the table
+   * @param out where to write the JSON, e.g. the body of the response; it is left open
+   * @throws IOException if the JSON cannot be written
+   */
+  @Transactional(readOnly = true)
+  public <T> void writeAll(StreamingRepository<T, ?> repository, OutputStream out)
+      throws IOException {
+    // flushing after every row would send each one to the client in a write of its own
+    ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    try (Stream<T> rows = repository.streamAllBy();
+        JsonGenerator json = mapper.createGenerator(out)) {
+      json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      json.writeStartArray();
+      for (Iterator<T> it = rows.iterator(); it.hasNext(); ) {
+        T row = it.next();
+        writer.writeValue(json, row);
+        entityManager.detach(row);
+      }
+      json.writeEndArray();
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a version number for each table whose rows clients cache, such as the dining commons, and
+ * turns it into a strong ETag, e.g. "ucsbdiningcommons-12". Every write to the table bumps its
+ * version, so a client that sends back the ETag in If-None-Match can be told with a 304 that what
+ * it has is still current.
+ *
+ * <p>Versions are kept in the table_versions table, so they survive restarts and are shared by
+ * every node, and each node holds the latest it knows of in memory. Checking an ETag therefore
+ * costs no query: a node learns of its own writes at once, and of writes made on other nodes within
+ * app.tableVersions.refreshMs.
+ *
+ * <p>A write must bump the version only once it has been committed. Otherwise a client could read
+ * the old rows under the new ETag and be told they are current until the table next changes.
+ */
+@Service
+@Slf4j
+public class TableVersionService {
+  private static final String BUMP_SQL =
+      "update table_versions set version = version + 1 where table_name = ?";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  /** The latest version of each table that this node knows of. */
+  private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+  private volatile boolean loaded = false;
+
+  /**
+   * @param table name of the table
+   * @return the version of the table; 0 if it has never been written to
+   */
+  public long getVersion(String table) {
+    if (!loaded) refresh();
+    return versions.getOrDefault(table, 0L);
+  }
+
+  /**
+   * Get the ETag of a table, to be checked against If-None-Match with WebRequest.checkNotModified.
+   * Read it before the rows it is sent with, so that they are never older than it.
+   *
+   * @param table name of the table
+   * @return a strong ETag that changes whenever the table does
+   */
+  public String getETag(String table) {
+    return "\"%s-%d\"".formatted(table, getVersion(table));
+  }
+
+  /**
+   * @param table name of the table
+   * @param coding the content coding the response is sent with, e.g. "gzip"
+   * @return a strong ETag that changes whenever the table does, and differs from that of the same
+   *     response sent with any other coding, e.g. "ucsbdiningcommons-12-gzip"
+   */
+  public String getETag(String table, String coding) {
+    return "\"%s-%d-%s\"".formatted(table, getVersion(table), coding);
+  }
+
+  /**
+   * Record that a table has changed; call once the change has been committed. This is all a write
+   * has to do: JsonResponseCache and SnapshotCache compare the version of what they hold with this
+   * one on every read, so the next read on this node sees the change.
+   *
+   * @param table name of the table
+   */
+  public void bump(String table) {
+    if (jdbcTemplate.update(BUMP_SQL, table) == 0) {
+      try {
+        jdbcTemplate.update(
+            "insert into table_versions (table_name, version) values (?, 1)", table);
+      } catch (DuplicateKeyException e) {
+        // another node wrote to the table for the first time at the same moment
+        jdbcTemplate.update(BUMP_SQL, table);
+      }
+    }
+    long version =
+        jdbcTemplate.queryForObject(
+            "select version from table_versions where table_name = ?", Long.class, table);
+    versions.merge(table, version, Math::max);
+    log.debug("Table {} is now at version {}", table, version);
+  }
+
+  /** Pick up the versions of tables written to on other nodes. */
+  @Scheduled(fixedDelayString = "${app.tableVersions.refreshMs:5000}")
+  public void refresh() {
+    jdbcTemplate.query(
+        "select table_name, version from table_versions",
+        rs -> {
+          versions.merge(rs.getString(1), rs.getLong(2), Math::max);
+        });
+    loaded = true;
+  }
+}
@@ -0,0 +1,211 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Exports the rows of a table to a gzip-compressed CSV or NDJSON file, as a job.
+ *
+ * <p>Rows are read through a forward-only, read-only cursor that fetches app.export.fetchSize rows
+ * from the database at a time, and each row is written to the file as soon as it is read, so an
+ * export needs the same memory however large the table is. The query runs in a transaction because
+ * the Postgres driver only honours the fetch size with auto-commit off; without one it reads the
+ * whole result into memory.
+ *
+ * <p>The file is written to app.export.dir on the node that ran the job, under a temporary name
+ * until the export is complete, and can then be downloaded with GET /api/jobs/exports/{id}.
+ */
+@Service
+@Slf4j
+public class BulkExportService {
+  private static final String COMPRESSED_EXTENSION = ".gz";
+  private static final String PARTIAL_EXTENSION = ".part";
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Value("${app.export.dir:${java.io.tmpdir}/exports}")
+  private String exportDir = System.getProperty("java.io.tmpdir") + "/exports";
+
+  @Value("${app.export.fetchSize:1000}")
+  private int fetchSize = 1000;
+
+  /** How often the job logs how many rows it has exported so far. */
+  @Value("${app.export.reportEveryMs:5000}")
+  private long reportEveryMs = 5000;
+
+  /**
+   * Launch a job that exports the rows of a table.
+   *
+   * @param table the table to export
+   * @param format the format of the file
+   * @return the job
+   */
+  public Job launchExport(ExportTable table, ExportFormat format) {
+    return jobService.runAsJob(ctx -> exportTable(ctx, table, format));
+  }
+
+  /**
+   * Find the file a job exported.
+   *
+   * @param jobId id of the job
+   * @return the file, or empty if the job has not (yet) exported one on this node
+   * @throws IOException if the export directory cannot be read
+   */
+  public Optional<Path> findExport(long jobId) throws IOException {
+    Path dir = Path.of(exportDir);
+    if (!Files.isDirectory(dir)) return Optional.empty();
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(dir, "*-%d.*%s".formatted(jobId, COMPRESSED_EXTENSION))) {
+      Iterator<Path> found = files.iterator();
+      return found.hasNext() ? Optional.of(found.next()) : Optional.empty();
+    }
+  }
+
+  /**
+   * Export the rows of a table to a file named after the table and the job, e.g.
+   * menuitemreviews-12.csv.gz.
+   *
+   * @param ctx context of the job doing the export
+   * @param table the table to export
+   * @param format the format of the file
+   * @throws IOException if the file cannot be written; nothing is left behind
+   */
+  void exportTable(JobContext ctx, ExportTable table, ExportFormat format) throws IOException {
+    Path dir = Files.createDirectories(Path.of(exportDir));
+    String name =
+        "%s-%d.%s%s"
+            .formatted(
+                table.getTableName(), ctx.getJobId(), format.getExtension(), COMPRESSED_EXTENSION);
+    Path partial = dir.resolve(name + PARTIAL_EXTENSION);
+    try {
+      Export export = new Export(ctx, table);
+      export.run(format, partial);
+      Path file =
+          Files.move(
+              partial,
+              dir.resolve(name),
+              StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+      ctx.log(
+          "Exported %d rows of %s to %s (%d bytes) in %d ms (%d rows/s)"
+              .formatted(
+                  export.exported,
+                  table.getTableName(),
+                  file.getFileName(),
+                  Files.size(file),
+                  export.elapsedMs(),
+                  export.rowsPerSecond()));
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(partial);
+      throw e;
+    }
+  }
+
+  /** The state of one export. */
+  private class Export implements RowCallbackHandler {
+    private final JobContext ctx;
+    private final ExportTable table;
+    private final List<Class<?>> types;
+    private final long startNanos = System.nanoTime();
+    private long reportedAtMs = 0;
+    private RowWriter rows;
+    private long total;
+    private long exported = 0;
+
+    Export(JobContext ctx, ExportTable table) {
+      this.ctx = ctx;
+      this.table = table;
+      this.types = table.getTypes();
+    }
+
+    void run(ExportFormat format, Path file) throws IOException {
+      total = jdbcTemplate.queryForObject(table.getCountSql(), Long.class);
+      ctx.log("Exporting %d rows of %s as %s".formatted(total, table.getTableName(), format));
+      try (RowWriter rows =
+          format.open(
+              new BufferedWriter(
+                  new OutputStreamWriter(
+                      new GZIPOutputStream(Files.newOutputStream(file), 1 << 16),
+                      StandardCharsets.UTF_8)),
+              table.getFields(),
+              objectMapper)) {
+        this.rows = rows;
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(this::prepare, this));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      ctx.progress(exported, exported);
+    }
+
+    private PreparedStatement prepare(Connection connection) throws SQLException {
+      PreparedStatement statement =
+          connection.prepareStatement(
+              table.getSelectSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      statement.setFetchSize(fetchSize);
+      return statement;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+      Object[] values = new Object[types.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = rs.getObject(i + 1, types.get(i));
+      }
+      try {
+        rows.write(values);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      exported++;
+      if (exported % fetchSize == 0) {
+        // rows added since the count would take the export past 100%
+        ctx.progress(exported, Math.max(total, exported));
+        if (elapsedMs() - reportedAtMs >= reportEveryMs) {
+          reportedAtMs = elapsedMs();
+          ctx.log("Exported %d rows (%d rows/s)".formatted(exported, rowsPerSecond()));
+        }
+        ctx.checkpoint();
+      }
+    }
+
+    private long elapsedMs() {
+      return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private long rowsPerSecond() {
+      return exported * 1000 / Math.max(elapsedMs(), 1);
+    }
+  }
+}
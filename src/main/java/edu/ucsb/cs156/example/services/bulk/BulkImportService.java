@@ -0,0 +1,221 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobRetryPolicy;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Imports rows into a table from an uploaded CSV or JSON file, as a job.
+ *
+ * <p>The upload is saved to a temporary file, which the job reads a row at a time, so neither the
+ * request nor the job ever holds the whole file in memory. Rows are inserted with JDBC batches of
+ * app.import.batchSize rows, each batch in a transaction of its own, so a failure part way through
+ * keeps the batches already committed. A row that cannot be parsed, or that the database refuses,
+ * is logged with its row number and skipped; the job log also reports how many rows a second the
+ * import is managing.
+ *
+ * <p>The job is not retried, and always runs on the node it was launched on, which is the only one
+ * with the file; it is deleted once the job has finished.
+ */
+@Service
+@Slf4j
+public class BulkImportService {
+  /** At most this many skipped rows are logged one by one; the rest are only counted. */
+  static final int MAX_LOGGED_ERRORS = 100;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private TransactionTemplate transactionTemplate;
+
+  @Autowired private TableVersionService tableVersionService;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Value("${app.import.batchSize:1000}")
+  private int batchSize = 1000;
+
+  /** How often the job logs how many rows it has imported so far. */
+  @Value("${app.import.reportEveryMs:5000}")
+  private long reportEveryMs = 5000;
+
+  /**
+   * Launch a job that imports the rows of an uploaded file into a table.
+   *
+   * @param table the table to import into
+   * @param format the format of the file
+   * @param upload the file
+   * @return the job
+   * @throws IOException if the upload cannot be saved
+   */
+  public Job launchImport(ImportTable table, ImportFormat format, MultipartFile upload)
+      throws IOException {
+    Path file = Files.createTempFile("import-", "." + format.getExtension());
+    try {
+      upload.transferTo(file);
+    } catch (IOException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    Job job =
+        jobService.runAsJob(
+            ctx -> importFile(ctx, table, format, file),
+            null,
+            JobRetryPolicy.builder().maxAttempts(1).build());
+    if ("rejected".equals(job.getStatus())) {
+      Files.deleteIfExists(file);
+    }
+    return job;
+  }
+
+  /**
+   * Import the rows of a file into a table, then delete the file.
+   *
+   * @param ctx context of the job doing the import
+   * @param table the table to import into
+   * @param format the format of the file
+   * @param file the file
+   * @throws IOException if the file cannot be read to the end; the rows before the point where it
+   *     could not be read are imported
+   */
+  void importFile(JobContext ctx, ImportTable table, ImportFormat format, Path file)
+      throws IOException {
+    try {
+      new Import(ctx, table).run(format, file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /** The state of one import. */
+  private class Import {
+    private final JobContext ctx;
+    private final ImportTable table;
+    private final long startNanos = System.nanoTime();
+    private long reportedAtMs = 0;
+    private final List<Object[]> batch = new ArrayList<>();
+    private final List<Long> batchRowNumbers = new ArrayList<>();
+    private long imported = 0;
+    private long skipped = 0;
+
+    Import(JobContext ctx, ImportTable table) {
+      this.ctx = ctx;
+      this.table = table;
+    }
+
+    void run(ImportFormat format, Path file) throws IOException {
+      long size = Files.size(file);
+      ctx.log("Importing %s into %s (%d bytes)".formatted(format, table.getTableName(), size));
+      try (FileChannel channel = FileChannel.open(file);
+          RowReader rows =
+              format.open(
+                  new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8),
+                  table,
+                  objectMapper)) {
+        try {
+          while (true) {
+            try {
+              Map<String, String> row = rows.next();
+              if (row == null) break;
+              batch.add(table.toParameters(row));
+              batchRowNumbers.add(rows.getRowNumber());
+            } catch (IllegalArgumentException e) {
+              skip(rows.getRowNumber(), e.getMessage());
+            }
+            if (batch.size() >= batchSize) {
+              insertBatch();
+              ctx.setProgress((int) (channel.position() * 100 / size));
+              if (elapsedMs() - reportedAtMs >= reportEveryMs) {
+                reportedAtMs = elapsedMs();
+                ctx.log("Imported %d rows (%d rows/s)".formatted(imported, rowsPerSecond()));
+              }
+              ctx.checkpoint();
+            }
+          }
+        } catch (IOException e) {
+          insertBatch();
+          throw new IOException(
+              "Import stopped after row %d: %s; %d rows imported"
+                  .formatted(rows.getRowNumber(), firstLine(e.getMessage()), imported),
+              e);
+        }
+        insertBatch();
+      }
+      ctx.setProgress(100);
+      ctx.log(
+          "Imported %d rows into %s in %d ms (%d rows/s); %d rows skipped"
+              .formatted(imported, table.getTableName(), elapsedMs(), rowsPerSecond(), skipped));
+    }
+
+    /**
+     * Insert the rows read since the last batch. If the database refuses the batch, which rolls it
+     * back as a whole, its rows are inserted one at a time instead, so that only those at fault are
+     * skipped.
+     */
+    private void insertBatch() {
+      if (batch.isEmpty()) return;
+      try {
+        transactionTemplate.executeWithoutResult(
+            status -> jdbcTemplate.batchUpdate(table.getInsertSql(), batch));
+        imported += batch.size();
+      } catch (DataAccessException e) {
+        for (int i = 0; i < batch.size(); i++) {
+          try {
+            jdbcTemplate.update(table.getInsertSql(), batch.get(i));
+            imported++;
+          } catch (DataAccessException rowError) {
+            skip(batchRowNumbers.get(i), firstLine(rowError.getMostSpecificCause().getMessage()));
+          }
+        }
+      }
+      batch.clear();
+      batchRowNumbers.clear();
+      // the rows were inserted without JPA, so nothing else tells clients the table has changed
+      tableVersionService.bump(table.getTableName());
+    }
+
+    private void skip(long rowNumber, String reason) {
+      skipped++;
+      if (skipped <= MAX_LOGGED_ERRORS) {
+        ctx.log("Row %d skipped: %s".formatted(rowNumber, reason));
+      } else if (skipped == MAX_LOGGED_ERRORS + 1) {
+        ctx.log("More than %d rows skipped; no more are logged".formatted(MAX_LOGGED_ERRORS));
+      }
+    }
+
+    /** Database and parser errors can run to several lines, of which only the first matters. */
+    private String firstLine(String message) {
+      return String.valueOf(message).lines().findFirst().orElse("");
+    }
+
+    private long elapsedMs() {
+      return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private long rowsPerSecond() {
+      return imported * 1000 / Math.max(elapsedMs(), 1);
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the rows of a CSV file (RFC 4180) whose first row names the fields.
+ *
+ * <p>A field may be quoted, in which case it may contain commas, line breaks and doubled quotes.
+ * Lines may end with \n or \r\n, and blank lines are skipped. Every value is read as text; a row
+ * with a different number of fields from the header is rejected.
+ */
+class CsvRowReader implements RowReader {
+  private final Reader reader;
+  private final char[] buffer = new char[8192];
+  private int position = 0;
+  private int limit = 0;
+
+  private final StringBuilder field = new StringBuilder();
+  private final List<String> header;
+  private long rowNumber = 0;
+
+  /**
+   * @param reader the file; read from as needed, and closed by close
+   * @param fields names of the fields every row must have
+   * @throws IOException if the file has no header row, or the header lacks one of the fields
+   */
+  CsvRowReader(Reader reader, List<String> fields) throws IOException {
+    this.reader = reader;
+    List<String> names = readRecord();
+    if (names == null) {
+      throw new IOException("CSV file is empty: its first row should name the fields");
+    }
+    // a byte order mark, as some spreadsheets write, is not part of the first name
+    if (names.get(0).startsWith("\uFEFF")) {
+      names.set(0, names.get(0).substring(1));
+    }
+    header = names.stream().map(String::strip).toList();
+    List<String> missing = fields.stream().filter(f -> !header.contains(f)).toList();
+    if (!missing.isEmpty()) {
+      throw new IOException("CSV header has no " + String.join(", ", missing));
+    }
+  }
+
+  @Override
+  public Map<String, String> next() throws IOException {
+    List<String> record = readRecord();
+    if (record == null) return null;
+    rowNumber++;
+    if (record.size() != header.size()) {
+      throw new IllegalArgumentException(
+          "has %d fields, but the header has %d".formatted(record.size(), header.size()));
+    }
+    Map<String, String> row = new HashMap<>();
+    for (int i = 0; i < record.size(); i++) {
+      row.put(header.get(i), record.get(i));
+    }
+    return row;
+  }
+
+  @Override
+  public long getRowNumber() {
+    return rowNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /**
+   * @return the fields of the next record, or null at the end of the file
+   */
+  private List<String> readRecord() throws IOException {
+    int c;
+    do {
+      c = read();
+    } while (c == '\n' || c == '\r');
+    if (c == -1) return null;
+
+    List<String> fields = new ArrayList<>();
+    field.setLength(0);
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (c == -1) {
+          throw new IOException("a quoted field is never closed");
+        }
+        if (c == '"') {
+          c = read();
+          if (c != '"') {
+            quoted = false;
+            continue;
+          }
+        }
+        field.append((char) c);
+      } else if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+        fields.add(field.toString());
+        field.setLength(0);
+        // the \n of a \r\n is skipped as a blank line before the next record
+        if (c != ',') return fields;
+      } else if (c == '"' && field.isEmpty()) {
+        quoted = true;
+      } else {
+        field.append((char) c);
+      }
+      c = read();
+    }
+  }
+
+  private int read() throws IOException {
+    if (position == limit) {
+      limit = Math.max(reader.read(buffer), 0);
+      position = 0;
+      if (limit == 0) return -1;
+    }
+    return buffer[position++];
+  }
+}
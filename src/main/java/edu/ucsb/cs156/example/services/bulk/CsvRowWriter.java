@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes rows as CSV (RFC 4180), after a header row naming the fields. A value is quoted only if it
+ * holds a comma, a quote or a line break; null is written as an empty field.
+ */
+class CsvRowWriter implements RowWriter {
+  private final Writer writer;
+
+  /**
+   * @param writer the file; closed by close
+   * @param fields the names of the fields, written as the header
+   */
+  CsvRowWriter(Writer writer, List<String> fields) throws IOException {
+    this.writer = writer;
+    write(fields.toArray());
+  }
+
+  @Override
+  public void write(Object[] values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) writer.write(',');
+      if (values[i] != null) writeField(values[i].toString());
+    }
+    writer.write("\r\n");
+  }
+
+  private void writeField(String value) throws IOException {
+    if (value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\r' || c == '\n')) {
+      writer.write(value);
+      return;
+    }
+    writer.write('"');
+    writer.write(value.replace("\"", "\"\""));
+    writer.write('"');
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,51 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/** The format of an exported file; see BulkExportService. */
+public enum ExportFormat {
+  /** CSV with a header row naming the fields. */
+  CSV("csv") {
+    @Override
+    RowWriter open(Writer writer, List<String> fields, ObjectMapper objectMapper)
+        throws IOException {
+      return new CsvRowWriter(writer, fields);
+    }
+  },
+  /** One JSON object per line (NDJSON). */
+  NDJSON("ndjson") {
+    @Override
+    RowWriter open(Writer writer, List<String> fields, ObjectMapper objectMapper)
+        throws IOException {
+      return new JsonRowWriter(writer, fields, objectMapper);
+    }
+  };
+
+  private final String extension;
+
+  ExportFormat(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * @return the usual file extension for the format, without a dot
+   */
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * Start writing the rows of a file.
+   *
+   * @param writer the file
+   * @param fields the names of the fields of each row
+   * @param objectMapper writes JSON
+   * @return a writer of the rows of the file, which closes writer once it is closed
+   * @throws IOException if the start of the file cannot be written
+   */
+  abstract RowWriter open(Writer writer, List<String> fields, ObjectMapper objectMapper)
+      throws IOException;
+}
@@ -0,0 +1,125 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A table that can be exported; see BulkExportService.
+ *
+ * <p>Each column is named as the field of the entity, e.g. reviewerEmail, so that an export of a
+ * table that can also be imported (see ImportTable) can be imported again. Rows are exported in the
+ * order of their key, the first column.
+ */
+public enum ExportTable {
+  MENU_ITEMS(
+      "ucsbdiningcommonsmenuitems",
+      new Column("id", "id", Long.class),
+      new Column("diningCommonsCode", "dining_commons_code", String.class),
+      new Column("name", "name", String.class),
+      new Column("station", "station", String.class)),
+  MENU_ITEM_REVIEWS(
+      "menuitemreviews",
+      new Column("id", "id", Long.class),
+      new Column("itemId", "item_id", Long.class),
+      new Column("reviewerEmail", "reviewer_email", String.class),
+      new Column("stars", "stars", Integer.class),
+      new Column("dateReviewed", "date_reviewed", LocalDateTime.class),
+      new Column("comments", "comments", String.class)),
+  ORGANIZATIONS(
+      "ucsborganization",
+      new Column("orgCode", "org_code", String.class),
+      new Column("orgTranslationShort", "org_translation_short", String.class),
+      new Column("orgTranslation", "org_translation", String.class),
+      new Column("inactive", "inactive", Boolean.class)),
+  HELP_REQUESTS(
+      "helprequest",
+      new Column("id", "id", Long.class),
+      new Column("requesterEmail", "requester_email", String.class),
+      new Column("teamId", "team_id", String.class),
+      new Column("tableOrBreakoutRoom", "table_or_breakout_room", String.class),
+      new Column("requestTime", "request_time", LocalDateTime.class),
+      new Column("explanation", "explanation", String.class),
+      new Column("solved", "solved", Boolean.class)),
+  ARTICLES(
+      "articles",
+      new Column("id", "id", Long.class),
+      new Column("title", "title", String.class),
+      new Column("url", "url", String.class),
+      new Column("explanation", "explanation", String.class),
+      new Column("submitterEmail", "submitter_email", String.class),
+      new Column("dateAdded", "time_added", LocalDateTime.class)),
+  /** The jobs listing (see JobSummary): jobs without their logs, only how many lines they have. */
+  JOBS(
+      "jobs",
+      new Column("id", "id", Long.class),
+      new Column("parentId", "parent_id", Long.class),
+      new Column("stepName", "step_name", String.class),
+      new Column("status", "status", String.class),
+      new Column("progress", "progress", Integer.class),
+      new Column("createdAt", "created_at", LocalDateTime.class),
+      new Column("updatedAt", "updated_at", LocalDateTime.class),
+      new Column("createdById", "created_by_id", Long.class),
+      new Column(
+          "logLines",
+          "(select count(*) from job_log_lines l where l.job_id = jobs.id)"
+              + " + coalesce((select a.line_count from job_log_archives a"
+              + " where a.job_id = jobs.id), 0)",
+          Long.class));
+
+  /**
+   * A column of an export.
+   *
+   * @param field name of the column in the exported file
+   * @param expression what is selected for the column
+   * @param type the Java type its values are read as
+   */
+  record Column(String field, String expression, Class<?> type) {}
+
+  private final String tableName;
+  private final List<Column> columns;
+  private final String selectSql;
+
+  ExportTable(String tableName, Column... columns) {
+    this.tableName = tableName;
+    this.columns = List.of(columns);
+    this.selectSql =
+        "select %s from %s order by %s"
+            .formatted(
+                this.columns.stream().map(Column::expression).collect(Collectors.joining(", ")),
+                tableName,
+                columns[0].expression());
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * @return names of the columns, as they appear in the exported file
+   */
+  public List<String> getFields() {
+    return columns.stream().map(Column::field).toList();
+  }
+
+  /**
+   * @return the Java type the value of each column is read as, in the order of getFields
+   */
+  List<Class<?>> getTypes() {
+    return columns.stream().<Class<?>>map(Column::type).toList();
+  }
+
+  /**
+   * @return the query that reads every row, with a column for each field in turn
+   */
+  String getSelectSql() {
+    return selectSql;
+  }
+
+  /**
+   * @return the query that counts the rows
+   */
+  String getCountSql() {
+    return "select count(*) from " + tableName;
+  }
+}
@@ -0,0 +1,48 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.Reader;
+
+/** The format of a file to be bulk imported; see BulkImportService. */
+public enum ImportFormat {
+  /** CSV with a header row naming the fields. */
+  CSV("csv") {
+    @Override
+    RowReader open(Reader reader, ImportTable table, ObjectMapper objectMapper) throws IOException {
+      return new CsvRowReader(reader, table.getFields());
+    }
+  },
+  /** A JSON array of objects, or one JSON object after another (NDJSON). */
+  JSON("json") {
+    @Override
+    RowReader open(Reader reader, ImportTable table, ObjectMapper objectMapper) throws IOException {
+      return new JsonRowReader(reader, objectMapper);
+    }
+  };
+
+  private final String extension;
+
+  ImportFormat(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * @return the usual file extension for the format, without a dot
+   */
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * Start reading the rows of a file.
+   *
+   * @param reader the file
+   * @param table the table the rows are for
+   * @param objectMapper parses JSON
+   * @return a reader of the rows of the file, which closes reader once it is closed
+   * @throws IOException if the file does not start as it should
+   */
+  abstract RowReader open(Reader reader, ImportTable table, ObjectMapper objectMapper)
+      throws IOException;
+}
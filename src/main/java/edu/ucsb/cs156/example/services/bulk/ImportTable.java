@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A table that rows can be bulk imported into; see BulkImportService.
+ *
+ * <p>Each column of a row is named as the field of the entity, e.g. diningCommonsCode, both in the
+ * header of a CSV file and in the objects of a JSON file. Generated ids are never imported.
+ */
+public enum ImportTable {
+  MENU_ITEMS(
+      "ucsbdiningcommonsmenuitems",
+      Column.text("diningCommonsCode", "dining_commons_code"),
+      Column.text("name", "name"),
+      Column.text("station", "station")),
+  MENU_ITEM_REVIEWS(
+      "menuitemreviews",
+      Column.of("itemId", "item_id", "a whole number", Long::valueOf),
+      Column.text("reviewerEmail", "reviewer_email"),
+      Column.of("stars", "stars", "a whole number", Integer::valueOf),
+      Column.of("dateReviewed", "date_reviewed", "an ISO date-time", LocalDateTime::parse),
+      Column.text("comments", "comments")),
+  ORGANIZATIONS(
+      "ucsborganization",
+      Column.text("orgCode", "org_code"),
+      Column.text("orgTranslationShort", "org_translation_short"),
+      Column.text("orgTranslation", "org_translation"),
+      Column.of("inactive", "inactive", "true or false", ImportTable::parseBoolean));
+
+  /**
+   * A column of the table.
+   *
+   * @param field name of the column in an imported file
+   * @param column name of the column in the database
+   * @param type what a value has to look like, for error messages
+   * @param parse turns a value into what is written to the column
+   */
+  record Column(String field, String column, String type, Function<String, Object> parse) {
+    static Column text(String field, String column) {
+      return new Column(field, column, "text", value -> value);
+    }
+
+    /** A column whose values are parsed, ignoring any spaces around them. */
+    static Column of(String field, String column, String type, Function<String, Object> parse) {
+      return new Column(field, column, type, value -> parse.apply(value.strip()));
+    }
+  }
+
+  private final String tableName;
+  private final List<Column> columns;
+  private final String insertSql;
+
+  ImportTable(String tableName, Column... columns) {
+    this.tableName = tableName;
+    this.columns = List.of(columns);
+    this.insertSql =
+        "insert into %s (%s) values (%s)"
+            .formatted(
+                tableName,
+                this.columns.stream().map(Column::column).collect(Collectors.joining(", ")),
+                this.columns.stream().map(c -> "?").collect(Collectors.joining(", ")));
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * @return names of the columns of a row, as they appear in an imported file
+   */
+  public List<String> getFields() {
+    return columns.stream().map(Column::field).toList();
+  }
+
+  /**
+   * @return the statement that inserts one row, with a parameter for each field in turn
+   */
+  String getInsertSql() {
+    return insertSql;
+  }
+
+  /**
+   * Turn a row of an imported file into the parameters of the insert statement.
+   *
+   * @param row the value of each field of the row; fields not in the table are ignored
+   * @return the parameters, in the order of getFields
+   * @throws IllegalArgumentException if a field is missing or has a value of the wrong type
+   */
+  Object[] toParameters(Map<String, String> row) {
+    Object[] parameters = new Object[columns.size()];
+    for (int i = 0; i < parameters.length; i++) {
+      Column column = columns.get(i);
+      String value = row.get(column.field());
+      if (value == null) {
+        throw new IllegalArgumentException("missing " + column.field());
+      }
+      try {
+        parameters[i] = column.parse().apply(value);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException(
+            "%s is not %s: %s".formatted(column.field(), column.type(), value));
+      }
+    }
+    return parameters;
+  }
+
+  private static Boolean parseBoolean(String value) {
+    if (value.equalsIgnoreCase("true")) return true;
+    if (value.equalsIgnoreCase("false")) return false;
+    throw new IllegalArgumentException(value);
+  }
+}
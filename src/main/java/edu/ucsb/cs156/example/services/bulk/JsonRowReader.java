@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the rows of a JSON file, which is either an array of objects or a sequence of objects, such
+ * as one per line (NDJSON). Only one object is parsed at a time. A field that is null counts as
+ * missing; any other value is read as text.
+ */
+class JsonRowReader implements RowReader {
+  private final MappingIterator<JsonNode> values;
+  private long rowNumber = 0;
+
+  /**
+   * @param reader the file; read from as needed, and closed by close
+   * @param objectMapper parses the file
+   */
+  JsonRowReader(Reader reader, ObjectMapper objectMapper) throws IOException {
+    values = objectMapper.readerFor(JsonNode.class).readValues(reader);
+  }
+
+  @Override
+  public Map<String, String> next() throws IOException {
+    if (!values.hasNextValue()) return null;
+    JsonNode value = values.nextValue();
+    rowNumber++;
+    if (!value.isObject()) {
+      throw new IllegalArgumentException("is not a JSON object");
+    }
+    Map<String, String> row = new HashMap<>();
+    for (Map.Entry<String, JsonNode> field : value.properties()) {
+      JsonNode fieldValue = field.getValue();
+      if (!fieldValue.isNull()) {
+        row.put(
+            field.getKey(), fieldValue.isValueNode() ? fieldValue.asText() : fieldValue.toString());
+      }
+    }
+    return row;
+  }
+
+  @Override
+  public long getRowNumber() {
+    return rowNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    values.close();
+  }
+}
@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows as NDJSON: one JSON object per line, with a field for each column. Dates are written
+ * as ObjectMapper writes them in API responses, i.e. as ISO strings.
+ */
+class JsonRowWriter implements RowWriter {
+  private final Writer writer;
+  private final List<String> fields;
+  private final SequenceWriter values;
+  private boolean empty = true;
+
+  /**
+   * @param writer the file; closed by close
+   * @param fields the names of the fields
+   * @param objectMapper writes each row
+   */
+  JsonRowWriter(Writer writer, List<String> fields, ObjectMapper objectMapper) throws IOException {
+    this.writer = writer;
+    this.fields = fields;
+    // flushing after every row would defeat the buffering (and compression) of the file
+    this.values =
+        objectMapper
+            .writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .withRootValueSeparator("\n")
+            .writeValues(writer);
+  }
+
+  @Override
+  public void write(Object[] values) throws IOException {
+    Map<String, Object> row = new LinkedHashMap<>();
+    for (int i = 0; i < values.length; i++) {
+      row.put(fields.get(i), values[i]);
+    }
+    this.values.write(row);
+    empty = false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    values.flush();
+    if (!empty) writer.write('\n');
+    values.close();
+  }
+}
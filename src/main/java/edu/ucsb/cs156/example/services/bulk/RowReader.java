@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads the rows of an imported file one at a time, so that the file never has to fit in memory.
+ */
+interface RowReader extends Closeable {
+
+  /**
+   * Read the next row.
+   *
+   * @return the value of each field of the row, or null once there are no more rows
+   * @throws IllegalArgumentException if the row cannot be made sense of; the row is skipped, and
+   *     the next call reads the row after it
+   * @throws IOException if the file cannot be read any further
+   */
+  Map<String, String> next() throws IOException;
+
+  /**
+   * @return the number of the row last read, counting from 1 and not counting any header
+   */
+  long getRowNumber();
+}
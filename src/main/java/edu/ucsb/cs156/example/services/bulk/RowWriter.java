@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes the rows of an exported file one at a time, so that the table never has to fit in memory.
+ */
+interface RowWriter extends Closeable {
+
+  /**
+   * Write the next row.
+   *
+   * @param values the value of each field of the row, in the order of the fields; null for none
+   * @throws IOException if the file cannot be written
+   */
+  void write(Object[] values) throws IOException;
+}
@@ -0,0 +1,156 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Holds the JSON of responses that list a whole table, already serialized, so that serving one
+ * again writes the same bytes rather than running Jackson over the same rows.
+ *
+ * <p>Each entry is kept with the version of its table (see TableVersionService) it was serialized
+ * at, and is serialized again once the table has moved on, so a write made on any node is picked up
+ * as soon as this node learns of it; a write through this node need only bump the version.
+ *
+ * <p>The JSON of a table is also kept gzipped if it is at least app.responseCache.gzipAboveBytes
+ * long, and is sent that way to clients that accept gzip. Compression is off in the server, so
+ * without this those clients would get the JSON uncompressed.
+ *
+ * <p>respond also answers If-None-Match itself. The gzipped and the plain JSON are different
+ * representations, so they have different strong ETags: one a client that accepts gzip is sent, and
+ * one for every other client. The ETag is picked from the Accept-Encoding header alone, before the
+ * JSON is looked at, so a 304 never needs the rows; a client that accepts gzip is therefore sent
+ * the gzip ETag even for JSON too short to be gzipped, which is only ever that one representation.
+ */
+@Service
+@Slf4j
+public class JsonResponseCache {
+
+  /**
+   * The serialized JSON of a table.
+   *
+   * @param version the version of the table it was serialized at
+   * @param json the JSON
+   * @param gzipped the JSON gzipped, or null if it is too short to be worth it
+   */
+  record Entry(long version, byte[] json, byte[] gzipped) {}
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private TableVersionService tableVersionService;
+
+  /** JSON at least this many bytes long is also kept gzipped; 0 turns compression off. */
+  @Value("${app.responseCache.gzipAboveBytes:1024}")
+  private int gzipAboveBytes = 1024;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Respond with the JSON of a table, serializing it only if the table has changed since it was
+   * last served, or with 304 Not Modified if the If-None-Match header of the request holds the
+   * current ETag of the representation the client would be sent.
+   *
+   * @param table name of the table
+   * @param request the request, whose Accept-Encoding header says whether gzip may be sent
+   * @param rows reads the rows of the table; only called if the JSON has to be serialized again
+   * @return the response
+   */
+  public ResponseEntity<byte[]> respond(String table, WebRequest request, Supplier<?> rows) {
+    boolean gzip =
+        gzipAboveBytes > 0 && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    String eTag =
+        gzip ? tableVersionService.getETag(table, "gzip") : tableVersionService.getETag(table);
+    if (request.checkNotModified(eTag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+          .varyBy(HttpHeaders.ACCEPT_ENCODING)
+          .build();
+    }
+
+    Entry entry = get(table, rows);
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip && entry.gzipped() != null) {
+      return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzipped());
+    }
+    return response.body(entry.json());
+  }
+
+  Entry get(String table, Supplier<?> rows) {
+    // read the version before the rows: rows read after a write but before its version was bumped
+    // are then kept under the older version, and serialized again, rather than the other way round
+    long version = tableVersionService.getVersion(table);
+    Entry entry = entries.get(table);
+    if (entry != null && entry.version() == version) return entry;
+
+    entry = encode(version, rows.get());
+    entries.put(table, entry);
+    log.debug(
+        "Serialized {} at version {}: {} bytes of JSON, {} gzipped",
+        table,
+        version,
+        entry.json().length,
+        entry.gzipped() == null ? "not" : entry.gzipped().length);
+    return entry;
+  }
+
+  private Entry encode(long version, Object rows) {
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(rows);
+      if (gzipAboveBytes <= 0 || json.length < gzipAboveBytes) {
+        return new Entry(version, json, null);
+      }
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 4);
+      try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+        out.write(json);
+      }
+      // JSON that gzip would not make any smaller is sent as it is
+      return new Entry(version, json, gzipped.size() < json.length ? gzipped.toByteArray() : null);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @param accepted the Accept-Encoding header of a request, e.g. "gzip, deflate;q=0.5", or null
+   * @return whether it lists gzip with a quality above 0
+   */
+  static boolean acceptsGzip(String accepted) {
+    if (accepted == null) return false;
+    for (String coding : accepted.split(",")) {
+      String[] parameters = coding.split(";");
+      if (parameters[0].trim().equalsIgnoreCase("gzip") && quality(parameters) > 0) return true;
+    }
+    return false;
+  }
+
+  /** The q parameter of a coding, 1 if it has none, or 0 if it is not a number. */
+  private static double quality(String[] parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      String parameter = parameters[i].trim().toLowerCase();
+      if (!parameter.startsWith("q=")) continue;
+      try {
+        return Double.parseDouble(parameter.substring(2));
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    return 1;
+  }
+}
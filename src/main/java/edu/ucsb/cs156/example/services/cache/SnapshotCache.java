@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * Holds every row of a small, read-mostly table in memory as an immutable snapshot, indexed by key
+ * and optionally grouped by a second field, so that reads need no query.
+ *
+ * <p>Readers take the current snapshot without locking. Each snapshot records the version of the
+ * table (see TableVersionService) it was read at, and the first read after the version has moved on
+ * reads the table again, builds a new snapshot and swaps it in; other readers keep using the old
+ * one until then. A write through this node is picked up by the next read, since it bumps the
+ * version here at once, and a write made on another node, or by the bulk import, once this node
+ * learns of the new version.
+ *
+ * <p>The rows are shared by every reader and must not be changed; a write reads the row it changes
+ * from the repository, not from here.
+ *
+ * @param <K> type of the key of the table
+ * @param <T> type of the rows
+ */
+@Slf4j
+public class SnapshotCache<K, T> {
+
+  /**
+   * The rows of the table as read at one version.
+   *
+   * @param version the version of the table when it was read
+   * @param rows every row, in the order the repository returned them
+   * @param byKey every row, by its key
+   * @param byGroup the rows of each group, in the order of rows; empty if rows are not grouped
+   */
+  record Snapshot<K, T>(
+      long version, List<T> rows, Map<K, T> byKey, Map<String, List<T>> byGroup) {}
+
+  private final String table;
+  private final CrudRepository<T, K> repository;
+  private final TableVersionService tableVersionService;
+  private final Function<T, K> key;
+  private final Function<T, String> group;
+
+  private final AtomicReference<Snapshot<K, T>> current = new AtomicReference<>();
+
+  /**
+   * @param table name of the table, as passed to TableVersionService
+   * @param repository the repository the rows are read from
+   * @param tableVersionService where the version of the table is looked up
+   * @param key the key of a row
+   * @param group the group a row belongs to, or null if rows are not grouped
+   */
+  protected SnapshotCache(
+      String table,
+      CrudRepository<T, K> repository,
+      TableVersionService tableVersionService,
+      Function<T, K> key,
+      Function<T, String> group) {
+    this.table = table;
+    this.repository = repository;
+    this.tableVersionService = tableVersionService;
+    this.key = key;
+    this.group = group;
+  }
+
+  /**
+   * @return every row of the table
+   */
+  public List<T> findAll() {
+    return snapshot().rows();
+  }
+
+  /**
+   * @param id the key of a row
+   * @return the row with that key, or empty if there is none
+   */
+  public Optional<T> findById(K id) {
+    return Optional.ofNullable(snapshot().byKey().get(id));
+  }
+
+  /**
+   * @param name name of a group
+   * @return the rows in that group, or an empty list if there are none
+   */
+  protected List<T> findAllInGroup(String name) {
+    return snapshot().byGroup().getOrDefault(name, List.of());
+  }
+
+  /**
+   * @return the current snapshot, first reading the table again if it has changed since
+   */
+  Snapshot<K, T> snapshot() {
+    Snapshot<K, T> snapshot = current.get();
+    if (snapshot != null && snapshot.version() == tableVersionService.getVersion(table)) {
+      return snapshot;
+    }
+    return rebuild();
+  }
+
+  private synchronized Snapshot<K, T> rebuild() {
+    // read the version first: a write committed while the rows are read leaves the snapshot at an
+    // older version than its rows, so it is read again, rather than the other way round
+    long version = tableVersionService.getVersion(table);
+    Snapshot<K, T> snapshot = current.get();
+    if (snapshot != null && snapshot.version() == version) {
+      // another reader has already read this version
+      return snapshot;
+    }
+
+    List<T> rows = new ArrayList<>();
+    repository.findAll().forEach(rows::add);
+    Map<K, T> byKey = new HashMap<>();
+    Map<String, List<T>> byGroup = new HashMap<>();
+    for (T row : rows) {
+      byKey.put(key.apply(row), row);
+      if (group != null) byGroup.computeIfAbsent(group.apply(row), g -> new ArrayList<>()).add(row);
+    }
+    byGroup.replaceAll((g, groupRows) -> List.copyOf(groupRows));
+
+    snapshot =
+        new Snapshot<>(
+            version,
+            List.copyOf(rows),
+            Collections.unmodifiableMap(byKey),
+            Collections.unmodifiableMap(byGroup));
+    current.set(snapshot);
+    log.debug("Cached {} rows of {} at version {}", rows.size(), table, version);
+    return snapshot;
+  }
+}
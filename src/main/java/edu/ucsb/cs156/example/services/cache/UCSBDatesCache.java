@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.util.List;
+import org.springframework.stereotype.Service;
+
+/** The UCSB dates, by id and by quarter; see SnapshotCache. */
+@Service
+public class UCSBDatesCache extends SnapshotCache<Long, UCSBDate> {
+  /** Name of the table, as passed to TableVersionService. */
+  public static final String TABLE = "ucsbdates";
+
+  public UCSBDatesCache(UCSBDateRepository repository, TableVersionService tableVersionService) {
+    super(TABLE, repository, tableVersionService, UCSBDate::getId, UCSBDate::getQuarterYYYYQ);
+  }
+
+  /**
+   * @param quarterYYYYQ quarter in the format YYYYQ, e.g. 20241 for Winter 2024
+   * @return the dates in that quarter
+   */
+  public List<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ) {
+    return findAllInGroup(quarterYYYYQ);
+  }
+}
@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.stereotype.Service;
+
+/** The dining commons, by code; see SnapshotCache. */
+@Service
+public class UCSBDiningCommonsCache extends SnapshotCache<String, UCSBDiningCommons> {
+  /** Name of the table, as passed to TableVersionService. */
+  public static final String TABLE = "ucsbdiningcommons";
+
+  public UCSBDiningCommonsCache(
+      UCSBDiningCommonsRepository repository, TableVersionService tableVersionService) {
+    super(TABLE, repository, tableVersionService, UCSBDiningCommons::getCode, null);
+  }
+}
@@ -0,0 +1,18 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import org.springframework.stereotype.Service;
+
+/** The UCSB organizations, by orgCode; see SnapshotCache. */
+@Service
+public class UCSBOrganizationCache extends SnapshotCache<String, UCSBOrganization> {
+  /** Name of the table, as passed to TableVersionService. */
+  public static final String TABLE = "ucsborganization";
+
+  public UCSBOrganizationCache(
+      UCSBOrganizationRepository repository, TableVersionService tableVersionService) {
+    super(TABLE, repository, tableVersionService, UCSBOrganization::getOrgCode, null);
+  }
+}
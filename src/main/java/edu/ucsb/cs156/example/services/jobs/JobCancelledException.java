@@ -0,0 +1,16 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * Thrown by JobContext.checkpoint once the job has been cancelled or has run past its timeout, so
+ * that a job can stop at a safe point simply by calling checkpoint between units of work.
+ */
+public class JobCancelledException extends RuntimeException {
+  /**
+   * Constructor for the exception
+   *
+   * @param status the status the job ends with, i.e. "cancelled" or "timed_out"
+   */
+  public JobCancelledException(String status) {
+    super("Job stopped: %s".formatted(status));
+  }
+}
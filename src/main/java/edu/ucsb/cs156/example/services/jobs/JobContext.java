@@ -1,20 +1,359 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobThroughput;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
+/**
+ * The context handed to a running job. Each call to log appends one row to the job_log_lines table,
+ * so logging a line costs the same no matter how long the log already is.
+ *
+ * <p>Lines are collected in a buffer and written as one batch once flushEveryLines lines are
+ * waiting or flushEveryMs milliseconds have passed since the last flush. A context built with
+ * flushEveryLines of 1 writes every line as soon as it is logged. Once a batch has been written it
+ * is handed to the JobLogStreamService, if there is one, for anyone watching the log live.
+ *
+ * <p>A job can be stopped by cancelling it or by it running past its timeout. Either way the thread
+ * running it is interrupted, which ends any sleep or blocking wait; a job that does long stretches
+ * of work without blocking should call checkpoint (or test isCancelled) between units of work.
+ *
+ * <p>A job can split its work into sub-tasks that run in parallel with forEachParallel. log,
+ * checkpoint, setProgress and progress may all be called from any thread, so sub-tasks log into the
+ * same job log as the job itself, and the job reports one progress figure for all of them.
+ */
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
+  private JobLogLinesRepository jobLogLinesRepository;
+  private JobLogStreamService jobLogStreamService;
   private Job job;
+  private int flushEveryLines;
+  private long flushEveryNanos;
+
+  private final Object flushLock = new Object();
+  private List<JobLogLine> buffer = new ArrayList<>();
+  private long lastFlushNanos = System.nanoTime();
+  private int nextSeq = 0;
+
+  private Thread worker;
+  private volatile String cancelStatus;
+  private volatile Long deadlineNanos;
+  private volatile Long startNanos;
+
+  private volatile Integer progress;
+  private final AtomicBoolean progressChanged = new AtomicBoolean();
+  private volatile Long itemsDone;
+  private volatile Long itemsTotal;
+  private final AtomicLong itemsRecorded = new AtomicLong();
+
+  public JobContext(JobLogLinesRepository jobLogLinesRepository, Job job) {
+    this(jobLogLinesRepository, job, 1, 0);
+  }
+
+  public JobContext(
+      JobLogLinesRepository jobLogLinesRepository,
+      Job job,
+      int flushEveryLines,
+      long flushEveryMs) {
+    this(jobLogLinesRepository, null, job, flushEveryLines, flushEveryMs);
+  }
+
+  public JobContext(
+      JobLogLinesRepository jobLogLinesRepository,
+      JobLogStreamService jobLogStreamService,
+      Job job,
+      int flushEveryLines,
+      long flushEveryMs) {
+    this.jobLogLinesRepository = jobLogLinesRepository;
+    this.jobLogStreamService = jobLogStreamService;
+    this.job = job;
+    this.flushEveryLines = flushEveryLines;
+    this.flushEveryNanos = TimeUnit.MILLISECONDS.toNanos(flushEveryMs);
+  }
+
+  /**
+   * Number the next line logged with the given seq; used when a job is run again after part of its
+   * log has already been written.
+   */
+  void continueAt(int seq) {
+    synchronized (this) {
+      nextSeq = seq;
+    }
+  }
+
+  /**
+   * @return whether the job has been cancelled or has run past its timeout
+   */
+  public boolean isCancelled() {
+    return cancelStatus != null;
+  }
+
+  /**
+   * Stop the job here if it has been cancelled or has run past its timeout.
+   *
+   * @throws JobCancelledException if the job should stop
+   */
+  public void checkpoint() {
+    if (isCancelled()) {
+      throw new JobCancelledException(cancelStatus);
+    }
+  }
+
+  /**
+   * @return "cancelled" or "timed_out" once the job has been stopped, otherwise null
+   */
+  String getCancelStatus() {
+    return cancelStatus;
+  }
+
+  /**
+   * Ask the job to stop, and interrupt the thread running it. Only the first call has any effect.
+   *
+   * @param status the status the job should end with
+   */
+  synchronized void cancel(String status) {
+    if (cancelStatus != null) return;
+    cancelStatus = status;
+    if (worker != null) worker.interrupt();
+  }
+
+  /**
+   * Record the thread running the job, so that cancel can interrupt it, and start the timeout.
+   *
+   * @param worker the thread running the job
+   * @param timeoutMs how long the job may run for, or null for no limit
+   */
+  synchronized void start(Thread worker, Long timeoutMs) {
+    this.worker = worker;
+    startNanos = System.nanoTime();
+    if (timeoutMs != null && timeoutMs > 0) {
+      deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+  }
+
+  /** Forget the thread running the job; from here on cancel no longer interrupts it. */
+  synchronized void stop() {
+    worker = null;
+  }
+
+  /**
+   * @return whether the job has run past its timeout
+   */
+  boolean isPastDeadline() {
+    Long deadline = deadlineNanos;
+    return deadline != null && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Record how far the job has got, as a percentage; the jobs listing shows it. It is written to
+   * the job at most once every flushEveryMs, however often it changes.
+   *
+   * @param percent how much of its work the job has done, from 0 to 100
+   */
+  public void setProgress(int percent) {
+    progress = Math.max(0, Math.min(100, percent));
+    progressChanged.set(true);
+  }
+
+  /**
+   * @return how much of its work the job has done, as a percentage, or null if it has not said
+   */
+  public Integer getProgress() {
+    return progress;
+  }
+
+  /**
+   * @return the progress of the job if it has changed since the last call, otherwise null
+   */
+  Integer takeProgressUpdate() {
+    return progressChanged.getAndSet(false) ? progress : null;
+  }
+
+  /**
+   * Record that the job has done done of its total items. This sets progress to the share of items
+   * done, and counts the items towards the throughput of the job, which GET /api/jobs/metrics shows
+   * as items per second.
+   *
+   * @param done how many items the job has done so far
+   * @param total how many items the job has to do in all
+   */
+  public void progress(long done, long total) {
+    itemsTotal = total;
+    itemsDone = done;
+    setProgress(total > 0 ? (int) (done * 100 / total) : 100);
+  }
+
+  /**
+   * @return how many more items the job has done since the last call
+   */
+  long takeItemsProcessed() {
+    Long done = itemsDone;
+    return done == null ? 0 : done - itemsRecorded.getAndSet(done);
+  }
+
+  Job getJob() {
+    return job;
+  }
+
+  /**
+   * @return the id of the job, e.g. to name a file that the job writes
+   */
+  public long getJobId() {
+    return job.getId();
+  }
+
+  /**
+   * @return how far the job has got, and how many items per second it has done since it started
+   */
+  JobThroughput getThroughput() {
+    Long done = itemsDone;
+    Long start = startNanos;
+    double itemsPerSecond = 0;
+    if (done != null && start != null) {
+      itemsPerSecond = done * 1e9 / Math.max(1, System.nanoTime() - start);
+    }
+    return JobThroughput.builder()
+        .jobId(job.getId())
+        .jobType(JobMetrics.typeOf(job))
+        .progress(progress)
+        .itemsDone(done)
+        .itemsTotal(itemsTotal)
+        .itemsPerSecond(itemsPerSecond)
+        .build();
+  }
+
+  /**
+   * Run a sub-task for each item, up to one per available processor at a time, and wait for them
+   * all to finish; see forEachParallel(List, int, JobSubTask).
+   *
+   * @param items the items to work on
+   * @param task the work to do on each item
+   * @return the result of the sub-task for each item, in the order of items
+   * @throws Exception the exception thrown by the first sub-task to fail
+   */
+  public <T, R> List<R> forEachParallel(List<T> items, JobSubTask<T, R> task) throws Exception {
+    return forEachParallel(items, Runtime.getRuntime().availableProcessors(), task);
+  }
+
+  /**
+   * Run a sub-task for each item, up to parallelism of them at a time, and wait for them all to
+   * finish. The sub-tasks run on parallelism virtual threads of their own, each taking the next
+   * item as soon as it is done with the last, and each item counts towards progress(done, total) as
+   * it finishes.
+   *
+   * <p>If a sub-task fails, the others are interrupted, no further items are started, and its
+   * exception is thrown here. If the job is cancelled or times out, the sub-tasks are stopped the
+   * same way. Either way no sub-task is still running once this returns.
+   *
+   * @param items the items to work on
+   * @param parallelism the most sub-tasks to run at once
+   * @param task the work to do on each item
+   * @return the result of the sub-task for each item, in the order of items
+   * @throws Exception the exception thrown by the first sub-task to fail
+   */
+  public <T, R> List<R> forEachParallel(List<T> items, int parallelism, JobSubTask<T, R> task)
+      throws Exception {
+    checkpoint();
+    int total = items.size();
+    AtomicReferenceArray<R> results = new AtomicReferenceArray<>(total);
+    AtomicInteger nextItem = new AtomicInteger();
+    AtomicInteger done = new AtomicInteger();
+    int workers = Math.min(Math.max(1, parallelism), total);
+    ExecutorService scope =
+        Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("job-%d-task-".formatted(job.getId()), 1).factory());
+    try {
+      CompletionService<Void> completion = new ExecutorCompletionService<>(scope);
+      for (int w = 0; w < workers; w++) {
+        completion.submit(
+            () -> {
+              int i;
+              while (!scope.isShutdown() && (i = nextItem.getAndIncrement()) < total) {
+                checkpoint();
+                results.set(i, task.apply(items.get(i)));
+                progress(done.incrementAndGet(), total);
+              }
+              return null;
+            });
+      }
+      for (int w = 0; w < workers; w++) {
+        completion.take().get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Error error) throw error;
+      throw (Exception) e.getCause();
+    } catch (InterruptedException e) {
+      checkpoint();
+      throw e;
+    } finally {
+      scope.shutdownNow();
+      scope.close();
+    }
+
+    List<R> list = new ArrayList<>(total);
+    for (int i = 0; i < total; i++) {
+      list.add(results.get(i));
+    }
+    return list;
+  }
 
   public void log(String message) {
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    boolean flushNow;
+    synchronized (this) {
+      buffer.add(
+          JobLogLine.builder()
+              .jobId(job.getId())
+              .seq(nextSeq++)
+              .createdAt(ZonedDateTime.now())
+              .line(message)
+              .build());
+      flushNow =
+          buffer.size() >= flushEveryLines || System.nanoTime() - lastFlushNanos >= flushEveryNanos;
+    }
+    if (flushNow) flush();
+  }
+
+  /**
+   * Write any buffered lines to the database as a single batch. Safe to call from a thread other
+   * than the one running the job; lines are always written in the order they were logged. If the
+   * write fails, the batch goes back in front of any lines logged since, to be written by the next
+   * flush, and the exception is rethrown.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      List<JobLogLine> batch;
+      synchronized (this) {
+        lastFlushNanos = System.nanoTime();
+        if (buffer.isEmpty()) return;
+        batch = buffer;
+        buffer = new ArrayList<>();
+      }
+      try {
+        if (jobLogLinesRepository != null) jobLogLinesRepository.saveAll(batch);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          List<JobLogLine> unwritten = new ArrayList<>(batch);
+          unwritten.addAll(buffer);
+          buffer = unwritten;
+        }
+        throw e;
+      }
+      if (jobLogStreamService != null) jobLogStreamService.publish(job.getId(), batch);
+    }
   }
 }
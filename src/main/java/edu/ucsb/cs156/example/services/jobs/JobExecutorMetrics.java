@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Keeps count of how jobs move through the job executor: how long each one waited in the queue
+ * before a thread picked it up, and how many were turned away because the queue was full. Each
+ * queue wait is also recorded in the jobs.queue.wait timer (see JobMetrics).
+ */
+public class JobExecutorMetrics implements TaskDecorator, RejectedExecutionHandler {
+  private final boolean virtualThreads;
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+  private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+  private final Timer queueWait;
+
+  /**
+   * @param virtualThreads whether the executor runs jobs on virtual threads
+   * @param meterRegistry the registry to record queue waits in
+   */
+  public JobExecutorMetrics(boolean virtualThreads, MeterRegistry meterRegistry) {
+    this.virtualThreads = virtualThreads;
+    this.queueWait = JobMetrics.timer(meterRegistry, JobMetrics.QUEUE_WAIT);
+  }
+
+  /** Wraps each submitted task so that its time in the queue is recorded when it starts. */
+  @Override
+  public Runnable decorate(Runnable task) {
+    long submittedAt = System.nanoTime();
+    return () -> {
+      recordStart(System.nanoTime() - submittedAt);
+      task.run();
+    };
+  }
+
+  /** Counts the rejected task, then rejects it so the caller sees a TaskRejectedException. */
+  @Override
+  public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+    rejected.incrementAndGet();
+    throw new RejectedExecutionException(
+        "Job queue is full (%d queued)".formatted(executor.getQueue().size()));
+  }
+
+  void recordStart(long queueWaitNanos) {
+    started.incrementAndGet();
+    totalQueueWaitNanos.addAndGet(queueWaitNanos);
+    maxQueueWaitNanos.accumulateAndGet(queueWaitNanos, Math::max);
+    queueWait.record(queueWaitNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param executor the executor these metrics were registered with
+   * @return the current state of the executor
+   */
+  public JobExecutorStats stats(ThreadPoolTaskExecutor executor) {
+    long startedCount = started.get();
+    return JobExecutorStats.builder()
+        .virtualThreads(virtualThreads)
+        .poolSize(executor.getMaxPoolSize())
+        .activeCount(executor.getActiveCount())
+        .queueDepth(executor.getQueueSize())
+        .queueCapacity(executor.getQueueCapacity())
+        .started(startedCount)
+        .rejected(rejected.get())
+        .averageQueueWaitMs(startedCount == 0 ? 0 : totalQueueWaitNanos.get() / 1e6 / startedCount)
+        .maxQueueWaitMs(maxQueueWaitNanos.get() / 1e6)
+        .build();
+  }
+}
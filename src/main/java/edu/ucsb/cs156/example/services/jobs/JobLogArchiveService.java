@@ -0,0 +1,216 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobLogArchiveStats;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Compresses the logs of finished jobs.
+ *
+ * <p>Once a job has finished, if its log is at least app.jobs.log.compressAboveBytes long, its
+ * lines are gzipped into a single job_log_archives row and deleted from job_log_lines. Job output
+ * tends to be repetitive, so this usually shrinks a log several times over, and replaces thousands
+ * of rows with one. Logs shorter than the threshold are left as they are, since there is little to
+ * gain from compressing them, as are logs that gzip would not make any smaller.
+ *
+ * <p>Logs are compressed by archiveLater, on the single low-priority thread of the
+ * jobLogArchiveExecutor, so that a job's slot in the job executor is free as soon as the job
+ * finishes rather than once its log has been read, gzipped and rewritten.
+ *
+ * <p>Reading an archived log inflates it a line at a time straight from the database's stream of
+ * the data column, keeping only the lines asked for, so the compressed log is never held whole.
+ */
+@Service
+@Slf4j
+public class JobLogArchiveService {
+  public static final String ARCHIVE_EXECUTOR = "jobLogArchiveExecutor";
+
+  static final int PAGE_SIZE = 1000;
+
+  static final String READ_SQL = "select line_count, data from job_log_archives where job_id = ?";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  @Qualifier(ARCHIVE_EXECUTOR)
+  private TaskExecutor archiveExecutor;
+
+  /**
+   * This service through its proxy, so that archive runs in a transaction when called from here.
+   */
+  @Lazy @Autowired private JobLogArchiveService self;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  /** Logs at least this many characters long are compressed; 0 turns compression off. */
+  @Value("${app.jobs.log.compressAboveBytes:65536}")
+  private long compressAboveBytes = 65536;
+
+  /**
+   * Compress the log of a finished job, if it is long enough to be worth it, once the archive
+   * executor gets to it. If its queue is full, or compressing fails, the log is left as it is; it
+   * reads the same either way.
+   *
+   * @param jobId id of the job
+   */
+  public void archiveLater(long jobId) {
+    try {
+      archiveExecutor.execute(
+          () -> {
+            try {
+              self.archive(jobId);
+            } catch (RuntimeException e) {
+              log.warn("Job {}: could not compress its log", jobId, e);
+            }
+          });
+    } catch (TaskRejectedException e) {
+      log.warn("Job {}: too many logs waiting to be compressed; leaving its log as it is", jobId);
+    }
+  }
+
+  /**
+   * Compress the log of a finished job, if it is long enough to be worth it.
+   *
+   * @param jobId id of the job
+   * @return whether the log was compressed
+   */
+  @Transactional
+  public boolean archive(long jobId) {
+    if (compressAboveBytes <= 0
+        || jobLogLinesRepository.sumLineLengths(jobId) < compressAboveBytes) {
+      return false;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int lineCount = 0;
+    long rawBytes = 0;
+    try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+      List<JobLogLine> page;
+      int nextSeq = 0;
+      do {
+        page =
+            jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+                jobId, nextSeq, Limit.of(PAGE_SIZE));
+        for (JobLogLine line : page) {
+          out.writeInt(line.getSeq());
+          if (line.getLine() == null) {
+            out.writeInt(-1);
+          } else {
+            byte[] text = line.getLine().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            rawBytes += text.length;
+          }
+          lineCount++;
+          nextSeq = line.getSeq() + 1;
+        }
+      } while (page.size() == PAGE_SIZE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (bytes.size() >= rawBytes) {
+      // output that does not compress, such as random ids, is left as it is
+      return false;
+    }
+
+    JobLogArchive archive =
+        JobLogArchive.builder()
+            .jobId(jobId)
+            .lineCount(lineCount)
+            .rawBytes(rawBytes)
+            .compressedBytes(bytes.size())
+            .createdAt(ZonedDateTime.now())
+            .data(bytes.toByteArray())
+            .build();
+    jobLogArchivesRepository.save(archive);
+    jobLogLinesRepository.deleteAllByJobIdIn(List.of(jobId));
+    log.info(
+        "Job {}: compressed {} log lines from {} to {} bytes",
+        jobId,
+        lineCount,
+        rawBytes,
+        archive.getCompressedBytes());
+    return true;
+  }
+
+  /**
+   * Read a range of lines from the archived log of a job; see JobService.getJobLogs.
+   *
+   * @param jobId id of the job
+   * @param start seq of the first line to return; ignored if tail is given
+   * @param limit maximum number of lines to return, or null for all
+   * @param tail if not null, return only this many lines from the end of the log
+   * @return the lines, or an empty list if the job has no archived log
+   */
+  public List<JobLogLine> readLines(long jobId, int start, Integer limit, Integer tail) {
+    return jdbcTemplate.query(
+        READ_SQL,
+        (ResultSetExtractor<List<JobLogLine>>)
+            rs ->
+                rs.next()
+                    ? readLines(jobId, rs.getInt(1), rs.getBinaryStream(2), start, limit, tail)
+                    : List.of(),
+        jobId);
+  }
+
+  private static List<JobLogLine> readLines(
+      long jobId, int lineCount, InputStream data, int start, Integer limit, Integer tail) {
+    Deque<JobLogLine> lines = new ArrayDeque<>();
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(data))) {
+      for (int i = 0; i < lineCount; i++) {
+        if (tail == null && limit != null && lines.size() >= limit) break;
+        int seq = in.readInt();
+        int length = in.readInt();
+        if (tail == null && seq < start) {
+          in.skipNBytes(Math.max(length, 0));
+          continue;
+        }
+        String text = length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+        lines.addLast(JobLogLine.builder().jobId(jobId).seq(seq).line(text).build());
+        if (tail != null && lines.size() > tail) {
+          lines.removeFirst();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new ArrayList<>(lines);
+  }
+
+  /**
+   * @return how many logs have been compressed, and how much space that has saved
+   */
+  public JobLogArchiveStats getStats() {
+    return jobLogArchivesRepository.getStats();
+  }
+}
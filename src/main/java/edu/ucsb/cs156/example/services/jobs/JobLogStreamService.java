@@ -0,0 +1,225 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams job log lines to clients as Server-Sent Events.
+ *
+ * <p>A subscriber is first sent the lines already in the database, then each batch of lines as
+ * JobContext flushes it, then a final status event when the job finishes. A job that is queued, or
+ * running on another node, is followed by rereading its status and new lines from the database
+ * whenever nothing has been published for a second. Each event carries the seq of the line as its
+ * id, so a client that reconnects with Last-Event-ID picks up where it left off.
+ *
+ * <p>The job thread only ever offers events to a bounded per-subscriber queue; sending happens on a
+ * separate virtual thread per subscriber. A subscriber that falls so far behind that its queue
+ * fills up is disconnected rather than allowed to slow the job down.
+ */
+@Service
+@Slf4j
+public class JobLogStreamService {
+  static final int BACKLOG_PAGE_SIZE = 500;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchiveService jobLogArchiveService;
+
+  @Lazy @Autowired private JobService jobService;
+
+  @Value("${app.jobs.stream.queueCapacity:1000}")
+  private int queueCapacity = 1000;
+
+  @Value("${app.jobs.stream.timeoutMs:1800000}")
+  private long timeoutMs = 1_800_000;
+
+  private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+  private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Open a stream of the log of a job.
+   *
+   * @param jobId id of the job
+   * @param afterSeq only lines with a seq greater than this are sent; -1 sends the whole log
+   * @return the emitter to return from the controller
+   */
+  public SseEmitter subscribe(long jobId, int afterSeq) {
+    if (!jobsRepository.existsById(jobId)) {
+      throw new EntityNotFoundException(Job.class, jobId);
+    }
+
+    SseEmitter emitter = new SseEmitter(timeoutMs);
+    Subscriber subscriber = new Subscriber(jobId, afterSeq, emitter);
+    emitter.onCompletion(subscriber::close);
+    emitter.onTimeout(subscriber::close);
+    emitter.onError(e -> subscriber.close());
+
+    // register before reading the backlog, so that no flushed line can fall between the two
+    subscribers.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    senders.execute(subscriber::run);
+    return emitter;
+  }
+
+  /**
+   * Hand newly written log lines to every subscriber of the job. Never blocks.
+   *
+   * @param jobId id of the job
+   * @param lines lines that have just been written to the database, in seq order
+   */
+  public void publish(long jobId, List<JobLogLine> lines) {
+    for (Subscriber subscriber : subscribersOf(jobId)) {
+      for (JobLogLine line : lines) {
+        subscriber.offer(new Event(line, null));
+      }
+    }
+  }
+
+  /**
+   * Send the final status of a job to every subscriber and end their streams.
+   *
+   * @param jobId id of the job
+   * @param status final status of the job
+   */
+  public void finish(long jobId, String status) {
+    for (Subscriber subscriber : subscribersOf(jobId)) {
+      subscriber.offer(new Event(null, status));
+    }
+  }
+
+  int subscriberCount(long jobId) {
+    return subscribersOf(jobId).size();
+  }
+
+  private Set<Subscriber> subscribersOf(long jobId) {
+    return subscribers.getOrDefault(jobId, Set.of());
+  }
+
+  private void unregister(Subscriber subscriber) {
+    subscribers.computeIfPresent(
+        subscriber.jobId,
+        (id, set) -> {
+          set.remove(subscriber);
+          return set.isEmpty() ? null : set;
+        });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    senders.shutdownNow();
+  }
+
+  private record Event(JobLogLine line, String status) {}
+
+  private class Subscriber {
+    private final long jobId;
+    private final SseEmitter emitter;
+    private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>(queueCapacity);
+    private int lastSentSeq;
+    private volatile boolean closed = false;
+
+    Subscriber(long jobId, int afterSeq, SseEmitter emitter) {
+      this.jobId = jobId;
+      this.lastSentSeq = afterSeq;
+      this.emitter = emitter;
+    }
+
+    void offer(Event event) {
+      if (!queue.offer(event)) {
+        log.warn("Job {}: log stream subscriber fell behind and was disconnected", jobId);
+        close();
+      }
+    }
+
+    void close() {
+      closed = true;
+      unregister(this);
+    }
+
+    void run() {
+      try {
+        String status = catchUp();
+        while (!closed && JobService.isActive(status)) {
+          Event event = queue.poll(1, TimeUnit.SECONDS);
+          if (event == null) {
+            // the job may be queued, or running on another node, whose flushes are not published
+            // here; a job running on this node publishes every line and its final status
+            if (!jobService.isRunningHere(jobId)) status = catchUp();
+          } else if (event.status() != null) {
+            status = event.status();
+          } else if (event.line().getSeq() > lastSentSeq) {
+            sendLine(event.line());
+          }
+        }
+        if (closed) {
+          emitter.complete();
+        } else {
+          sendStatus(status);
+        }
+      } catch (IOException | InterruptedException e) {
+        log.debug("Job {}: log stream subscriber went away: {}", jobId, e.toString());
+        emitter.completeWithError(e);
+      } finally {
+        close();
+      }
+    }
+
+    /**
+     * Send every line in the database after the last one sent, and return the job's status. The
+     * status is read first: once a job has finished all of its lines have been written, either to
+     * job_log_lines or, if its log has since been compressed, to its archive.
+     */
+    private String catchUp() throws IOException {
+      String status = jobsRepository.findStatusById(jobId).orElse(null);
+      List<JobLogLine> page;
+      do {
+        page =
+            jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+                jobId, lastSentSeq + 1, Limit.of(BACKLOG_PAGE_SIZE));
+        for (JobLogLine line : page) {
+          sendLine(line);
+        }
+      } while (page.size() == BACKLOG_PAGE_SIZE);
+      if (!JobService.isActive(status)) {
+        for (JobLogLine line : jobLogArchiveService.readLines(jobId, lastSentSeq + 1, null, null)) {
+          sendLine(line);
+        }
+      }
+      return status;
+    }
+
+    private void sendLine(JobLogLine line) throws IOException {
+      emitter.send(
+          SseEmitter.event().id(Integer.toString(line.getSeq())).name("log").data(line.getLine()));
+      lastSentSeq = line.getSeq();
+    }
+
+    private void sendStatus(String status) throws IOException {
+      emitter.send(SseEmitter.event().name("status").data(String.valueOf(status)));
+      emitter.complete();
+    }
+  }
+}
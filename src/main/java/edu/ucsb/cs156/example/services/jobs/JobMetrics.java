@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobMetricsReport;
+import edu.ucsb.cs156.example.models.JobThroughput;
+import edu.ucsb.cs156.example.models.JobTimerStats;
+import edu.ucsb.cs156.example.models.JobTypeMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records what the job subsystem is doing in the Micrometer registry, and sums it up for the admin
+ * endpoint GET /api/jobs/metrics.
+ *
+ * <p>Each of these meters is tagged with the type of the job, which is the simple name of its
+ * class, or "other" for a job that cannot be rebuilt (such as a lambda):
+ *
+ * <ul>
+ *   <li>jobs.launched counts jobs launched;
+ *   <li>jobs.finished counts jobs that have reached a final status, tagged with that status too;
+ *   <li>jobs.run.time times each attempt at a job;
+ *   <li>jobs.items.processed counts the items jobs have reported done with JobContext.progress, so
+ *       its rate is the items per second a type of job is getting through.
+ * </ul>
+ *
+ * <p>jobs.queue.wait, recorded by JobExecutorMetrics, times how long each attempt waited for a
+ * worker; when it climbs, the job executor is saturated.
+ *
+ * <p>The timers publish percentiles and a percentile histogram, for any monitoring system the
+ * registry is exported to. With a database queue a job is counted as launched on the node that
+ * queued it and as finished on the node that ran it, so counts from all nodes should be added up.
+ */
+@Service
+public class JobMetrics {
+  public static final String LAUNCHED = "jobs.launched";
+  public static final String FINISHED = "jobs.finished";
+  public static final String RUN_TIME = "jobs.run.time";
+  public static final String QUEUE_WAIT = "jobs.queue.wait";
+  public static final String ITEMS_PROCESSED = "jobs.items.processed";
+
+  private static final String TYPE = "type";
+  private static final String STATUS = "status";
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  /**
+   * Find or register a job timer. Every job timer publishes the 50th, 95th and 99th percentiles, in
+   * that order, and a histogram with buckets up to a day.
+   *
+   * @param registry the registry to register the timer with
+   * @param name name of the timer
+   * @param tags tag keys and values, alternately
+   * @return the timer
+   */
+  static Timer timer(MeterRegistry registry, String name, String... tags) {
+    return Timer.builder(name)
+        .tags(tags)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .publishPercentileHistogram()
+        .maximumExpectedValue(Duration.ofDays(1))
+        .register(registry);
+  }
+
+  /**
+   * @param job a job
+   * @return the type the job is counted under
+   */
+  static String typeOf(Job job) {
+    String jobType = job.getJobType();
+    return jobType == null ? "other" : jobType.substring(jobType.lastIndexOf('.') + 1);
+  }
+
+  void launched(Job job) {
+    meterRegistry.counter(LAUNCHED, TYPE, typeOf(job)).increment();
+  }
+
+  /**
+   * @param job a job whose status has just become final
+   */
+  void finished(Job job) {
+    meterRegistry.counter(FINISHED, TYPE, typeOf(job), STATUS, job.getStatus()).increment();
+  }
+
+  void ran(Job job, long nanos) {
+    timer(meterRegistry, RUN_TIME, TYPE, typeOf(job)).record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  void itemsProcessed(Job job, long items) {
+    if (items <= 0) return;
+    meterRegistry.counter(ITEMS_PROCESSED, TYPE, typeOf(job)).increment(items);
+  }
+
+  /**
+   * @param running the throughput of the jobs running on this node
+   * @return the job metrics of this node, with job types in alphabetical order
+   */
+  public JobMetricsReport report(List<JobThroughput> running) {
+    Set<String> jobTypes = new TreeSet<>();
+    for (Meter meter : meterRegistry.find(LAUNCHED).meters()) {
+      jobTypes.add(meter.getId().getTag(TYPE));
+    }
+    for (Meter meter : meterRegistry.find(FINISHED).meters()) {
+      jobTypes.add(meter.getId().getTag(TYPE));
+    }
+
+    return JobMetricsReport.builder()
+        .queueWait(stats(meterRegistry.find(QUEUE_WAIT).timer()))
+        .jobTypes(
+            jobTypes.stream()
+                .map(
+                    jobType ->
+                        JobTypeMetrics.builder()
+                            .jobType(jobType)
+                            .launched(count(LAUNCHED, jobType, null))
+                            .succeeded(count(FINISHED, jobType, Set.of("complete")))
+                            .failed(count(FINISHED, jobType, JobRetentionService.FAILED_STATUSES))
+                            .cancelled(count(FINISHED, jobType, Set.of("cancelled")))
+                            .runTime(stats(meterRegistry.find(RUN_TIME).tag(TYPE, jobType).timer()))
+                            .itemsProcessed(count(ITEMS_PROCESSED, jobType, null))
+                            .build())
+                .toList())
+        .running(running)
+        .build();
+  }
+
+  /** Add up the counters of a job type, only those with one of statuses if that is given. */
+  private long count(String name, String jobType, Set<String> statuses) {
+    double total = 0;
+    for (Counter counter : meterRegistry.find(name).tag(TYPE, jobType).counters()) {
+      if (statuses == null || statuses.contains(counter.getId().getTag(STATUS))) {
+        total += counter.count();
+      }
+    }
+    return (long) total;
+  }
+
+  static JobTimerStats stats(Timer timer) {
+    if (timer == null) return JobTimerStats.builder().build();
+    HistogramSnapshot snapshot = timer.takeSnapshot();
+    ValueAtPercentile[] percentiles = snapshot.percentileValues();
+    return JobTimerStats.builder()
+        .count(snapshot.count())
+        .meanMs(snapshot.mean(TimeUnit.MILLISECONDS))
+        .maxMs(snapshot.max(TimeUnit.MILLISECONDS))
+        .p50Ms(percentiles[0].value(TimeUnit.MILLISECONDS))
+        .p95Ms(percentiles[1].value(TimeUnit.MILLISECONDS))
+        .p99Ms(percentiles[2].value(TimeUnit.MILLISECONDS))
+        .build();
+  }
+}
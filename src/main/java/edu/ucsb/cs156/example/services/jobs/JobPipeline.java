@@ -0,0 +1,166 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A pipeline of jobs: named steps, each a JobContextConsumer, that may depend on other steps, e.g.
+ *
+ * <pre>
+ * new JobPipeline()
+ *     .step("import", importJob)
+ *     .step("validate", validateJob, "import")
+ *     .step("aggregate", aggregateJob, "validate")
+ *     .step("purge", purgeJob, "import")
+ * </pre>
+ *
+ * <p>Launched with JobService.runPipeline, the pipeline runs as a job of its own, and each step as
+ * a child job of that job (see Job.parentId), with its own status and log. A step starts as soon as
+ * every step it depends on has completed, so steps that do not depend on each other run in
+ * parallel, each on a virtual thread of its own, up to JobService.pipelineParallelism steps at a
+ * time; a step that is ready while that many are running waits for one of them to finish. If a step
+ * does not complete, the steps that depend on it, directly or not, are recorded as "skipped" while
+ * the others carry on, and the pipeline fails once nothing more can run. Cancelling the pipeline,
+ * or it running past its timeout, cancels the steps that are running and records those that had not
+ * started as "cancelled".
+ *
+ * <p>A step can only depend on steps added before it, so a pipeline never has a cycle.
+ */
+public class JobPipeline {
+  private final Map<String, Step> steps = new LinkedHashMap<>();
+
+  private record Step(String name, JobContextConsumer job, List<String> dependsOn) {}
+
+  /**
+   * Add a step to the pipeline.
+   *
+   * @param name name of the step, unique within the pipeline
+   * @param job the job the step runs
+   * @param dependsOn names of the steps that must complete before this one starts
+   * @return this pipeline
+   * @throws IllegalArgumentException if there is already a step with this name, or no step with one
+   *     of the names in dependsOn
+   */
+  public JobPipeline step(String name, JobContextConsumer job, String... dependsOn) {
+    if (steps.containsKey(name)) {
+      throw new IllegalArgumentException("Pipeline already has a step named " + name);
+    }
+    for (String dependency : dependsOn) {
+      if (!steps.containsKey(dependency)) {
+        throw new IllegalArgumentException(
+            "Step %s depends on %s, which is not an earlier step".formatted(name, dependency));
+      }
+    }
+    steps.put(name, new Step(name, job, List.of(dependsOn)));
+    return this;
+  }
+
+  /**
+   * Run the pipeline as the job of ctx: start each step once it is ready, and wait until every step
+   * has finished or been skipped. Each step that finishes counts towards the progress of the
+   * pipeline.
+   *
+   * @param ctx context of the job running the pipeline
+   * @param jobService the service that records and runs the steps
+   * @throws IllegalStateException naming the steps that did not complete, if any
+   * @throws InterruptedException if the pipeline is stopped other than by being cancelled or timing
+   *     out
+   */
+  void run(JobContext ctx, JobService jobService) throws Exception {
+    Job pipelineJob = ctx.getJob();
+    Map<String, String> outcomes = new LinkedHashMap<>();
+    Map<String, Job> running = new HashMap<>();
+    int parallelism = jobService.pipelineParallelism();
+    ExecutorService threads =
+        Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("job-%d-step-".formatted(pipelineJob.getId()), 1).factory());
+    CompletionService<String> completion = new ExecutorCompletionService<>(threads);
+    try {
+      startReadySteps(ctx, jobService, parallelism, outcomes, running, completion);
+      while (!running.isEmpty()) {
+        String name = completion.take().get();
+        Job step = running.remove(name);
+        outcomes.put(name, step.getStatus());
+        ctx.log("Step %s (job %d): %s".formatted(name, step.getId(), step.getStatus()));
+        ctx.progress(outcomes.size(), steps.size());
+        startReadySteps(ctx, jobService, parallelism, outcomes, running, completion);
+      }
+    } catch (InterruptedException e) {
+      ctx.checkpoint();
+      throw e;
+    } finally {
+      // if the pipeline stopped early, stop the steps it started, and record those it never did
+      for (Job step : running.values()) {
+        jobService.cancelStep(step.getId());
+      }
+      threads.close();
+      for (Job step : running.values()) {
+        ctx.log(
+            "Step %s (job %d): %s".formatted(step.getStepName(), step.getId(), step.getStatus()));
+      }
+      for (Step step : steps.values()) {
+        if (!outcomes.containsKey(step.name()) && !running.containsKey(step.name())) {
+          jobService.saveStep(pipelineJob, step.name(), step.job(), "cancelled");
+          ctx.log("Step %s: cancelled".formatted(step.name()));
+        }
+      }
+    }
+
+    List<String> failed =
+        outcomes.entrySet().stream()
+            .filter(outcome -> !"complete".equals(outcome.getValue()))
+            .map(outcome -> "%s (%s)".formatted(outcome.getKey(), outcome.getValue()))
+            .toList();
+    if (!failed.isEmpty()) {
+      throw new IllegalStateException("Steps did not complete: " + String.join(", ", failed));
+    }
+  }
+
+  /**
+   * Start every step whose dependencies have all completed, while fewer than parallelism steps are
+   * running, and skip every step one of whose dependencies did not. Steps are visited in the order
+   * they were added, which puts each after all of its dependencies, so a skip carries through to
+   * the whole chain below it in one pass.
+   */
+  private void startReadySteps(
+      JobContext ctx,
+      JobService jobService,
+      int parallelism,
+      Map<String, String> outcomes,
+      Map<String, Job> running,
+      CompletionService<String> completion) {
+    Job pipelineJob = ctx.getJob();
+    for (Step step : steps.values()) {
+      if (outcomes.containsKey(step.name()) || running.containsKey(step.name())) continue;
+
+      if (step.dependsOn().stream()
+          .anyMatch(d -> outcomes.containsKey(d) && !"complete".equals(outcomes.get(d)))) {
+        jobService.saveStep(pipelineJob, step.name(), step.job(), "skipped");
+        outcomes.put(step.name(), "skipped");
+        ctx.log("Step %s: skipped".formatted(step.name()));
+      } else if (running.size() < parallelism
+          && step.dependsOn().stream().allMatch(d -> "complete".equals(outcomes.get(d)))) {
+        Job job = jobService.saveStep(pipelineJob, step.name(), step.job(), "running");
+        running.put(step.name(), job);
+        ctx.log("Step %s (job %d): started".formatted(step.name(), job.getId()));
+        completion.submit(
+            () -> {
+              jobService.runStep(
+                  job,
+                  c -> {
+                    c.log("Step %s of pipeline job %d".formatted(step.name(), pipelineJob.getId()));
+                    step.job().accept(c);
+                  });
+              return step.name();
+            });
+      }
+    }
+  }
+}
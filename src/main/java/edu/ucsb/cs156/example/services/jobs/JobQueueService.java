@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The worker side of the database job queue (app.jobs.queue.mode=database).
+ *
+ * <p>Every node polls the jobs table for queued jobs and claims as many as its job executor has
+ * free workers for. A claim is a lease: the node records itself as leaseOwner and keeps pushing
+ * leaseExpiresAt forward with a heartbeat for as long as the job runs. If a node dies, its leases
+ * run out and the jobs are put back on the queue for another node, so a job runs at least once but
+ * may be rerun part way through; once it has been started app.jobs.maxAttempts times it is marked
+ * "abandoned" instead.
+ */
+@Service
+@Slf4j
+public class JobQueueService {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobService jobService;
+
+  @Lazy @Autowired private JobQueueService self;
+
+  @Value("${app.jobs.queue.leaseMs:60000}")
+  private long leaseMs = 60000;
+
+  /** Put jobs with expired leases back on the queue, then claim and start as many as fit. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.pollMs:1000}")
+  public void poll() {
+    if (!jobService.usesDatabaseQueue() || jobService.isShuttingDown()) return;
+
+    ZonedDateTime now = ZonedDateTime.now();
+    int maxAttempts = jobService.getMaxAttempts();
+    int abandoned = jobsRepository.abandonExpiredLeases(now, maxAttempts);
+    int requeued = jobsRepository.requeueExpiredLeases(now, maxAttempts);
+    if (abandoned + requeued > 0) {
+      log.warn(
+          "Leases expired on {} jobs: {} put back on the queue, {} abandoned",
+          abandoned + requeued,
+          requeued,
+          abandoned);
+    }
+
+    JobExecutorStats stats = jobService.getExecutorStats();
+    int free = stats.getPoolSize() - stats.getActiveCount() - stats.getQueueDepth();
+    if (free <= 0) return;
+
+    self.claim(free).forEach(jobService::runQueuedJob);
+  }
+
+  /**
+   * Lock up to max queued jobs that are ready to run, skipping any another node is claiming at the
+   * same moment, and mark them as running under a lease held by this node.
+   *
+   * @param max maximum number of jobs to claim
+   * @return the claimed jobs
+   */
+  @Transactional
+  public List<Job> claim(int max) {
+    List<Job> jobs = jobsRepository.findClaimable(ZonedDateTime.now(), Limit.of(max));
+    ZonedDateTime expiresAt = leaseExpiry();
+    for (Job job : jobs) {
+      job.setNextAttemptAt(null);
+      job.setStatus("running");
+      job.setNodeId(jobService.getNodeId());
+      job.setAttempts(job.getAttempts() + 1);
+      job.setLeaseOwner(jobService.getNodeId());
+      job.setLeaseExpiresAt(expiresAt);
+    }
+    jobsRepository.saveAll(jobs);
+    return jobs;
+  }
+
+  /**
+   * Extend the leases of the jobs this node is running, and stop any of them that have been
+   * cancelled from another node.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.heartbeatMs:10000}")
+  public void heartbeat() {
+    Set<Long> ids = jobService.getLeasedJobIds();
+    if (ids.isEmpty()) return;
+
+    int renewed = jobsRepository.renewLeases(jobService.getNodeId(), ids, leaseExpiry());
+    if (renewed < ids.size()) {
+      log.warn(
+          "Lost the lease on {} of {} running jobs; they may be rerun elsewhere",
+          ids.size() - renewed,
+          ids.size());
+    }
+
+    jobsRepository.findCancelRequested(ids).forEach(jobService::cancel);
+  }
+
+  private ZonedDateTime leaseExpiry() {
+    return ZonedDateTime.now().plus(leaseMs, ChronoUnit.MILLIS);
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cleans up after a previous instance of this node that stopped while jobs were running.
+ *
+ * <p>A job records the node that started it (app.jobs.nodeId). When a node starts, none of its jobs
+ * can be running yet, so any job still marked "running" under its id was orphaned when the previous
+ * instance stopped. So was a job it had queued to be retried, unless jobs are queued in the
+ * database, since the timer that would have retried it stopped too. Such a job is run again if it
+ * can be rebuilt and has been started fewer than app.jobs.maxAttempts times (or than its own
+ * retryMaxAttempts, if that is more), and is otherwise marked "abandoned", so that the jobs list
+ * shows what really happened to it. A step of a pipeline is never run again on its own: it is
+ * abandoned along with its pipeline.
+ */
+@Service
+@Slf4j
+public class JobRecoveryService {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private JobMetrics jobMetrics;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void recoverOrphanedJobs() {
+    String nodeId = jobService.getNodeId();
+    List<Job> orphans = new ArrayList<>(jobsRepository.findOrphans(nodeId));
+    if (!jobService.usesDatabaseQueue()) {
+      orphans.addAll(jobsRepository.findAllByStatusAndNodeId("queued", nodeId));
+    }
+    if (orphans.isEmpty()) return;
+
+    log.warn(
+        "Recovering {} jobs left running by a previous instance of {}", orphans.size(), nodeId);
+    for (Job job : orphans) {
+      int maxAttempts = Math.max(jobService.getMaxAttempts(), job.getRetryMaxAttempts());
+      boolean rebuildable = job.getJobType() != null && job.getParentId() == null;
+      if (rebuildable && job.getAttempts() < maxAttempts) {
+        jobService.appendLog(job, "Job interrupted: its node stopped; running it again");
+        jobService.rerun(job);
+      } else {
+        jobService.appendLog(
+            job,
+            !rebuildable
+                ? "Job interrupted: its node stopped; abandoned, as it cannot be run again"
+                : "Job interrupted: its node stopped; abandoned after %d attempts"
+                    .formatted(job.getAttempts()));
+        job.setStatus("abandoned");
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        jobsRepository.save(job);
+        jobMetrics.finished(job);
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Deletes old job records, so that the jobs table and the job logs do not grow without bound.
+ *
+ * <p>Only finished jobs are ever purged: a job is deleted once it is older than maxAgeDays, or
+ * failedMaxAgeDays if it failed, or once it is no longer among the newest maxCount finished jobs.
+ * Any of the three may be set to 0 to switch it off.
+ *
+ * <p>Jobs are deleted batchSize at a time, each batch in its own short transaction, with one delete
+ * statement for the log lines of the batch, one for their archived logs and one for the jobs, so a
+ * purge never loads the jobs or holds locks on a large part of the table.
+ */
+@Service
+@Slf4j
+public class JobRetentionService {
+  /** Statuses of jobs that failed, which are kept for failedMaxAgeDays rather than maxAgeDays. */
+  public static final Set<String> FAILED_STATUSES =
+      Set.of("error", "timed_out", "abandoned", "rejected", "interrupted");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
+  @Autowired private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Lazy @Autowired private JobRetentionService self;
+
+  @Value("${app.jobs.retention.maxAgeDays:30}")
+  private int maxAgeDays = 30;
+
+  @Value("${app.jobs.retention.failedMaxAgeDays:90}")
+  private int failedMaxAgeDays = 90;
+
+  @Value("${app.jobs.retention.maxCount:0}")
+  private int maxCount = 0;
+
+  @Value("${app.jobs.retention.batchSize:500}")
+  private int batchSize = 500;
+
+  /**
+   * Delete the finished jobs that the retention policy no longer keeps.
+   *
+   * @return the number of jobs deleted
+   */
+  @Scheduled(
+      fixedDelayString = "${app.jobs.retention.purgeEveryMs:3600000}",
+      initialDelayString = "${app.jobs.retention.initialDelayMs:300000}")
+  public int purge() {
+    ZonedDateTime now = ZonedDateTime.now();
+    int deleted = 0;
+    if (maxAgeDays > 0) {
+      ZonedDateTime before = now.minusDays(maxAgeDays);
+      deleted +=
+          deleteInBatches(
+              limit -> jobsRepository.findFinishedIdsUpdatedBefore(before, FAILED_STATUSES, limit));
+    }
+    if (failedMaxAgeDays > 0) {
+      ZonedDateTime before = now.minusDays(failedMaxAgeDays);
+      deleted +=
+          deleteInBatches(
+              limit -> jobsRepository.findIdsByStatusUpdatedBefore(FAILED_STATUSES, before, limit));
+    }
+    if (maxCount > 0) {
+      // the newest finished job beyond the first maxCount, if there is one
+      List<Long> oldestDropped =
+          jobsRepository.findFinishedIdsNewestFirst(PageRequest.of(maxCount, 1));
+      if (!oldestDropped.isEmpty()) {
+        long maxId = oldestDropped.get(0);
+        deleted += deleteInBatches(limit -> jobsRepository.findFinishedIdsUpTo(maxId, limit));
+      }
+    }
+    if (deleted > 0) {
+      log.info("Purged {} old jobs", deleted);
+    }
+    return deleted;
+  }
+
+  /**
+   * Delete every job, running or not, a batch at a time.
+   *
+   * @return the number of jobs deleted
+   */
+  public int deleteAllJobs() {
+    return deleteInBatches(jobsRepository::findIds);
+  }
+
+  /**
+   * Delete some jobs and their logs, in one transaction.
+   *
+   * @param ids ids of the jobs
+   * @return the number of jobs deleted
+   */
+  @Transactional
+  public int deleteJobs(Collection<Long> ids) {
+    jobLogLinesRepository.deleteAllByJobIdIn(ids);
+    jobLogArchivesRepository.deleteAllByJobIdIn(ids);
+    return jobsRepository.deleteAllByIdIn(ids);
+  }
+
+  private int deleteInBatches(Function<Limit, List<Long>> nextBatch) {
+    int deleted = 0;
+    List<Long> ids;
+    do {
+      ids = nextBatch.apply(Limit.of(batchSize));
+      if (!ids.isEmpty()) {
+        deleted += self.deleteJobs(ids);
+      }
+    } while (ids.size() == batchSize);
+    return deleted;
+  }
+}
@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Launches recurring jobs from the schedules in the job_schedules table.
+ *
+ * <p>Every node checks for due schedules every app.jobs.schedules.pollMs. A due schedule is locked
+ * and moved on to its next run time in one short transaction, skipping any schedule another node
+ * has locked at that moment, so each firing launches exactly one job however many nodes there are.
+ * The job is launched with JobService.runAsJob once that transaction has committed, so it is an
+ * ordinary job that runs, retries and is listed like any other.
+ *
+ * <p>A schedule that was due while no node was running fires once when a node next checks, rather
+ * than once for every firing it missed.
+ */
+@Service
+@Slf4j
+public class JobScheduleService {
+  @Autowired private JobSchedulesRepository jobSchedulesRepository;
+
+  @Autowired private JobService jobService;
+
+  @Lazy @Autowired private JobScheduleService self;
+
+  /** Launch a job for each schedule that is due. */
+  @Scheduled(fixedDelayString = "${app.jobs.schedules.pollMs:10000}")
+  public void fireDueSchedules() {
+    for (JobSchedule schedule : self.claimDue()) {
+      try {
+        launch(schedule);
+      } catch (RuntimeException e) {
+        log.error("Schedule {} could not launch its job: {}", schedule.getName(), e.toString());
+      }
+    }
+  }
+
+  /**
+   * Lock the schedules that are due, skipping any another node is firing at the same moment, and
+   * move each on to its next run time.
+   *
+   * @return the schedules to fire
+   */
+  @Transactional
+  public List<JobSchedule> claimDue() {
+    ZonedDateTime now = ZonedDateTime.now();
+    List<JobSchedule> due = jobSchedulesRepository.findDue(now);
+    for (JobSchedule schedule : due) {
+      schedule.setNextRunAt(nextRun(schedule.getCron(), now));
+    }
+    jobSchedulesRepository.saveAll(due);
+    return due;
+  }
+
+  /**
+   * Launch the job of a schedule straight away, whether or not it is due; its next run time is not
+   * changed.
+   *
+   * @param id id of the schedule
+   * @return the job
+   */
+  public Job runNow(long id) {
+    JobSchedule schedule =
+        jobSchedulesRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(JobSchedule.class, id));
+    return launch(schedule);
+  }
+
+  /**
+   * Check a new or changed schedule and save it, working out when it next fires.
+   *
+   * @param schedule the schedule
+   * @return the saved schedule
+   * @throws IllegalArgumentException if the name is missing or taken, the cron expression is not
+   *     valid, or the job cannot be built from jobType and params
+   */
+  public JobSchedule save(JobSchedule schedule) {
+    if (schedule.getName() == null || schedule.getName().isBlank()) {
+      throw new IllegalArgumentException("A schedule needs a name");
+    }
+    jobSchedulesRepository
+        .findByName(schedule.getName())
+        .filter(other -> other.getId() != schedule.getId())
+        .ifPresent(
+            other -> {
+              throw new IllegalArgumentException(
+                  "A schedule named %s already exists".formatted(schedule.getName()));
+            });
+    if (schedule.getParams() == null || schedule.getParams().isBlank()) {
+      schedule.setParams("{}");
+    }
+    ZonedDateTime nextRunAt = nextRun(schedule.getCron(), ZonedDateTime.now());
+    loadJob(schedule);
+
+    schedule.setNextRunAt(schedule.getEnabled() ? nextRunAt : null);
+    return jobSchedulesRepository.save(schedule);
+  }
+
+  private Job launch(JobSchedule schedule) {
+    Job job = jobService.runAsJob(loadJob(schedule), schedule.getTimeoutMs());
+    jobSchedulesRepository.recordRun(schedule.getId(), ZonedDateTime.now(), job.getId());
+    log.info("Schedule {} launched job {}", schedule.getName(), job.getId());
+    return job;
+  }
+
+  private JobContextConsumer loadJob(JobSchedule schedule) {
+    try {
+      return jobService.loadJob(schedule.getJobType(), schedule.getParams());
+    } catch (Exception e) {
+      throw new IllegalArgumentException(
+          "Cannot build a job of type %s: %s".formatted(schedule.getJobType(), e.getMessage()), e);
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if the cron expression is not valid
+   */
+  private static ZonedDateTime nextRun(String cron, ZonedDateTime after) {
+    if (cron == null) {
+      throw new IllegalArgumentException("A schedule needs a cron expression");
+    }
+    return CronExpression.parse(cron).next(after);
+  }
+}
@@ -1,53 +1,907 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobDedupPolicy;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.models.JobLogPage;
+import edu.ucsb.cs156.example.models.JobMetricsReport;
+import edu.ucsb.cs156.example.models.JobRetryPolicy;
+import edu.ucsb.cs156.example.models.JobThroughput;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 @Service
+@Slf4j
 public class JobService {
+  /** Name of the executor bean that jobs run on; see JobExecutorConfig. */
+  public static final String JOB_EXECUTOR = "jobExecutor";
+
+  /** Value of app.jobs.queue.mode under which launched jobs are queued in the jobs table. */
+  public static final String DATABASE_QUEUE = "database";
+
+  /** The last line logged by a job that is stopped because its node is shutting down. */
+  static final String INTERRUPTED_MESSAGE = "Job interrupted: its node is shutting down";
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLinesRepository jobLogLinesRepository;
+
   @Autowired private CurrentUserService currentUserService;
 
+  @Autowired private JobLogStreamService jobLogStreamService;
+
+  @Autowired private JobLogArchiveService jobLogArchiveService;
+
   @Lazy @Autowired private JobService self;
 
+  @Autowired
+  @Qualifier(JOB_EXECUTOR)
+  private ThreadPoolTaskExecutor jobExecutor;
+
+  @Autowired private JobExecutorMetrics jobExecutorMetrics;
+
+  @Autowired private JobMetrics jobMetrics;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  /**
+   * "memory" (the default) runs a launched job on the node that launched it; "database" queues it
+   * in the jobs table, to be claimed by whichever node has a free worker (see JobQueueService).
+   */
+  @Value("${app.jobs.queue.mode:memory}")
+  private String queueMode = "memory";
+
+  /**
+   * Identifies this node on the jobs it runs, so that after a restart it can recognise the jobs its
+   * previous instance left unfinished. Defaults to the hostname; set it explicitly when several
+   * instances run on one host.
+   */
+  @Value("${app.jobs.nodeId:}")
+  private String nodeId = "";
+
+  /**
+   * How many times a job may be started in all. A job whose node stopped while running it is run
+   * again until it has been started this many times, after which it is marked "abandoned".
+   */
+  @Value("${app.jobs.maxAttempts:3}")
+  private int maxAttempts = 3;
+
+  /** Timeout for jobs launched without one; 0 means jobs may run for as long as they like. */
+  @Value("${app.jobs.defaultTimeoutMs:0}")
+  private long defaultTimeoutMs = 0;
+
+  /** Retry policy for jobs launched without one; by default jobs are not retried. */
+  @Value("${app.jobs.retry.maxAttempts:1}")
+  private int defaultRetryMaxAttempts = 1;
+
+  @Value("${app.jobs.retry.backoffMs:1000}")
+  private long defaultRetryBackoffMs = 1000;
+
+  @Value("${app.jobs.retry.jitter:0.5}")
+  private double defaultRetryJitter = 0.5;
+
+  /** The wait before a retry never grows longer than this, however many times a job has failed. */
+  @Value("${app.jobs.retry.maxBackoffMs:3600000}")
+  private long maxRetryBackoffMs = 3_600_000;
+
+  /** When false, every log line is written to the database as soon as it is logged. */
+  @Value("${app.jobs.log.buffered:true}")
+  private boolean bufferedLogging = true;
+
+  @Value("${app.jobs.log.flushEveryLines:100}")
+  private int flushEveryLines = 100;
+
+  @Value("${app.jobs.log.flushEveryMs:1000}")
+  private long flushEveryMs = 1000;
+
+  /**
+   * How many steps of one pipeline may run at once; 0 (the default) means as many as the job
+   * executor has threads, so that a wide pipeline takes no more of the node than that many jobs.
+   */
+  @Value("${app.jobs.pipeline.maxParallelSteps:0}")
+  private int pipelineMaxParallelSteps = 0;
+
+  private final Map<Long, JobContext> runningJobs = new ConcurrentHashMap<>();
+
+  /** Set once this node has begun to shut down; from then on it starts no more jobs. */
+  private volatile boolean shuttingDown = false;
+
+  /** Ids of the jobs this node has claimed from the database queue and not yet finished. */
+  private final Set<Long> leasedJobs = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Waits out the backoff of jobs that are retried on this node, so that a job waiting to be
+   * retried does not hold a worker; the retry itself is handed to the job executor.
+   */
+  private final ScheduledThreadPoolExecutor retryTimer =
+      new ScheduledThreadPoolExecutor(
+          1, Thread.ofPlatform().name("job-retry-timer").daemon().factory());
+
+  /**
+   * @param status status of a job
+   * @return whether a job with this status may still log lines or change status
+   */
+  public static boolean isActive(String status) {
+    return "running".equals(status) || "queued".equals(status);
+  }
+
+  public boolean usesDatabaseQueue() {
+    return DATABASE_QUEUE.equals(queueMode);
+  }
+
+  public String getNodeId() {
+    if (nodeId.isBlank()) {
+      String name = ManagementFactory.getRuntimeMXBean().getName();
+      nodeId = name.substring(name.indexOf('@') + 1);
+    }
+    return nodeId;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
   public Job runAsJob(JobContextConsumer jobFunction) {
+    return runAsJob(jobFunction, null);
+  }
+
+  /**
+   * Launch a job with the configured retry policy.
+   *
+   * @param jobFunction the job to run
+   * @param timeoutMs how long the job may run before it is stopped with status "timed_out"; null
+   *     for the configured default
+   * @return the job
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Long timeoutMs) {
+    return runAsJob(jobFunction, timeoutMs, null);
+  }
+
+  /**
+   * Launch a job.
+   *
+   * @param jobFunction the job to run
+   * @param timeoutMs how long each attempt at the job may run before it is stopped with status
+   *     "timed_out"; null for the configured default
+   * @param retryPolicy how to retry the job if it fails; null, or any field of it null, for the
+   *     configured default
+   * @return the job
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, Long timeoutMs, JobRetryPolicy retryPolicy) {
+    return runAsJob(jobFunction, timeoutMs, retryPolicy, null);
+  }
+
+  /**
+   * Launch a job, unless an identical one is already queued or running.
+   *
+   * @param jobFunction the job to run
+   * @param timeoutMs how long each attempt at the job may run before it is stopped with status
+   *     "timed_out"; null for the configured default
+   * @param retryPolicy how to retry the job if it fails; null, or any field of it null, for the
+   *     configured default
+   * @param dedupPolicy if not null, a job with the same class and fields that is queued or running
+   *     (or, if the policy allows, that completed recently) is returned instead of a new one being
+   *     launched; jobs that cannot be rebuilt, such as lambdas, are never deduplicated
+   * @return the job, or the identical job that was returned instead
+   */
+  public Job runAsJob(
+      JobContextConsumer jobFunction,
+      Long timeoutMs,
+      JobRetryPolicy retryPolicy,
+      JobDedupPolicy dedupPolicy) {
     Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    if (timeoutMs != null) {
+      job.setTimeoutMs(timeoutMs);
+    } else if (defaultTimeoutMs > 0) {
+      job.setTimeoutMs(defaultTimeoutMs);
+    }
+    JobRetryPolicy retry = retryPolicy != null ? retryPolicy : JobRetryPolicy.builder().build();
+    job.setRetryMaxAttempts(
+        retry.getMaxAttempts() != null ? retry.getMaxAttempts() : defaultRetryMaxAttempts);
+    job.setRetryBackoffMs(
+        retry.getBackoffMs() != null ? retry.getBackoffMs() : defaultRetryBackoffMs);
+    job.setRetryJitter(retry.getJitter() != null ? retry.getJitter() : defaultRetryJitter);
 
-    jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+    // lambdas, anonymous and local classes (which have no canonical name) cannot be rebuilt, so
+    // they always run in memory and are never run again after a restart
+    if (jobFunction.getClass().getCanonicalName() != null) {
+      job.setJobType(jobFunction.getClass().getName());
+      job.setParams(objectMapper.valueToTree(jobFunction).toString());
+      if (dedupPolicy != null) {
+        job.setDedupKey(dedupKey(job.getJobType(), job.getParams()));
+        job.setActiveDedupKey(job.getDedupKey());
+        Optional<Job> duplicate = findDuplicate(job.getDedupKey(), dedupPolicy);
+        if (duplicate.isPresent()) {
+          log.info("Launch deduplicated: job {} is identical", duplicate.get().getId());
+          return duplicate.get();
+        }
+      }
+      if (usesDatabaseQueue()) {
+        job.setStatus("queued");
+        Job saved = saveNewJob(job);
+        if (saved == job) {
+          jobMetrics.launched(job);
+        }
+        return saved;
+      }
+    }
+
+    job.setNodeId(getNodeId());
+    job.setAttempts(1);
+    Job saved = saveNewJob(job);
+    if (saved != job) return saved;
+    jobMetrics.launched(job);
+    try {
+      submit(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      log.warn("Job {} rejected: {}", job.getId(), e.getMessage());
+      job.setStatus("rejected");
+      new JobContext(jobLogLinesRepository, job).log(rejectedMessage());
+      jobsRepository.save(job);
+      jobMetrics.finished(job);
+    }
 
     return job;
   }
 
-  @Async
+  /**
+   * Launch a pipeline. It runs as a job of its own, which starts each step as a child job of itself
+   * once the steps that step depends on have completed; see JobPipeline. The pipeline is never
+   * retried, as that would run again the steps that had completed.
+   *
+   * @param pipeline the pipeline
+   * @param timeoutMs how long the whole pipeline may run before it, and any step still running, is
+   *     stopped with status "timed_out"; null for the configured default
+   * @return the job that runs the pipeline
+   */
+  public Job runPipeline(JobPipeline pipeline, Long timeoutMs) {
+    return runAsJob(
+        ctx -> pipeline.run(ctx, this), timeoutMs, JobRetryPolicy.builder().maxAttempts(1).build());
+  }
+
+  /**
+   * Record a step of a pipeline as a child job of the job running the pipeline. A step that starts
+   * is registered as running on this node straight away, so that cancelling the pipeline stops it
+   * even before runStep gets going.
+   *
+   * @param parent the job running the pipeline
+   * @param stepName name of the step
+   * @param jobFunction the job the step runs
+   * @param status "running" for a step that is starting; otherwise the status of a step that never
+   *     runs
+   * @return the child job
+   */
+  Job saveStep(Job parent, String stepName, JobContextConsumer jobFunction, String status) {
+    Job step =
+        Job.builder()
+            .createdBy(parent.getCreatedBy())
+            .parentId(parent.getId())
+            .stepName(stepName)
+            .status(status)
+            .retryMaxAttempts(1)
+            .build();
+    if (jobFunction.getClass().getCanonicalName() != null) {
+      step.setJobType(jobFunction.getClass().getName());
+      step.setParams(objectMapper.valueToTree(jobFunction).toString());
+    }
+    if (!isActive(status)) {
+      jobsRepository.save(step);
+      jobMetrics.finished(step);
+      return step;
+    }
+    step.setNodeId(getNodeId());
+    step.setAttempts(1);
+    jobsRepository.save(step);
+    jobMetrics.launched(step);
+    runningJobs.put(step.getId(), newJobContext(step));
+    return step;
+  }
+
+  /**
+   * Run a step of a pipeline, as saved by saveStep, on this thread: runJobAsync is called directly
+   * rather than through self, so it does not go to the job executor.
+   */
+  void runStep(Job step, JobContextConsumer jobFunction) {
+    runJobAsync(step, jobFunction);
+  }
+
+  /**
+   * @return how many steps of one pipeline may run at once; see pipelineMaxParallelSteps
+   */
+  int pipelineParallelism() {
+    return pipelineMaxParallelSteps > 0 ? pipelineMaxParallelSteps : jobExecutor.getMaxPoolSize();
+  }
+
+  /** Stop a step of a pipeline, if it is still running. */
+  void cancelStep(long jobId) {
+    JobContext context = runningJobs.get(jobId);
+    if (context != null) {
+      context.cancel("cancelled");
+    }
+  }
+
+  /**
+   * @param jobType class of a job
+   * @param params fields of the job as JSON
+   * @return the dedup key of a job with that class and fields
+   */
+  static String dedupKey(String jobType, String params) {
+    return UUID.nameUUIDFromBytes((jobType + "\n" + params).getBytes(StandardCharsets.UTF_8))
+        .toString();
+  }
+
+  /** Find a job with the dedup key that is queued or running, or that the policy allows reusing. */
+  private Optional<Job> findDuplicate(String dedupKey, JobDedupPolicy dedupPolicy) {
+    Optional<Job> active = jobsRepository.findByActiveDedupKey(dedupKey);
+    if (active.isPresent() || dedupPolicy.getReuseCompletedForMs() == null) return active;
+    return jobsRepository.findFirstByDedupKeyAndStatusAndUpdatedAtAfterOrderByIdDesc(
+        dedupKey,
+        "complete",
+        ZonedDateTime.now().minus(dedupPolicy.getReuseCompletedForMs(), ChronoUnit.MILLIS));
+  }
+
+  /**
+   * Save a job that is being launched. An identical job may have been launched since findDuplicate
+   * looked; if so, the unique index on activeDedupKey stops this one being saved, and that job is
+   * returned instead.
+   *
+   * @return the job, or the identical job that was launched first
+   */
+  private Job saveNewJob(Job job) {
+    try {
+      jobsRepository.save(job);
+      return job;
+    } catch (DataIntegrityViolationException e) {
+      if (job.getActiveDedupKey() == null) throw e;
+      log.info("Launch deduplicated: an identical job was launched at the same moment");
+      return jobsRepository.findByActiveDedupKey(job.getActiveDedupKey()).orElseThrow(() -> e);
+    }
+  }
+
+  /**
+   * Run a job that this node has just claimed from the database queue, or is running again after a
+   * restart. If the executor has no room for it after all, it is put back on the queue (or, without
+   * a database queue, rejected).
+   *
+   * @param job the job, with status "running"
+   */
+  public void runQueuedJob(Job job) {
+    JobContextConsumer jobFunction;
+    try {
+      jobFunction = loadJob(job.getJobType(), job.getParams());
+    } catch (Exception e) {
+      log.error("Job {} cannot be loaded: {}", job.getId(), e.toString());
+      job.setStatus("error");
+      job.setLeaseOwner(null);
+      job.setLeaseExpiresAt(null);
+      appendLog(job, "Job cannot be loaded: " + e.getMessage());
+      jobsRepository.save(job);
+      jobMetrics.finished(job);
+      return;
+    }
+
+    leasedJobs.add(job.getId());
+    try {
+      submit(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      leasedJobs.remove(job.getId());
+      job.setStatus(usesDatabaseQueue() ? "queued" : "rejected");
+      job.setLeaseOwner(null);
+      job.setLeaseExpiresAt(null);
+      jobsRepository.save(job);
+      if (!isActive(job.getStatus())) {
+        jobMetrics.finished(job);
+      }
+    }
+  }
+
+  /**
+   * Rebuild a job from its class and its fields.
+   *
+   * @param jobType name of a class that implements JobContextConsumer
+   * @param params the fields of the job as JSON
+   * @return the job, ready to run
+   * @throws ClassNotFoundException if there is no such class
+   * @throws ClassCastException if the class is not a JobContextConsumer
+   * @throws JsonProcessingException if params do not fit the class
+   */
+  public JobContextConsumer loadJob(String jobType, String params)
+      throws ClassNotFoundException, JsonProcessingException {
+    return objectMapper.readValue(
+        params, Class.forName(jobType).asSubclass(JobContextConsumer.class));
+  }
+
+  /**
+   * @param jobId id of a job
+   * @return whether the job is running on this node, or waiting here for a worker, so that the
+   *     lines it logs are published to JobLogStreamService as they are flushed
+   */
+  public boolean isRunningHere(long jobId) {
+    return runningJobs.containsKey(jobId);
+  }
+
+  /**
+   * Cancel a job. A job on this node is interrupted straight away, whether it is running or still
+   * waiting for a worker; a job still in the database queue is cancelled before any node claims it;
+   * a job running on another node is stopped by that node at its next heartbeat.
+   *
+   * @param jobId id of the job
+   * @return false if the job had already finished
+   */
+  public boolean cancel(long jobId) {
+    Job job =
+        jobsRepository
+            .findById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+
+    JobContext context = runningJobs.get(jobId);
+    if (context != null) {
+      context.cancel("cancelled");
+      return true;
+    }
+    if (jobsRepository.cancelQueued(jobId) == 1) {
+      appendLog(job, "Job cancelled before it started");
+      job.setStatus("cancelled");
+      jobMetrics.finished(job);
+      jobLogStreamService.finish(jobId, "cancelled");
+      return true;
+    }
+    return jobsRepository.requestCancel(jobId) == 1;
+  }
+
+  /** Stop every job on this node that has run past its timeout. */
+  @Scheduled(fixedDelayString = "${app.jobs.timeoutCheckMs:1000}")
+  public void enforceTimeouts() {
+    for (JobContext context : runningJobs.values()) {
+      if (context.isPastDeadline()) {
+        context.cancel("timed_out");
+      }
+    }
+  }
+
+  /**
+   * @return ids of the jobs this node has claimed from the database queue and is still running
+   */
+  public Set<Long> getLeasedJobIds() {
+    return Set.copyOf(leasedJobs);
+  }
+
+  /**
+   * Hand a job to the executor. Its context is registered first, so that the job can be cancelled
+   * while it is still waiting for a worker.
+   *
+   * @throws TaskRejectedException if the executor has no room for the job, or this node is shutting
+   *     down
+   */
+  private void submit(Job job, JobContextConsumer jobFunction) {
+    if (shuttingDown) {
+      throw new TaskRejectedException("node is shutting down");
+    }
+    runningJobs.put(job.getId(), newJobContext(job));
+    try {
+      self.runJobAsync(job, jobFunction);
+    } catch (RuntimeException e) {
+      runningJobs.remove(job.getId());
+      throw e;
+    }
+  }
+
+  @Async(JOB_EXECUTOR)
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    // a job handed to the executor is registered by submit, so one that is not registered once the
+    // node is shutting down has already been recorded as interrupted by
+    // markRemainingJobsInterrupted
+    if (shuttingDown && !runningJobs.containsKey(job.getId())) return;
+    JobContext context = runningJobs.computeIfAbsent(job.getId(), id -> newJobContext(job));
+    if (job.getAttempts() > 1) {
+      continueLog(context, job);
+    }
+    if (job.getRetryMaxAttempts() > 1) {
+      // marks where the log of each attempt starts
+      context.log("Attempt %d of %d".formatted(job.getAttempts(), job.getRetryMaxAttempts()));
+    }
+    context.start(Thread.currentThread(), job.getTimeoutMs());
+    long startNanos = System.nanoTime();
 
+    Exception failure = null;
+    boolean registered = true;
     try {
+      context.checkpoint();
       jobFunction.accept(context);
+      job.setStatus("complete");
     } catch (Exception e) {
       job.setStatus("error");
-      context.log(e.getMessage());
+      failure = e;
+    } finally {
+      context.stop();
+      // clear any interrupt left by cancel, so that it can neither break the writes below nor
+      // leak into the next job run on this thread
+      Thread.interrupted();
+      // false once markRemainingJobsInterrupted has already recorded the job as interrupted
+      registered = runningJobs.remove(job.getId(), context);
+      if (context.isCancelled()) {
+        job.setStatus(context.getCancelStatus());
+        if (registered) {
+          context.log(
+              switch (context.getCancelStatus()) {
+                case "timed_out" -> "Job timed out after %d ms".formatted(job.getTimeoutMs());
+                case "interrupted" -> INTERRUPTED_MESSAGE;
+                default -> "Job cancelled";
+              });
+        }
+      } else if (failure != null) {
+        job.setLastError(failure.getMessage());
+        context.log(failure.getMessage());
+      }
+      context.flush();
+    }
+    if (!registered) return;
+    jobMetrics.ran(job, System.nanoTime() - startNanos);
+    jobMetrics.itemsProcessed(job, context.takeItemsProcessed());
+
+    if (context.getProgress() != null) {
+      job.setProgress("complete".equals(job.getStatus()) ? 100 : context.getProgress());
+    }
+    job.setLeaseOwner(null);
+    job.setLeaseExpiresAt(null);
+    long retryDelayMs = -1;
+    if ("error".equals(job.getStatus()) && job.getAttempts() < job.getRetryMaxAttempts()) {
+      retryDelayMs = retryDelayMs(job);
+      job.setStatus("queued");
+      job.setNextAttemptAt(ZonedDateTime.now().plus(retryDelayMs, ChronoUnit.MILLIS));
+      context.log(
+          "Attempt %d failed; retrying in %d ms".formatted(job.getAttempts(), retryDelayMs));
+      context.flush();
+    }
+    jobsRepository.save(job);
+    leasedJobs.remove(job.getId());
+    if (retryDelayMs >= 0) {
+      scheduleRetry(job, jobFunction, retryDelayMs);
       return;
     }
+    jobMetrics.finished(job);
+    jobLogStreamService.finish(job.getId(), job.getStatus());
+    jobLogArchiveService.archiveLater(job.getId());
+  }
+
+  /**
+   * How long a job that has just failed waits before it is retried: its backoff, doubled for each
+   * attempt after the first, capped at maxRetryBackoffMs, then cut short at random by up to its
+   * jitter.
+   */
+  long retryDelayMs(Job job) {
+    double backoff =
+        Math.min(maxRetryBackoffMs, job.getRetryBackoffMs() * Math.pow(2, job.getAttempts() - 1));
+    return Math.round(
+        backoff * (1 - job.getRetryJitter() * ThreadLocalRandom.current().nextDouble()));
+  }
+
+  /**
+   * Arrange for a failed job to be retried once its backoff is over. A job that can be rebuilt is
+   * left in the database queue for whichever node is free then; any other job is retried here.
+   */
+  private void scheduleRetry(Job job, JobContextConsumer jobFunction, long delayMs) {
+    if (usesDatabaseQueue() && job.getJobType() != null) return;
+    retryTimer.schedule(() -> retry(job, jobFunction), delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Start the next attempt at a job that was waiting to be retried on this node, unless it was
+   * cancelled while it waited.
+   */
+  void retry(Job job, JobContextConsumer jobFunction) {
+    boolean started = false;
+    try {
+      if (jobsRepository.startRetry(job.getId(), getNodeId()) == 0) return;
+      started = true;
+      job.setStatus("running");
+      job.setNodeId(getNodeId());
+      job.setAttempts(job.getAttempts() + 1);
+      job.setNextAttemptAt(null);
+      submit(job, jobFunction);
+    } catch (TaskRejectedException e) {
+      log.warn("Job {} rejected: {}", job.getId(), e.getMessage());
+      job.setStatus("rejected");
+      appendLog(job, rejectedMessage());
+      jobsRepository.save(job);
+      jobMetrics.finished(job);
+      jobLogStreamService.finish(job.getId(), job.getStatus());
+    } catch (RuntimeException e) {
+      log.error("Job {} could not be retried: {}", job.getId(), e.toString());
+      // once startRetry has marked it running, the job would otherwise stay running, holding its
+      // dedup key, with nothing to run it; saving it with status "error" frees the key
+      if (!started) return;
+      job.setStatus("error");
+      job.setLastError(e.getMessage());
+      jobsRepository.save(job);
+      jobMetrics.finished(job);
+      jobLogStreamService.finish(job.getId(), job.getStatus());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    retryTimer.shutdownNow();
+  }
+
+  private String rejectedMessage() {
+    return shuttingDown ? "Job rejected: node is shutting down" : "Job rejected: job queue is full";
+  }
+
+  /**
+   * @return whether this node has begun to shut down, and so starts no more jobs
+   */
+  public boolean isShuttingDown() {
+    return shuttingDown;
+  }
+
+  /**
+   * Start no more jobs on this node: from now on a job launched or claimed here is rejected, or
+   * with a database queue left on the queue for another node. See JobShutdownService.
+   */
+  void stopAcceptingJobs() {
+    shuttingDown = true;
+  }
+
+  /**
+   * Wait for the jobs on this node to finish, stopping any that run past their timeout meanwhile.
+   *
+   * @param timeoutMs how long to wait
+   * @return whether they all finished in time; false too if this thread is interrupted
+   */
+  boolean awaitRunningJobs(long timeoutMs) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (!runningJobs.isEmpty()) {
+      long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remainingMs <= 0) return false;
+      enforceTimeouts();
+      try {
+        Thread.sleep(Math.min(remainingMs, 100));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stop every job on this node with status "interrupted". Each ends the way a cancelled job does,
+   * writing a final log line and the rest of its log as it stops.
+   *
+   * @return how many jobs were interrupted
+   */
+  int interruptRunningJobs() {
+    // counted first, as a cancelled job may stop and unregister before the loop is done
+    List<JobContext> running = List.copyOf(runningJobs.values());
+    running.forEach(context -> context.cancel("interrupted"));
+    return running.size();
+  }
+
+  /**
+   * Mark the jobs on this node that are still running as "interrupted" in the database, writing
+   * their final log line and any lines still buffered; for jobs that did not stop when interrupted,
+   * or never got a worker, so that none is left "running" once this node is gone. A job that does
+   * stop after this writes any lines it logged meanwhile, but nothing else.
+   *
+   * @return how many jobs were marked
+   */
+  int markRemainingJobsInterrupted() {
+    List<JobContext> remaining = List.copyOf(runningJobs.values());
+    for (JobContext context : remaining) {
+      Job job = context.getJob();
+      runningJobs.remove(job.getId(), context);
+      context.log(INTERRUPTED_MESSAGE);
+      context.flush();
+      if (jobsRepository.markInterrupted(job.getId()) == 1) {
+        job.setStatus("interrupted");
+        jobMetrics.finished(job);
+        jobLogStreamService.finish(job.getId(), "interrupted");
+      }
+    }
+    return remaining.size();
+  }
 
-    job.setStatus("complete");
+  /**
+   * Run a job again after the node running it stopped. With a database queue it goes back on the
+   * queue for any node to claim; otherwise this node runs it.
+   *
+   * @param job a job that can be rebuilt, i.e. one with a jobType
+   */
+  public void rerun(Job job) {
+    job.setLeaseOwner(null);
+    job.setLeaseExpiresAt(null);
+    if (usesDatabaseQueue()) {
+      job.setStatus("queued");
+      jobsRepository.save(job);
+      return;
+    }
+    job.setStatus("running");
+    job.setNodeId(getNodeId());
+    job.setAttempts(job.getAttempts() + 1);
+    job.setNextAttemptAt(null);
     jobsRepository.save(job);
+    runQueuedJob(job);
+  }
+
+  /**
+   * Write one line at the end of the log of a job that is not running on this node.
+   *
+   * @param job the job
+   * @param message the line to write
+   */
+  void appendLog(Job job, String message) {
+    JobContext context = new JobContext(jobLogLinesRepository, job);
+    continueLog(context, job);
+    context.log(message);
+  }
+
+  /**
+   * A job that is run again, or that is not running here, may already have log lines, so its log is
+   * appended to rather than started again at seq 0.
+   */
+  private void continueLog(JobContext context, Job job) {
+    jobLogLinesRepository.findAllByJobIdOrderBySeqDesc(job.getId(), Limit.of(1)).stream()
+        .findFirst()
+        .ifPresent(last -> context.continueAt(last.getSeq() + 1));
+  }
+
+  JobContext newJobContext(Job job) {
+    if (!bufferedLogging) {
+      return new JobContext(jobLogLinesRepository, jobLogStreamService, job, 1, 0);
+    }
+    return new JobContext(
+        jobLogLinesRepository, jobLogStreamService, job, flushEveryLines, flushEveryMs);
+  }
+
+  /**
+   * Flush the buffered log lines of every running job, so that a job that logs a line and then goes
+   * quiet still has that line written within flushEveryMs, and record the progress of any job whose
+   * progress has changed, along with the items it has processed since the last flush.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.log.flushEveryMs:1000}")
+  public void flushRunningJobLogs() {
+    runningJobs.forEach(
+        (id, context) -> {
+          context.flush();
+          Integer progress = context.takeProgressUpdate();
+          if (progress != null) {
+            jobsRepository.updateProgress(id, progress);
+          }
+          jobMetrics.itemsProcessed(context.getJob(), context.takeItemsProcessed());
+        });
+  }
+
+  /**
+   * @return the current state of the executor that runs jobs
+   */
+  public JobExecutorStats getExecutorStats() {
+    return jobExecutorMetrics.stats(jobExecutor);
   }
 
+  /**
+   * @return the job metrics of this node, including the throughput of the jobs running on it
+   */
+  public JobMetricsReport getMetrics() {
+    return jobMetrics.report(
+        runningJobs.values().stream()
+            .map(JobContext::getThroughput)
+            .sorted(Comparator.comparingLong(JobThroughput::getJobId))
+            .toList());
+  }
+
+  /**
+   * Rebuild the log of a job from its log lines.
+   *
+   * @param jobId id of the job
+   * @return the full text of the log, one line per log call
+   */
   public String getJobLogs(Long jobId) {
+    return getJobLogs(jobId, null, null, null).getLines().stream()
+        .map(JobLogLine::getLine)
+        .collect(Collectors.joining("\n"));
+  }
+
+  /**
+   * Read a range of lines from the log of a job. Only the requested lines are loaded, so reading
+   * the tail of a very long log costs the same as reading the tail of a short one. Logs that have
+   * been compressed are read from their archive, and jobs that were run before log lines were
+   * stored separately fall back to the legacy log column; neither is looked at for a job that is
+   * still running or queued.
+   *
+   * @param jobId id of the job
+   * @param offset seq of the first line to return (default 0); ignored if tail is given
+   * @param limit maximum number of lines to return (default all)
+   * @param tail if given, return only this many lines from the end of the log
+   * @return the requested lines and the cursor to pass as offset to read the lines after them
+   * @throws IllegalArgumentException if offset, limit or tail is negative
+   * @throws EntityNotFoundException if there is no job with that id
+   */
+  public JobLogPage getJobLogs(Long jobId, Integer offset, Integer limit, Integer tail) {
+    requireNotNegative("offset", offset);
+    requireNotNegative("limit", limit);
+    requireNotNegative("tail", tail);
     Job job =
         jobsRepository
             .findById(jobId)
-            .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+
+    int start = (tail == null && offset != null) ? offset : 0;
+    List<JobLogLine> lines;
+    if (tail != null) {
+      lines =
+          new ArrayList<>(
+              jobLogLinesRepository.findAllByJobIdOrderBySeqDesc(jobId, Limit.of(tail)));
+      Collections.reverse(lines);
+    } else {
+      lines =
+          jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+              jobId, start, limit != null ? Limit.of(limit) : Limit.unlimited());
+    }
+
+    // the log of a job that is still running or queued is always in job_log_lines, so an empty
+    // page of it is the end of the log, as when a client polling the tail has caught up
+    boolean elsewhere = lines.isEmpty() && !isActive(job.getStatus());
+    if (elsewhere) {
+      lines = jobLogArchiveService.readLines(jobId, start, limit, tail);
+    }
+    if (elsewhere && lines.isEmpty() && job.getLog() != null) {
+      lines = legacyLines(job.getLog(), start, limit, tail);
+    }
+
+    int nextCursor = lines.isEmpty() ? start : lines.get(lines.size() - 1).getSeq() + 1;
+    return JobLogPage.builder().lines(lines).nextCursor(nextCursor).build();
+  }
 
-    String log = job.getLog();
-    return log != null ? log : "";
+  private static void requireNotNegative(String name, Integer value) {
+    if (value != null && value < 0) {
+      throw new IllegalArgumentException("%s must not be negative: %d".formatted(name, value));
+    }
+  }
+
+  private List<JobLogLine> legacyLines(String log, int start, Integer limit, Integer tail) {
+    String[] text = log.split("\n", -1);
+    int from = tail != null ? Math.max(0, text.length - tail) : Math.min(start, text.length);
+    int to = (tail == null && limit != null) ? Math.min(text.length, from + limit) : text.length;
+    List<JobLogLine> lines = new ArrayList<>();
+    for (int seq = from; seq < to; seq++) {
+      lines.add(JobLogLine.builder().seq(seq).line(text[seq]).build());
+    }
+    return lines;
   }
 }
@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shuts down the jobs running on this node gracefully when the application stops, so that a
+ * redeploy neither kills jobs part way through without a trace nor loses the end of their logs.
+ *
+ * <p>Shutdown has three parts. First the node stops starting jobs: a job launched from then on is
+ * rejected, or with a database queue left on the queue for another node, and no more jobs are
+ * claimed from the queue. Then it waits up to app.jobs.shutdown.gracePeriodMs for the jobs it is
+ * running to finish, still stopping any that run past their timeout. Any job running after that is
+ * stopped with status "interrupted" and a final log line, and given up to
+ * app.jobs.shutdown.interruptWaitMs to write its log and status as it stops; a job that still has
+ * not stopped, or never got a worker, is marked "interrupted" in the database directly.
+ *
+ * <p>This runs when the application context closes, before the job executor and the database
+ * connections are shut down. An interrupted job is not run again.
+ */
+@Service
+@Slf4j
+public class JobShutdownService implements SmartLifecycle {
+  @Autowired private JobService jobService;
+
+  @Value("${app.jobs.shutdown.gracePeriodMs:30000}")
+  private long gracePeriodMs = 30000;
+
+  @Value("${app.jobs.shutdown.interruptWaitMs:5000}")
+  private long interruptWaitMs = 5000;
+
+  private volatile boolean running = false;
+
+  @Override
+  public void start() {
+    running = true;
+  }
+
+  @Override
+  public void stop() {
+    jobService.stopAcceptingJobs();
+    if (!jobService.awaitRunningJobs(gracePeriodMs)) {
+      int interrupted = jobService.interruptRunningJobs();
+      log.warn("Interrupted {} jobs still running after {} ms", interrupted, gracePeriodMs);
+      if (!jobService.awaitRunningJobs(interruptWaitMs)) {
+        int marked = jobService.markRemainingJobsInterrupted();
+        log.warn("Marked {} jobs that did not stop as interrupted", marked);
+      }
+    }
+    running = false;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+}
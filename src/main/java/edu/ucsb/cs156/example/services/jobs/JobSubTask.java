@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * One unit of the work of a job that is split into parallel sub-tasks; see
+ * JobContext.forEachParallel.
+ *
+ * @param <T> the type of item the sub-task works on
+ * @param <R> the type of its result
+ */
+@FunctionalInterface
+public interface JobSubTask<T, R> {
+  R apply(T item) throws Exception;
+}
@@ -1,16 +1,39 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.repositories.KeysetPagingRepository;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -53,4 +76,170 @@ public class ApiControllerTests extends ControllerTestCase {
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("String with id 7 not found", json.get("message"));
   }
+
+  @SuppressWarnings("unchecked")
+  private final KeysetPagingRepository<MenuItemReview, Long> repository =
+      mock(KeysetPagingRepository.class);
+
+  @SuppressWarnings("unchecked")
+  private final FetchableFluentQuery<MenuItemReview> query = mock(FetchableFluentQuery.class);
+
+  private final ApiController controller = new DummyController();
+
+  private final Set<String> sortKeys = Set.of("dateReviewed");
+
+  @BeforeEach
+  public void setup_repository() {
+    when(query.limit(anyInt())).thenReturn(query);
+    when(repository.findBy(any(), any()))
+        .thenAnswer(
+            invocation ->
+                invocation
+                    .<Function<FetchableFluentQuery<MenuItemReview>, Object>>getArgument(1)
+                    .apply(query));
+  }
+
+  /** The rows with the given ids, as the query reads them. */
+  private List<MenuItemReview> rows(long first, long last) {
+    List<MenuItemReview> rows =
+        LongStream.rangeClosed(first, last)
+            .mapToObj(id -> MenuItemReview.builder().id(id).build())
+            .toList();
+    when(query.all()).thenReturn(rows);
+    return rows;
+  }
+
+  @SuppressWarnings("unchecked")
+  private KeysetSpecification<MenuItemReview> specification() {
+    ArgumentCaptor<KeysetSpecification<MenuItemReview>> spec =
+        ArgumentCaptor.forClass(KeysetSpecification.class);
+    verify(repository).findBy(spec.capture(), any());
+    return spec.getValue();
+  }
+
+  @Test
+  public void keysetPage_reads_one_row_more_than_the_page_to_find_the_next_cursor() {
+    // arrange
+    List<MenuItemReview> rows = rows(1, 3);
+
+    // act
+    CursorPage<MenuItemReview> page =
+        controller.keysetPage(repository, MenuItemReview.class, null, 2, null, sortKeys);
+
+    // assert
+    verify(query).limit(3);
+    assertEquals(new CursorPage<>(rows.subList(0, 2), 2L), page);
+    assertEquals(new KeysetSpecification<>("id", Sort.Direction.ASC, null, null), specification());
+  }
+
+  @Test
+  public void keysetPage_has_no_next_cursor_on_the_last_page() {
+    // arrange
+    List<MenuItemReview> rows = rows(4, 5);
+
+    // act
+    CursorPage<MenuItemReview> page =
+        controller.keysetPage(repository, MenuItemReview.class, 3L, 2, "id,desc", sortKeys);
+
+    // assert
+    assertEquals(new CursorPage<>(rows, null), page);
+    assertEquals(new KeysetSpecification<>("id", Sort.Direction.DESC, null, 3L), specification());
+    verify(repository, never()).findById(any());
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<KeysetSpecification<MenuItemReview>> specifications(int queries) {
+    ArgumentCaptor<KeysetSpecification<MenuItemReview>> specs =
+        ArgumentCaptor.forClass(KeysetSpecification.class);
+    verify(repository, times(queries)).findBy(specs.capture(), any());
+    return specs.getAllValues();
+  }
+
+  @Test
+  public void keysetPage_seeks_past_the_sort_key_of_the_row_after() {
+    // arrange
+    LocalDateTime date = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+    when(repository.findById(3L))
+        .thenReturn(Optional.of(MenuItemReview.builder().id(3L).dateReviewed(date).build()));
+    rows(4, 4);
+
+    // act
+    CursorPage<MenuItemReview> page =
+        controller.keysetPage(repository, MenuItemReview.class, 3L, 10, "dateReviewed", sortKeys);
+
+    // assert: the rows with a key after the row, then, as they ran out, the rows without one
+    KeysetSpecification<MenuItemReview> keyed =
+        new KeysetSpecification<>("dateReviewed", Sort.Direction.ASC, date, 3L);
+    assertEquals(List.of(keyed, keyed.following()), specifications(2));
+    verify(query).limit(11);
+    verify(query).limit(10);
+    assertEquals(2, page.getContent().size());
+  }
+
+  @Test
+  public void keysetPage_reads_the_next_section_only_if_the_page_is_not_yet_full() {
+    // arrange
+    when(repository.findById(3L)).thenReturn(Optional.of(MenuItemReview.builder().id(3L).build()));
+    List<MenuItemReview> rows = rows(1, 2);
+
+    // act: in descending order the rows without a key come first, then those with one
+    CursorPage<MenuItemReview> full =
+        controller.keysetPage(
+            repository, MenuItemReview.class, 3L, 1, "dateReviewed,desc", sortKeys);
+    CursorPage<MenuItemReview> partial =
+        controller.keysetPage(
+            repository, MenuItemReview.class, 3L, 3, "dateReviewed,desc", sortKeys);
+
+    // assert
+    KeysetSpecification<MenuItemReview> withoutKey =
+        new KeysetSpecification<>("dateReviewed", Sort.Direction.DESC, null, 3L);
+    assertEquals(List.of(withoutKey, withoutKey, withoutKey.following()), specifications(3));
+    assertEquals(new CursorPage<>(rows.subList(0, 1), 1L), full);
+    verify(query).limit(4);
+    // one row more than the first page, then the two the second page still needed
+    verify(query, times(2)).limit(2);
+    assertEquals(3, partial.getContent().size());
+    assertEquals(1L, partial.getNextCursor());
+  }
+
+  @Test
+  public void keysetPage_reports_a_missing_row_after() {
+    // arrange
+    when(repository.findById(3L)).thenReturn(Optional.empty());
+
+    // act
+    EntityNotFoundException e =
+        assertThrows(
+            EntityNotFoundException.class,
+            () ->
+                controller.keysetPage(
+                    repository, MenuItemReview.class, 3L, 10, "dateReviewed,desc", sortKeys));
+
+    // assert
+    assertEquals("MenuItemReview with id 3 not found", e.getMessage());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void keysetPage_ignores_unknown_sort_keys_and_directions_and_clamps_the_limit() {
+    // arrange
+    rows(1, 1);
+
+    // act
+    controller.keysetPage(repository, MenuItemReview.class, null, 0, "stars,sideways", sortKeys);
+    controller.keysetPage(
+        repository, MenuItemReview.class, null, 5000, "dateReviewed,sideways", sortKeys);
+
+    // assert
+    verify(query).limit(2);
+    verify(query).limit(ApiController.MAX_PAGE_SIZE + 1);
+    ArgumentCaptor<KeysetSpecification<MenuItemReview>> specs =
+        ArgumentCaptor.forClass(KeysetSpecification.class);
+    verify(repository, times(2)).findBy(specs.capture(), any());
+    assertEquals(
+        List.of(
+            new KeysetSpecification<>("id", Sort.Direction.ASC, null, null),
+            new KeysetSpecification<>("dateReviewed", Sort.Direction.ASC, null, null)),
+        specs.getAllValues());
+  }
 }
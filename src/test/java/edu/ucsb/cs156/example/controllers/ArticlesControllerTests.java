@@ -1,6 +1,8 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -13,7 +15,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
@@ -26,6 +30,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -325,4 +330,29 @@ public class ArticlesControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("Articles with id 15 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_a_page_of_articles_sorted_by_dateAdded() throws Exception {
+    // arrange
+    LocalDateTime date = LocalDateTime.parse("2022-01-03T00:00:00");
+    Articles row3 = Articles.builder().id(3L).title("t3").dateAdded(date).build();
+    Articles row4 = Articles.builder().id(4L).title("t4").dateAdded(date).build();
+    Articles row5 = Articles.builder().id(5L).title("t5").dateAdded(date).build();
+    when(articlesRepository.findById(eq(3L))).thenReturn(Optional.of(row3));
+    when(articlesRepository.findBy(any(), any())).thenReturn(List.of(row4, row5));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/articles/all?limit=1&after=3&sort=dateAdded,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(articlesRepository)
+        .findBy(eq(new KeysetSpecification<>("dateAdded", Sort.Direction.DESC, date, 3L)), any());
+    String expectedJson = mapper.writeValueAsString(new CursorPage<>(List.of(row4), 4L));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
 }
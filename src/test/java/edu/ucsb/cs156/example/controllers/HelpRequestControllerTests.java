@@ -15,17 +15,22 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.CursorPage;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -331,4 +336,30 @@ public class HelpRequestControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("HelpRequest with id 888 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_a_page_of_help_requests_sorted_by_requestTime()
+      throws Exception {
+    // arrange
+    LocalDateTime date = LocalDateTime.parse("2022-01-03T00:00:00");
+    HelpRequest row3 = HelpRequest.builder().id(3L).teamId("s22-5pm-3").requestTime(date).build();
+    HelpRequest row4 = HelpRequest.builder().id(4L).teamId("s22-5pm-3").requestTime(date).build();
+    HelpRequest row5 = HelpRequest.builder().id(5L).teamId("s22-5pm-3").requestTime(date).build();
+    when(helpRequestRepository.findById(eq(3L))).thenReturn(Optional.of(row3));
+    when(helpRequestRepository.findBy(any(), any())).thenReturn(List.of(row4, row5));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/helprequests/all?limit=1&after=3&sort=requestTime,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(helpRequestRepository)
+        .findBy(eq(new KeysetSpecification<>("requestTime", Sort.Direction.DESC, date, 3L)), any());
+    String expectedJson = mapper.writeValueAsString(new CursorPage<>(List.of(row4), 4L));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
 }
@@ -1,51 +1,116 @@
 package edu.ucsb.cs156.example.controllers;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.config.JobExecutorConfig;
+import edu.ucsb.cs156.example.config.MetricsConfig;
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobLogArchiveStats;
+import edu.ucsb.cs156.example.models.JobMetricsReport;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobTypeMetrics;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.bulk.BulkExportService;
+import edu.ucsb.cs156.example.services.bulk.BulkImportService;
+import edu.ucsb.cs156.example.services.bulk.ExportFormat;
+import edu.ucsb.cs156.example.services.bulk.ExportTable;
+import edu.ucsb.cs156.example.services.bulk.ImportFormat;
+import edu.ucsb.cs156.example.services.bulk.ImportTable;
+import edu.ucsb.cs156.example.services.jobs.JobLogArchiveService;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreamService;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionService;
+import edu.ucsb.cs156.example.services.jobs.JobScheduleService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  JobLogStreamService.class,
+  JobLogArchiveService.class,
+  JobRetentionService.class,
+  JobScheduleService.class,
+  JobMetrics.class,
+  JobExecutorConfig.class,
+  MetricsConfig.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogLinesRepository jobLogLinesRepository;
+
+  @MockitoBean JobLogArchivesRepository jobLogArchivesRepository;
+
+  @MockitoBean JobSchedulesRepository jobSchedulesRepository;
+
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean BulkImportService bulkImportService;
+
+  @MockitoBean BulkExportService bulkExportService;
+
+  @TempDir Path tempDir;
+
   @Autowired JobService jobService;
 
+  @Autowired JobLogStreamService jobLogStreamService;
+
   @Autowired ObjectMapper objectMapper;
 
   @WithMockUser(roles = {"ADMIN"})
@@ -54,13 +119,14 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    Job job1 = Job.builder().log("this is job 1").build();
-    Job job2 = Job.builder().log("this is job 2").build();
+    JobSummary job1 = JobSummary.builder().id(2L).status("complete").logLines(5).build();
+    JobSummary job2 = JobSummary.builder().id(1L).status("error").createdById(3L).build();
 
-    ArrayList<Job> expectedJobs = new ArrayList<>();
+    ArrayList<JobSummary> expectedJobs = new ArrayList<>();
     expectedJobs.addAll(Arrays.asList(job1, job2));
 
-    when(jobsRepository.findAll()).thenReturn(expectedJobs);
+    when(jobsRepository.findAllSummaries(any(Pageable.class)))
+        .thenReturn(new PageImpl<>(expectedJobs));
 
     // act
     MvcResult response =
@@ -68,12 +134,61 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, atLeastOnce()).findAll();
+    verify(jobsRepository, atLeastOnce())
+        .findAllSummaries(Pageable.unpaged(Sort.by(Sort.Direction.DESC, "id")));
+    verify(jobsRepository, never()).findAll();
     String expectedJson = mapper.writeValueAsString(expectedJobs);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_first_page_of_jobs() throws Exception {
+
+    // arrange
+
+    JobSummary job1 = JobSummary.builder().id(42L).status("running").logLines(1).build();
+    Pageable expectedPageable = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id"));
+    when(jobsRepository.findAllSummaries(expectedPageable))
+        .thenReturn(new PageImpl<>(List.of(job1), expectedPageable, 41));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/jobs")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    List<Map<String, Object>> content = (List<Map<String, Object>>) json.get("content");
+    assertEquals(1, content.size());
+    assertEquals(42, content.get(0).get("id"));
+    assertEquals(1, content.get(0).get("logLines"));
+    Map<String, Object> page = (Map<String, Object>) json.get("page");
+    assertEquals(41, page.get("totalElements"));
+    assertEquals(3, page.get("totalPages"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void page_of_jobs_ignores_sort_on_unknown_fields() throws Exception {
+
+    // arrange
+
+    Pageable expectedPageable =
+        PageRequest.of(2, 5, Sort.by(Sort.Order.asc("createdAt"), Sort.Order.desc("status")));
+    when(jobsRepository.findAllSummaries(expectedPageable))
+        .thenReturn(new PageImpl<>(List.of(), expectedPageable, 10));
+
+    // act
+    mockMvc
+        .perform(get("/api/jobs?page=2&size=5&sort=createdAt,asc&sort=log,desc&sort=status,desc"))
+        .andExpect(status().isOk());
+
+    // assert
+
+    verify(jobsRepository, times(1)).findAllSummaries(expectedPageable);
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void api_getJobLogById__admin_logged_in__returns_job_by_id() throws Exception {
@@ -119,11 +234,83 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals("Job with id 2 not found", json.get("message"));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_executor_stats() throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/executor")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(false, json.get("virtualThreads"));
+    assertEquals(4, json.get("poolSize"));
+    assertEquals(100, json.get("queueCapacity"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_job_metrics() throws Exception {
+    // arrange
+    Job job = jobService.runAsJob(TestJob.builder().sleepMs(0).build());
+    await().atMost(5, SECONDS).untilAsserted(() -> assertEquals("complete", job.getStatus()));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/metrics")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    JobMetricsReport report =
+        objectMapper.readValue(response.getResponse().getContentAsString(), JobMetricsReport.class);
+    assertTrue(report.getQueueWait().getCount() >= 1);
+    JobTypeMetrics testJobs =
+        report.getJobTypes().stream()
+            .filter(metrics -> metrics.getJobType().equals("TestJob"))
+            .findFirst()
+            .orElseThrow();
+    assertTrue(testJobs.getLaunched() >= 1);
+    assertTrue(testJobs.getSucceeded() >= 1);
+    assertTrue(testJobs.getRunTime().getCount() >= 1);
+    assertEquals(List.of(), report.getRunning());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_get_job_metrics() throws Exception {
+    mockMvc.perform(get("/api/jobs/metrics")).andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_log_compression_stats() throws Exception {
+    // arrange
+    when(jobLogArchivesRepository.getStats())
+        .thenReturn(
+            JobLogArchiveStats.builder()
+                .archivedLogs(2)
+                .rawBytes(1000)
+                .compressedBytes(250)
+                .build());
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/logs/compression")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(2, json.get("archivedLogs"));
+    assertEquals(750, json.get("bytesSaved"));
+    assertEquals(4.0, json.get("compressionRatio"));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_all_jobs() throws Exception {
 
-    doNothing().when(jobsRepository).deleteAll();
+    when(jobsRepository.findIds(Limit.of(500))).thenReturn(List.of(1L, 2L));
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
 
     // act
     MvcResult response =
@@ -134,7 +321,9 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteAll();
+    verify(jobLogLinesRepository, times(1)).deleteAllByJobIdIn(List.of(1L, 2L));
+    verify(jobLogArchivesRepository, times(1)).deleteAllByJobIdIn(List.of(1L, 2L));
+    verify(jobsRepository, times(1)).deleteAllByIdIn(List.of(1L, 2L));
     String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -157,6 +346,98 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(jobLog));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_admin_gets_log_rebuilt_from_lines() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 0, Limit.unlimited()))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(0).line("Hello").build(),
+                JobLogLine.builder().jobId(jobId).seq(1).line("Goodbye").build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", jobId))
+        .andExpect(status().isOk())
+        .andExpect(content().string("Hello\nGoodbye"))
+        .andExpect(header().string("X-Log-Cursor", "2"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_writes_lines_as_utf8_text() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 0, Limit.unlimited()))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(0).line("café").build(),
+                JobLogLine.builder().jobId(jobId).seq(1).line("naïve").build()));
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", jobId))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Log-Cursor", "2"))
+            .andReturn();
+
+    // Assert
+    assertEquals("text/plain;charset=UTF-8", response.getResponse().getContentType());
+    assertEquals("café\nnaïve", new String(response.getResponse().getContentAsByteArray(), UTF_8));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_admin_can_get_range_of_lines() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 10, Limit.of(2)))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(10).line("ten").build(),
+                JobLogLine.builder().jobId(jobId).seq(11).line("eleven").build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}?offset=10&limit=2", jobId))
+        .andExpect(status().isOk())
+        .andExpect(content().string("ten\neleven"))
+        .andExpect(header().string("X-Log-Cursor", "12"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_admin_can_get_tail_of_log() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobsRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findAllByJobIdOrderBySeqDesc(jobId, Limit.of(2)))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(41).line("last").build(),
+                JobLogLine.builder().jobId(jobId).seq(40).line("second to last").build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}?tail=2", jobId))
+        .andExpect(status().isOk())
+        .andExpect(content().string("second to last\nlast"))
+        .andExpect(header().string("X-Log-Cursor", "42"));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void test_getJobLogs_admin_can_get_empty_log() throws Exception {
@@ -173,6 +454,123 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(""));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_of_a_job_that_does_not_exist_is_not_found() throws Exception {
+    // Arrange
+    when(jobsRepository.findById(5L)).thenReturn(Optional.empty());
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}", 5L))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // Assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("EntityNotFoundException", json.get("type"));
+    assertEquals("Job with id 5 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_with_a_negative_limit_or_tail_is_a_bad_request() throws Exception {
+    // Act
+    MvcResult limit =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}?limit=-1", 5L))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+    MvcResult tail =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}?tail=-1", 5L))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // Assert
+    assertEquals("limit must not be negative: -1", responseToJson(limit).get("message"));
+    assertEquals("tail must not be negative: -1", responseToJson(tail).get("message"));
+    verify(jobsRepository, never()).findById(5L);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_log_of_finished_job() throws Exception {
+    // Arrange
+    when(jobsRepository.existsById(7L)).thenReturn(true);
+    when(jobsRepository.findStatusById(7L)).thenReturn(Optional.of("complete"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            7L, 0, Limit.of(500)))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(7L).seq(0).line("Hello").build(),
+                JobLogLine.builder().jobId(7L).seq(1).line("Goodbye").build()));
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/stream", 7L))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // Assert
+    mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+    assertEquals(
+        "id:0\nevent:log\ndata:Hello\n\nid:1\nevent:log\ndata:Goodbye\n\n"
+            + "event:status\ndata:complete\n\n",
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_new_lines_of_running_job() throws Exception {
+    // Arrange
+    when(jobsRepository.existsById(8L)).thenReturn(true);
+    when(jobsRepository.findStatusById(8L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            8L, 1, Limit.of(500)))
+        .thenReturn(List.of(JobLogLine.builder().jobId(8L).seq(1).line("second").build()));
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/stream", 8L).header("Last-Event-ID", "0"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    jobLogStreamService.publish(
+        8L,
+        List.of(
+            JobLogLine.builder().jobId(8L).seq(1).line("second").build(),
+            JobLogLine.builder().jobId(8L).seq(2).line("third").build()));
+    jobLogStreamService.finish(8L, "error");
+
+    // Assert
+    mockMvc.perform(asyncDispatch(response)).andExpect(status().isOk());
+    assertEquals(
+        "id:1\nevent:log\ndata:second\n\nid:2\nevent:log\ndata:third\n\n"
+            + "event:status\ndata:error\n\n",
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void stream_of_missing_job_returns_not_found() throws Exception {
+    // Arrange
+    when(jobsRepository.existsById(9L)).thenReturn(false);
+
+    // Act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/{id}/stream?after=3", 9L))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // Assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Job with id 9 not found", json.get("message"));
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_specific_job() throws Exception {
@@ -226,29 +624,7 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    User user = currentUserService.getUser();
-
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
-    Job jobCompleted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
-            .build();
-
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // act
     MvcResult response =
@@ -264,11 +640,15 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals("running", jobReturned.getStatus());
 
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(3, SECONDS)
+        .untilAsserted(() -> assertEquals(List.of("Hello World! from test job!"), loggedLines()));
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(2))
+                    .save(argThat((Job j) -> j.getStatus().equals("complete"))));
+    assertEquals(List.of("Hello World! from test job!", "Goodbye from test job!"), loggedLines());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -277,29 +657,7 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    User user = currentUserService.getUser();
-
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
-    Job jobFailed =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("error")
-            .log("Hello World! from test job!\nFail!")
-            .build();
-
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // act
     MvcResult response =
@@ -314,11 +672,751 @@ public class JobsControllerTests extends ControllerTestCase {
     assertEquals("running", jobReturned.getStatus());
 
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(3, SECONDS)
+        .untilAsserted(() -> assertEquals(List.of("Hello World! from test job!"), loggedLines()));
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(2))
+                    .save(argThat((Job j) -> j.getStatus().equals("error"))));
+    assertEquals(List.of("Hello World! from test job!", "Fail!"), loggedLines());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_running_test_job() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(21L).build();
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job saved = invocation.getArgument(0);
+              saved.setId(21L);
+              job.setStatus(saved.getStatus());
+              return saved;
+            });
+    when(jobsRepository.findById(21L)).thenReturn(Optional.of(job));
+    mockMvc
+        .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=60000").with(csrf()))
+        .andExpect(status().isOk());
+    await()
+        .atMost(3, SECONDS)
+        .untilAsserted(() -> assertEquals(List.of("Hello World! from test job!"), loggedLines()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=21").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 21 cancelled"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+    await().atMost(5, SECONDS).until(() -> "cancelled".equals(job.getStatus()));
+    assertEquals(List.of("Hello World! from test job!", "Job cancelled"), loggedLines());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_job_that_runs_past_its_timeout_is_stopped() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=60000&timeoutMs=200")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(200L, jobReturned.getTimeoutMs());
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(2))
+                    .save(argThat((Job j) -> j.getStatus().equals("timed_out"))));
+    assertEquals(
+        List.of("Hello World! from test job!", "Job timed out after 200 ms"), loggedLines());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_test_job_with_dedup_returns_the_identical_job_already_running()
+      throws Exception {
+    // arrange
+    Job running = Job.builder().id(40L).status("running").build();
+    when(jobsRepository.findByActiveDedupKey(any())).thenReturn(Optional.of(running));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=60000&dedup=true").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job returned = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(40L, returned.getId());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_test_job_with_dedup_can_reuse_one_that_completed_recently()
+      throws Exception {
+    // arrange
+    Job completed = Job.builder().id(41L).status("complete").build();
+    when(jobsRepository.findByActiveDedupKey(any())).thenReturn(Optional.empty());
+    when(jobsRepository.findFirstByDedupKeyAndStatusAndUpdatedAtAfterOrderByIdDesc(
+            any(), eq("complete"), any()))
+        .thenReturn(Optional.of(completed));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0&dedup=true"
+                        + "&reuseCompletedForMs=60000")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job returned = objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(41L, returned.getId());
+    assertEquals("complete", returned.getStatus());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void failing_test_job_is_retried() throws Exception {
+
+    // arrange
 
+    when(jobsRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    when(jobsRepository.startRetry(eq(0L), any())).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=true&sleepMs=0&maxAttempts=2&backoffMs=10")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(2, jobReturned.getRetryMaxAttempts());
+    assertEquals(10L, jobReturned.getRetryBackoffMs());
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .untilAsserted(
+            () ->
+                verify(jobsRepository, times(3))
+                    .save(argThat((Job j) -> j.getStatus().equals("error"))));
+    List<String> lines = loggedLines();
+    assertEquals("Attempt 1 of 2", lines.get(0));
+    assertEquals("Attempt 2 of 2", lines.get(4));
+    assertEquals("Fail!", lines.get(lines.size() - 1));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancelling_a_finished_job_does_nothing() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findById(22L))
+        .thenReturn(Optional.of(Job.builder().id(22L).status("complete").build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=22").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobsRepository, times(1)).requestCancel(22L);
+    String expectedJson =
+        mapper.writeValueAsString(Map.of("message", "Job with id 22 has already finished"));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void cancelling_a_missing_job_returns_404() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.findById(23L)).thenReturn(Optional.empty());
+
+    // act & assert
+    mockMvc.perform(post("/api/jobs/cancel?id=23").with(csrf())).andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_cancel_jobs() throws Exception {
+    mockMvc.perform(post("/api/jobs/cancel?id=1").with(csrf())).andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_schedules() throws Exception {
+
+    // arrange
+
+    JobSchedule nightly = nightlySchedule(1L);
+    when(jobSchedulesRepository.findAllByOrderByNameAsc()).thenReturn(List.of(nightly));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/schedules")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(List.of(nightly)), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_schedule_a_recurring_job() throws Exception {
+
+    // arrange
+
+    when(jobSchedulesRepository.findByName("nightly")).thenReturn(Optional.empty());
+    when(jobSchedulesRepository.save(any(JobSchedule.class)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/schedules")
+                    .param("name", "nightly")
+                    .param("cron", "0 0 2 * * *")
+                    .param("jobType", TestJob.class.getName())
+                    .param("params", "{\"fail\":false,\"sleepMs\":10}")
+                    .param("timeoutMs", "60000")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    ArgumentCaptor<JobSchedule> saved = ArgumentCaptor.forClass(JobSchedule.class);
+    verify(jobSchedulesRepository, times(1)).save(saved.capture());
+    JobSchedule schedule = saved.getValue();
+    assertEquals("nightly", schedule.getName());
+    assertEquals(TestJob.class.getName(), schedule.getJobType());
+    assertEquals("{\"fail\":false,\"sleepMs\":10}", schedule.getParams());
+    assertEquals(60000L, schedule.getTimeoutMs());
+    assertEquals(true, schedule.getEnabled());
+    assertEquals(2, schedule.getNextRunAt().getHour());
+    assertEquals(mapper.writeValueAsString(schedule), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void scheduling_a_job_with_an_invalid_cron_expression_returns_400() throws Exception {
+
+    // arrange
+
+    when(jobSchedulesRepository.findByName("nightly")).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/schedules")
+                    .param("name", "nightly")
+                    .param("cron", "every night")
+                    .param("jobType", TestJob.class.getName())
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("IllegalArgumentException", json.get("type"));
+    verify(jobSchedulesRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_update_a_schedule() throws Exception {
+
+    // arrange
+
+    JobSchedule nightly = nightlySchedule(1L);
+    JobSchedule incoming =
+        JobSchedule.builder()
+            .name("weekly")
+            .cron("0 0 3 * * SUN")
+            .jobType(TestJob.class.getName())
+            .params("{\"fail\":true}")
+            .timeoutMs(1000L)
+            .enabled(false)
+            .build();
+    when(jobSchedulesRepository.findById(1L)).thenReturn(Optional.of(nightly));
+    when(jobSchedulesRepository.findByName("weekly")).thenReturn(Optional.empty());
+    when(jobSchedulesRepository.save(any(JobSchedule.class)))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    mockMvc
+        .perform(
+            put("/api/jobs/schedules?id=1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(incoming))
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    verify(jobSchedulesRepository, times(1)).save(nightly);
+    assertEquals("weekly", nightly.getName());
+    assertEquals("0 0 3 * * SUN", nightly.getCron());
+    assertEquals("{\"fail\":true}", nightly.getParams());
+    assertEquals(1000L, nightly.getTimeoutMs());
+    assertEquals(false, nightly.getEnabled());
+    assertEquals(null, nightly.getNextRunAt());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void updating_a_schedule_without_enabled_returns_400() throws Exception {
+
+    // arrange
+
+    JobSchedule nightly = nightlySchedule(1L);
+    when(jobSchedulesRepository.findById(1L)).thenReturn(Optional.of(nightly));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                put("/api/jobs/schedules?id=1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\":\"nightly\",\"cron\":\"0 0 3 * * SUN\"}")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    verify(jobSchedulesRepository, never()).save(any());
+    assertEquals(true, nightly.getEnabled());
+    assertEquals(
+        "A schedule update needs enabled, true or false", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void updating_a_missing_schedule_returns_404() throws Exception {
+
+    // arrange
+
+    when(jobSchedulesRepository.findById(7L)).thenReturn(Optional.empty());
+
+    // act & assert
+    mockMvc
+        .perform(
+            put("/api/jobs/schedules?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(nightlySchedule(7L)))
+                .with(csrf()))
+        .andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_delete_a_schedule() throws Exception {
+
+    // arrange
+
+    JobSchedule nightly = nightlySchedule(1L);
+    when(jobSchedulesRepository.findById(1L)).thenReturn(Optional.of(nightly));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/jobs/schedules?id=1").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(jobSchedulesRepository, times(1)).delete(nightly);
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("JobSchedule with id 1 deleted", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void deleting_a_missing_schedule_returns_404() throws Exception {
+
+    // arrange
+
+    when(jobSchedulesRepository.findById(7L)).thenReturn(Optional.empty());
+
+    // act & assert
+    mockMvc
+        .perform(delete("/api/jobs/schedules?id=7").with(csrf()))
+        .andExpect(status().isNotFound());
+    verify(jobSchedulesRepository, never()).delete(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_run_a_schedule_now() throws Exception {
+
+    // arrange
+
+    JobSchedule nightly = nightlySchedule(1L);
+    when(jobSchedulesRepository.findById(1L)).thenReturn(Optional.of(nightly));
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job saved = invocation.getArgument(0);
+              saved.setId(31L);
+              return saved;
+            });
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/schedules/run?id=1").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(31L, jobReturned.getId());
+    assertEquals(TestJob.class.getName(), jobReturned.getJobType());
+    verify(jobSchedulesRepository, times(1)).recordRun(eq(1L), any(), eq(31L));
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    List.of("Hello World! from test job!", "Goodbye from test job!"),
+                    loggedLines()));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_manage_schedules() throws Exception {
+    mockMvc.perform(get("/api/jobs/schedules")).andExpect(status().isForbidden());
+    mockMvc
+        .perform(post("/api/jobs/schedules/run?id=1").with(csrf()))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_a_pipeline() throws Exception {
+
+    // arrange
+
+    List<Job> saved = new CopyOnWriteArrayList<>();
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              if (job.getId() == 0) {
+                job.setId(31L + saved.size());
+                saved.add(job);
+              }
+              return job;
+            });
+    String steps =
+        """
+        [{"name": "import", "jobType": "%1$s"},
+         {"name": "aggregate", "jobType": "%1$s", "params": "{\\"sleepMs\\": 10}",
+          "dependsOn": ["import"]}]
+        """
+            .formatted(TestJob.class.getName());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/pipeline")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(steps)
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(31L, jobReturned.getId());
+    await().atMost(10, SECONDS).until(() -> "complete".equals(saved.get(0).getStatus()));
+    assertEquals(3, saved.size());
+    assertEquals("import", saved.get(1).getStepName());
+    assertEquals(31L, saved.get(1).getParentId());
+    assertEquals("complete", saved.get(1).getStatus());
+    assertEquals("aggregate", saved.get(2).getStepName());
+    assertEquals("{\"fail\":false,\"sleepMs\":10}", saved.get(2).getParams());
+    assertEquals("complete", saved.get(2).getStatus());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_pipeline_with_a_step_that_cannot_be_built_is_a_bad_request()
+      throws Exception {
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/pipeline")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"name\": \"import\", \"jobType\": \"NoSuchJob\"}]")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(
+        "Step import cannot build a job of type NoSuchJob: NoSuchJob", json.get("message"));
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_list_the_steps_of_a_pipeline() throws Exception {
+
+    // arrange
+
+    List<JobSummary> steps =
+        List.of(
+            JobSummary.builder()
+                .id(32L)
+                .parentId(31L)
+                .stepName("import")
+                .status("complete")
+                .build(),
+            JobSummary.builder().id(33L).parentId(31L).stepName("purge").status("skipped").build());
+    when(jobsRepository.findChildSummaries(31L)).thenReturn(steps);
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/steps?id=31")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(steps), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_launch_pipelines_or_list_their_steps() throws Exception {
+    mockMvc.perform(get("/api/jobs/steps?id=31")).andExpect(status().isForbidden());
+    mockMvc
+        .perform(
+            post("/api/jobs/launch/pipeline")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]")
+                .with(csrf()))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_an_import() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(41L).status("running").build();
+    MockMultipartFile file =
+        new MockMultipartFile(
+            "file", "reviews.json", "application/json", "[{\"itemId\": 1}]".getBytes());
+    when(bulkImportService.launchImport(
+            eq(ImportTable.MENU_ITEM_REVIEWS), eq(ImportFormat.JSON), any()))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/jobs/launch/import")
+                    .file(file)
+                    .param("table", "MENU_ITEM_REVIEWS")
+                    .param("format", "JSON")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void an_import_is_of_a_csv_file_unless_it_says_otherwise() throws Exception {
+
+    // arrange
+
+    MockMultipartFile file = new MockMultipartFile("file", "name,station\n".getBytes());
+
+    // act
+    mockMvc
+        .perform(
+            multipart("/api/jobs/launch/import")
+                .file(file)
+                .param("table", "MENU_ITEMS")
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    verify(bulkImportService).launchImport(eq(ImportTable.MENU_ITEMS), eq(ImportFormat.CSV), any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_launch_imports() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/jobs/launch/import")
+                .file(new MockMultipartFile("file", new byte[0]))
+                .param("table", "MENU_ITEMS")
+                .with(csrf()))
+        .andExpect(status().isForbidden());
+    verify(bulkImportService, never()).launchImport(any(), any(), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_an_export() throws Exception {
+
+    // arrange
+
+    Job job = Job.builder().id(42L).status("running").build();
+    when(bulkExportService.launchExport(ExportTable.JOBS, ExportFormat.NDJSON)).thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/export")
+                    .param("table", "JOBS")
+                    .param("format", "NDJSON")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void an_export_is_to_a_csv_file_unless_it_says_otherwise() throws Exception {
+    mockMvc
+        .perform(post("/api/jobs/launch/export").param("table", "ARTICLES").with(csrf()))
+        .andExpect(status().isOk());
+    verify(bulkExportService).launchExport(ExportTable.ARTICLES, ExportFormat.CSV);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_download_an_export() throws Exception {
+
+    // arrange
+
+    Path file = Files.write(tempDir.resolve("articles-42.csv.gz"), "0123456789".getBytes());
+    when(bulkExportService.findExport(42L)).thenReturn(Optional.of(file));
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/jobs/exports/42"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Type", "application/gzip"))
+        .andExpect(
+            header().string("Content-Disposition", "attachment; filename=\"articles-42.csv.gz\""))
+        .andExpect(header().string("Accept-Ranges", "bytes"))
+        .andExpect(content().string("0123456789"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void a_download_can_resume_part_way_through_an_export() throws Exception {
+
+    // arrange
+
+    Path file = Files.write(tempDir.resolve("articles-42.csv.gz"), "0123456789".getBytes());
+    when(bulkExportService.findExport(42L)).thenReturn(Optional.of(file));
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/jobs/exports/42").header("Range", "bytes=6-"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string("Content-Range", "bytes 6-9/10"))
+        .andExpect(content().string("6789"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void downloading_an_export_that_is_not_there_is_not_found() throws Exception {
+
+    // arrange
+
+    when(bulkExportService.findExport(43L)).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/exports/43")).andExpect(status().isNotFound()).andReturn();
+
+    // assert
+    assertEquals(
+        Map.of(
+            "message", "Job with id 43 has no export on this node; it may not have finished yet"),
+        mapper.readValue(response.getResponse().getContentAsString(), Map.class));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void users_cannot_launch_or_download_exports() throws Exception {
+    mockMvc
+        .perform(post("/api/jobs/launch/export").param("table", "JOBS").with(csrf()))
+        .andExpect(status().isForbidden());
+    mockMvc.perform(get("/api/jobs/exports/42")).andExpect(status().isForbidden());
+    verifyNoInteractions(bulkExportService);
+  }
+
+  private JobSchedule nightlySchedule(long id) {
+    return JobSchedule.builder()
+        .id(id)
+        .name("nightly")
+        .cron("0 0 2 * * *")
+        .jobType(TestJob.class.getName())
+        .params("{\"fail\":false,\"sleepMs\":0}")
+        .enabled(true)
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<String> loggedLines() {
+    ArgumentCaptor<Iterable<JobLogLine>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(jobLogLinesRepository, atLeast(0)).saveAll(captor.capture());
+    List<String> lines = new ArrayList<>();
+    captor.getAllValues().forEach(batch -> batch.forEach(l -> lines.add(l.getLine())));
+    return lines;
   }
 }
@@ -15,30 +15,38 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManager;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = MenuItemReviewController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, JsonStreamingService.class})
 public class MenuItemReviewControllerTests extends ControllerTestCase {
 
   @MockBean MenuItemReviewRepository menuItemReviewRepository;
 
   @MockBean UserRepository userRepository;
 
+  @MockBean EntityManager entityManager;
+
   @Test
   public void logged_out_users_cannot_get_all() throws Exception {
     mockMvc
@@ -154,7 +162,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
     ArrayList<MenuItemReview> expectedMenuItemReviews = new ArrayList<>();
     expectedMenuItemReviews.addAll(Arrays.asList(menuItemReview1, menuItemReview2));
 
-    when(menuItemReviewRepository.findAll()).thenReturn(expectedMenuItemReviews);
+    when(menuItemReviewRepository.streamAllBy()).thenReturn(expectedMenuItemReviews.stream());
 
     // act
     MvcResult response =
@@ -162,7 +170,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(menuItemReviewRepository, times(1)).findAll();
+    verify(menuItemReviewRepository, times(1)).streamAllBy();
     String expectedJson = mapper.writeValueAsString(expectedMenuItemReviews);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -343,4 +351,31 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("MenuItemReview with id 7 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_a_page_of_menu_item_reviews_sorted_by_dateReviewed()
+      throws Exception {
+    // arrange
+    LocalDateTime date = LocalDateTime.parse("2022-01-03T00:00:00");
+    MenuItemReview row3 = MenuItemReview.builder().id(3L).itemId(1).dateReviewed(date).build();
+    MenuItemReview row4 = MenuItemReview.builder().id(4L).itemId(1).dateReviewed(date).build();
+    MenuItemReview row5 = MenuItemReview.builder().id(5L).itemId(1).dateReviewed(date).build();
+    when(menuItemReviewRepository.findById(eq(3L))).thenReturn(Optional.of(row3));
+    when(menuItemReviewRepository.findBy(any(), any())).thenReturn(List.of(row4, row5));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/menuitemreviews/all?limit=1&after=3&sort=dateReviewed,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(menuItemReviewRepository)
+        .findBy(
+            eq(new KeysetSpecification<>("dateReviewed", Sort.Direction.DESC, date, 3L)), any());
+    String expectedJson = mapper.writeValueAsString(new CursorPage<>(List.of(row4), 4L));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
 }
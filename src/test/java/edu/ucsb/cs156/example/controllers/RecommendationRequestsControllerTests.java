@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -15,16 +16,21 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.RecommendationRequests;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -484,4 +490,30 @@ public class RecommendationRequestsControllerTests extends ControllerTestCase {
     org.assertj.core.api.Assertions.assertThat(body)
         .contains("RecommendationRequests with id 99 not found");
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_a_page_of_recommendation_requests_sorted_by_dateNeeded()
+      throws Exception {
+    // arrange
+    LocalDateTime date = LocalDateTime.parse("2022-01-03T00:00:00");
+    RecommendationRequests row3 = RecommendationRequests.builder().id(3L).dateNeeded(date).build();
+    RecommendationRequests row4 = RecommendationRequests.builder().id(4L).dateNeeded(date).build();
+    RecommendationRequests row5 = RecommendationRequests.builder().id(5L).dateNeeded(date).build();
+    when(repository.findById(eq(3L))).thenReturn(Optional.of(row3));
+    when(repository.findBy(any(), any())).thenReturn(List.of(row4, row5));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recommendationrequests/all?limit=1&after=3&sort=dateNeeded,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(repository)
+        .findBy(eq(new KeysetSpecification<>("dateNeeded", Sort.Direction.DESC, date, 3L)), any());
+    String expectedJson = mapper.writeValueAsString(new CursorPage<>(List.of(row4), 4L));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
 }
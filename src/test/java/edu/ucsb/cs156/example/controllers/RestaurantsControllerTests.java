@@ -3,6 +3,8 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -14,11 +16,20 @@ import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
@@ -28,13 +39,24 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = RestaurantsController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, JsonResponseCache.class})
 public class RestaurantsControllerTests extends ControllerTestCase {
 
   @MockitoBean RestaurantRepository restaurantRepository;
 
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean TableVersionService tableVersionService;
+
+  private static final AtomicLong versions = new AtomicLong();
+
+  @BeforeEach
+  public void giveTheTableAVersionOfItsOwn() {
+    // the JSON served is cached by version, and real versions are never negative, so no test is
+    // served the JSON another one left behind
+    when(tableVersionService.getVersion("restaurants")).thenReturn(versions.decrementAndGet());
+  }
+
   // Authorization tests for /api/phones/admin/all
 
   @Test
@@ -163,6 +185,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
     // assert
     verify(restaurantRepository, times(1)).save(restaurant1);
+    verify(tableVersionService, times(1)).bump("restaurants");
     String expectedJson = mapper.writeValueAsString(restaurant1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -187,6 +210,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     // assert
     verify(restaurantRepository, times(1)).findById(15L);
     verify(restaurantRepository, times(1)).delete(any());
+    verify(tableVersionService, times(1)).bump("restaurants");
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -277,4 +301,165 @@ public class RestaurantsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("Restaurant with id 67 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_list_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("restaurants")).thenReturn("\"restaurants-3\"");
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/restaurants/all").header("If-None-Match", "\"restaurants-3\""))
+        .andExpect(status().isNotModified());
+    verify(restaurantRepository, never()).findAll();
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_row_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("restaurants")).thenReturn("\"restaurants-3\"");
+    when(restaurantRepository.findById(7L))
+        .thenReturn(Optional.of(Restaurant.builder().id(7L).build()));
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/restaurants?id=7").header("If-None-Match", "\"restaurants-3\""))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_a_missing_row_is_not_found() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("restaurants")).thenReturn("\"restaurants-3\"");
+    when(restaurantRepository.findById(7L)).thenReturn(Optional.empty());
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/restaurants?id=7").header("If-None-Match", "\"restaurants-3\""))
+        .andExpect(status().isNotFound())
+        .andExpect(header().doesNotExist("ETag"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void the_list_is_serialized_once_and_sent_gzipped_to_clients_that_accept_it()
+      throws Exception {
+    // arrange
+    ArrayList<Restaurant> restaurants = new ArrayList<>();
+    for (long id = 1; id <= 40; id++) {
+      restaurants.add(
+          Restaurant.builder().id(id).name("Restaurant " + id).description("Mexican").build());
+    }
+    when(restaurantRepository.findAll()).thenReturn(restaurants);
+
+    // act
+    MvcResult plain =
+        mockMvc.perform(get("/api/restaurants/all")).andExpect(status().isOk()).andReturn();
+    MvcResult gzipped =
+        mockMvc
+            .perform(get("/api/restaurants/all").header("Accept-Encoding", "gzip, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andReturn();
+
+    // assert
+    verify(restaurantRepository, times(1)).findAll();
+    String expectedJson = mapper.writeValueAsString(restaurants);
+    assertEquals(expectedJson, plain.getResponse().getContentAsString());
+    try (InputStream in =
+        new GZIPInputStream(
+            new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+      assertEquals(expectedJson, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void the_gzipped_and_the_plain_list_each_have_an_etag_of_their_own() throws Exception {
+    // arrange
+    ArrayList<Restaurant> restaurants = new ArrayList<>();
+    for (long id = 1; id <= 40; id++) {
+      restaurants.add(
+          Restaurant.builder().id(id).name("Restaurant " + id).description("Mexican").build());
+    }
+    when(restaurantRepository.findAll()).thenReturn(restaurants);
+    when(tableVersionService.getETag("restaurants")).thenReturn("\"restaurants-3\"");
+    when(tableVersionService.getETag("restaurants", "gzip")).thenReturn("\"restaurants-3-gzip\"");
+
+    // act
+    String plainETag =
+        mockMvc
+            .perform(get("/api/restaurants/all"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+    String gzipETag =
+        mockMvc
+            .perform(get("/api/restaurants/all").header("Accept-Encoding", "gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+    // assert
+    assertEquals("\"restaurants-3\"", plainETag);
+    assertEquals("\"restaurants-3-gzip\"", gzipETag);
+    mockMvc
+        .perform(get("/api/restaurants/all").header("If-None-Match", plainETag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string("ETag", plainETag))
+        .andExpect(header().string("Vary", "Accept-Encoding"))
+        .andExpect(content().bytes(new byte[0]));
+    mockMvc
+        .perform(
+            get("/api/restaurants/all")
+                .header("Accept-Encoding", "gzip")
+                .header("If-None-Match", gzipETag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string("ETag", gzipETag));
+    // a client holding the body in one coding is not told it is current in the other
+    mockMvc
+        .perform(get("/api/restaurants/all").header("If-None-Match", gzipETag))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", plainETag));
+    mockMvc
+        .perform(
+            get("/api/restaurants/all")
+                .header("Accept-Encoding", "gzip")
+                .header("If-None-Match", plainETag))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", gzipETag));
+    verify(restaurantRepository, times(1)).findAll();
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void the_list_is_serialized_again_after_a_write() throws Exception {
+    // arrange
+    Restaurant tacoBell = Restaurant.builder().id(15L).name("Taco Bell").build();
+    Restaurant mcDonalds = Restaurant.builder().id(16L).name("McDonalds").build();
+    // as in TableVersionService, a bump moves the version of the table on at once
+    AtomicLong version = new AtomicLong();
+    when(tableVersionService.getVersion("restaurants")).thenAnswer(invocation -> version.get());
+    doAnswer(invocation -> version.incrementAndGet()).when(tableVersionService).bump("restaurants");
+    when(restaurantRepository.findAll()).thenReturn(List.of(tacoBell, mcDonalds));
+    mockMvc.perform(get("/api/restaurants/all")).andExpect(status().isOk());
+    when(restaurantRepository.findById(eq(15L))).thenReturn(Optional.of(tacoBell));
+    when(restaurantRepository.findAll()).thenReturn(List.of(mcDonalds));
+
+    // act
+    mockMvc.perform(delete("/api/restaurants?id=15").with(csrf())).andExpect(status().isOk());
+    MvcResult response =
+        mockMvc.perform(get("/api/restaurants/all")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(List.of(mcDonalds)), response.getResponse().getContentAsString());
+  }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -14,12 +15,18 @@ import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
+import edu.ucsb.cs156.example.services.cache.UCSBDatesCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
@@ -29,13 +36,26 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, JsonResponseCache.class})
 public class UCSBDatesControllerTests extends ControllerTestCase {
 
   @MockitoBean UCSBDateRepository ucsbDateRepository;
 
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean TableVersionService tableVersionService;
+
+  private static final AtomicLong versions = new AtomicLong();
+
+  @BeforeEach
+  public void giveTheTableAVersionOfItsOwn() {
+    // the JSON served is cached by version, and real versions are never negative, so no test is
+    // served the JSON another one left behind
+    when(tableVersionService.getVersion("ucsbdates")).thenReturn(versions.decrementAndGet());
+  }
+
+  @MockitoBean UCSBDatesCache ucsbDatesCache;
+
   // Authorization tests for /api/ucsbdates/admin/all
 
   @Test
@@ -90,7 +110,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
             .localDateTime(ldt)
             .build();
 
-    when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+    when(ucsbDatesCache.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
 
     // act
     MvcResult response =
@@ -98,7 +118,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDateRepository, times(1)).findById(eq(7L));
+    verify(ucsbDatesCache, times(1)).findById(eq(7L));
     String expectedJson = mapper.writeValueAsString(ucsbDate);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -110,7 +130,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // arrange
 
-    when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.empty());
+    when(ucsbDatesCache.findById(eq(7L))).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -118,7 +138,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDateRepository, times(1)).findById(eq(7L));
+    verify(ucsbDatesCache, times(1)).findById(eq(7L));
     Map<String, Object> json = responseToJson(response);
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("UCSBDate with id 7 not found", json.get("message"));
@@ -150,7 +170,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     ArrayList<UCSBDate> expectedDates = new ArrayList<>();
     expectedDates.addAll(Arrays.asList(ucsbDate1, ucsbDate2));
 
-    when(ucsbDateRepository.findAll()).thenReturn(expectedDates);
+    when(ucsbDatesCache.findAll()).thenReturn(expectedDates);
 
     // act
     MvcResult response =
@@ -158,7 +178,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDateRepository, times(1)).findAll();
+    verify(ucsbDatesCache, times(1)).findAll();
     String expectedJson = mapper.writeValueAsString(expectedDates);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -191,6 +211,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbDateRepository, times(1)).save(ucsbDate1);
+    verify(tableVersionService, times(1)).bump("ucsbdates");
     String expectedJson = mapper.writeValueAsString(ucsbDate1);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -222,6 +243,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     // assert
     verify(ucsbDateRepository, times(1)).findById(15L);
     verify(ucsbDateRepository, times(1)).delete(any());
+    verify(tableVersionService, times(1)).bump("ucsbdates");
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -289,6 +311,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     // assert
     verify(ucsbDateRepository, times(1)).findById(67L);
     verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+    verify(tableVersionService, times(1)).bump("ucsbdates");
     String responseString = response.getResponse().getContentAsString();
     assertEquals(requestBody, responseString);
   }
@@ -328,4 +351,85 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDate with id 67 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_list_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdates")).thenReturn("\"ucsbdates-3\"");
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/ucsbdates/all").header("If-None-Match", "\"ucsbdates-3\""))
+        .andExpect(status().isNotModified());
+    verify(ucsbDatesCache, never()).findAll();
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_row_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdates")).thenReturn("\"ucsbdates-3\"");
+    when(ucsbDatesCache.findById(7L)).thenReturn(Optional.of(UCSBDate.builder().id(7L).build()));
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"ucsbdates-3\""))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_a_missing_row_is_not_found() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdates")).thenReturn("\"ucsbdates-3\"");
+    when(ucsbDatesCache.findById(7L)).thenReturn(Optional.empty());
+
+    // act and assert
+    mockMvc
+        .perform(get("/api/ucsbdates?id=7").header("If-None-Match", "\"ucsbdates-3\""))
+        .andExpect(status().isNotFound())
+        .andExpect(header().doesNotExist("ETag"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_the_dates_of_a_quarter() throws Exception {
+    // arrange
+    UCSBDate firstDay =
+        UCSBDate.builder()
+            .id(1L)
+            .name("firstDayOfClasses")
+            .quarterYYYYQ("20222")
+            .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+            .build();
+    when(ucsbDatesCache.findAllByQuarterYYYYQ("20222")).thenReturn(List.of(firstDay));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdates/quarter?quarterYYYYQ=20222"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(ucsbDateRepository, never()).findAllByQuarterYYYYQ(any());
+    assertEquals(
+        mapper.writeValueAsString(List.of(firstDay)), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_quarter_has_not_changed()
+      throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdates")).thenReturn("\"ucsbdates-3\"");
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsbdates/quarter?quarterYYYYQ=20222")
+                .header("If-None-Match", "\"ucsbdates-3\""))
+        .andExpect(status().isNotModified());
+  }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -14,11 +15,16 @@ import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
+import edu.ucsb.cs156.example.services.cache.UCSBDiningCommonsCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
@@ -28,13 +34,27 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = UCSBDiningCommonsController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, JsonResponseCache.class})
 public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
   @MockitoBean UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean TableVersionService tableVersionService;
+
+  private static final AtomicLong versions = new AtomicLong();
+
+  @BeforeEach
+  public void giveTheTableAVersionOfItsOwn() {
+    // the JSON served is cached by version, and real versions are never negative, so no test is
+    // served the JSON another one left behind
+    when(tableVersionService.getVersion("ucsbdiningcommons"))
+        .thenReturn(versions.decrementAndGet());
+  }
+
+  @MockitoBean UCSBDiningCommonsCache ucsbDiningCommonsCache;
+
   // Authorization tests for /api/ucsbdiningcommons/admin/all
 
   @Test
@@ -92,7 +112,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
             .longitude(-119.85277)
             .build();
 
-    when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(commons));
+    when(ucsbDiningCommonsCache.findById(eq("carrillo"))).thenReturn(Optional.of(commons));
 
     // act
     MvcResult response =
@@ -103,7 +123,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDiningCommonsRepository, times(1)).findById(eq("carrillo"));
+    verify(ucsbDiningCommonsCache, times(1)).findById(eq("carrillo"));
     String expectedJson = mapper.writeValueAsString(commons);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -115,7 +135,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+    when(ucsbDiningCommonsCache.findById(eq("munger-hall"))).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -126,7 +146,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDiningCommonsRepository, times(1)).findById(eq("munger-hall"));
+    verify(ucsbDiningCommonsCache, times(1)).findById(eq("munger-hall"));
     Map<String, Object> json = responseToJson(response);
     assertEquals("EntityNotFoundException", json.get("type"));
     assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
@@ -163,7 +183,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     ArrayList<UCSBDiningCommons> expectedCommons = new ArrayList<>();
     expectedCommons.addAll(Arrays.asList(carrillo, dlg));
 
-    when(ucsbDiningCommonsRepository.findAll()).thenReturn(expectedCommons);
+    when(ucsbDiningCommonsCache.findAll()).thenReturn(expectedCommons);
 
     // act
     MvcResult response =
@@ -171,7 +191,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbDiningCommonsRepository, times(1)).findAll();
+    verify(ucsbDiningCommonsCache, times(1)).findAll();
     String expectedJson = mapper.writeValueAsString(expectedCommons);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -206,6 +226,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+    verify(tableVersionService, times(1)).bump("ucsbdiningcommons");
     String expectedJson = mapper.writeValueAsString(ortega);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -239,6 +260,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     // assert
     verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
     verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+    verify(tableVersionService, times(1)).bump("ucsbdiningcommons");
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -354,4 +376,50 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_list_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdiningcommons")).thenReturn("\"ucsbdiningcommons-3\"");
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsbdiningcommons/all").header("If-None-Match", "\"ucsbdiningcommons-3\""))
+        .andExpect(status().isNotModified());
+    verify(ucsbDiningCommonsCache, never()).findAll();
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_row_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdiningcommons")).thenReturn("\"ucsbdiningcommons-3\"");
+    when(ucsbDiningCommonsCache.findById("de-la-guerra"))
+        .thenReturn(Optional.of(UCSBDiningCommons.builder().code("de-la-guerra").build()));
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsbdiningcommons?code=de-la-guerra")
+                .header("If-None-Match", "\"ucsbdiningcommons-3\""))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_a_missing_row_is_not_found() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsbdiningcommons")).thenReturn("\"ucsbdiningcommons-3\"");
+    when(ucsbDiningCommonsCache.findById("de-la-guerra")).thenReturn(Optional.empty());
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsbdiningcommons?code=de-la-guerra")
+                .header("If-None-Match", "\"ucsbdiningcommons-3\""))
+        .andExpect(status().isNotFound())
+        .andExpect(header().doesNotExist("ETag"));
+  }
 }
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -14,16 +15,20 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.CursorPage;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -315,4 +320,32 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBDiningCommonsMenuItem with id 2 not found", json.get("message"));
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void logged_in_user_can_get_a_page_of_menu_items_sorted_by_name() throws Exception {
+    // arrange
+    String name = "Tofu Banh Mi";
+    UCSBDiningCommonsMenuItem row3 =
+        UCSBDiningCommonsMenuItem.builder().id(3L).diningCommonsCode("ortega").name(name).build();
+    UCSBDiningCommonsMenuItem row4 =
+        UCSBDiningCommonsMenuItem.builder().id(4L).diningCommonsCode("ortega").name(name).build();
+    UCSBDiningCommonsMenuItem row5 =
+        UCSBDiningCommonsMenuItem.builder().id(5L).diningCommonsCode("ortega").name(name).build();
+    when(repository.findById(eq(3L))).thenReturn(Optional.of(row3));
+    when(repository.findBy(any(), any())).thenReturn(List.of(row4, row5));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/ucsbdiningcommonsmenuitems/all?limit=1&after=3&sort=name,desc"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(repository)
+        .findBy(eq(new KeysetSpecification<>("name", Sort.Direction.DESC, name, 3L)), any());
+    String expectedJson = mapper.writeValueAsString(new CursorPage<>(List.of(row4), 4L));
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
 }
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -10,17 +11,23 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.cache.JsonResponseCache;
+import edu.ucsb.cs156.example.services.cache.UCSBOrganizationCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -30,13 +37,26 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = UCSBOrganizationController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, JsonResponseCache.class})
 public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
   @MockBean UCSBOrganizationRepository ucsbOrganizationRepository;
 
   @MockBean UserRepository userRepository;
 
+  @MockBean TableVersionService tableVersionService;
+
+  private static final AtomicLong versions = new AtomicLong();
+
+  @BeforeEach
+  public void giveTheTableAVersionOfItsOwn() {
+    // the JSON served is cached by version, and real versions are never negative, so no test is
+    // served the JSON another one left behind
+    when(tableVersionService.getVersion("ucsborganization")).thenReturn(versions.decrementAndGet());
+  }
+
+  @MockBean UCSBOrganizationCache ucsbOrganizationCache;
+
   // Authorization tests for /api/ucsborganizations/admin/all
 
   @Test
@@ -132,7 +152,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     ArrayList<UCSBOrganization> expectedOrganizations = new ArrayList<>();
     expectedOrganizations.addAll(Arrays.asList(fencing, gsac));
 
-    when(ucsbOrganizationRepository.findAll()).thenReturn(expectedOrganizations);
+    when(ucsbOrganizationCache.findAll()).thenReturn(expectedOrganizations);
 
     // act
     MvcResult response =
@@ -140,7 +160,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(ucsbOrganizationRepository, times(1)).findAll();
+    verify(ucsbOrganizationCache, times(1)).findAll();
     String expectedJson = mapper.writeValueAsString(expectedOrganizations);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -174,6 +194,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
     // assert
     verify(ucsbOrganizationRepository, times(1)).save(fencing);
+    verify(tableVersionService, times(1)).bump("ucsborganization");
     String expectedJson = mapper.writeValueAsString(fencing);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -194,7 +215,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             .inactive(false)
             .build();
 
-    when(ucsbOrganizationRepository.findById(eq("GSAC"))).thenReturn(Optional.of(gsac_ucsb));
+    when(ucsbOrganizationCache.findById(eq("GSAC"))).thenReturn(Optional.of(gsac_ucsb));
 
     // act
     MvcResult response =
@@ -204,7 +225,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
             .andReturn();
 
     // assert
-    verify(ucsbOrganizationRepository, times(1)).findById("GSAC");
+    verify(ucsbOrganizationCache, times(1)).findById("GSAC");
     String expectedJson = mapper.writeValueAsString(gsac_ucsb);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -215,7 +236,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
   public void logged_in_user_can_get_by_id_when_the_id_does_not_exist() throws Exception {
     // arrange
 
-    when(ucsbOrganizationRepository.findById(eq("NOTEXIST"))).thenReturn(Optional.empty());
+    when(ucsbOrganizationCache.findById(eq("NOTEXIST"))).thenReturn(Optional.empty());
 
     // act
     mockMvc
@@ -265,6 +286,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     // assert
     verify(ucsbOrganizationRepository, times(1)).findById("GSAC");
     verify(ucsbOrganizationRepository, times(1)).save(orgEdited);
+    verify(tableVersionService, times(1)).bump("ucsborganization");
     String responseString = response.getResponse().getContentAsString();
     assertEquals(requestBody, responseString);
   }
@@ -324,6 +346,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
     // assert
     verify(ucsbOrganizationRepository, times(1)).findById("GSAC");
     verify(ucsbOrganizationRepository, times(1)).delete(gsac);
+    verify(tableVersionService, times(1)).bump("ucsborganization");
 
     Map<String, Object> json = responseToJson(response);
     assertEquals("UCSBOrganization with id GSAC deleted", json.get("message"));
@@ -341,4 +364,50 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         .perform(delete("/api/ucsborganizations?orgCode=NOTEXIST").with(csrf()))
         .andExpect(status().isNotFound());
   }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_list_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsborganization")).thenReturn("\"ucsborganization-3\"");
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsborganizations/all").header("If-None-Match", "\"ucsborganization-3\""))
+        .andExpect(status().isNotModified());
+    verify(ucsbOrganizationCache, never()).findAll();
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_the_row_has_not_changed() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsborganization")).thenReturn("\"ucsborganization-3\"");
+    when(ucsbOrganizationCache.findById("ZPR"))
+        .thenReturn(Optional.of(UCSBOrganization.builder().orgCode("ZPR").build()));
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsborganizations?orgCode=ZPR")
+                .header("If-None-Match", "\"ucsborganization-3\""))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void a_client_with_the_current_etag_is_told_a_missing_row_is_not_found() throws Exception {
+    // arrange
+    when(tableVersionService.getETag("ucsborganization")).thenReturn("\"ucsborganization-3\"");
+    when(ucsbOrganizationCache.findById("ZPR")).thenReturn(Optional.empty());
+
+    // act and assert
+    mockMvc
+        .perform(
+            get("/api/ucsborganizations?orgCode=ZPR")
+                .header("If-None-Match", "\"ucsborganization-3\""))
+        .andExpect(status().isNotFound())
+        .andExpect(header().doesNotExist("ETag"));
+  }
 }
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -10,7 +11,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.JsonStreamingService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
+import jakarta.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.Arrays;
 import org.junit.jupiter.api.Test;
@@ -21,11 +24,13 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(controllers = UsersController.class)
-@Import(TestConfig.class)
+@Import({TestConfig.class, JsonStreamingService.class})
 public class UsersControllerTests extends ControllerTestCase {
 
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean EntityManager entityManager;
+
   @Test
   public void users__logged_out() throws Exception {
     mockMvc.perform(get("/api/admin/users")).andExpect(status().is(403));
@@ -50,7 +55,7 @@ public class UsersControllerTests extends ControllerTestCase {
     ArrayList<User> expectedUsers = new ArrayList<>();
     expectedUsers.addAll(Arrays.asList(u1, u2, u));
 
-    when(userRepository.findAll()).thenReturn(expectedUsers);
+    when(userRepository.streamAllBy()).thenReturn(expectedUsers.stream());
     String expectedJson = mapper.writeValueAsString(expectedUsers);
 
     // act
@@ -60,7 +65,8 @@ public class UsersControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(userRepository, times(1)).findAll();
+    verify(userRepository, times(1)).streamAllBy();
+    verify(entityManager, times(3)).detach(any(User.class));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.entities;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class JobTests {
+
+  @Test
+  public void dedup_key_stays_active_while_the_job_is_queued_or_running() {
+    for (String status : new String[] {"queued", "running"}) {
+      Job job = Job.builder().status(status).dedupKey("key").activeDedupKey("key").build();
+
+      job.releaseDedupKeyOnceFinished();
+
+      assertEquals("key", job.getActiveDedupKey());
+    }
+  }
+
+  @Test
+  public void dedup_key_is_released_once_the_job_has_finished() {
+    for (String status : new String[] {"complete", "error", "cancelled", "rejected"}) {
+      Job job = Job.builder().status(status).dedupKey("key").activeDedupKey("key").build();
+
+      job.releaseDedupKeyOnceFinished();
+
+      assertNull(job.getActiveDedupKey());
+      assertEquals("key", job.getDedupKey());
+    }
+  }
+}
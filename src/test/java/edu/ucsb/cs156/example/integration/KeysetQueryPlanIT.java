@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.KeysetSpecification;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Checks that the database reads a page of rows sorted by a key by seeking the index on the key and
+ * id to the row the page comes after, rather than by scanning the table from its start.
+ */
+@SpringBootTest(
+    properties = {
+      "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+          + "edu.ucsb.cs156.example.integration.KeysetQueryPlanIT$LastStatement"
+    })
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class KeysetQueryPlanIT {
+  @Autowired MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @MockitoBean UserRepository userRepository;
+
+  private final LocalDateTime date = LocalDateTime.parse("2024-01-02T03:04:05");
+
+  /** Remembers the last statement Hibernate prepared, so that it can be explained. */
+  public static class LastStatement implements StatementInspector {
+    static String sql;
+
+    @Override
+    public String inspect(String sql) {
+      LastStatement.sql = sql;
+      return sql;
+    }
+  }
+
+  @BeforeEach
+  public void setup() {
+    List<MenuItemReview> reviews = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      reviews.add(
+          MenuItemReview.builder()
+              .itemId(i % 10)
+              .reviewerEmail("test@test.com")
+              .stars(5)
+              .dateReviewed(i % 100 == 0 ? null : date.plusMinutes(i))
+              .comments("comment")
+              .build());
+    }
+    menuItemReviewRepository.saveAll(reviews);
+  }
+
+  private String plan(KeysetSpecification<MenuItemReview> rows, Object... parameters) {
+    menuItemReviewRepository.findBy(rows, query -> query.limit(11).all());
+    // the page is one row longer than asked for, to tell whether there are more
+    Object[] withLimit = Arrays.copyOf(parameters, parameters.length + 1);
+    withLimit[parameters.length] = 11;
+    return jdbcTemplate.queryForObject("explain " + LastStatement.sql, String.class, withLimit);
+  }
+
+  @Test
+  public void a_page_after_a_row_with_a_key_seeks_the_index_to_that_key() {
+    LocalDateTime value = date.plusMinutes(500);
+
+    String ascending =
+        plan(
+            new KeysetSpecification<>("dateReviewed", Sort.Direction.ASC, value, 500L),
+            value,
+            value,
+            value,
+            500L);
+    String descending =
+        plan(
+            new KeysetSpecification<>("dateReviewed", Sort.Direction.DESC, value, 500L),
+            value,
+            value,
+            value,
+            500L);
+
+    assertTrue(
+        ascending.contains("MENUITEMREVIEWS_DATE_REVIEWED_ID_IDX: DATE_REVIEWED >= ?1"), ascending);
+    assertTrue(
+        descending.contains("MENUITEMREVIEWS_DATE_REVIEWED_ID_IDX: DATE_REVIEWED <= ?1"),
+        descending);
+  }
+
+  @Test
+  public void the_rows_without_a_key_are_read_with_a_query_of_their_own() {
+    KeysetSpecification<MenuItemReview> withoutKey =
+        new KeysetSpecification<MenuItemReview>("dateReviewed", Sort.Direction.ASC, date, 500L)
+            .following();
+
+    String plan = plan(withoutKey);
+
+    assertTrue(plan.contains("MENUITEMREVIEWS_DATE_REVIEWED_ID_IDX: DATE_REVIEWED IS NULL"), plan);
+    assertEquals(-1, plan.indexOf(" OR "), plan);
+  }
+}
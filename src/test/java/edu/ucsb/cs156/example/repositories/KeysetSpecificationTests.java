@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.hibernate.query.criteria.JpaOrder;
+import org.hibernate.query.criteria.JpaPredicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+public class KeysetSpecificationTests {
+
+  private final LocalDateTime date = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+
+  @SuppressWarnings("unchecked")
+  private final Root<MenuItemReview> root = mock(Root.class);
+
+  private final CriteriaQuery<?> query = mock(CriteriaQuery.class);
+
+  private final HibernateCriteriaBuilder cb = mock(HibernateCriteriaBuilder.class);
+
+  @SuppressWarnings("rawtypes")
+  private final Path id = mock(Path.class);
+
+  @SuppressWarnings("rawtypes")
+  private final Path dateReviewed = mock(Path.class);
+
+  private final JpaOrder idAsc = mock(JpaOrder.class);
+  private final JpaOrder idDesc = mock(JpaOrder.class);
+  private final JpaOrder keyAscNullsLast = mock(JpaOrder.class);
+  private final JpaOrder keyDescNullsFirst = mock(JpaOrder.class);
+
+  private final JpaPredicate idGreater = mock(JpaPredicate.class);
+  private final JpaPredicate idLess = mock(JpaPredicate.class);
+  private final JpaPredicate keyGreater = mock(JpaPredicate.class);
+  private final JpaPredicate keyLess = mock(JpaPredicate.class);
+  private final JpaPredicate keyAtLeast = mock(JpaPredicate.class);
+  private final JpaPredicate keyAtMost = mock(JpaPredicate.class);
+  private final JpaPredicate keyEqual = mock(JpaPredicate.class);
+  private final JpaPredicate keyNull = mock(JpaPredicate.class);
+  private final JpaPredicate keyNotNull = mock(JpaPredicate.class);
+  private final JpaPredicate both = mock(JpaPredicate.class);
+  private final JpaPredicate either = mock(JpaPredicate.class);
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    when(root.get("id")).thenReturn(id);
+    when(root.get("dateReviewed")).thenReturn(dateReviewed);
+    when(cb.asc(id)).thenReturn(idAsc);
+    when(cb.desc(id)).thenReturn(idDesc);
+    when(cb.asc(dateReviewed, false)).thenReturn(keyAscNullsLast);
+    when(cb.desc(dateReviewed, true)).thenReturn(keyDescNullsFirst);
+    when(cb.greaterThan(any(), any(Long.class))).thenReturn(idGreater);
+    when(cb.lessThan(any(), any(Long.class))).thenReturn(idLess);
+    when(cb.greaterThan(any(), any(LocalDateTime.class))).thenReturn(keyGreater);
+    when(cb.lessThan(any(), any(LocalDateTime.class))).thenReturn(keyLess);
+    when(cb.greaterThanOrEqualTo(any(), any(LocalDateTime.class))).thenReturn(keyAtLeast);
+    when(cb.lessThanOrEqualTo(any(), any(LocalDateTime.class))).thenReturn(keyAtMost);
+    when(cb.equal(dateReviewed, date)).thenReturn(keyEqual);
+    when(cb.isNull(dateReviewed)).thenReturn(keyNull);
+    when(cb.isNotNull(dateReviewed)).thenReturn(keyNotNull);
+    when(cb.and(any(Predicate.class), any(Predicate.class))).thenReturn(both);
+    when(cb.or(any(Predicate.class), any(Predicate.class))).thenReturn(either);
+  }
+
+  private Predicate toPredicate(String key, Sort.Direction direction, Object value, Long after) {
+    return new KeysetSpecification<MenuItemReview>(key, direction, value, after)
+        .toPredicate(root, query, cb);
+  }
+
+  private Predicate toPredicate(KeysetSpecification<MenuItemReview> specification) {
+    return specification.toPredicate(root, query, cb);
+  }
+
+  @Test
+  public void the_first_page_matches_every_row_in_order() {
+    assertNull(toPredicate("id", Sort.Direction.ASC, null, null));
+    verify(query).orderBy(idAsc);
+
+    assertNull(toPredicate("dateReviewed", Sort.Direction.DESC, null, null));
+    verify(query).orderBy(keyDescNullsFirst, idDesc);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void rows_sorted_by_id_seek_past_the_id() {
+    assertSame(idGreater, toPredicate("id", Sort.Direction.ASC, null, 7L));
+    verify(cb).greaterThan(id, 7L);
+
+    assertSame(idLess, toPredicate("id", Sort.Direction.DESC, null, 7L));
+    verify(cb).lessThan(id, 7L);
+    verify(query).orderBy(idDesc);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void rows_sorted_by_a_key_in_ascending_order_seek_past_the_key_then_the_id() {
+    assertSame(both, toPredicate("dateReviewed", Sort.Direction.ASC, date, 7L));
+    verify(query).orderBy(keyAscNullsLast, idAsc);
+    // the bound is what lets the index seek to the date
+    verify(cb).greaterThanOrEqualTo(dateReviewed, date);
+    verify(cb).greaterThan(dateReviewed, date);
+    verify(cb).and(keyEqual, idGreater);
+    verify(cb).or(keyGreater, both);
+    verify(cb).and(keyAtLeast, either);
+    // rows without a key are not or-ed in
+    verify(cb, never()).isNull(dateReviewed);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void rows_sorted_by_a_key_in_descending_order_seek_past_the_key_then_the_id() {
+    assertSame(both, toPredicate("dateReviewed", Sort.Direction.DESC, date, 7L));
+    verify(cb).lessThanOrEqualTo(dateReviewed, date);
+    verify(cb).lessThan(dateReviewed, date);
+    verify(cb).and(keyEqual, idLess);
+    verify(cb).or(keyLess, both);
+    verify(cb).and(keyAtMost, either);
+  }
+
+  @Test
+  public void after_a_row_without_a_key_come_the_other_rows_without_one() {
+    assertSame(both, toPredicate("dateReviewed", Sort.Direction.ASC, null, 7L));
+    verify(cb).and(keyNull, idGreater);
+
+    assertSame(both, toPredicate("dateReviewed", Sort.Direction.DESC, null, 7L));
+    verify(cb).and(keyNull, idLess);
+    verify(cb, never()).isNotNull(dateReviewed);
+  }
+
+  @Test
+  public void in_ascending_order_the_rows_without_a_key_follow_those_with_one() {
+    KeysetSpecification<MenuItemReview> keyed =
+        new KeysetSpecification<>("dateReviewed", Sort.Direction.ASC, date, 7L);
+
+    KeysetSpecification<MenuItemReview> withoutKey = keyed.following();
+
+    assertSame(keyNull, toPredicate(withoutKey));
+    verify(query).orderBy(keyAscNullsLast, idAsc);
+    assertNull(withoutKey.following());
+  }
+
+  @Test
+  public void in_descending_order_the_rows_with_a_key_follow_those_without_one() {
+    KeysetSpecification<MenuItemReview> withoutKey =
+        new KeysetSpecification<>("dateReviewed", Sort.Direction.DESC, null, 7L);
+
+    KeysetSpecification<MenuItemReview> keyed = withoutKey.following();
+
+    assertSame(keyNotNull, toPredicate(keyed));
+    verify(query).orderBy(keyDescNullsFirst, idDesc);
+    assertNull(keyed.following());
+  }
+
+  @Test
+  public void rows_sorted_by_id_and_first_pages_are_a_single_section() {
+    assertNull(new KeysetSpecification<>("id", Sort.Direction.ASC, null, 7L).following());
+    assertNull(
+        new KeysetSpecification<>("dateReviewed", Sort.Direction.ASC, null, null).following());
+    assertNull(
+        new KeysetSpecification<>("dateReviewed", Sort.Direction.DESC, date, 7L).following());
+    assertNull(new KeysetSpecification<>("dateReviewed", Sort.Direction.ASC, null, 7L).following());
+  }
+}
@@ -5,17 +5,29 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobLogPage;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogArchiveService;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.Limit;
 
 public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogArchiveService jobLogArchiveService;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -38,6 +50,26 @@ public class JobLogsServiceTests {
     assertEquals("This is a job log", result);
   }
 
+  @Test
+  void test_getJobLogs_rebuilds_log_from_lines() {
+    // Arrange
+    Long jobId = 4L;
+    Job job = Job.builder().id(jobId).build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 0, Limit.unlimited()))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(0).line("line one").build(),
+                JobLogLine.builder().jobId(jobId).seq(1).line("line two").build()));
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("line one\nline two", result);
+  }
+
   @Test
   void test_getJobLogs_with_null_log() {
     // Arrange
@@ -60,6 +92,132 @@ public class JobLogsServiceTests {
     when(jobRepository.findById(jobId)).thenReturn(Optional.empty());
 
     // Act & Assert
-    assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId));
+    EntityNotFoundException e =
+        assertThrows(EntityNotFoundException.class, () -> jobService.getJobLogs(jobId));
+    assertEquals("Job with id 3 not found", e.getMessage());
+  }
+
+  @Test
+  void test_getJobLogs_rejects_negative_offset_limit_and_tail() {
+    assertEquals(
+        "offset must not be negative: -1",
+        assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(3L, -1, 2, null))
+            .getMessage());
+    assertEquals(
+        "limit must not be negative: -2",
+        assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(3L, 0, -2, null))
+            .getMessage());
+    assertEquals(
+        "tail must not be negative: -3",
+        assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(3L, null, 0, -3))
+            .getMessage());
+    verify(jobRepository, never()).findById(any());
+  }
+
+  @Test
+  void test_getJobLogs_range_past_end_returns_empty_page_with_same_cursor() {
+    // Arrange
+    Long jobId = 5L;
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(Job.builder().id(jobId).build()));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 7, Limit.of(10)))
+        .thenReturn(List.of());
+
+    // Act
+    JobLogPage page = jobService.getJobLogs(jobId, 7, 10, null);
+
+    // Assert
+    assertEquals("", textOf(page));
+    assertEquals(7, page.getNextCursor());
+  }
+
+  @Test
+  void test_getJobLogs_of_a_running_job_past_its_end_reads_only_its_log_lines() {
+    // Arrange
+    Long jobId = 5L;
+    Job job = Job.builder().id(jobId).status("running").log("legacy").build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 7, Limit.unlimited()))
+        .thenReturn(List.of());
+
+    // Act
+    JobLogPage page = jobService.getJobLogs(jobId, 7, null, null);
+
+    // Assert
+    assertEquals("", textOf(page));
+    assertEquals(7, page.getNextCursor());
+    verifyNoInteractions(jobLogArchiveService);
+  }
+
+  @Test
+  void test_getJobLogs_tail_of_empty_log_has_cursor_zero() {
+    // Arrange
+    Long jobId = 5L;
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(Job.builder().id(jobId).build()));
+    when(jobLogLinesRepository.findAllByJobIdOrderBySeqDesc(jobId, Limit.of(3)))
+        .thenReturn(List.of());
+
+    // Act
+    JobLogPage page = jobService.getJobLogs(jobId, 4, null, 3);
+
+    // Assert
+    assertEquals("", textOf(page));
+    assertEquals(0, page.getNextCursor());
+  }
+
+  @Test
+  void test_getJobLogs_range_of_legacy_log() {
+    // Arrange
+    Long jobId = 6L;
+    Job job = Job.builder().id(jobId).log("a\nb\nc\nd").build();
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(job));
+
+    // Act & Assert
+    JobLogPage page = jobService.getJobLogs(jobId, 1, 2, null);
+    assertEquals("b\nc", textOf(page));
+    assertEquals(3, page.getNextCursor());
+
+    page = jobService.getJobLogs(jobId, 2, null, null);
+    assertEquals("c\nd", textOf(page));
+    assertEquals(4, page.getNextCursor());
+
+    page = jobService.getJobLogs(jobId, 9, 2, null);
+    assertEquals("", textOf(page));
+    assertEquals(9, page.getNextCursor());
+
+    page = jobService.getJobLogs(jobId, null, null, 3);
+    assertEquals("b\nc\nd", textOf(page));
+    assertEquals(4, page.getNextCursor());
+
+    page = jobService.getJobLogs(jobId, null, null, 10);
+    assertEquals("a\nb\nc\nd", textOf(page));
+    assertEquals(4, page.getNextCursor());
+  }
+
+  @Test
+  void test_getJobLogs_reads_compressed_log_from_its_archive() {
+    // Arrange
+    Long jobId = 7L;
+    when(jobRepository.findById(jobId)).thenReturn(Optional.of(Job.builder().id(jobId).build()));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            jobId, 2, Limit.of(2)))
+        .thenReturn(List.of());
+    when(jobLogArchiveService.readLines(jobId, 2, 2, null))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(2).line("c").build(),
+                JobLogLine.builder().jobId(jobId).seq(3).line("d").build()));
+
+    // Act
+    JobLogPage page = jobService.getJobLogs(jobId, 2, 2, null);
+
+    // Assert
+    assertEquals("c\nd", textOf(page));
+    assertEquals(4, page.getNextCursor());
+  }
+
+  private static String textOf(JobLogPage page) {
+    return page.getLines().stream().map(JobLogLine::getLine).collect(Collectors.joining("\n"));
   }
 }
@@ -0,0 +1,155 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import jakarta.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+public class JsonStreamingServiceTests {
+
+  @Mock private MenuItemReviewRepository menuItemReviewRepository;
+
+  @Mock private EntityManager entityManager;
+
+  @Spy
+  private ObjectMapper mapper =
+      new ObjectMapper()
+          .findAndRegisterModules()
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  @InjectMocks private JsonStreamingService jsonStreamingService;
+
+  /** Whether the stream of rows has been closed. */
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /** Counts the flushes of what it is written to, and whether it has been closed. */
+  private final Output out = new Output();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  private void rows(List<MenuItemReview> rows) {
+    when(menuItemReviewRepository.streamAllBy())
+        .thenReturn(rows.stream().onClose(() -> closed.set(true)));
+  }
+
+  @Test
+  public void writes_every_row_as_a_json_array_and_detaches_it() throws Exception {
+    // arrange
+    MenuItemReview review1 =
+        MenuItemReview.builder()
+            .id(1L)
+            .itemId(7)
+            .reviewerEmail("cgaucho@ucsb.edu")
+            .stars(5)
+            .dateReviewed(LocalDateTime.of(2024, 1, 2, 3, 4, 5))
+            .comments("tasty")
+            .build();
+    MenuItemReview review2 = MenuItemReview.builder().id(2L).itemId(8).build();
+    rows(List.of(review1, review2));
+
+    // act
+    jsonStreamingService.writeAll(menuItemReviewRepository, out);
+
+    // assert
+    assertEquals(mapper.writeValueAsString(List.of(review1, review2)), out.json());
+    verify(entityManager).detach(review1);
+    verify(entityManager).detach(review2);
+    assertTrue(closed.get());
+    // the rows are not flushed to the client one at a time, and the response is left open
+    assertEquals(1, out.flushes);
+    assertFalse(out.closed);
+  }
+
+  @Test
+  public void an_empty_table_is_written_as_an_empty_array() throws Exception {
+    // arrange
+    rows(List.of());
+
+    // act
+    jsonStreamingService.writeAll(menuItemReviewRepository, out);
+
+    // assert
+    assertEquals("[]", out.json());
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void the_rows_are_closed_when_a_row_cannot_be_written() throws Exception {
+    // arrange
+    MenuItemReview review = MenuItemReview.builder().id(1L).build();
+    when(menuItemReviewRepository.streamAllBy())
+        .thenReturn(
+            Stream.of(review)
+                .peek(
+                    row -> {
+                      throw new IllegalStateException("connection lost");
+                    })
+                .onClose(() -> closed.set(true)));
+
+    // act
+    assertThrows(
+        IllegalStateException.class,
+        () -> jsonStreamingService.writeAll(menuItemReviewRepository, out));
+
+    // assert
+    assertTrue(closed.get());
+    verify(entityManager, never()).detach(review);
+  }
+
+  /** An output stream that records what is written to it. */
+  private static class Output extends OutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private int flushes = 0;
+    private boolean closed = false;
+
+    @Override
+    public void write(int b) {
+      bytes.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      bytes.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      flushes++;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    String json() {
+      return bytes.toString(StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+public class TableVersionServiceTests {
+
+  private static final String BUMP_SQL =
+      "update table_versions set version = version + 1 where table_name = ?";
+  private static final String INSERT_SQL =
+      "insert into table_versions (table_name, version) values (?, 1)";
+  private static final String SELECT_SQL =
+      "select version from table_versions where table_name = ?";
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @InjectMocks private TableVersionService tableVersionService;
+
+  /** The rows of table_versions. */
+  private final Map<String, Long> table = new LinkedHashMap<>();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    doAnswer(
+            invocation -> {
+              RowCallbackHandler handler = invocation.getArgument(1);
+              for (Map.Entry<String, Long> row : table.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(row.getKey());
+                when(rs.getLong(2)).thenReturn(row.getValue());
+                handler.processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(eq("select table_name, version from table_versions"), any(RowCallbackHandler.class));
+    when(jdbcTemplate.queryForObject(eq(SELECT_SQL), eq(Long.class), anyString()))
+        .thenAnswer(invocation -> table.get(invocation.<String>getArgument(2)));
+  }
+
+  @Test
+  public void versions_are_loaded_on_first_use_and_a_table_never_written_to_is_at_0() {
+    // arrange
+    table.put("ucsbdates", 4L);
+
+    // act and assert
+    assertEquals(4L, tableVersionService.getVersion("ucsbdates"));
+    assertEquals("\"restaurants-0\"", tableVersionService.getETag("restaurants"));
+    verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class));
+  }
+
+  @Test
+  public void versions_changed_on_other_nodes_are_picked_up_on_refresh() {
+    // arrange
+    table.put("ucsbdates", 4L);
+    tableVersionService.refresh();
+
+    // act
+    table.put("ucsbdates", 6L);
+    assertEquals(4L, tableVersionService.getVersion("ucsbdates"));
+    tableVersionService.refresh();
+
+    // assert
+    assertEquals("\"ucsbdates-6\"", tableVersionService.getETag("ucsbdates"));
+    assertEquals("\"ucsbdates-6-gzip\"", tableVersionService.getETag("ucsbdates", "gzip"));
+  }
+
+  @Test
+  public void bump_takes_the_version_of_the_table_up_by_one() {
+    // arrange
+    table.put("ucsbdates", 5L);
+    when(jdbcTemplate.update(BUMP_SQL, "ucsbdates")).thenReturn(1);
+    tableVersionService.refresh();
+    table.put("ucsbdates", 6L);
+
+    // act
+    tableVersionService.bump("ucsbdates");
+
+    // assert
+    assertEquals(6L, tableVersionService.getVersion("ucsbdates"));
+  }
+
+  @Test
+  public void bump_starts_a_table_written_to_for_the_first_time_at_1() {
+    // arrange
+    when(jdbcTemplate.update(BUMP_SQL, "restaurants")).thenReturn(0);
+    when(jdbcTemplate.update(INSERT_SQL, "restaurants"))
+        .thenAnswer(invocation -> table.put("restaurants", 1L) == null ? 1 : 0);
+
+    // act
+    tableVersionService.bump("restaurants");
+
+    // assert
+    assertEquals(1L, tableVersionService.getVersion("restaurants"));
+  }
+
+  @Test
+  public void bump_counts_a_first_write_that_another_node_made_at_the_same_moment() {
+    // arrange
+    when(jdbcTemplate.update(BUMP_SQL, "restaurants"))
+        .thenReturn(0)
+        .thenAnswer(invocation -> table.put("restaurants", 2L) == null ? 0 : 1);
+    when(jdbcTemplate.update(INSERT_SQL, "restaurants"))
+        .thenAnswer(
+            invocation -> {
+              table.put("restaurants", 1L);
+              throw new DuplicateKeyException("TABLE_VERSIONS_PK");
+            });
+
+    // act
+    tableVersionService.bump("restaurants");
+
+    // assert
+    verify(jdbcTemplate, times(2)).update(BUMP_SQL, "restaurants");
+    assertEquals(2L, tableVersionService.getVersion("restaurants"));
+  }
+
+  @Test
+  public void a_version_read_late_never_takes_a_table_back() {
+    // arrange
+    table.put("ucsbdates", 9L);
+    tableVersionService.refresh();
+    table.put("ucsbdates", 8L);
+
+    // act
+    tableVersionService.refresh();
+
+    // assert
+    assertEquals(9L, tableVersionService.getVersion("ucsbdates"));
+  }
+}
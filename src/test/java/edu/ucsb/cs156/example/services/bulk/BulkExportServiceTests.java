@@ -0,0 +1,310 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.services.jobs.JobCancelledException;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class BulkExportServiceTests {
+
+  @Mock private JobService jobService;
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Spy
+  private ObjectMapper objectMapper =
+      new ObjectMapper()
+          .findAndRegisterModules()
+          .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  @InjectMocks private BulkExportService bulkExportService;
+
+  @TempDir private Path tempDir;
+
+  private Path exportDir;
+
+  private final JobContext ctx = mock(JobContext.class);
+
+  private final Connection connection = mock(Connection.class);
+
+  private final PreparedStatement statement = mock(PreparedStatement.class);
+
+  /** Every line the export logged. */
+  private final List<String> logged = new ArrayList<>();
+
+  /** The rows of the table, as the values of each column. */
+  private final List<Object[]> table = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    exportDir = tempDir.resolve("exports");
+    ReflectionTestUtils.setField(bulkExportService, "exportDir", exportDir.toString());
+    ReflectionTestUtils.setField(bulkExportService, "fetchSize", 2);
+    when(ctx.getJobId()).thenReturn(12L);
+    doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(ctx).log(anyString());
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+        .thenAnswer(invocation -> (long) table.size());
+    when(connection.prepareStatement(anyString(), any(int.class), any(int.class)))
+        .thenReturn(statement);
+    doAnswer(
+            invocation -> {
+              invocation
+                  .<PreparedStatementCreator>getArgument(0)
+                  .createPreparedStatement(connection);
+              RowCallbackHandler handler = invocation.getArgument(1);
+              for (Object[] row : table) {
+                ResultSet rs = mock(ResultSet.class);
+                for (int i = 0; i < row.length; i++) {
+                  when(rs.getObject(eq(i + 1), any(Class.class))).thenReturn(row[i]);
+                }
+                handler.processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+  }
+
+  private void reviews(int count) {
+    for (long id = 1; id <= count; id++) {
+      table.add(
+          new Object[] {
+            id, 7L, "cgaucho@ucsb.edu", 5, LocalDateTime.of(2024, 1, 2, 3, 4, 5), "nice, really"
+          });
+    }
+  }
+
+  private String unzip(Path file) throws IOException {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private List<Path> exportedFiles() throws IOException {
+    try (Stream<Path> files = Files.list(exportDir)) {
+      return files.toList();
+    }
+  }
+
+  @Test
+  public void launchExport_exports_the_table_in_a_job() throws Exception {
+    // arrange
+    Job running = Job.builder().id(12L).status("running").build();
+    ArgumentCaptor<JobContextConsumer> exportJob =
+        ArgumentCaptor.forClass(JobContextConsumer.class);
+    when(jobService.runAsJob(any())).thenReturn(running);
+    reviews(1);
+
+    // act
+    Job job = bulkExportService.launchExport(ExportTable.MENU_ITEM_REVIEWS, ExportFormat.CSV);
+
+    // assert
+    assertSame(running, job);
+    verify(jobService).runAsJob(exportJob.capture());
+    assertFalse(Files.exists(exportDir));
+
+    exportJob.getValue().accept(ctx);
+    assertEquals(List.of(exportDir.resolve("menuitemreviews-12.csv.gz")), exportedFiles());
+  }
+
+  @Test
+  public void exports_rows_to_a_compressed_csv_file_through_a_forward_only_cursor()
+      throws Exception {
+    // arrange
+    reviews(3);
+
+    // act
+    bulkExportService.exportTable(ctx, ExportTable.MENU_ITEM_REVIEWS, ExportFormat.CSV);
+
+    // assert
+    verify(jdbcTemplate).queryForObject("select count(*) from menuitemreviews", Long.class);
+    verify(connection)
+        .prepareStatement(
+            ExportTable.MENU_ITEM_REVIEWS.getSelectSql(),
+            ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+    verify(statement).setFetchSize(2);
+    verify(transactionTemplate).executeWithoutResult(any());
+
+    Path file = exportDir.resolve("menuitemreviews-12.csv.gz");
+    assertEquals(List.of(file), exportedFiles());
+    String row = "7,cgaucho@ucsb.edu,5,2024-01-02T03:04:05,\"nice, really\"\r\n";
+    assertEquals(
+        "id,itemId,reviewerEmail,stars,dateReviewed,comments\r\n1," + row + "2," + row + "3," + row,
+        unzip(file));
+
+    // progress is recorded every fetchSize rows, and at the end
+    verify(ctx).progress(2, 3);
+    verify(ctx).progress(3, 3);
+    verify(ctx).checkpoint();
+    assertEquals("Exporting 3 rows of menuitemreviews as CSV", logged.get(0));
+    assertTrue(
+        logged
+            .get(logged.size() - 1)
+            .matches(
+                "Exported 3 rows of menuitemreviews to menuitemreviews-12.csv.gz \\(%d bytes\\) in"
+                        .formatted(Files.size(file))
+                    + " \\d+ ms \\(\\d+ rows/s\\)"),
+        logged.toString());
+  }
+
+  @Test
+  public void exports_rows_as_ndjson_and_reports_how_fast_it_goes() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(bulkExportService, "reportEveryMs", 0L);
+    table.add(new Object[] {"ZPR", "ZETA PHI RHO", null, true});
+    table.add(new Object[] {"ZZ", "Z", "ZETA", false});
+
+    // act
+    bulkExportService.exportTable(ctx, ExportTable.ORGANIZATIONS, ExportFormat.NDJSON);
+
+    // assert
+    assertEquals(
+        """
+        {"orgCode":"ZPR","orgTranslationShort":"ZETA PHI RHO","orgTranslation":null,"inactive":true}
+        {"orgCode":"ZZ","orgTranslationShort":"Z","orgTranslation":"ZETA","inactive":false}
+        """,
+        unzip(exportDir.resolve("ucsborganization-12.ndjson.gz")));
+    assertTrue(logged.get(1).matches("Exported 2 rows \\(\\d+ rows/s\\)"), logged.toString());
+  }
+
+  @Test
+  public void dates_are_written_to_ndjson_as_iso_strings() throws Exception {
+    // arrange
+    reviews(1);
+
+    // act
+    bulkExportService.exportTable(ctx, ExportTable.MENU_ITEM_REVIEWS, ExportFormat.NDJSON);
+
+    // assert
+    assertEquals(
+        "{\"id\":1,\"itemId\":7,\"reviewerEmail\":\"cgaucho@ucsb.edu\",\"stars\":5,"
+            + "\"dateReviewed\":\"2024-01-02T03:04:05\",\"comments\":\"nice, really\"}\n",
+        unzip(exportDir.resolve("menuitemreviews-12.ndjson.gz")));
+  }
+
+  @Test
+  public void an_empty_table_is_exported_as_an_empty_file() throws Exception {
+    // act
+    bulkExportService.exportTable(ctx, ExportTable.ARTICLES, ExportFormat.NDJSON);
+    bulkExportService.exportTable(ctx, ExportTable.HELP_REQUESTS, ExportFormat.CSV);
+
+    // assert
+    assertEquals("", unzip(exportDir.resolve("articles-12.ndjson.gz")));
+    assertEquals(
+        "id,requesterEmail,teamId,tableOrBreakoutRoom,requestTime,explanation,solved\r\n",
+        unzip(exportDir.resolve("helprequest-12.csv.gz")));
+    verify(ctx, times(2)).progress(0, 0);
+  }
+
+  @Test
+  public void a_cancelled_export_leaves_no_file_behind() throws Exception {
+    // arrange
+    reviews(3);
+    doThrow(new JobCancelledException("cancelled")).when(ctx).checkpoint();
+
+    // act
+    assertThrows(
+        JobCancelledException.class,
+        () -> bulkExportService.exportTable(ctx, ExportTable.MENU_ITEM_REVIEWS, ExportFormat.CSV));
+
+    // assert
+    assertEquals(List.of(), exportedFiles());
+  }
+
+  @Test
+  public void an_export_that_cannot_write_a_row_fails_and_leaves_no_file_behind() throws Exception {
+    // arrange
+    table.add(new Object[] {1L, "Taco", new Unwritable(), "2"});
+
+    // act
+    assertThrows(
+        JsonMappingException.class,
+        () -> bulkExportService.exportTable(ctx, ExportTable.MENU_ITEMS, ExportFormat.NDJSON));
+
+    // assert
+    assertEquals(List.of(), exportedFiles());
+  }
+
+  @Test
+  public void findExport_finds_the_finished_export_of_a_job() throws Exception {
+    // nothing has been exported yet
+    assertEquals(Optional.empty(), bulkExportService.findExport(12));
+
+    // arrange
+    Files.createDirectories(exportDir);
+    Path export = Files.createFile(exportDir.resolve("menuitemreviews-12.csv.gz"));
+    Files.createFile(exportDir.resolve("articles-2.csv.gz"));
+    Files.createFile(exportDir.resolve("helprequest-3.ndjson.gz.part"));
+
+    // act and assert
+    assertEquals(Optional.of(export), bulkExportService.findExport(12));
+    assertEquals(Optional.empty(), bulkExportService.findExport(3));
+    assertEquals(Optional.empty(), bulkExportService.findExport(1));
+  }
+
+  /** A value that cannot be written as JSON. */
+  private static class Unwritable {
+    public String getValue() {
+      throw new IllegalStateException("cannot be written");
+    }
+  }
+}
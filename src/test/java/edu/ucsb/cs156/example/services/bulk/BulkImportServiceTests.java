@@ -0,0 +1,338 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobRetryPolicy;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import edu.ucsb.cs156.example.services.jobs.JobCancelledException;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+public class BulkImportServiceTests {
+
+  @Mock private JobService jobService;
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private TableVersionService tableVersionService;
+
+  @Spy private ObjectMapper objectMapper = new ObjectMapper();
+
+  @InjectMocks private BulkImportService bulkImportService;
+
+  @TempDir private Path tempDir;
+
+  private final JobContext ctx = mock(JobContext.class);
+
+  /** Every line the import logged. */
+  private final List<String> logged = new ArrayList<>();
+
+  /** Every batch inserted, as the parameters of each of its rows. */
+  private final List<List<Object[]>> batches = new ArrayList<>();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(bulkImportService, "batchSize", 2);
+    doAnswer(invocation -> logged.add(invocation.getArgument(0))).when(ctx).log(anyString());
+    doAnswer(
+            invocation -> {
+              invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+              return null;
+            })
+        .when(transactionTemplate)
+        .executeWithoutResult(any());
+    when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+        .thenAnswer(
+            invocation -> {
+              batches.add(new ArrayList<>(invocation.<List<Object[]>>getArgument(1)));
+              return new int[0];
+            });
+  }
+
+  private Path file(String content) throws IOException {
+    return Files.writeString(tempDir.resolve("upload"), content, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void launchImport_saves_the_upload_and_imports_it_in_a_job_that_is_not_retried()
+      throws Exception {
+    // arrange
+    Job running = Job.builder().id(17L).status("running").build();
+    ArgumentCaptor<JobContextConsumer> importJob =
+        ArgumentCaptor.forClass(JobContextConsumer.class);
+    when(jobService.runAsJob(any(), isNull(), any())).thenReturn(running);
+    MultipartFile upload =
+        new MockMultipartFile(
+            "file",
+            "items.csv",
+            "text/csv",
+            "diningCommonsCode,name,station\nortega,Taco,Grill\n".getBytes());
+
+    // act
+    Job job = bulkImportService.launchImport(ImportTable.MENU_ITEMS, ImportFormat.CSV, upload);
+
+    // assert
+    assertSame(running, job);
+    verify(jobService)
+        .runAsJob(
+            importJob.capture(), isNull(), eq(JobRetryPolicy.builder().maxAttempts(1).build()));
+    assertEquals(List.of(), batches);
+
+    // the job imports the upload, then deletes it
+    importJob.getValue().accept(ctx);
+    assertEquals(1, batches.size());
+    assertArrayEquals(new Object[] {"ortega", "Taco", "Grill"}, batches.get(0).get(0));
+    assertThrows(NoSuchFileException.class, () -> importJob.getValue().accept(ctx));
+  }
+
+  @Test
+  public void launchImport_deletes_the_upload_if_the_job_is_rejected() throws Exception {
+    // arrange
+    when(jobService.runAsJob(any(), isNull(), any()))
+        .thenReturn(Job.builder().status("rejected").build());
+    ArgumentCaptor<JobContextConsumer> importJob =
+        ArgumentCaptor.forClass(JobContextConsumer.class);
+    MultipartFile upload = new MockMultipartFile("file", "a,b\n".getBytes());
+
+    // act
+    bulkImportService.launchImport(ImportTable.MENU_ITEMS, ImportFormat.JSON, upload);
+
+    // assert
+    verify(jobService).runAsJob(importJob.capture(), isNull(), any());
+    assertThrows(NoSuchFileException.class, () -> importJob.getValue().accept(ctx));
+  }
+
+  @Test
+  public void launchImport_launches_nothing_if_the_upload_cannot_be_saved() throws Exception {
+    // arrange
+    MultipartFile upload = mock(MultipartFile.class);
+    doThrow(new IOException("disk full")).when(upload).transferTo(any(Path.class));
+
+    // act
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () -> bulkImportService.launchImport(ImportTable.MENU_ITEMS, ImportFormat.CSV, upload));
+
+    // assert
+    assertEquals("disk full", e.getMessage());
+    verify(jobService, never()).runAsJob(any(), any(), any());
+  }
+
+  @Test
+  public void csv_rows_are_inserted_in_batches_and_bad_rows_are_skipped() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(bulkImportService, "reportEveryMs", 0L);
+    Path file =
+        file(
+            """
+            diningCommonsCode,name,station
+            ortega,Taco,Grill
+            dlg,Soup
+            portola,Pizza,Oven
+            carrillo,"Salad, green",Bar
+            """);
+
+    // act
+    bulkImportService.importFile(ctx, ImportTable.MENU_ITEMS, ImportFormat.CSV, file);
+
+    // assert
+    assertEquals(2, batches.size());
+    assertArrayEquals(new Object[] {"ortega", "Taco", "Grill"}, batches.get(0).get(0));
+    assertArrayEquals(new Object[] {"portola", "Pizza", "Oven"}, batches.get(0).get(1));
+    assertArrayEquals(new Object[] {"carrillo", "Salad, green", "Bar"}, batches.get(1).get(0));
+    assertEquals("Importing CSV into ucsbdiningcommonsmenuitems (105 bytes)", logged.get(0));
+    assertEquals("Row 2 skipped: has 2 fields, but the header has 3", logged.get(1));
+    assertTrue(logged.get(2).matches("Imported 2 rows \\(\\d+ rows/s\\)"), logged.get(2));
+    assertTrue(
+        logged
+            .get(3)
+            .matches(
+                "Imported 3 rows into ucsbdiningcommonsmenuitems in \\d+ ms \\(\\d+ rows/s\\);"
+                    + " 1 rows skipped"),
+        logged.get(3));
+    assertEquals(4, logged.size());
+    // a file this small has been read to the end by the time the first batch is inserted
+    verify(ctx, times(2)).setProgress(100);
+    verify(ctx, times(1)).checkpoint();
+    assertFalse(Files.exists(file));
+    // each batch changes the table, so clients caching it must be told
+    verify(tableVersionService, times(2)).bump("ucsbdiningcommonsmenuitems");
+  }
+
+  @Test
+  public void json_rows_may_be_an_array_or_one_object_after_another() throws Exception {
+    // arrange
+    Path array =
+        file(
+            """
+            [{"orgCode": "A", "orgTranslationShort": "a", "orgTranslation": "aa", "inactive": true},
+             {"orgCode": "B", "orgTranslationShort": null, "orgTranslation": "bb", "inactive": false},
+             ["not", "an", "object"]]
+            """);
+
+    // act
+    bulkImportService.importFile(ctx, ImportTable.ORGANIZATIONS, ImportFormat.JSON, array);
+    Path lines =
+        file(
+            """
+            {"diningCommonsCode": "ortega", "name": {"en": "Taco"}, "station": 5}
+            {"diningCommonsCode": "dlg", "name": "Soup", "station": "Deli"}
+            """);
+    bulkImportService.importFile(ctx, ImportTable.MENU_ITEMS, ImportFormat.JSON, lines);
+
+    // assert
+    assertEquals(2, batches.size());
+    assertEquals(1, batches.get(0).size());
+    assertArrayEquals(new Object[] {"A", "a", "aa", true}, batches.get(0).get(0));
+    assertArrayEquals(new Object[] {"ortega", "{\"en\":\"Taco\"}", "5"}, batches.get(1).get(0));
+    assertArrayEquals(new Object[] {"dlg", "Soup", "Deli"}, batches.get(1).get(1));
+    assertTrue(logged.contains("Row 2 skipped: missing orgTranslationShort"));
+    assertTrue(logged.contains("Row 3 skipped: is not a JSON object"));
+  }
+
+  @Test
+  public void rows_of_a_batch_the_database_refuses_are_inserted_one_at_a_time() throws Exception {
+    // arrange
+    when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+        .thenThrow(new DataIntegrityViolationException("batch failed"));
+    when(jdbcTemplate.update(anyString(), any(Object[].class)))
+        .thenReturn(1)
+        .thenThrow(
+            new DataIntegrityViolationException(
+                "insert failed", new SQLException("Unique index violated\nSQL statement: ...")))
+        .thenReturn(1);
+    Path file =
+        file(
+            """
+            orgCode,orgTranslationShort,orgTranslation,inactive
+            A,a,aa,false
+            A,a,aa,false
+            B,b,bb,true
+            """);
+
+    // act
+    bulkImportService.importFile(ctx, ImportTable.ORGANIZATIONS, ImportFormat.CSV, file);
+
+    // assert
+    verify(jdbcTemplate, times(3)).update(anyString(), any(Object[].class));
+    assertTrue(logged.contains("Row 2 skipped: Unique index violated"), logged.toString());
+    assertTrue(logged.get(logged.size() - 1).startsWith("Imported 2 rows"));
+    assertTrue(logged.get(logged.size() - 1).endsWith("1 rows skipped"));
+  }
+
+  @Test
+  public void only_the_first_skipped_rows_are_logged() throws Exception {
+    // arrange
+    StringBuilder csv = new StringBuilder("diningCommonsCode,name,station\n");
+    for (int i = 0; i < BulkImportService.MAX_LOGGED_ERRORS + 5; i++) {
+      csv.append("bad\n");
+    }
+
+    // act
+    bulkImportService.importFile(
+        ctx, ImportTable.MENU_ITEMS, ImportFormat.CSV, file(csv.toString()));
+
+    // assert
+    assertEquals(BulkImportService.MAX_LOGGED_ERRORS + 3, logged.size());
+    assertEquals(
+        "More than %d rows skipped; no more are logged"
+            .formatted(BulkImportService.MAX_LOGGED_ERRORS),
+        logged.get(BulkImportService.MAX_LOGGED_ERRORS + 1));
+    assertTrue(logged.get(logged.size() - 1).endsWith("105 rows skipped"));
+  }
+
+  @Test
+  public void a_file_that_cannot_be_read_to_the_end_keeps_the_rows_before_the_error()
+      throws Exception {
+    // arrange
+    Path file =
+        file(
+            """
+            {"diningCommonsCode": "ortega", "name": "Taco", "station": "Grill"}
+            {"diningCommonsCode": "dlg", "name": "Soup", "station": "Deli"}
+            {"diningCommonsCode": "portola", "name": "Pizza", "station": "Oven"}
+            {broken
+            """);
+
+    // act
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () ->
+                bulkImportService.importFile(ctx, ImportTable.MENU_ITEMS, ImportFormat.JSON, file));
+
+    // assert
+    assertTrue(
+        e.getMessage().startsWith("Import stopped after row 3: Unexpected character"),
+        e.getMessage());
+    assertTrue(e.getMessage().endsWith("; 3 rows imported"), e.getMessage());
+    assertEquals(2, batches.size());
+    assertEquals(1, batches.get(1).size());
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void a_cancelled_import_stops_after_the_batch_it_is_on() throws Exception {
+    // arrange
+    doThrow(new JobCancelledException("cancelled")).when(ctx).checkpoint();
+    Path file = file("diningCommonsCode,name,station\na,b,c\nd,e,f\ng,h,i\n");
+
+    // act
+    assertThrows(
+        JobCancelledException.class,
+        () -> bulkImportService.importFile(ctx, ImportTable.MENU_ITEMS, ImportFormat.CSV, file));
+
+    // assert
+    assertEquals(1, batches.size());
+    assertFalse(Files.exists(file));
+  }
+}
@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class CsvRowReaderTests {
+
+  private CsvRowReader reader(String csv, String... fields) throws IOException {
+    return new CsvRowReader(new StringReader(csv), List.of(fields));
+  }
+
+  @Test
+  public void reads_rows_as_maps_keyed_by_the_header() throws Exception {
+    try (CsvRowReader rows = reader("name,station\nTaco,Grill\nSoup,Deli\n", "name")) {
+      assertEquals(Map.of("name", "Taco", "station", "Grill"), rows.next());
+      assertEquals(1, rows.getRowNumber());
+      assertEquals(Map.of("name", "Soup", "station", "Deli"), rows.next());
+      assertEquals(2, rows.getRowNumber());
+      assertNull(rows.next());
+      assertNull(rows.next());
+    }
+  }
+
+  @Test
+  public void quoted_fields_may_hold_commas_quotes_and_line_breaks() throws Exception {
+    String csv = "a,b,c\r\n\"one, two\",\"say \"\"hi\"\"\",\"line\r\nbreak\"\r\n\"\",x\"y,\"p\"q";
+
+    try (CsvRowReader rows = reader(csv)) {
+      assertEquals(Map.of("a", "one, two", "b", "say \"hi\"", "c", "line\r\nbreak"), rows.next());
+      assertEquals(Map.of("a", "", "b", "x\"y", "c", "pq"), rows.next());
+      assertNull(rows.next());
+    }
+  }
+
+  @Test
+  public void blank_lines_a_byte_order_mark_and_spaces_around_names_are_ignored() throws Exception {
+    try (CsvRowReader rows = reader("\uFEFFname , station\r\n\r\n\nTaco,\n\n", "name", "station")) {
+      assertEquals(Map.of("name", "Taco", "station", ""), rows.next());
+      assertNull(rows.next());
+    }
+  }
+
+  @Test
+  public void a_row_with_the_wrong_number_of_fields_is_rejected_and_reading_carries_on()
+      throws Exception {
+    try (CsvRowReader rows = reader("a,b\n1,2,3\n4,5\n")) {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, rows::next);
+      assertEquals("has 3 fields, but the header has 2", e.getMessage());
+      assertEquals(1, rows.getRowNumber());
+      assertEquals(Map.of("a", "4", "b", "5"), rows.next());
+      assertEquals(2, rows.getRowNumber());
+    }
+  }
+
+  @Test
+  public void reads_rows_longer_than_its_buffer() throws Exception {
+    String longValue = "x".repeat(20_000);
+
+    try (CsvRowReader rows = reader("a\n" + longValue + "\n" + longValue)) {
+      assertEquals(Map.of("a", longValue), rows.next());
+      assertEquals(Map.of("a", longValue), rows.next());
+      assertNull(rows.next());
+    }
+  }
+
+  @Test
+  public void a_quoted_field_that_is_never_closed_stops_the_reading() throws Exception {
+    try (CsvRowReader rows = reader("a\n\"open\n")) {
+      IOException e = assertThrows(IOException.class, rows::next);
+      assertEquals("a quoted field is never closed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void a_file_needs_a_header_with_every_field() {
+    IOException empty = assertThrows(IOException.class, () -> reader("\n\n", "name"));
+    assertEquals("CSV file is empty: its first row should name the fields", empty.getMessage());
+
+    IOException missing =
+        assertThrows(IOException.class, () -> reader("name\n", "code", "name", "station"));
+    assertEquals("CSV header has no code, station", missing.getMessage());
+  }
+}
@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class CsvRowWriterTests {
+
+  @Test
+  public void writes_a_header_then_one_line_per_row() throws Exception {
+    StringWriter out = new StringWriter();
+
+    try (CsvRowWriter rows = new CsvRowWriter(out, List.of("id", "name", "when", "solved"))) {
+      rows.write(new Object[] {1L, "Taco", LocalDateTime.of(2024, 1, 2, 3, 4, 5), true});
+      rows.write(new Object[] {2L, null, null, false});
+    }
+
+    assertEquals(
+        "id,name,when,solved\r\n1,Taco,2024-01-02T03:04:05,true\r\n2,,,false\r\n", out.toString());
+  }
+
+  @Test
+  public void values_with_commas_quotes_or_line_breaks_are_quoted_and_read_back_the_same()
+      throws Exception {
+    StringWriter out = new StringWriter();
+    Object[] values = {"one, two", "say \"hi\"", "line\r\nbreak", "lf\nonly", "plain"};
+
+    try (CsvRowWriter rows = new CsvRowWriter(out, List.of("a", "b", "c", "d", "e"))) {
+      rows.write(values);
+    }
+
+    assertEquals(
+        "a,b,c,d,e\r\n\"one, two\",\"say \"\"hi\"\"\",\"line\r\nbreak\",\"lf\nonly\",plain\r\n",
+        out.toString());
+    try (CsvRowReader rows =
+        new CsvRowReader(new StringReader(out.toString()), List.of("a", "b", "c", "d", "e"))) {
+      assertEquals(
+          Map.of(
+              "a",
+              "one, two",
+              "b",
+              "say \"hi\"",
+              "c",
+              "line\r\nbreak",
+              "d",
+              "lf\nonly",
+              "e",
+              "plain"),
+          rows.next());
+    }
+  }
+}
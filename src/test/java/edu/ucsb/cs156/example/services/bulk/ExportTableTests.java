@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ExportTableTests {
+
+  @Test
+  public void each_table_selects_its_fields_in_the_order_of_its_key() {
+    assertEquals("menuitemreviews", ExportTable.MENU_ITEM_REVIEWS.getTableName());
+    assertEquals(
+        List.of("id", "itemId", "reviewerEmail", "stars", "dateReviewed", "comments"),
+        ExportTable.MENU_ITEM_REVIEWS.getFields());
+    assertEquals(
+        List.of(
+            Long.class, Long.class, String.class, Integer.class, LocalDateTime.class, String.class),
+        ExportTable.MENU_ITEM_REVIEWS.getTypes());
+    assertEquals(
+        "select id, item_id, reviewer_email, stars, date_reviewed, comments from menuitemreviews"
+            + " order by id",
+        ExportTable.MENU_ITEM_REVIEWS.getSelectSql());
+    assertEquals(
+        "select org_code, org_translation_short, org_translation, inactive from ucsborganization"
+            + " order by org_code",
+        ExportTable.ORGANIZATIONS.getSelectSql());
+    assertEquals("select count(*) from helprequest", ExportTable.HELP_REQUESTS.getCountSql());
+  }
+
+  @Test
+  public void jobs_are_exported_as_in_the_jobs_listing() {
+    assertEquals(
+        List.of(
+            "id",
+            "parentId",
+            "stepName",
+            "status",
+            "progress",
+            "createdAt",
+            "updatedAt",
+            "createdById",
+            "logLines"),
+        ExportTable.JOBS.getFields());
+  }
+
+  @Test
+  public void the_fields_of_an_importable_table_can_be_imported_again() {
+    assertEquals(
+        ImportTable.MENU_ITEM_REVIEWS.getFields(),
+        ExportTable.MENU_ITEM_REVIEWS.getFields().subList(1, 6));
+    assertEquals(
+        ImportTable.MENU_ITEMS.getFields(), ExportTable.MENU_ITEMS.getFields().subList(1, 4));
+    assertEquals(ImportTable.ORGANIZATIONS.getFields(), ExportTable.ORGANIZATIONS.getFields());
+  }
+}
@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.services.bulk;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ImportTableTests {
+
+  private final Map<String, String> review =
+      new HashMap<>(
+          Map.of(
+              "itemId", " 7 ",
+              "reviewerEmail", "cgaucho@ucsb.edu",
+              "stars", "5",
+              "dateReviewed", "2024-01-02T03:04:05",
+              "comments", "",
+              "id", "99"));
+
+  @Test
+  public void each_table_inserts_its_fields_in_order() {
+    assertEquals("menuitemreviews", ImportTable.MENU_ITEM_REVIEWS.getTableName());
+    assertEquals(
+        List.of("itemId", "reviewerEmail", "stars", "dateReviewed", "comments"),
+        ImportTable.MENU_ITEM_REVIEWS.getFields());
+    assertEquals(
+        "insert into menuitemreviews (item_id, reviewer_email, stars, date_reviewed, comments)"
+            + " values (?, ?, ?, ?, ?)",
+        ImportTable.MENU_ITEM_REVIEWS.getInsertSql());
+    assertEquals(
+        "insert into ucsbdiningcommonsmenuitems (dining_commons_code, name, station)"
+            + " values (?, ?, ?)",
+        ImportTable.MENU_ITEMS.getInsertSql());
+    assertEquals(
+        "insert into ucsborganization (org_code, org_translation_short, org_translation,"
+            + " inactive) values (?, ?, ?, ?)",
+        ImportTable.ORGANIZATIONS.getInsertSql());
+  }
+
+  @Test
+  public void values_are_parsed_to_the_type_of_their_column() {
+    assertArrayEquals(
+        new Object[] {
+          7L, "cgaucho@ucsb.edu", 5, LocalDateTime.of(2024, 1, 2, 3, 4, 5), "",
+        },
+        ImportTable.MENU_ITEM_REVIEWS.toParameters(review));
+
+    Map<String, String> organization =
+        Map.of(
+            "orgCode", "ZPR",
+            "orgTranslationShort", "ZETA PHI RHO",
+            "orgTranslation", "ZETA PHI RHO",
+            "inactive", "TRUE");
+    assertArrayEquals(
+        new Object[] {"ZPR", "ZETA PHI RHO", "ZETA PHI RHO", true},
+        ImportTable.ORGANIZATIONS.toParameters(organization));
+    Map<String, String> active =
+        Map.of(
+            "orgCode", "A", "orgTranslationShort", "", "orgTranslation", "", "inactive", "false");
+    assertEquals(false, ImportTable.ORGANIZATIONS.toParameters(active)[3]);
+  }
+
+  @Test
+  public void a_missing_or_unparseable_value_is_rejected() {
+    review.remove("reviewerEmail");
+    assertEquals(
+        "missing reviewerEmail",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.MENU_ITEM_REVIEWS.toParameters(review))
+            .getMessage());
+
+    review.put("reviewerEmail", "cgaucho@ucsb.edu");
+    review.put("stars", "five");
+    assertEquals(
+        "stars is not a whole number: five",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.MENU_ITEM_REVIEWS.toParameters(review))
+            .getMessage());
+
+    review.put("stars", "5");
+    review.put("dateReviewed", "yesterday");
+    assertEquals(
+        "dateReviewed is not an ISO date-time: yesterday",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.MENU_ITEM_REVIEWS.toParameters(review))
+            .getMessage());
+
+    Map<String, String> organization =
+        Map.of("orgCode", "A", "orgTranslationShort", "", "orgTranslation", "", "inactive", "no");
+    assertEquals(
+        "inactive is not true or false: no",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.ORGANIZATIONS.toParameters(organization))
+            .getMessage());
+  }
+}
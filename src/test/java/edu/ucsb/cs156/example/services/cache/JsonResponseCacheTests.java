@@ -0,0 +1,241 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+public class JsonResponseCacheTests {
+
+  @Spy private ObjectMapper objectMapper = new ObjectMapper();
+
+  @Mock private TableVersionService tableVersionService;
+
+  @InjectMocks private JsonResponseCache jsonResponseCache;
+
+  private final List<UCSBOrganization> organizations = new ArrayList<>();
+
+  private final AtomicInteger reads = new AtomicInteger();
+
+  private final Supplier<List<UCSBOrganization>> rows =
+      () -> {
+        reads.incrementAndGet();
+        return organizations;
+      };
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(tableVersionService.getETag("ucsborganization")).thenReturn("\"ucsborganization-3\"");
+    when(tableVersionService.getETag("ucsborganization", "gzip"))
+        .thenReturn("\"ucsborganization-3-gzip\"");
+    for (int i = 0; i < 50; i++) {
+      organizations.add(
+          UCSBOrganization.builder()
+              .orgCode("ORG" + i)
+              .orgTranslationShort("ORGANIZATION " + i)
+              .orgTranslation("THE ORGANIZATION NUMBER " + i)
+              .build());
+    }
+  }
+
+  private static ServletWebRequest request(String acceptEncoding) {
+    return request(acceptEncoding, null);
+  }
+
+  private static ServletWebRequest request(String acceptEncoding, String ifNoneMatch) {
+    MockHttpServletRequest request =
+        new MockHttpServletRequest("GET", "/api/ucsborganizations/all");
+    if (acceptEncoding != null) request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+    if (ifNoneMatch != null) request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    return new ServletWebRequest(request, new MockHttpServletResponse());
+  }
+
+  private static byte[] gunzip(byte[] gzipped) throws IOException {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Test
+  public void the_json_of_a_table_is_serialized_once_and_then_served_as_it_is() throws Exception {
+    // act
+    ResponseEntity<byte[]> first =
+        jsonResponseCache.respond("ucsborganization", request(null), rows);
+    ResponseEntity<byte[]> second =
+        jsonResponseCache.respond("ucsborganization", request("br"), rows);
+
+    // assert
+    assertArrayEquals(objectMapper.writeValueAsBytes(organizations), first.getBody());
+    assertSame(first.getBody(), second.getBody());
+    assertEquals(MediaType.APPLICATION_JSON, first.getHeaders().getContentType());
+    assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), first.getHeaders().getVary());
+    assertNull(first.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  public void clients_that_accept_gzip_get_the_json_gzipped() throws Exception {
+    // act
+    ResponseEntity<byte[]> response =
+        jsonResponseCache.respond("ucsborganization", request("gzip, deflate, br"), rows);
+
+    // assert
+    assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    byte[] json = objectMapper.writeValueAsBytes(organizations);
+    assertArrayEquals(json, gunzip(response.getBody()));
+    assertEquals(true, response.getBody().length < json.length / 4);
+  }
+
+  @Test
+  public void a_client_with_the_current_etag_of_its_coding_is_told_the_json_has_not_changed() {
+    // act
+    ResponseEntity<byte[]> plain =
+        jsonResponseCache.respond(
+            "ucsborganization", request(null, "\"ucsborganization-3\""), rows);
+    ResponseEntity<byte[]> gzipped =
+        jsonResponseCache.respond(
+            "ucsborganization", request("gzip", "\"ucsborganization-3-gzip\""), rows);
+    ResponseEntity<byte[]> otherCoding =
+        jsonResponseCache.respond(
+            "ucsborganization", request("gzip", "\"ucsborganization-3\""), rows);
+
+    // assert
+    assertEquals(HttpStatus.NOT_MODIFIED, plain.getStatusCode());
+    assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), plain.getHeaders().getVary());
+    assertNull(plain.getBody());
+    assertEquals(HttpStatus.NOT_MODIFIED, gzipped.getStatusCode());
+    assertEquals(HttpStatus.OK, otherCoding.getStatusCode());
+    assertEquals("gzip", otherCoding.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  public void with_compression_off_clients_that_accept_gzip_get_the_plain_json_and_etag() {
+    // arrange
+    ReflectionTestUtils.setField(jsonResponseCache, "gzipAboveBytes", 0);
+
+    // act
+    ResponseEntity<byte[]> response =
+        jsonResponseCache.respond(
+            "ucsborganization", request("gzip", "\"ucsborganization-3\""), rows);
+
+    // assert
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    verify(tableVersionService, never()).getETag("ucsborganization", "gzip");
+  }
+
+  @Test
+  public void json_too_short_to_be_worth_compressing_is_only_kept_as_it_is() {
+    // arrange
+    organizations.subList(1, organizations.size()).clear();
+
+    // act
+    ResponseEntity<byte[]> response =
+        jsonResponseCache.respond("ucsborganization", request("gzip"), rows);
+
+    // assert
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertNull(jsonResponseCache.get("ucsborganization", rows).gzipped());
+  }
+
+  @Test
+  public void json_that_gzip_would_not_make_smaller_is_only_kept_as_it_is() {
+    // arrange
+    ReflectionTestUtils.setField(jsonResponseCache, "gzipAboveBytes", 1);
+    organizations.clear();
+
+    // act and assert
+    assertNull(jsonResponseCache.get("ucsborganization", rows).gzipped());
+  }
+
+  @Test
+  public void compression_can_be_turned_off() {
+    // arrange
+    ReflectionTestUtils.setField(jsonResponseCache, "gzipAboveBytes", 0);
+
+    // act and assert
+    assertNull(jsonResponseCache.get("ucsborganization", rows).gzipped());
+  }
+
+  @Test
+  public void the_json_is_serialized_again_once_the_table_changes() {
+    // arrange
+    when(tableVersionService.getVersion("ucsborganization")).thenReturn(3L);
+    JsonResponseCache.Entry before = jsonResponseCache.get("ucsborganization", rows);
+
+    // act
+    when(tableVersionService.getVersion("ucsborganization")).thenReturn(4L);
+    organizations.clear();
+    JsonResponseCache.Entry after = jsonResponseCache.get("ucsborganization", rows);
+
+    // assert
+    assertEquals(3L, before.version());
+    assertEquals(4L, after.version());
+    assertEquals("[]", new String(after.json()));
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void gzip_is_accepted_only_if_listed_with_a_quality_above_0() {
+    assertEquals(true, JsonResponseCache.acceptsGzip("gzip"));
+    assertEquals(true, JsonResponseCache.acceptsGzip("deflate, GZIP;q=0.5"));
+    assertEquals(true, JsonResponseCache.acceptsGzip("gzip; level=1; Q=1"));
+    assertEquals(false, JsonResponseCache.acceptsGzip(null));
+    assertEquals(false, JsonResponseCache.acceptsGzip("br, x-gzip-like"));
+    assertEquals(false, JsonResponseCache.acceptsGzip("gzip;q=0"));
+    assertEquals(false, JsonResponseCache.acceptsGzip("gzip;q=0.000, br"));
+    assertEquals(false, JsonResponseCache.acceptsGzip("gzip;q=high"));
+  }
+
+  @Test
+  public void clients_that_refuse_gzip_get_the_plain_json() throws Exception {
+    // act
+    ResponseEntity<byte[]> response =
+        jsonResponseCache.respond("ucsborganization", request("gzip;q=0, identity"), rows);
+
+    // assert
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(objectMapper.writeValueAsBytes(organizations), response.getBody());
+    verify(tableVersionService, never()).getETag("ucsborganization", "gzip");
+  }
+
+  @Test
+  public void rows_that_cannot_be_serialized_are_reported() {
+    // act and assert
+    assertThrows(
+        UncheckedIOException.class,
+        () -> jsonResponseCache.get("ucsborganization", () -> List.of(new Object())));
+  }
+}
@@ -0,0 +1,146 @@
+package edu.ucsb.cs156.example.services.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.TableVersionService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class SnapshotCacheTests {
+
+  @Mock private UCSBDateRepository ucsbDateRepository;
+
+  @Mock private UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Mock private UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Mock private TableVersionService tableVersionService;
+
+  private UCSBDatesCache dates;
+
+  private final UCSBDate firstDay = date(1L, "20222", "firstDayOfClasses");
+  private final UCSBDate lastDay = date(2L, "20222", "lastDayOfClasses");
+  private final UCSBDate noQuarter = date(3L, null, "someDay");
+  private final UCSBDate nextFirstDay = date(4L, "20223", "firstDayOfClasses");
+
+  private static UCSBDate date(long id, String quarterYYYYQ, String name) {
+    return UCSBDate.builder().id(id).quarterYYYYQ(quarterYYYYQ).name(name).build();
+  }
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    dates = new UCSBDatesCache(ucsbDateRepository, tableVersionService);
+    when(ucsbDateRepository.findAll())
+        .thenReturn(new ArrayList<>(List.of(firstDay, lastDay, noQuarter, nextFirstDay)));
+  }
+
+  @Test
+  public void the_table_is_read_once_and_then_served_from_memory() {
+    // act and assert
+    assertEquals(List.of(firstDay, lastDay, noQuarter, nextFirstDay), dates.findAll());
+    assertEquals(Optional.of(lastDay), dates.findById(2L));
+    assertEquals(Optional.empty(), dates.findById(5L));
+    assertEquals(List.of(firstDay, lastDay), dates.findAllByQuarterYYYYQ("20222"));
+    assertEquals(List.of(noQuarter), dates.findAllByQuarterYYYYQ(null));
+    assertEquals(List.of(), dates.findAllByQuarterYYYYQ("20224"));
+    verify(ucsbDateRepository, times(1)).findAll();
+  }
+
+  @Test
+  public void the_snapshot_cannot_be_changed() {
+    // act and assert
+    assertThrows(UnsupportedOperationException.class, () -> dates.findAll().clear());
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> dates.findAllByQuarterYYYYQ("20222").add(nextFirstDay));
+    assertThrows(UnsupportedOperationException.class, () -> dates.snapshot().byKey().clear());
+    assertThrows(UnsupportedOperationException.class, () -> dates.snapshot().byGroup().clear());
+  }
+
+  @Test
+  public void a_write_made_elsewhere_is_picked_up_once_the_version_of_the_table_changes() {
+    // arrange
+    when(tableVersionService.getVersion("ucsbdates")).thenReturn(7L);
+    dates.findAll();
+    when(ucsbDateRepository.findAll()).thenReturn(List.of(nextFirstDay));
+
+    // act
+    when(tableVersionService.getVersion("ucsbdates")).thenReturn(8L);
+
+    // assert
+    assertEquals(List.of(nextFirstDay), dates.findAll());
+    assertEquals(8L, dates.snapshot().version());
+    verify(ucsbDateRepository, times(2)).findAll();
+  }
+
+  @Test
+  public void readers_that_find_the_same_stale_snapshot_read_the_table_only_once()
+      throws Exception {
+    // arrange
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(ucsbDateRepository.findAll())
+        .thenAnswer(
+            invocation -> {
+              reading.countDown();
+              release.await();
+              return List.of(firstDay);
+            });
+    FutureTask<List<UCSBDate>> first = new FutureTask<>(dates::findAll);
+    FutureTask<List<UCSBDate>> second = new FutureTask<>(dates::findAll);
+
+    // act
+    new Thread(first).start();
+    reading.await();
+    Thread secondReader = new Thread(second);
+    secondReader.start();
+    while (secondReader.getState() != Thread.State.BLOCKED) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+
+    // assert
+    assertSame(first.get(), second.get());
+    verify(ucsbDateRepository, times(1)).findAll();
+  }
+
+  @Test
+  public void dining_commons_and_organizations_are_cached_by_their_codes() {
+    // arrange
+    UCSBDiningCommons carrillo = UCSBDiningCommons.builder().code("carrillo").build();
+    UCSBOrganization zpr = UCSBOrganization.builder().orgCode("ZPR").build();
+    when(ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(carrillo));
+    when(ucsbOrganizationRepository.findAll()).thenReturn(List.of(zpr));
+    UCSBDiningCommonsCache commons =
+        new UCSBDiningCommonsCache(ucsbDiningCommonsRepository, tableVersionService);
+    UCSBOrganizationCache organizations =
+        new UCSBOrganizationCache(ucsbOrganizationRepository, tableVersionService);
+
+    // act and assert
+    assertEquals(Optional.of(carrillo), commons.findById("carrillo"));
+    assertEquals(List.of(zpr), organizations.findAll());
+    assertEquals(Optional.of(zpr), organizations.findById("ZPR"));
+    verify(tableVersionService, atLeastOnce()).getVersion("ucsbdiningcommons");
+    verify(tableVersionService, atLeastOnce()).getVersion("ucsborganization");
+  }
+}
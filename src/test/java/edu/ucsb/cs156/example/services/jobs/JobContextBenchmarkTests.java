@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares per-line logging with buffered logging for a job that logs in a tight loop. Each write
+ * to the repository is charged a simulated one millisecond database round trip. The times are only
+ * logged; what is checked is how many round trips each makes, and how many lines each carries.
+ */
+@Slf4j
+public class JobContextBenchmarkTests {
+
+  private static final int LINES = 500;
+  private static final long ROUND_TRIP_MS = 1;
+
+  private static final int FLUSH_EVERY_LINES = 100;
+
+  private static class Result {
+    List<Integer> batchSizes = new ArrayList<>();
+    long elapsedMs;
+  }
+
+  private Result run(boolean buffered) {
+    Result result = new Result();
+    JobLogLinesRepository repository = mock(JobLogLinesRepository.class);
+    when(repository.saveAll(any()))
+        .thenAnswer(
+            invocation -> {
+              result.batchSizes.add(invocation.<List<?>>getArgument(0).size());
+              Thread.sleep(ROUND_TRIP_MS);
+              return invocation.getArgument(0);
+            });
+
+    Job job = Job.builder().id(1L).build();
+    JobContext ctx =
+        buffered
+            ? new JobContext(repository, job, FLUSH_EVERY_LINES, 60_000)
+            : new JobContext(repository, job);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < LINES; i++) {
+      ctx.log("processed item " + i);
+    }
+    ctx.flush();
+
+    result.elapsedMs = (System.nanoTime() - start) / 1_000_000;
+    return result;
+  }
+
+  @Test
+  public void buffered_logging_writes_lines_in_batches_of_flush_every_lines() {
+    Result perLine = run(false);
+    Result buffered = run(true);
+
+    log.info(
+        "JobContext benchmark, {} lines: per-line {} round trips in {} ms; buffered {} round trips"
+            + " in {} ms",
+        LINES,
+        perLine.batchSizes.size(),
+        perLine.elapsedMs,
+        buffered.batchSizes.size(),
+        buffered.elapsedMs);
+
+    assertEquals(Collections.nCopies(LINES, 1), perLine.batchSizes);
+    assertEquals(
+        Collections.nCopies(LINES / FLUSH_EVERY_LINES, FLUSH_EVERY_LINES), buffered.batchSizes);
+  }
+}
@@ -1,9 +1,34 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobThroughput;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 public class JobContextTests {
   @Test
@@ -16,8 +41,511 @@ public class JobContextTests {
 
     // act
     ctx.log("This is a log message");
+    ctx.flush();
 
     // assert
-    assertEquals("This is a log message", job1.getLog());
+    assertNull(job1.getLog());
+  }
+
+  @Test
+  public void each_log_call_appends_one_line_with_increasing_seq() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job1 = Job.builder().id(17L).build();
+    JobContext ctx = new JobContext(jobLogLinesRepository, job1);
+
+    // act
+    ctx.log("first");
+    ctx.log("second");
+
+    // assert
+    List<JobLogLine> saved = savedLines(jobLogLinesRepository, 2);
+
+    assertEquals(17L, saved.get(0).getJobId());
+    assertEquals(0, saved.get(0).getSeq());
+    assertEquals("first", saved.get(0).getLine());
+    assertNotNull(saved.get(0).getCreatedAt());
+
+    assertEquals(17L, saved.get(1).getJobId());
+    assertEquals(1, saved.get(1).getSeq());
+    assertEquals("second", saved.get(1).getLine());
+    assertNull(job1.getLog());
+    assertEquals(17L, ctx.getJobId());
+  }
+
+  @Test
+  public void buffered_context_writes_one_batch_every_n_lines() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job1 = Job.builder().id(3L).build();
+    JobContext ctx = new JobContext(jobLogLinesRepository, job1, 3, 60_000);
+
+    // act
+    ctx.log("one");
+    ctx.log("two");
+
+    // assert
+    verify(jobLogLinesRepository, never()).saveAll(any());
+
+    // act
+    ctx.log("three");
+    ctx.log("four");
+
+    // assert
+    List<JobLogLine> saved = savedLines(jobLogLinesRepository, 1);
+    assertEquals(3, saved.size());
+    assertEquals("one", saved.get(0).getLine());
+    assertEquals(2, saved.get(2).getSeq());
+  }
+
+  @Test
+  public void flush_writes_remaining_lines_and_does_nothing_when_empty() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job1 = Job.builder().id(3L).build();
+    JobContext ctx = new JobContext(jobLogLinesRepository, job1, 100, 60_000);
+    ctx.log("one");
+
+    // act
+    ctx.flush();
+    ctx.flush();
+
+    // assert
+    List<JobLogLine> saved = savedLines(jobLogLinesRepository, 1);
+    assertEquals(1, saved.size());
+    assertEquals("one", saved.get(0).getLine());
+  }
+
+  @Test
+  public void lines_of_a_failed_flush_are_written_by_the_next_one() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    when(jobLogLinesRepository.saveAll(any()))
+        .thenThrow(new IllegalStateException("no connection"))
+        .thenReturn(List.of());
+    Job job1 = Job.builder().id(3L).build();
+    JobContext ctx = new JobContext(jobLogLinesRepository, job1, 100, 60_000);
+    ctx.log("one");
+
+    // act
+    assertThrows(IllegalStateException.class, ctx::flush);
+    ctx.log("two");
+    ctx.flush();
+
+    // assert
+    List<JobLogLine> saved = savedLines(jobLogLinesRepository, 2);
+    // the failed batch, then the same line again with the one logged since
+    assertEquals(List.of("one", "one", "two"), saved.stream().map(JobLogLine::getLine).toList());
+  }
+
+  @Test
+  public void buffered_context_flushes_when_interval_has_passed() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    Job job1 = Job.builder().id(3L).build();
+    JobContext ctx = new JobContext(jobLogLinesRepository, job1, 100, 0);
+
+    // act
+    ctx.log("one");
+
+    // assert
+    List<JobLogLine> saved = savedLines(jobLogLinesRepository, 1);
+    assertEquals(1, saved.size());
+  }
+
+  @Test
+  public void checkpoint_passes_until_job_is_cancelled() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(4L).build());
+    ctx.checkpoint();
+    assertFalse(ctx.isCancelled());
+
+    // act
+    ctx.cancel("cancelled");
+    ctx.cancel("timed_out");
+
+    // assert
+    assertTrue(ctx.isCancelled());
+    assertEquals("cancelled", ctx.getCancelStatus());
+    JobCancelledException e = assertThrows(JobCancelledException.class, ctx::checkpoint);
+    assertEquals("Job stopped: cancelled", e.getMessage());
+  }
+
+  @Test
+  public void cancel_interrupts_the_worker_until_it_stops() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(4L).build());
+    Thread worker = new Thread(() -> {});
+    ctx.start(worker, null);
+
+    // act
+    ctx.cancel("cancelled");
+
+    // assert
+    assertTrue(worker.isInterrupted());
+
+    // act: once stopped, a further cancel (which is ignored anyway) cannot reach the worker
+    JobContext stopped = new JobContext(null, Job.builder().id(5L).build());
+    Thread other = new Thread(() -> {});
+    stopped.start(other, null);
+    stopped.stop();
+    stopped.cancel("cancelled");
+
+    // assert
+    assertFalse(other.isInterrupted());
+  }
+
+  @Test
+  public void context_is_past_its_deadline_only_once_timeout_has_elapsed() throws Exception {
+
+    // arrange
+
+    JobContext noTimeout = new JobContext(null, Job.builder().id(6L).build());
+    JobContext zeroTimeout = new JobContext(null, Job.builder().id(6L).build());
+    JobContext longTimeout = new JobContext(null, Job.builder().id(6L).build());
+    JobContext shortTimeout = new JobContext(null, Job.builder().id(6L).build());
+
+    // act
+    noTimeout.start(Thread.currentThread(), null);
+    zeroTimeout.start(Thread.currentThread(), 0L);
+    longTimeout.start(Thread.currentThread(), 60_000L);
+    shortTimeout.start(Thread.currentThread(), 1L);
+    Thread.sleep(5);
+
+    // assert
+    assertFalse(noTimeout.isPastDeadline());
+    assertFalse(zeroTimeout.isPastDeadline());
+    assertFalse(longTimeout.isPastDeadline());
+    assertTrue(shortTimeout.isPastDeadline());
+  }
+
+  @Test
+  public void progress_is_kept_between_0_and_100_and_reported_once_per_change() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(7L).build());
+
+    // assert
+    assertNull(ctx.getProgress());
+    assertNull(ctx.takeProgressUpdate());
+
+    // act & assert
+    ctx.setProgress(150);
+    assertEquals(100, ctx.getProgress());
+    ctx.setProgress(-5);
+    assertEquals(0, ctx.getProgress());
+    ctx.setProgress(42);
+    assertEquals(42, ctx.takeProgressUpdate());
+    assertNull(ctx.takeProgressUpdate());
+    assertEquals(42, ctx.getProgress());
+  }
+
+  @Test
+  public void progress_of_items_sets_the_share_done_and_counts_the_items_processed()
+      throws Exception {
+
+    // arrange
+
+    JobContext ctx =
+        new JobContext(
+            null, Job.builder().id(9L).jobType("edu.ucsb.cs156.example.jobs.TestJob").build());
+
+    // assert
+    assertEquals(0, ctx.takeItemsProcessed());
+
+    // act & assert
+    ctx.progress(25, 200);
+    assertEquals(12, ctx.getProgress());
+    assertEquals(25, ctx.takeItemsProcessed());
+    assertEquals(0, ctx.takeItemsProcessed());
+    ctx.progress(200, 200);
+    assertEquals(100, ctx.getProgress());
+    assertEquals(175, ctx.takeItemsProcessed());
+    ctx.progress(0, 0);
+    assertEquals(100, ctx.getProgress());
+  }
+
+  @Test
+  public void throughput_is_items_done_per_second_since_the_job_started() throws Exception {
+
+    // arrange
+
+    JobContext ctx =
+        new JobContext(
+            null, Job.builder().id(10L).jobType("edu.ucsb.cs156.example.jobs.TestJob").build());
+
+    // act & assert
+    JobThroughput waiting = ctx.getThroughput();
+    assertEquals(10L, waiting.getJobId());
+    assertEquals("TestJob", waiting.getJobType());
+    assertNull(waiting.getProgress());
+    assertNull(waiting.getItemsDone());
+    assertEquals(0.0, waiting.getItemsPerSecond());
+
+    ctx.progress(5, 10);
+    assertEquals(0.0, ctx.getThroughput().getItemsPerSecond());
+
+    ctx.start(Thread.currentThread(), null);
+    Thread.sleep(50);
+    JobThroughput running = ctx.getThroughput();
+    assertEquals(50, running.getProgress());
+    assertEquals(5L, running.getItemsDone());
+    assertEquals(10L, running.getItemsTotal());
+    assertTrue(
+        running.getItemsPerSecond() > 0 && running.getItemsPerSecond() <= 100,
+        String.valueOf(running.getItemsPerSecond()));
+  }
+
+  @Test
+  public void forEachParallel_runs_every_sub_task_and_returns_results_in_order() throws Exception {
+
+    // arrange
+
+    JobLogLinesRepository jobLogLinesRepository = mock(JobLogLinesRepository.class);
+    JobContext ctx =
+        new JobContext(jobLogLinesRepository, Job.builder().id(8L).build(), 1000, 60_000);
+    List<Integer> items = IntStream.range(0, 50).boxed().toList();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    // act
+    List<Integer> squares =
+        ctx.forEachParallel(
+            items,
+            4,
+            i -> {
+              threads.add(Thread.currentThread().getName());
+              ctx.log("item " + i);
+              return i * i;
+            });
+    ctx.flush();
+
+    // assert
+    assertEquals(IntStream.range(0, 50).map(i -> i * i).boxed().toList(), squares);
+    assertEquals(100, ctx.getProgress());
+    assertTrue(threads.size() <= 4, threads.toString());
+    assertFalse(threads.contains(Thread.currentThread().getName()));
+    List<JobLogLine> lines = savedLines(jobLogLinesRepository, 1);
+    assertEquals(50, lines.size());
+    assertEquals(
+        IntStream.range(0, 50).boxed().toList(), lines.stream().map(JobLogLine::getSeq).toList());
+    assertEquals(
+        items.stream().map(i -> "item " + i).collect(Collectors.toSet()),
+        lines.stream().map(JobLogLine::getLine).collect(Collectors.toSet()));
+  }
+
+  @Test
+  public void forEachParallel_runs_at_most_parallelism_sub_tasks_at_once() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(9L).build());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger mostRunning = new AtomicInteger();
+
+    // act
+    ctx.forEachParallel(
+        IntStream.range(0, 12).boxed().toList(),
+        3,
+        i -> {
+          mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.sleep(5);
+          running.decrementAndGet();
+          return null;
+        });
+
+    // assert
+    assertTrue(mostRunning.get() <= 3, "at most " + mostRunning.get());
+  }
+
+  @Test
+  public void forEachParallel_uses_every_processor_by_default() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(10L).build());
+
+    // act
+    List<String> results = ctx.forEachParallel(List.of("a", "b"), String::toUpperCase);
+    List<String> none = ctx.forEachParallel(List.<String>of(), String::toUpperCase);
+
+    // assert
+    assertEquals(List.of("A", "B"), results);
+    assertEquals(List.of(), none);
+  }
+
+  @Test
+  public void forEachParallel_throws_the_exception_of_a_failed_sub_task() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(11L).build());
+    AtomicInteger started = new AtomicInteger();
+    CountDownLatch secondStarted = new CountDownLatch(1);
+
+    // act
+    Exception e =
+        assertThrows(
+            IOException.class,
+            () ->
+                ctx.forEachParallel(
+                    IntStream.range(0, 100).boxed().toList(),
+                    2,
+                    i -> {
+                      started.incrementAndGet();
+                      if (i == 0) {
+                        secondStarted.await();
+                        throw new IOException("disk full");
+                      }
+                      secondStarted.countDown();
+                      // busy work that only stops when interrupted
+                      while (!Thread.currentThread().isInterrupted()) {
+                        Thread.yield();
+                      }
+                      return i;
+                    }));
+
+    // assert
+    assertEquals("disk full", e.getMessage());
+    assertEquals(2, started.get());
+  }
+
+  @Test
+  public void forEachParallel_throws_an_error_of_a_failed_sub_task() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(12L).build());
+
+    // act
+    AssertionError e =
+        assertThrows(
+            AssertionError.class,
+            () ->
+                ctx.forEachParallel(
+                    List.of(1),
+                    i -> {
+                      throw new AssertionError("broken");
+                    }));
+
+    // assert
+    assertEquals("broken", e.getMessage());
+  }
+
+  @Test
+  public void forEachParallel_stops_its_sub_tasks_when_the_job_is_cancelled() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(13L).build());
+    CountDownLatch started = new CountDownLatch(2);
+    AtomicInteger interrupted = new AtomicInteger();
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread worker =
+        new Thread(
+            () -> {
+              try {
+                ctx.forEachParallel(
+                    List.of(1, 2),
+                    2,
+                    i -> {
+                      started.countDown();
+                      try {
+                        Thread.sleep(60_000);
+                      } catch (InterruptedException e) {
+                        interrupted.incrementAndGet();
+                        throw e;
+                      }
+                      return i;
+                    });
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    ctx.start(worker, null);
+    worker.start();
+    started.await();
+
+    // act
+    ctx.cancel("timed_out");
+    worker.join(5000);
+
+    // assert
+    assertFalse(worker.isAlive());
+    assertTrue(thrown.get() instanceof JobCancelledException, String.valueOf(thrown.get()));
+    assertEquals(2, interrupted.get());
+  }
+
+  @Test
+  public void forEachParallel_passes_on_an_interrupt_that_is_not_a_cancel() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(14L).build());
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread worker =
+        new Thread(
+            () -> {
+              try {
+                ctx.forEachParallel(
+                    List.of(1),
+                    i -> {
+                      started.countDown();
+                      Thread.sleep(60_000);
+                      return i;
+                    });
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    worker.start();
+    started.await();
+
+    // act
+    worker.interrupt();
+    worker.join(5000);
+
+    // assert
+    assertTrue(thrown.get() instanceof InterruptedException, String.valueOf(thrown.get()));
+  }
+
+  @Test
+  public void forEachParallel_starts_nothing_once_the_job_is_cancelled() throws Exception {
+
+    // arrange
+
+    JobContext ctx = new JobContext(null, Job.builder().id(15L).build());
+    ctx.cancel("cancelled");
+    AtomicInteger started = new AtomicInteger();
+
+    // act & assert
+    assertThrows(
+        JobCancelledException.class,
+        () -> ctx.forEachParallel(List.of(1, 2), i -> started.incrementAndGet()));
+    assertEquals(0, started.get());
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<JobLogLine> savedLines(JobLogLinesRepository repository, int batches) {
+    ArgumentCaptor<Iterable<JobLogLine>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(repository, times(batches)).saveAll(captor.capture());
+    List<JobLogLine> lines = new ArrayList<>();
+    captor.getAllValues().forEach(batch -> batch.forEach(lines::add));
+    return lines;
   }
 }
@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+public class JobExecutorMetricsTests {
+
+  private ThreadPoolTaskExecutor executor(JobExecutorMetrics metrics) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(1);
+    executor.setMaxPoolSize(1);
+    executor.setQueueCapacity(1);
+    executor.setTaskDecorator(metrics);
+    executor.setRejectedExecutionHandler(metrics);
+    executor.initialize();
+    return executor;
+  }
+
+  @Test
+  public void stats_before_any_job_has_run() {
+    JobExecutorMetrics metrics = new JobExecutorMetrics(true, new SimpleMeterRegistry());
+    ThreadPoolTaskExecutor executor = executor(metrics);
+
+    JobExecutorStats stats = metrics.stats(executor);
+
+    assertTrue(stats.getVirtualThreads());
+    assertEquals(1, stats.getPoolSize());
+    assertEquals(1, stats.getQueueCapacity());
+    assertEquals(0, stats.getStarted());
+    assertEquals(0.0, stats.getAverageQueueWaitMs());
+    assertEquals(0.0, stats.getMaxQueueWaitMs());
+    executor.shutdown();
+  }
+
+  @Test
+  public void records_queue_wait_and_rejections() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    JobExecutorMetrics metrics = new JobExecutorMetrics(false, registry);
+    ThreadPoolTaskExecutor executor = executor(metrics);
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch queuedRan = new CountDownLatch(1);
+
+    // the first task occupies the only thread, the second fills the queue, the third is rejected
+    executor.execute(
+        () -> {
+          running.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    running.await();
+    executor.execute(queuedRan::countDown);
+    assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {}));
+
+    JobExecutorStats busy = metrics.stats(executor);
+    assertEquals(1, busy.getActiveCount());
+    assertEquals(1, busy.getQueueDepth());
+    assertEquals(1, busy.getRejected());
+    assertEquals(1, busy.getStarted());
+
+    Thread.sleep(20);
+    release.countDown();
+    queuedRan.await();
+
+    JobExecutorStats done = metrics.stats(executor);
+    assertEquals(2, done.getStarted());
+    assertFalse(done.getVirtualThreads());
+    assertTrue(done.getMaxQueueWaitMs() >= 20);
+    assertTrue(done.getAverageQueueWaitMs() >= 10);
+    Timer queueWait = registry.find(JobMetrics.QUEUE_WAIT).timer();
+    assertEquals(2, queueWait.count());
+    assertTrue(queueWait.max(TimeUnit.MILLISECONDS) >= 20);
+    executor.shutdown();
+  }
+}
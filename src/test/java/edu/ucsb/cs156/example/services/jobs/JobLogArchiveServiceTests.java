@@ -0,0 +1,309 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.JobLogArchive;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobLogArchiveStats;
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobLogArchiveServiceTests {
+
+  @Mock private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @InjectMocks private JobLogArchiveService jobLogArchiveService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobLogArchiveService, "compressAboveBytes", 100L);
+  }
+
+  private static JobLogLine line(int seq, String text) {
+    return JobLogLine.builder().jobId(1L).seq(seq).line(text).build();
+  }
+
+  /** Archive a log of PAGE_SIZE + 2 lines, the last of them null, and return the archive. */
+  private JobLogArchive archiveLongLog() throws SQLException {
+    List<JobLogLine> firstPage = new ArrayList<>();
+    for (int seq = 0; seq < JobLogArchiveService.PAGE_SIZE; seq++) {
+      firstPage.add(line(seq, "line " + seq));
+    }
+    int next = JobLogArchiveService.PAGE_SIZE;
+    when(jobLogLinesRepository.sumLineLengths(1L)).thenReturn(10000L);
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            1L, 0, Limit.of(JobLogArchiveService.PAGE_SIZE)))
+        .thenReturn(firstPage);
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            1L, next, Limit.of(JobLogArchiveService.PAGE_SIZE)))
+        .thenReturn(List.of(line(next, "last but one: é"), line(next + 1, null)));
+
+    assertTrue(jobLogArchiveService.archive(1L));
+
+    ArgumentCaptor<JobLogArchive> saved = ArgumentCaptor.forClass(JobLogArchive.class);
+    verify(jobLogArchivesRepository, times(1)).save(saved.capture());
+    JobLogArchive archive = saved.getValue();
+    stored(1L, archive);
+    return archive;
+  }
+
+  /**
+   * Answer the query for the archive of a job with a result set that streams its data, as the
+   * database would, or with no rows if archive is null.
+   */
+  private void stored(long jobId, JobLogArchive archive) throws SQLException {
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.next()).thenReturn(archive != null);
+    if (archive != null) {
+      when(rs.getInt(1)).thenReturn(archive.getLineCount());
+      when(rs.getBinaryStream(2))
+          .thenAnswer(invocation -> new ByteArrayInputStream(archive.getData()));
+    }
+    when(jdbcTemplate.query(
+            eq(JobLogArchiveService.READ_SQL), any(ResultSetExtractor.class), eq(jobId)))
+        .thenAnswer(invocation -> invocation.<ResultSetExtractor<?>>getArgument(1).extractData(rs));
+  }
+
+  @Test
+  public void archive_compresses_long_log_and_deletes_its_lines() throws Exception {
+    // act
+    JobLogArchive archive = archiveLongLog();
+
+    // assert
+    int lines = JobLogArchiveService.PAGE_SIZE + 2;
+    long rawBytes = 0;
+    for (int seq = 0; seq < JobLogArchiveService.PAGE_SIZE; seq++) {
+      rawBytes += ("line " + seq).length();
+    }
+    rawBytes += "last but one: é".getBytes(StandardCharsets.UTF_8).length;
+    assertEquals(1L, archive.getJobId());
+    assertEquals(lines, archive.getLineCount());
+    assertEquals(rawBytes, archive.getRawBytes());
+    assertEquals(archive.getData().length, archive.getCompressedBytes());
+    assertTrue(archive.getCompressedBytes() < rawBytes / 2);
+    verify(jobLogLinesRepository, times(1)).deleteAllByJobIdIn(List.of(1L));
+  }
+
+  @Test
+  public void archive_leaves_short_log_alone() {
+    when(jobLogLinesRepository.sumLineLengths(1L)).thenReturn(99L);
+
+    assertFalse(jobLogArchiveService.archive(1L));
+
+    verify(jobLogArchivesRepository, never()).save(any());
+    verify(jobLogLinesRepository, never()).deleteAllByJobIdIn(any());
+  }
+
+  @Test
+  public void archive_leaves_log_alone_if_it_does_not_compress() {
+    when(jobLogLinesRepository.sumLineLengths(1L)).thenReturn(100L);
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            1L, 0, Limit.of(JobLogArchiveService.PAGE_SIZE)))
+        .thenReturn(List.of(line(0, "x")));
+
+    assertFalse(jobLogArchiveService.archive(1L));
+
+    verify(jobLogArchivesRepository, never()).save(any());
+    verify(jobLogLinesRepository, never()).deleteAllByJobIdIn(any());
+  }
+
+  @Test
+  public void archive_does_nothing_when_compression_is_off() {
+    ReflectionTestUtils.setField(jobLogArchiveService, "compressAboveBytes", 0L);
+
+    assertFalse(jobLogArchiveService.archive(1L));
+
+    verifyNoInteractions(jobLogLinesRepository, jobLogArchivesRepository);
+  }
+
+  @Test
+  public void archive_fails_if_log_cannot_be_written() {
+    when(jobLogLinesRepository.sumLineLengths(1L)).thenReturn(10000L);
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            1L, 0, Limit.of(JobLogArchiveService.PAGE_SIZE)))
+        .thenAnswer(
+            invocation -> {
+              throw new IOException("disk full");
+            });
+
+    assertThrows(UncheckedIOException.class, () -> jobLogArchiveService.archive(1L));
+    verify(jobLogArchivesRepository, never()).save(any());
+  }
+
+  @Test
+  public void archiveLater_archives_on_the_archive_executor() {
+    // arrange
+    List<Runnable> submitted = new ArrayList<>();
+    ReflectionTestUtils.setField(
+        jobLogArchiveService, "archiveExecutor", (TaskExecutor) submitted::add);
+    ReflectionTestUtils.setField(jobLogArchiveService, "self", jobLogArchiveService);
+    when(jobLogLinesRepository.sumLineLengths(1L)).thenReturn(10L);
+
+    // act
+    jobLogArchiveService.archiveLater(1L);
+
+    // assert: nothing happens until the executor runs the task
+    verifyNoInteractions(jobLogLinesRepository);
+    assertEquals(1, submitted.size());
+    submitted.get(0).run();
+    verify(jobLogLinesRepository, times(1)).sumLineLengths(1L);
+  }
+
+  @Test
+  public void archiveLater_logs_and_swallows_failure_to_archive() {
+    // arrange
+    JobLogArchiveService self = mock(JobLogArchiveService.class);
+    when(self.archive(1L)).thenThrow(new UncheckedIOException(new IOException("disk full")));
+    ReflectionTestUtils.setField(
+        jobLogArchiveService, "archiveExecutor", (TaskExecutor) Runnable::run);
+    ReflectionTestUtils.setField(jobLogArchiveService, "self", self);
+
+    // act
+    jobLogArchiveService.archiveLater(1L);
+
+    // assert
+    verify(self, times(1)).archive(1L);
+  }
+
+  @Test
+  public void archiveLater_leaves_log_alone_when_the_queue_is_full() {
+    // arrange
+    TaskExecutor full = mock(TaskExecutor.class);
+    doThrow(new TaskRejectedException("full")).when(full).execute(any());
+    ReflectionTestUtils.setField(jobLogArchiveService, "archiveExecutor", full);
+
+    // act
+    jobLogArchiveService.archiveLater(1L);
+
+    // assert
+    verify(full, times(1)).execute(any());
+    verifyNoInteractions(jobLogLinesRepository, jobLogArchivesRepository);
+  }
+
+  @Test
+  public void readLines_reads_whole_archived_log() throws Exception {
+    archiveLongLog();
+
+    List<JobLogLine> lines = jobLogArchiveService.readLines(1L, 0, null, null);
+
+    assertEquals(JobLogArchiveService.PAGE_SIZE + 2, lines.size());
+    for (int seq = 0; seq < lines.size(); seq++) {
+      assertEquals(seq, lines.get(seq).getSeq());
+      assertEquals(1L, lines.get(seq).getJobId());
+    }
+    assertEquals("line 0", lines.get(0).getLine());
+    assertEquals("last but one: é", lines.get(lines.size() - 2).getLine());
+    assertNull(lines.get(lines.size() - 1).getLine());
+  }
+
+  @Test
+  public void readLines_reads_range_of_archived_log() throws Exception {
+    archiveLongLog();
+
+    List<JobLogLine> lines = jobLogArchiveService.readLines(1L, 10, 3, null);
+
+    assertEquals(List.of("line 10", "line 11", "line 12"), textOf(lines));
+    assertEquals(10, lines.get(0).getSeq());
+    assertEquals(List.of(), jobLogArchiveService.readLines(1L, 10, 0, null));
+    assertEquals(List.of(), jobLogArchiveService.readLines(1L, 5000, 3, null));
+  }
+
+  @Test
+  public void readLines_skips_null_lines_before_start() throws Exception {
+    archiveLongLog();
+    int last = JobLogArchiveService.PAGE_SIZE + 1;
+
+    assertEquals(List.of(), jobLogArchiveService.readLines(1L, last + 1, null, null));
+  }
+
+  @Test
+  public void readLines_reads_tail_of_archived_log() throws Exception {
+    archiveLongLog();
+
+    List<JobLogLine> lines = jobLogArchiveService.readLines(1L, 0, null, 3);
+
+    List<String> expected = new ArrayList<>();
+    expected.add("line " + (JobLogArchiveService.PAGE_SIZE - 1));
+    expected.add("last but one: é");
+    expected.add(null);
+    assertEquals(expected, textOf(lines));
+    assertEquals(JobLogArchiveService.PAGE_SIZE + 1, lines.get(2).getSeq());
+  }
+
+  @Test
+  public void readLines_of_job_without_archive_is_empty() throws Exception {
+    stored(2L, null);
+
+    assertEquals(List.of(), jobLogArchiveService.readLines(2L, 0, null, null));
+  }
+
+  @Test
+  public void readLines_of_corrupt_archive_throws() throws Exception {
+    JobLogArchive archive =
+        JobLogArchive.builder().jobId(3L).lineCount(1).data("not gzip".getBytes()).build();
+    stored(3L, archive);
+
+    assertThrows(
+        UncheckedIOException.class, () -> jobLogArchiveService.readLines(3L, 0, null, null));
+  }
+
+  @Test
+  public void getStats_adds_up_archives() {
+    JobLogArchiveStats stats =
+        JobLogArchiveStats.builder().archivedLogs(1).rawBytes(100).compressedBytes(40).build();
+    when(jobLogArchivesRepository.getStats()).thenReturn(stats);
+
+    assertEquals(stats, jobLogArchiveService.getStats());
+    assertEquals(60, stats.getBytesSaved());
+    assertEquals(2.5, stats.getCompressionRatio());
+  }
+
+  @Test
+  public void compression_ratio_is_zero_when_nothing_is_archived() {
+    JobLogArchiveStats stats = JobLogArchiveStats.builder().build();
+
+    assertEquals(0, stats.getCompressionRatio());
+  }
+
+  private static List<String> textOf(List<JobLogLine> lines) {
+    return lines.stream().map(JobLogLine::getLine).toList();
+  }
+}
@@ -0,0 +1,298 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class JobLogStreamServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogArchiveService jobLogArchiveService;
+
+  @Mock private JobService jobService;
+
+  @InjectMocks private JobLogStreamService jobLogStreamService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @AfterEach
+  public void teardown() {
+    jobLogStreamService.shutdown();
+  }
+
+  @Test
+  public void subscribe_to_missing_job_throws() {
+    when(jobsRepository.existsById(1L)).thenReturn(false);
+
+    assertThrows(EntityNotFoundException.class, () -> jobLogStreamService.subscribe(1L, -1));
+  }
+
+  @Test
+  public void publish_and_finish_with_no_subscribers_do_nothing() {
+    jobLogStreamService.publish(2L, List.of(JobLogLine.builder().jobId(2L).line("x").build()));
+    jobLogStreamService.finish(2L, "complete");
+
+    assertEquals(0, jobLogStreamService.subscriberCount(2L));
+  }
+
+  @Test
+  public void subscriber_is_removed_once_job_finishes() {
+    // arrange
+    when(jobsRepository.existsById(3L)).thenReturn(true);
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            3L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(List.of());
+
+    // act
+    jobLogStreamService.subscribe(3L, -1);
+    assertEquals(1, jobLogStreamService.subscriberCount(3L));
+    jobLogStreamService.finish(3L, "complete");
+
+    // assert
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(3L) == 0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void each_subscriber_is_removed_on_its_own() throws Exception {
+    // arrange
+    when(jobsRepository.existsById(7L)).thenReturn(true);
+    when(jobsRepository.findStatusById(7L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            7L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(List.of());
+    SseEmitter first = jobLogStreamService.subscribe(7L, -1);
+    jobLogStreamService.subscribe(7L, -1);
+    assertEquals(2, jobLogStreamService.subscriberCount(7L));
+
+    // act: the connection of the first subscriber fails
+    Object handler = attachHandler(first);
+    ((Consumer<Throwable>) callsTo(handler, "onError").get(0)[0])
+        .accept(new IOException("broken pipe"));
+
+    // assert
+    assertEquals(1, jobLogStreamService.subscriberCount(7L));
+    jobLogStreamService.finish(7L, "complete");
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(7L) == 0);
+  }
+
+  @Test
+  public void subscriber_whose_connection_fails_while_sending_is_removed() throws Exception {
+    // arrange
+    CountDownLatch attached = new CountDownLatch(1);
+    when(jobsRepository.existsById(9L)).thenReturn(true);
+    when(jobsRepository.findStatusById(9L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            9L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenAnswer(
+            invocation -> {
+              attached.await();
+              return List.of(JobLogLine.builder().jobId(9L).seq(0).line("lost").build());
+            });
+    SseEmitter emitter = jobLogStreamService.subscribe(9L, -1);
+
+    // act: every send fails, as it does once the client has gone
+    Object handler =
+        mock(
+            Class.forName(
+                "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler"),
+            invocation -> {
+              if (invocation.getMethod().getName().equals("send")) {
+                throw new IOException("broken pipe");
+              }
+              return null;
+            });
+    ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+    attached.countDown();
+
+    // assert
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(9L) == 0);
+    await().atMost(5, SECONDS).until(() -> callsTo(handler, "completeWithError").size() == 1);
+  }
+
+  /** Attach a mock handler to an emitter, as Spring MVC does when it starts the response. */
+  private Object attachHandler(SseEmitter emitter) throws Exception {
+    Object handler =
+        mock(
+            Class.forName(
+                "org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter$Handler"));
+    ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+    return handler;
+  }
+
+  /**
+   * @return the arguments of each call made to the named method of the handler
+   */
+  private List<Object[]> callsTo(Object handler, String method) {
+    return mockingDetails(handler).getInvocations().stream()
+        .filter(invocation -> invocation.getMethod().getName().equals(method))
+        .map(invocation -> invocation.getArguments())
+        .toList();
+  }
+
+  @Test
+  public void backlog_is_read_a_page_at_a_time() {
+    // arrange
+    List<JobLogLine> firstPage = new ArrayList<>();
+    for (int seq = 0; seq < JobLogStreamService.BACKLOG_PAGE_SIZE; seq++) {
+      firstPage.add(JobLogLine.builder().jobId(5L).seq(seq).line("line " + seq).build());
+    }
+    when(jobsRepository.existsById(5L)).thenReturn(true);
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("complete"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            5L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(firstPage);
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            5L,
+            JobLogStreamService.BACKLOG_PAGE_SIZE,
+            Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(List.of());
+
+    // act
+    jobLogStreamService.subscribe(5L, -1);
+
+    // assert
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () ->
+                verify(jobLogLinesRepository)
+                    .findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+                        5L,
+                        JobLogStreamService.BACKLOG_PAGE_SIZE,
+                        Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)));
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(5L) == 0);
+  }
+
+  @Test
+  public void job_running_on_another_node_is_followed_through_the_database() {
+    // arrange
+    when(jobsRepository.existsById(6L)).thenReturn(true);
+    when(jobsRepository.findStatusById(6L))
+        .thenReturn(Optional.of("queued"))
+        .thenReturn(Optional.of("complete"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            6L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(List.of())
+        .thenReturn(List.of(JobLogLine.builder().jobId(6L).seq(0).line("elsewhere").build()));
+
+    // act
+    jobLogStreamService.subscribe(6L, -1);
+
+    // assert
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(6L) == 0);
+    verify(jobLogLinesRepository, times(2))
+        .findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            6L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE));
+    verify(jobsRepository, times(2)).findStatusById(6L);
+  }
+
+  @Test
+  public void job_running_on_this_node_is_followed_through_what_it_publishes() throws Exception {
+    // arrange
+    CountDownLatch idle = new CountDownLatch(1);
+    when(jobsRepository.existsById(10L)).thenReturn(true);
+    when(jobsRepository.findStatusById(10L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            10L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(List.of());
+    when(jobService.isRunningHere(10L))
+        .thenAnswer(
+            invocation -> {
+              idle.countDown();
+              return true;
+            });
+
+    // act: nothing is published for a second, then the job finishes
+    jobLogStreamService.subscribe(10L, -1);
+    assertTrue(idle.await(5, SECONDS));
+    jobLogStreamService.finish(10L, "complete");
+
+    // assert
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(10L) == 0);
+    verify(jobsRepository, times(1)).findStatusById(10L);
+  }
+
+  @Test
+  public void lines_compressed_after_the_job_finished_are_read_from_the_archive() {
+    // arrange
+    when(jobsRepository.existsById(8L)).thenReturn(true);
+    when(jobsRepository.findStatusById(8L)).thenReturn(Optional.of("complete"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            8L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenReturn(List.of(JobLogLine.builder().jobId(8L).seq(0).line("before").build()));
+    when(jobLogArchiveService.readLines(8L, 1, null, null))
+        .thenReturn(List.of(JobLogLine.builder().jobId(8L).seq(1).line("after").build()));
+
+    // act
+    jobLogStreamService.subscribe(8L, -1);
+
+    // assert
+    await().atMost(5, SECONDS).until(() -> jobLogStreamService.subscriberCount(8L) == 0);
+    verify(jobLogArchiveService, times(1)).readLines(8L, 1, null, null);
+  }
+
+  @Test
+  public void subscriber_that_falls_behind_is_disconnected_without_blocking_publisher()
+      throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobLogStreamService, "queueCapacity", 1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(jobsRepository.existsById(4L)).thenReturn(true);
+    when(jobsRepository.findStatusById(4L)).thenReturn(Optional.of("running"));
+    when(jobLogLinesRepository.findAllByJobIdAndSeqGreaterThanEqualOrderBySeqAsc(
+            4L, 0, Limit.of(JobLogStreamService.BACKLOG_PAGE_SIZE)))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              return List.of();
+            });
+    Object handler = attachHandler(jobLogStreamService.subscribe(4L, -1));
+
+    // act
+    jobLogStreamService.publish(
+        4L,
+        List.of(
+            JobLogLine.builder().jobId(4L).seq(0).line("one").build(),
+            JobLogLine.builder().jobId(4L).seq(1).line("two").build()));
+
+    // assert
+    assertEquals(0, jobLogStreamService.subscriberCount(4L));
+    release.countDown();
+    await().atMost(5, SECONDS).until(() -> callsTo(handler, "complete").size() == 1);
+  }
+}
@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobMetricsReport;
+import edu.ucsb.cs156.example.models.JobThroughput;
+import edu.ucsb.cs156.example.models.JobTimerStats;
+import edu.ucsb.cs156.example.models.JobTypeMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobMetricsTests {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final JobMetrics jobMetrics = new JobMetrics();
+
+  @BeforeEach
+  public void setup() {
+    ReflectionTestUtils.setField(jobMetrics, "meterRegistry", registry);
+  }
+
+  @Test
+  public void jobs_are_counted_under_the_simple_name_of_their_class() {
+    assertEquals("TestJob", JobMetrics.typeOf(job(TestJob.class.getName(), null)));
+    assertEquals("Plain", JobMetrics.typeOf(job("Plain", null)));
+    assertEquals("other", JobMetrics.typeOf(job(null, null)));
+  }
+
+  @Test
+  public void report_before_anything_is_recorded() {
+    JobMetricsReport report = jobMetrics.report(List.of());
+
+    assertEquals(JobTimerStats.builder().build(), report.getQueueWait());
+    assertTrue(report.getJobTypes().isEmpty());
+    assertTrue(report.getRunning().isEmpty());
+  }
+
+  @Test
+  public void report_adds_up_what_each_type_of_job_has_done() {
+    // arrange
+    String testJob = TestJob.class.getName();
+    for (int i = 0; i < 5; i++) {
+      jobMetrics.launched(job(testJob, "running"));
+    }
+    jobMetrics.launched(job(null, "running"));
+    jobMetrics.finished(job(testJob, "complete"));
+    jobMetrics.finished(job(testJob, "complete"));
+    jobMetrics.finished(job(testJob, "error"));
+    jobMetrics.finished(job(testJob, "timed_out"));
+    jobMetrics.finished(job(testJob, "cancelled"));
+    jobMetrics.finished(job("Vanished", "abandoned"));
+    jobMetrics.ran(job(testJob, "complete"), TimeUnit.MILLISECONDS.toNanos(100));
+    jobMetrics.ran(job(testJob, "complete"), TimeUnit.MILLISECONDS.toNanos(300));
+    jobMetrics.itemsProcessed(job(testJob, "running"), 40);
+    jobMetrics.itemsProcessed(job(testJob, "running"), 2);
+    jobMetrics.itemsProcessed(job(testJob, "running"), 0);
+    JobMetrics.timer(registry, JobMetrics.QUEUE_WAIT).record(5, TimeUnit.MILLISECONDS);
+    List<JobThroughput> running =
+        List.of(JobThroughput.builder().jobId(3L).itemsPerSecond(12.5).build());
+
+    // act
+    JobMetricsReport report = jobMetrics.report(running);
+
+    // assert
+    assertSame(running, report.getRunning());
+    assertEquals(1, report.getQueueWait().getCount());
+    assertEquals(5.0, report.getQueueWait().getMaxMs());
+    assertEquals(
+        List.of("TestJob", "Vanished", "other"),
+        report.getJobTypes().stream().map(JobTypeMetrics::getJobType).toList());
+
+    JobTypeMetrics tests = report.getJobTypes().get(0);
+    assertEquals(5, tests.getLaunched());
+    assertEquals(2, tests.getSucceeded());
+    assertEquals(2, tests.getFailed());
+    assertEquals(1, tests.getCancelled());
+    assertEquals(42, tests.getItemsProcessed());
+    JobTimerStats runTime = tests.getRunTime();
+    assertEquals(2, runTime.getCount());
+    assertEquals(200.0, runTime.getMeanMs());
+    assertEquals(300.0, runTime.getMaxMs());
+    assertTrue(runTime.getP50Ms() >= 90 && runTime.getP50Ms() <= 110, runTime.toString());
+    assertTrue(runTime.getP99Ms() >= 290 && runTime.getP99Ms() <= 310, runTime.toString());
+    assertTrue(runTime.getP95Ms() <= runTime.getP99Ms(), runTime.toString());
+
+    JobTypeMetrics vanished = report.getJobTypes().get(1);
+    assertEquals(0, vanished.getLaunched());
+    assertEquals(1, vanished.getFailed());
+    assertEquals(JobTimerStats.builder().build(), vanished.getRunTime());
+
+    JobTypeMetrics other = report.getJobTypes().get(2);
+    assertEquals(1, other.getLaunched());
+    assertEquals(0, other.getSucceeded());
+  }
+
+  private Job job(String jobType, String status) {
+    return Job.builder().jobType(jobType).status(status).build();
+  }
+}
@@ -0,0 +1,301 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class JobPipelineTests {
+
+  private final JobService jobService = mock(JobService.class);
+
+  private final Job pipelineJob = Job.builder().id(1L).status("running").build();
+
+  private final JobContext ctx = new JobContext(null, pipelineJob);
+
+  /** Every step saved by the pipeline, in the order it was saved. */
+  private final List<Job> saved = new CopyOnWriteArrayList<>();
+
+  /** The context of each step that is running. */
+  private final Map<Long, JobContext> stepContexts = new ConcurrentHashMap<>();
+
+  @BeforeEach
+  public void setup() {
+    when(jobService.pipelineParallelism()).thenReturn(4);
+    AtomicLong nextId = new AtomicLong(2);
+    when(jobService.saveStep(any(), anyString(), any(), anyString()))
+        .thenAnswer(
+            invocation -> {
+              Job step =
+                  Job.builder()
+                      .id(nextId.getAndIncrement())
+                      .parentId(invocation.<Job>getArgument(0).getId())
+                      .stepName(invocation.getArgument(1))
+                      .status(invocation.getArgument(3))
+                      .build();
+              saved.add(step);
+              return step;
+            });
+    // runs a step much as JobService.runJobAsync does
+    doAnswer(
+            invocation -> {
+              Job step = invocation.getArgument(0);
+              JobContext stepContext = new JobContext(null, step);
+              stepContexts.put(step.getId(), stepContext);
+              stepContext.start(Thread.currentThread(), null);
+              try {
+                invocation.<JobContextConsumer>getArgument(1).accept(stepContext);
+                step.setStatus("complete");
+              } catch (Exception e) {
+                step.setStatus(stepContext.isCancelled() ? "cancelled" : "error");
+              }
+              return null;
+            })
+        .when(jobService)
+        .runStep(any(), any());
+    doAnswer(
+            invocation -> {
+              stepContexts.get(invocation.<Long>getArgument(0)).cancel("cancelled");
+              return null;
+            })
+        .when(jobService)
+        .cancelStep(anyLong());
+  }
+
+  @Test
+  public void a_step_name_can_only_be_used_once() {
+    JobPipeline pipeline = new JobPipeline().step("import", c -> {});
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> pipeline.step("import", c -> {}));
+    assertEquals("Pipeline already has a step named import", e.getMessage());
+  }
+
+  @Test
+  public void a_step_can_only_depend_on_earlier_steps() {
+    JobPipeline pipeline = new JobPipeline().step("import", c -> {});
+
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> pipeline.step("validate", c -> {}, "import", "aggregate"));
+    assertEquals(
+        "Step validate depends on aggregate, which is not an earlier step", e.getMessage());
+  }
+
+  @Test
+  public void independent_steps_run_in_parallel_once_their_inputs_complete() throws Exception {
+
+    // arrange
+
+    // validate and purge each wait for the other to start, so they only finish if run together
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    JobContextConsumer waitForTheOther =
+        c -> {
+          bothStarted.countDown();
+          bothStarted.await();
+        };
+    List<String> order = new CopyOnWriteArrayList<>();
+    JobPipeline pipeline =
+        new JobPipeline()
+            .step("import", c -> order.add("import"))
+            .step("validate", waitForTheOther, "import")
+            .step("purge", waitForTheOther, "import")
+            .step("aggregate", c -> order.add("aggregate"), "validate", "purge");
+
+    // act
+
+    pipeline.run(ctx, jobService);
+
+    // assert
+
+    assertEquals(List.of("import", "aggregate"), order);
+    assertEquals(4, saved.size());
+    assertTrue(saved.stream().allMatch(step -> "complete".equals(step.getStatus())));
+    assertTrue(saved.stream().allMatch(step -> step.getParentId() == 1L));
+    assertEquals("import", saved.get(0).getStepName());
+    assertEquals("aggregate", saved.get(3).getStepName());
+    assertEquals(100, ctx.getProgress());
+  }
+
+  @Test
+  public void no_more_steps_than_the_parallelism_run_at_once() throws Exception {
+
+    // arrange
+
+    when(jobService.pipelineParallelism()).thenReturn(2);
+    // the first two steps wait for each other, so two do run together
+    CountDownLatch firstTwoStarted = new CountDownLatch(2);
+    AtomicInteger runningNow = new AtomicInteger();
+    AtomicInteger mostAtOnce = new AtomicInteger();
+    JobContextConsumer step =
+        c -> {
+          mostAtOnce.accumulateAndGet(runningNow.incrementAndGet(), Math::max);
+          firstTwoStarted.countDown();
+          assertTrue(firstTwoStarted.await(5, SECONDS));
+          Thread.sleep(10);
+          runningNow.decrementAndGet();
+        };
+    JobPipeline pipeline = new JobPipeline();
+    for (int i = 0; i < 6; i++) {
+      pipeline.step("step " + i, step);
+    }
+
+    // act
+
+    pipeline.run(ctx, jobService);
+
+    // assert
+
+    assertEquals(2, mostAtOnce.get());
+    assertEquals(6, saved.size());
+    assertTrue(saved.stream().allMatch(s -> "complete".equals(s.getStatus())));
+    assertEquals(100, ctx.getProgress());
+  }
+
+  @Test
+  public void steps_downstream_of_a_failed_step_are_skipped_while_the_others_carry_on() {
+
+    // arrange
+
+    List<String> ran = new CopyOnWriteArrayList<>();
+    JobPipeline pipeline =
+        new JobPipeline()
+            .step("import", c -> ran.add("import"))
+            .step(
+                "validate",
+                c -> {
+                  throw new Exception("bad row");
+                },
+                "import")
+            .step("aggregate", c -> ran.add("aggregate"), "validate")
+            .step("purge", c -> ran.add("purge"), "import")
+            .step("report", c -> ran.add("report"), "aggregate", "purge");
+
+    // act
+
+    IllegalStateException e =
+        assertThrows(IllegalStateException.class, () -> pipeline.run(ctx, jobService));
+
+    // assert
+
+    assertEquals(List.of("import", "purge"), ran);
+    assertEquals(
+        "Steps did not complete: validate (error), aggregate (skipped), report (skipped)",
+        e.getMessage());
+    Map<String, String> statuses = new ConcurrentHashMap<>();
+    saved.forEach(step -> statuses.put(step.getStepName(), step.getStatus()));
+    assertEquals(
+        Map.of(
+            "import", "complete",
+            "validate", "error",
+            "aggregate", "skipped",
+            "purge", "complete",
+            "report", "skipped"),
+        statuses);
+  }
+
+  @Test
+  public void cancelling_the_pipeline_cancels_its_running_steps_and_those_not_started()
+      throws Exception {
+
+    // arrange
+
+    CountDownLatch started = new CountDownLatch(1);
+    JobPipeline pipeline =
+        new JobPipeline()
+            .step(
+                "import",
+                c -> {
+                  started.countDown();
+                  Thread.sleep(60_000);
+                })
+            .step("validate", c -> {}, "import");
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread worker =
+        new Thread(
+            () -> {
+              try {
+                pipeline.run(ctx, jobService);
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    ctx.start(worker, null);
+    worker.start();
+    started.await();
+
+    // act
+
+    ctx.cancel("cancelled");
+    worker.join(5000);
+
+    // assert
+
+    assertFalse(worker.isAlive());
+    assertTrue(thrown.get() instanceof JobCancelledException, String.valueOf(thrown.get()));
+    assertEquals(2, saved.size());
+    assertEquals("import", saved.get(0).getStepName());
+    assertEquals("cancelled", saved.get(0).getStatus());
+    assertEquals("validate", saved.get(1).getStepName());
+    assertEquals("cancelled", saved.get(1).getStatus());
+  }
+
+  @Test
+  public void an_interrupt_that_is_not_a_cancel_is_passed_on() throws Exception {
+
+    // arrange
+
+    CountDownLatch started = new CountDownLatch(1);
+    JobPipeline pipeline =
+        new JobPipeline()
+            .step(
+                "import",
+                c -> {
+                  started.countDown();
+                  Thread.sleep(60_000);
+                });
+    AtomicReference<Exception> thrown = new AtomicReference<>();
+    Thread worker =
+        new Thread(
+            () -> {
+              try {
+                pipeline.run(ctx, jobService);
+              } catch (Exception e) {
+                thrown.set(e);
+              }
+            });
+    worker.start();
+    started.await();
+
+    // act
+
+    worker.interrupt();
+    worker.join(5000);
+
+    // assert
+
+    assertFalse(worker.isAlive());
+    assertTrue(thrown.get() instanceof InterruptedException, String.valueOf(thrown.get()));
+    assertEquals("cancelled", saved.get(0).getStatus());
+  }
+}
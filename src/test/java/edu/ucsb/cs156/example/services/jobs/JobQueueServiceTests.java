@@ -0,0 +1,179 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobQueueServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobQueueService self;
+
+  @InjectMocks private JobQueueService jobQueueService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobQueueService, "self", self);
+    when(jobService.getNodeId()).thenReturn("node-1");
+    when(jobService.getMaxAttempts()).thenReturn(3);
+  }
+
+  @Test
+  public void poll_does_nothing_in_memory_mode() {
+    when(jobService.usesDatabaseQueue()).thenReturn(false);
+
+    jobQueueService.poll();
+
+    verifyNoInteractions(jobsRepository, self);
+  }
+
+  @Test
+  public void poll_claims_nothing_once_the_node_is_shutting_down() {
+    when(jobService.usesDatabaseQueue()).thenReturn(true);
+    when(jobService.isShuttingDown()).thenReturn(true);
+
+    jobQueueService.poll();
+
+    verifyNoInteractions(jobsRepository, self);
+  }
+
+  @Test
+  public void poll_requeues_expired_leases_and_claims_one_job_per_free_worker() {
+    // arrange
+    Job job = Job.builder().id(1L).status("running").build();
+    when(jobService.usesDatabaseQueue()).thenReturn(true);
+    when(jobsRepository.requeueExpiredLeases(any(), eq(3))).thenReturn(2);
+    when(jobsRepository.abandonExpiredLeases(any(), eq(3))).thenReturn(1);
+    when(jobService.getExecutorStats())
+        .thenReturn(JobExecutorStats.builder().poolSize(4).activeCount(1).queueDepth(0).build());
+    when(self.claim(3)).thenReturn(List.of(job));
+
+    // act
+    jobQueueService.poll();
+
+    // assert
+    verify(jobsRepository, times(1)).requeueExpiredLeases(any(), eq(3));
+    verify(jobsRepository, times(1)).abandonExpiredLeases(any(), eq(3));
+    verify(jobService, times(1)).runQueuedJob(job);
+  }
+
+  @Test
+  public void poll_claims_nothing_when_executor_is_busy() {
+    // arrange
+    when(jobService.usesDatabaseQueue()).thenReturn(true);
+    when(jobService.getExecutorStats())
+        .thenReturn(JobExecutorStats.builder().poolSize(4).activeCount(4).queueDepth(1).build());
+
+    // act
+    jobQueueService.poll();
+
+    // assert
+    verify(jobsRepository, times(1)).requeueExpiredLeases(any(), eq(3));
+    verify(self, never()).claim(anyInt());
+  }
+
+  @Test
+  public void claim_leases_queued_jobs_to_this_node() {
+    // arrange
+    ReflectionTestUtils.setField(jobQueueService, "leaseMs", 60000L);
+    ZonedDateTime before = ZonedDateTime.now();
+    Job job = Job.builder().id(1L).status("queued").attempts(1).nextAttemptAt(before).build();
+    when(jobsRepository.findClaimable(any(), eq(Limit.of(2)))).thenReturn(List.of(job));
+
+    // act
+    List<Job> claimed = jobQueueService.claim(2);
+
+    // assert
+    assertEquals(List.of(job), claimed);
+    assertEquals("running", job.getStatus());
+    assertEquals("node-1", job.getLeaseOwner());
+    assertEquals("node-1", job.getNodeId());
+    assertEquals(2, job.getAttempts());
+    assertNull(job.getNextAttemptAt());
+    assertTrue(job.getLeaseExpiresAt().isAfter(before.plusSeconds(59)));
+    verify(jobsRepository, times(1)).saveAll(List.of(job));
+    ArgumentCaptor<ZonedDateTime> now = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(1)).findClaimable(now.capture(), eq(Limit.of(2)));
+    assertTrue(!now.getValue().isBefore(before));
+  }
+
+  @Test
+  public void heartbeat_does_nothing_when_no_jobs_are_leased() {
+    when(jobService.getLeasedJobIds()).thenReturn(Set.of());
+
+    jobQueueService.heartbeat();
+
+    verifyNoInteractions(jobsRepository);
+  }
+
+  @Test
+  public void heartbeat_renews_leases_of_running_jobs() {
+    // arrange
+    when(jobService.getLeasedJobIds()).thenReturn(Set.of(1L, 2L));
+    when(jobsRepository.renewLeases(eq("node-1"), eq(Set.of(1L, 2L)), any())).thenReturn(2);
+
+    // act
+    jobQueueService.heartbeat();
+
+    // assert
+    ArgumentCaptor<ZonedDateTime> expiresAt = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(1))
+        .renewLeases(eq("node-1"), eq(Set.of(1L, 2L)), expiresAt.capture());
+    assertTrue(expiresAt.getValue().isAfter(ZonedDateTime.now()));
+  }
+
+  @Test
+  public void heartbeat_tolerates_lost_leases() {
+    // arrange
+    when(jobService.getLeasedJobIds()).thenReturn(Set.of(1L, 2L));
+    when(jobsRepository.renewLeases(eq("node-1"), eq(Set.of(1L, 2L)), any())).thenReturn(1);
+
+    // act
+    jobQueueService.heartbeat();
+
+    // assert
+    verify(jobsRepository, times(1)).renewLeases(eq("node-1"), eq(Set.of(1L, 2L)), any());
+  }
+
+  @Test
+  public void heartbeat_stops_jobs_cancelled_from_another_node() {
+    // arrange
+    when(jobService.getLeasedJobIds()).thenReturn(Set.of(1L, 2L));
+    when(jobsRepository.renewLeases(eq("node-1"), eq(Set.of(1L, 2L)), any())).thenReturn(2);
+    when(jobsRepository.findCancelRequested(Set.of(1L, 2L))).thenReturn(List.of(2L));
+
+    // act
+    jobQueueService.heartbeat();
+
+    // assert
+    verify(jobService, times(1)).cancel(2L);
+    verify(jobService, never()).cancel(1L);
+  }
+}
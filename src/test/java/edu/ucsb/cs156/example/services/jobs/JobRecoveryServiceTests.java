@@ -0,0 +1,192 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JobRecoveryServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @InjectMocks private JobRecoveryService jobRecoveryService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(jobService.getNodeId()).thenReturn("node-1");
+    when(jobService.getMaxAttempts()).thenReturn(3);
+  }
+
+  @Test
+  public void nothing_to_recover() {
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of());
+
+    jobRecoveryService.recoverOrphanedJobs();
+
+    verify(jobService, never()).rerun(any());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  public void orphan_that_can_be_rebuilt_is_run_again() {
+    // arrange
+    Job job = orphan(1L, TestJob.class.getName(), 2);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of(job));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    verify(jobService, times(1))
+        .appendLog(job, "Job interrupted: its node stopped; running it again");
+    verify(jobService, times(1)).rerun(job);
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  public void orphan_out_of_attempts_is_abandoned() {
+    // arrange
+    Job job = orphan(2L, TestJob.class.getName(), 3);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of(job));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    assertEquals("abandoned", job.getStatus());
+    assertNull(job.getLeaseOwner());
+    assertNull(job.getLeaseExpiresAt());
+    verify(jobService, times(1))
+        .appendLog(job, "Job interrupted: its node stopped; abandoned after 3 attempts");
+    verify(jobService, never()).rerun(any());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobMetrics, times(1)).finished(job);
+  }
+
+  @Test
+  public void orphan_that_cannot_be_rebuilt_is_abandoned() {
+    // arrange
+    Job job = orphan(3L, null, 1);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of(job));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    assertEquals("abandoned", job.getStatus());
+    verify(jobService, times(1))
+        .appendLog(job, "Job interrupted: its node stopped; abandoned, as it cannot be run again");
+    verify(jobService, never()).rerun(any());
+    verify(jobsRepository, times(1)).save(job);
+  }
+
+  @Test
+  public void orphaned_step_of_a_pipeline_is_abandoned_with_its_pipeline() {
+    // arrange
+    Job job = orphan(7L, TestJob.class.getName(), 1);
+    job.setParentId(3L);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of(job));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    assertEquals("abandoned", job.getStatus());
+    verify(jobService, times(1))
+        .appendLog(job, "Job interrupted: its node stopped; abandoned, as it cannot be run again");
+    verify(jobService, never()).rerun(any());
+  }
+
+  @Test
+  public void each_orphan_is_recovered_on_its_own() {
+    // arrange
+    Job again = orphan(4L, TestJob.class.getName(), 1);
+    Job abandoned = orphan(5L, null, 1);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of(again, abandoned));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    verify(jobService, times(1)).rerun(again);
+    verify(jobService, times(2)).appendLog(any(), anyString());
+    assertEquals("abandoned", abandoned.getStatus());
+  }
+
+  @Test
+  public void orphan_with_a_longer_retry_policy_gets_its_own_attempts() {
+    // arrange
+    Job job = orphan(6L, TestJob.class.getName(), 3);
+    job.setRetryMaxAttempts(5);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of(job));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    verify(jobService, times(1)).rerun(job);
+  }
+
+  @Test
+  public void job_waiting_to_be_retried_in_memory_is_run_again() {
+    // arrange
+    Job job = orphan(7L, TestJob.class.getName(), 1);
+    job.setStatus("queued");
+    job.setRetryMaxAttempts(2);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of());
+    when(jobsRepository.findAllByStatusAndNodeId("queued", "node-1")).thenReturn(List.of(job));
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    verify(jobService, times(1)).rerun(job);
+  }
+
+  @Test
+  public void queued_jobs_are_left_on_the_database_queue() {
+    // arrange
+    when(jobService.usesDatabaseQueue()).thenReturn(true);
+    when(jobsRepository.findOrphans("node-1")).thenReturn(List.of());
+
+    // act
+    jobRecoveryService.recoverOrphanedJobs();
+
+    // assert
+    verify(jobsRepository, never()).findAllByStatusAndNodeId(anyString(), anyString());
+    verify(jobService, never()).rerun(any());
+  }
+
+  private Job orphan(long id, String jobType, int attempts) {
+    return Job.builder()
+        .id(id)
+        .status("running")
+        .nodeId("node-1")
+        .jobType(jobType)
+        .params("{}")
+        .attempts(attempts)
+        .leaseOwner("node-1")
+        .leaseExpiresAt(ZonedDateTime.now())
+        .build();
+  }
+}
@@ -0,0 +1,173 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static edu.ucsb.cs156.example.services.jobs.JobRetentionService.FAILED_STATUSES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.repositories.JobLogArchivesRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobRetentionServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogArchivesRepository jobLogArchivesRepository;
+
+  @Mock private JobRetentionService self;
+
+  @InjectMocks private JobRetentionService jobRetentionService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobRetentionService, "self", self);
+    ReflectionTestUtils.setField(jobRetentionService, "batchSize", 2);
+    when(self.deleteJobs(any()))
+        .thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+  }
+
+  @Test
+  public void purge_deletes_old_finished_jobs_in_batches() {
+    // arrange
+    when(jobsRepository.findFinishedIdsUpdatedBefore(any(), eq(FAILED_STATUSES), eq(Limit.of(2))))
+        .thenReturn(List.of(1L, 2L), List.of(3L));
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // act
+    int deleted = jobRetentionService.purge();
+
+    // assert
+    assertEquals(3, deleted);
+    verify(self, times(1)).deleteJobs(List.of(1L, 2L));
+    verify(self, times(1)).deleteJobs(List.of(3L));
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(2))
+        .findFinishedIdsUpdatedBefore(cutoff.capture(), eq(FAILED_STATUSES), eq(Limit.of(2)));
+    assertTrue(cutoff.getValue().isBefore(before.minusDays(29)));
+    assertTrue(cutoff.getValue().isAfter(before.minusDays(31)));
+    verify(jobsRepository, never()).findFinishedIdsNewestFirst(any());
+  }
+
+  @Test
+  public void purge_keeps_failed_jobs_longer() {
+    // arrange
+    when(jobsRepository.findIdsByStatusUpdatedBefore(eq(FAILED_STATUSES), any(), eq(Limit.of(2))))
+        .thenReturn(List.of(5L));
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // act
+    int deleted = jobRetentionService.purge();
+
+    // assert
+    assertEquals(1, deleted);
+    verify(self, times(1)).deleteJobs(List.of(5L));
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository, times(1))
+        .findIdsByStatusUpdatedBefore(eq(FAILED_STATUSES), cutoff.capture(), eq(Limit.of(2)));
+    assertTrue(cutoff.getValue().isBefore(before.minusDays(89)));
+    assertTrue(cutoff.getValue().isAfter(before.minusDays(91)));
+  }
+
+  @Test
+  public void purge_deletes_nothing_when_nothing_is_old() {
+    int deleted = jobRetentionService.purge();
+
+    assertEquals(0, deleted);
+    verify(self, never()).deleteJobs(any());
+  }
+
+  @Test
+  public void purge_skips_rules_that_are_switched_off() {
+    ReflectionTestUtils.setField(jobRetentionService, "maxAgeDays", 0);
+    ReflectionTestUtils.setField(jobRetentionService, "failedMaxAgeDays", 0);
+
+    int deleted = jobRetentionService.purge();
+
+    assertEquals(0, deleted);
+    verifyNoInteractions(jobsRepository, self);
+  }
+
+  @Test
+  public void purge_keeps_only_the_newest_max_count_finished_jobs() {
+    // arrange
+    ReflectionTestUtils.setField(jobRetentionService, "maxCount", 10);
+    when(jobsRepository.findFinishedIdsNewestFirst(PageRequest.of(10, 1))).thenReturn(List.of(7L));
+    when(jobsRepository.findFinishedIdsUpTo(7L, Limit.of(2)))
+        .thenReturn(List.of(6L, 7L), List.of());
+
+    // act
+    int deleted = jobRetentionService.purge();
+
+    // assert
+    assertEquals(2, deleted);
+    verify(self, times(1)).deleteJobs(List.of(6L, 7L));
+    verify(jobsRepository, times(2)).findFinishedIdsUpTo(7L, Limit.of(2));
+  }
+
+  @Test
+  public void purge_deletes_nothing_when_there_are_at_most_max_count_finished_jobs() {
+    // arrange
+    ReflectionTestUtils.setField(jobRetentionService, "maxCount", 10);
+    when(jobsRepository.findFinishedIdsNewestFirst(PageRequest.of(10, 1))).thenReturn(List.of());
+
+    // act
+    int deleted = jobRetentionService.purge();
+
+    // assert
+    assertEquals(0, deleted);
+    verify(jobsRepository, never()).findFinishedIdsUpTo(anyLong(), any());
+  }
+
+  @Test
+  public void deleteAllJobs_deletes_every_job_in_batches() {
+    // arrange
+    when(jobsRepository.findIds(Limit.of(2)))
+        .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of());
+
+    // act
+    int deleted = jobRetentionService.deleteAllJobs();
+
+    // assert
+    assertEquals(4, deleted);
+    verify(self, times(1)).deleteJobs(List.of(1L, 2L));
+    verify(self, times(1)).deleteJobs(List.of(3L, 4L));
+    verify(jobsRepository, times(3)).findIds(Limit.of(2));
+  }
+
+  @Test
+  public void deleteJobs_deletes_logs_and_jobs() {
+    // arrange
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+    // act
+    int deleted = jobRetentionService.deleteJobs(List.of(1L, 2L));
+
+    // assert
+    assertEquals(2, deleted);
+    verify(jobLogLinesRepository, times(1)).deleteAllByJobIdIn(List.of(1L, 2L));
+    verify(jobLogArchivesRepository, times(1)).deleteAllByJobIdIn(List.of(1L, 2L));
+    verify(jobsRepository, times(1)).deleteAllByIdIn(List.of(1L, 2L));
+  }
+}
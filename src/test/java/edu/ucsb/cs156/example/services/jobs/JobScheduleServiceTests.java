@@ -0,0 +1,254 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobSchedule;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.repositories.JobSchedulesRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobScheduleServiceTests {
+
+  private static final String TEST_JOB = TestJob.class.getName();
+
+  @Mock private JobSchedulesRepository jobSchedulesRepository;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobScheduleService self;
+
+  @InjectMocks private JobScheduleService jobScheduleService;
+
+  private final TestJob testJob = TestJob.builder().sleepMs(0).build();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobScheduleService, "self", self);
+    when(jobService.loadJob(TEST_JOB, "{}")).thenReturn(testJob);
+    when(jobSchedulesRepository.findByName(anyString())).thenReturn(Optional.empty());
+    when(jobSchedulesRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  @Test
+  public void fireDueSchedules_launches_a_job_for_each_due_schedule() throws Exception {
+    // arrange
+    JobSchedule nightly = schedule(1L, "nightly", TEST_JOB);
+    nightly.setTimeoutMs(5000L);
+    JobSchedule hourly = schedule(2L, "hourly", TEST_JOB);
+    when(self.claimDue()).thenReturn(List.of(nightly, hourly));
+    when(jobService.runAsJob(testJob, 5000L)).thenReturn(Job.builder().id(10L).build());
+    when(jobService.runAsJob(testJob, null)).thenReturn(Job.builder().id(11L).build());
+
+    // act
+    jobScheduleService.fireDueSchedules();
+
+    // assert
+    verify(jobSchedulesRepository, times(1)).recordRun(eq(1L), any(), eq(10L));
+    verify(jobSchedulesRepository, times(1)).recordRun(eq(2L), any(), eq(11L));
+  }
+
+  @Test
+  public void fireDueSchedules_carries_on_past_a_schedule_whose_job_cannot_be_built()
+      throws Exception {
+    // arrange
+    JobSchedule broken = schedule(1L, "broken", "edu.ucsb.cs156.example.jobs.NoSuchJob");
+    JobSchedule hourly = schedule(2L, "hourly", TEST_JOB);
+    when(self.claimDue()).thenReturn(List.of(broken, hourly));
+    when(jobService.loadJob("edu.ucsb.cs156.example.jobs.NoSuchJob", "{}"))
+        .thenThrow(new ClassNotFoundException("edu.ucsb.cs156.example.jobs.NoSuchJob"));
+    when(jobService.runAsJob(testJob, null)).thenReturn(Job.builder().id(11L).build());
+
+    // act
+    jobScheduleService.fireDueSchedules();
+
+    // assert
+    verify(jobService, times(1)).runAsJob(any(), any());
+    verify(jobSchedulesRepository, never()).recordRun(eq(1L), any(), anyLong());
+    verify(jobSchedulesRepository, times(1)).recordRun(eq(2L), any(), eq(11L));
+  }
+
+  @Test
+  public void claimDue_moves_due_schedules_on_to_their_next_run() {
+    // arrange
+    JobSchedule nightly = schedule(1L, "nightly", TEST_JOB);
+    nightly.setNextRunAt(ZonedDateTime.now().minusMinutes(5));
+    when(jobSchedulesRepository.findDue(any())).thenReturn(List.of(nightly));
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // act
+    List<JobSchedule> due = jobScheduleService.claimDue();
+
+    // assert
+    assertEquals(List.of(nightly), due);
+    assertTrue(nightly.getNextRunAt().isAfter(before));
+    assertTrue(nightly.getNextRunAt().isBefore(before.plusDays(1).plusSeconds(1)));
+    assertEquals(2, nightly.getNextRunAt().getHour());
+    assertEquals(0, nightly.getNextRunAt().getMinute());
+    verify(jobSchedulesRepository, times(1)).saveAll(List.of(nightly));
+  }
+
+  @Test
+  public void runNow_launches_the_job_of_a_schedule() {
+    // arrange
+    JobSchedule nightly = schedule(1L, "nightly", TEST_JOB);
+    ZonedDateTime nextRunAt = nightly.getNextRunAt();
+    Job job = Job.builder().id(10L).build();
+    when(jobSchedulesRepository.findById(1L)).thenReturn(Optional.of(nightly));
+    when(jobService.runAsJob(testJob, null)).thenReturn(job);
+
+    // act
+    Job launched = jobScheduleService.runNow(1L);
+
+    // assert
+    assertSame(job, launched);
+    assertEquals(nextRunAt, nightly.getNextRunAt());
+    verify(jobSchedulesRepository, times(1)).recordRun(eq(1L), any(), eq(10L));
+  }
+
+  @Test
+  public void runNow_throws_for_unknown_schedule() {
+    when(jobSchedulesRepository.findById(7L)).thenReturn(Optional.empty());
+
+    EntityNotFoundException e =
+        assertThrows(EntityNotFoundException.class, () -> jobScheduleService.runNow(7L));
+
+    assertEquals("JobSchedule with id 7 not found", e.getMessage());
+  }
+
+  @Test
+  public void save_works_out_when_an_enabled_schedule_next_fires() {
+    // arrange
+    JobSchedule nightly = schedule(0L, "nightly", TEST_JOB);
+    nightly.setParams(null);
+    ZonedDateTime before = ZonedDateTime.now();
+
+    // act
+    JobSchedule saved = jobScheduleService.save(nightly);
+
+    // assert
+    assertSame(nightly, saved);
+    assertEquals("{}", saved.getParams());
+    assertTrue(saved.getNextRunAt().isAfter(before));
+    assertEquals(2, saved.getNextRunAt().getHour());
+    verify(jobSchedulesRepository, times(1)).save(nightly);
+  }
+
+  @Test
+  public void save_leaves_a_disabled_schedule_without_a_next_run() {
+    JobSchedule nightly = schedule(0L, "nightly", TEST_JOB);
+    nightly.setParams(" ");
+    nightly.setEnabled(false);
+
+    JobSchedule saved = jobScheduleService.save(nightly);
+
+    assertNull(saved.getNextRunAt());
+    assertEquals("{}", saved.getParams());
+  }
+
+  @Test
+  public void save_keeps_the_params_of_the_job() throws Exception {
+    JobSchedule nightly = schedule(0L, "nightly", TEST_JOB);
+    nightly.setParams("{\"sleepMs\":10}");
+    when(jobService.loadJob(TEST_JOB, "{\"sleepMs\":10}")).thenReturn(testJob);
+
+    JobSchedule saved = jobScheduleService.save(nightly);
+
+    assertEquals("{\"sleepMs\":10}", saved.getParams());
+  }
+
+  @Test
+  public void save_allows_a_schedule_to_keep_its_own_name() {
+    JobSchedule nightly = schedule(1L, "nightly", TEST_JOB);
+    when(jobSchedulesRepository.findByName("nightly")).thenReturn(Optional.of(nightly));
+
+    jobScheduleService.save(nightly);
+
+    verify(jobSchedulesRepository, times(1)).save(nightly);
+  }
+
+  @Test
+  public void save_rejects_a_name_that_is_taken() {
+    JobSchedule nightly = schedule(2L, "nightly", TEST_JOB);
+    when(jobSchedulesRepository.findByName("nightly"))
+        .thenReturn(Optional.of(schedule(1L, "nightly", TEST_JOB)));
+
+    assertRejected(nightly, "A schedule named nightly already exists");
+  }
+
+  @Test
+  public void save_rejects_a_schedule_without_a_name() {
+    assertRejected(schedule(0L, null, TEST_JOB), "A schedule needs a name");
+    assertRejected(schedule(0L, " ", TEST_JOB), "A schedule needs a name");
+  }
+
+  @Test
+  public void save_rejects_a_schedule_without_a_cron_expression() {
+    JobSchedule nightly = schedule(0L, "nightly", TEST_JOB);
+    nightly.setCron(null);
+
+    assertRejected(nightly, "A schedule needs a cron expression");
+  }
+
+  @Test
+  public void save_rejects_an_invalid_cron_expression() {
+    JobSchedule nightly = schedule(0L, "nightly", TEST_JOB);
+    nightly.setCron("0 2 * * *");
+
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobScheduleService.save(nightly));
+
+    assertTrue(e.getMessage().contains("6 fields"), e.getMessage());
+    verify(jobSchedulesRepository, never()).save(any());
+  }
+
+  @Test
+  public void save_rejects_a_job_that_cannot_be_built() throws Exception {
+    JobSchedule broken = schedule(0L, "broken", "java.lang.String");
+    when(jobService.loadJob("java.lang.String", "{}"))
+        .thenThrow(new ClassCastException("not a job"));
+
+    assertRejected(broken, "Cannot build a job of type java.lang.String: not a job");
+  }
+
+  private void assertRejected(JobSchedule schedule, String message) {
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> jobScheduleService.save(schedule));
+    assertEquals(message, e.getMessage());
+    verify(jobSchedulesRepository, never()).save(any());
+  }
+
+  private JobSchedule schedule(long id, String name, String jobType) {
+    return JobSchedule.builder()
+        .id(id)
+        .name(name)
+        .cron("0 0 2 * * *")
+        .jobType(jobType)
+        .params("{}")
+        .enabled(true)
+        .nextRunAt(ZonedDateTime.now().plusHours(1))
+        .build();
+  }
+}
@@ -0,0 +1,1356 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobDedupPolicy;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.models.JobMetricsReport;
+import edu.ucsb.cs156.example.models.JobRetryPolicy;
+import edu.ucsb.cs156.example.models.JobThroughput;
+import edu.ucsb.cs156.example.repositories.JobLogLinesRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.lang.management.ManagementFactory;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLinesRepository jobLogLinesRepository;
+
+  @Mock private JobLogStreamService jobLogStreamService;
+
+  @Mock private JobLogArchiveService jobLogArchiveService;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private JobExecutorMetrics jobExecutorMetrics;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @Mock private ThreadPoolTaskExecutor jobExecutor;
+
+  @Mock private JobService self;
+
+  @Spy private ObjectMapper objectMapper = new ObjectMapper();
+
+  @InjectMocks private JobService jobService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "self", self);
+  }
+
+  @Test
+  public void runAsJob_hands_job_to_executor() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "nodeId", "node-1");
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    assertEquals("node-1", job.getNodeId());
+    assertEquals(1, job.getAttempts());
+    assertNull(job.getJobType());
+    verify(self, times(1)).runJobAsync(job, jobFunction);
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobMetrics, times(1)).launched(job);
+  }
+
+  @Test
+  public void runAsJob_marks_job_rejected_when_queue_is_full() throws Exception {
+    // arrange
+    JobContextConsumer jobFunction = ctx -> {};
+    doThrow(new TaskRejectedException("full")).when(self).runJobAsync(any(), any());
+
+    // act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // assert
+    assertEquals("rejected", job.getStatus());
+    verify(jobsRepository, times(2)).save(job);
+    verify(jobMetrics, times(1)).launched(job);
+    verify(jobMetrics, times(1)).finished(job);
+    List<List<JobLogLine>> batches = savedBatches(1);
+    assertEquals("Job rejected: job queue is full", batches.get(0).get(0).getLine());
+  }
+
+  @Test
+  public void getExecutorStats_reports_on_job_executor() {
+    // arrange
+    JobExecutorStats stats = JobExecutorStats.builder().activeCount(3).build();
+    when(jobExecutorMetrics.stats(jobExecutor)).thenReturn(stats);
+
+    // act & assert
+    assertEquals(stats, jobService.getExecutorStats());
+  }
+
+  @Test
+  public void buffered_job_writes_its_log_in_one_batch_when_it_completes() throws Exception {
+    // arrange
+    Job job = Job.builder().id(5L).status("running").build();
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("one");
+          ctx.log("two");
+          ctx.log("three");
+        });
+
+    // assert
+    assertEquals("complete", job.getStatus());
+    List<List<JobLogLine>> batches = savedBatches(1);
+    assertEquals(3, batches.get(0).size());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1)).publish(5L, batches.get(0));
+    verify(jobLogStreamService, times(1)).finish(5L, "complete");
+    verify(jobLogArchiveService, times(1)).archiveLater(5L);
+    verify(jobMetrics, times(1)).ran(eq(job), anyLong());
+    verify(jobMetrics, times(1)).finished(job);
+  }
+
+  @Test
+  public void buffered_job_flushes_its_log_when_it_fails() throws Exception {
+    // arrange
+    Job job = Job.builder().id(5L).status("running").build();
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("one");
+          throw new Exception("boom");
+        });
+
+    // assert
+    assertEquals("error", job.getStatus());
+    List<List<JobLogLine>> batches = savedBatches(1);
+    assertEquals("one", batches.get(0).get(0).getLine());
+    assertEquals("boom", batches.get(0).get(1).getLine());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1)).finish(5L, "error");
+  }
+
+  @Test
+  public void unbuffered_job_writes_each_line_as_it_is_logged() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "bufferedLogging", false);
+    Job job = Job.builder().id(5L).status("running").build();
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.log("one");
+          ctx.log("two");
+        });
+
+    // assert
+    List<List<JobLogLine>> batches = savedBatches(2);
+    assertEquals(1, batches.get(0).size());
+    assertEquals(1, batches.get(1).size());
+  }
+
+  @Test
+  public void flushRunningJobLogs_flushes_jobs_that_are_still_running() throws Exception {
+    // arrange
+    Job job = Job.builder().id(6L).status("running").build();
+    CountDownLatch logged = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.log("waiting");
+                      logged.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    logged.await();
+
+    // act
+    jobService.flushRunningJobLogs();
+
+    // assert
+    List<List<JobLogLine>> batches = savedBatches(1);
+    assertEquals("waiting", batches.get(0).get(0).getLine());
+
+    release.countDown();
+    worker.join();
+    await().atMost(1, SECONDS).untilAsserted(() -> verify(jobsRepository).save(job));
+    verify(jobLogLinesRepository, times(1)).saveAll(any());
+  }
+
+  @Test
+  public void flushRunningJobLogs_records_progress_that_has_changed() throws Exception {
+    // arrange
+    Job job = Job.builder().id(7L).status("running").build();
+    CountDownLatch reported = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.setProgress(40);
+                      reported.countDown();
+                      release.await();
+                    }));
+    worker.start();
+    reported.await();
+
+    // act
+    jobService.flushRunningJobLogs();
+    jobService.flushRunningJobLogs();
+
+    // assert
+    verify(jobsRepository, times(1)).updateProgress(anyLong(), anyInt());
+    verify(jobsRepository, times(1)).updateProgress(7L, 40);
+
+    release.countDown();
+    worker.join();
+    assertEquals("complete", job.getStatus());
+    assertEquals(100, job.getProgress());
+  }
+
+  @Test
+  public void flushRunningJobLogs_records_items_processed_since_the_last_flush() throws Exception {
+    // arrange
+    Job job = Job.builder().id(9L).status("running").build();
+    CountDownLatch reported = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      ctx.progress(30, 100);
+                      reported.countDown();
+                      release.await();
+                      ctx.progress(45, 100);
+                    }));
+    worker.start();
+    reported.await();
+
+    // act
+    jobService.flushRunningJobLogs();
+    release.countDown();
+    worker.join();
+
+    // assert: the rest are recorded when the job finishes
+    verify(jobMetrics, times(1)).itemsProcessed(job, 30);
+    verify(jobMetrics, times(1)).itemsProcessed(job, 15);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void getMetrics_reports_the_throughput_of_running_jobs_in_id_order() throws Exception {
+    // arrange
+    JobMetricsReport report = JobMetricsReport.builder().build();
+    when(jobMetrics.report(any())).thenReturn(report);
+    ReflectionTestUtils.invokeMethod(
+        jobService, "submit", Job.builder().id(12L).build(), (JobContextConsumer) ctx -> {});
+    ReflectionTestUtils.invokeMethod(
+        jobService, "submit", Job.builder().id(11L).build(), (JobContextConsumer) ctx -> {});
+
+    // act
+    JobMetricsReport metrics = jobService.getMetrics();
+
+    // assert
+    assertEquals(report, metrics);
+    ArgumentCaptor<List<JobThroughput>> captor = ArgumentCaptor.forClass(List.class);
+    verify(jobMetrics).report(captor.capture());
+    assertEquals(
+        List.of(11L, 12L), captor.getValue().stream().map(JobThroughput::getJobId).toList());
+  }
+
+  @Test
+  public void failed_job_keeps_the_progress_it_reported() throws Exception {
+    // arrange
+    Job job = Job.builder().id(8L).status("running").build();
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          ctx.setProgress(30);
+          throw new Exception("halfway");
+        });
+
+    // assert
+    assertEquals("error", job.getStatus());
+    assertEquals(30, job.getProgress());
+  }
+
+  @Test
+  public void only_running_and_queued_jobs_are_active() {
+    assertTrue(JobService.isActive("running"));
+    assertTrue(JobService.isActive("queued"));
+    assertFalse(JobService.isActive("complete"));
+    assertFalse(JobService.isActive(null));
+  }
+
+  @Test
+  public void runAsJob_records_how_to_rebuild_job_in_memory_mode() throws Exception {
+    // arrange
+    TestJob testJob = TestJob.builder().fail(false).sleepMs(7).build();
+
+    // act
+    Job job = jobService.runAsJob(testJob);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    assertEquals(TestJob.class.getName(), job.getJobType());
+    assertEquals("{\"fail\":false,\"sleepMs\":7}", job.getParams());
+    verify(self, times(1)).runJobAsync(job, testJob);
+  }
+
+  @Test
+  public void node_id_defaults_to_hostname() {
+    String name = ManagementFactory.getRuntimeMXBean().getName();
+
+    assertEquals(name.substring(name.indexOf('@') + 1), jobService.getNodeId());
+    assertEquals(3, jobService.getMaxAttempts());
+  }
+
+  @Test
+  public void rerun_puts_job_back_on_queue_in_database_mode() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    Job job = claimedJob(18L, TestJob.class.getName(), "{}");
+
+    // act
+    jobService.rerun(job);
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    assertNull(job.getLeaseOwner());
+    assertNull(job.getLeaseExpiresAt());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  public void rerun_runs_job_here_without_a_database_queue() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "nodeId", "node-2");
+    Job job = claimedJob(19L, TestJob.class.getName(), "{}");
+
+    // act
+    jobService.rerun(job);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    assertEquals("node-2", job.getNodeId());
+    assertEquals(3, job.getAttempts());
+    assertNull(job.getNextAttemptAt());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self, times(1)).runJobAsync(eq(job), any(TestJob.class));
+  }
+
+  @Test
+  public void runQueuedJob_rejects_job_when_executor_is_full_without_a_database_queue()
+      throws Exception {
+    // arrange
+    Job job = claimedJob(20L, TestJob.class.getName(), "{}");
+    doThrow(new TaskRejectedException("full")).when(self).runJobAsync(any(), any());
+
+    // act
+    jobService.runQueuedJob(job);
+
+    // assert
+    assertEquals("rejected", job.getStatus());
+    verify(jobMetrics, times(1)).finished(job);
+  }
+
+  @Test
+  public void runAsJob_queues_job_in_database_mode() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    TestJob testJob = TestJob.builder().fail(true).sleepMs(7).build();
+
+    // act
+    Job job = jobService.runAsJob(testJob);
+
+    // assert
+    assertTrue(jobService.usesDatabaseQueue());
+    assertEquals("queued", job.getStatus());
+    assertEquals(TestJob.class.getName(), job.getJobType());
+    assertEquals("{\"fail\":true,\"sleepMs\":7}", job.getParams());
+    assertNull(job.getNodeId());
+    assertEquals(0, job.getAttempts());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self, never()).runJobAsync(any(), any());
+    verify(jobMetrics, times(1)).launched(job);
+  }
+
+  @Test
+  public void dedup_key_depends_on_the_class_and_the_fields_of_a_job() {
+    String key = JobService.dedupKey(TestJob.class.getName(), "{\"fail\":false,\"sleepMs\":5}");
+
+    assertEquals(
+        key, JobService.dedupKey(TestJob.class.getName(), "{\"fail\":false,\"sleepMs\":5}"));
+    assertFalse(
+        key.equals(JobService.dedupKey(TestJob.class.getName(), "{\"fail\":false,\"sleepMs\":6}")));
+    assertFalse(key.equals(JobService.dedupKey("Other", "{\"fail\":false,\"sleepMs\":5}")));
+  }
+
+  @Test
+  public void runAsJob_with_dedup_launches_a_job_with_no_identical_job_active() throws Exception {
+    // arrange
+    TestJob testJob = TestJob.builder().sleepMs(5).build();
+    String key = JobService.dedupKey(TestJob.class.getName(), "{\"fail\":false,\"sleepMs\":5}");
+    when(jobsRepository.findByActiveDedupKey(key)).thenReturn(Optional.empty());
+
+    // act
+    Job job = jobService.runAsJob(testJob, null, null, JobDedupPolicy.builder().build());
+
+    // assert
+    assertEquals("running", job.getStatus());
+    assertEquals(key, job.getDedupKey());
+    assertEquals(key, job.getActiveDedupKey());
+    verify(self, times(1)).runJobAsync(job, testJob);
+    verify(jobsRepository, never())
+        .findFirstByDedupKeyAndStatusAndUpdatedAtAfterOrderByIdDesc(any(), any(), any());
+  }
+
+  @Test
+  public void runAsJob_with_dedup_returns_the_identical_job_that_is_active() throws Exception {
+    // arrange
+    Job running = Job.builder().id(30L).status("running").build();
+    when(jobsRepository.findByActiveDedupKey(anyString())).thenReturn(Optional.of(running));
+
+    // act
+    Job job =
+        jobService.runAsJob(
+            TestJob.builder().sleepMs(5).build(), null, null, JobDedupPolicy.builder().build());
+
+    // assert
+    assertSame(running, job);
+    verify(jobsRepository, never()).save(any());
+    verify(self, never()).runJobAsync(any(), any());
+    verify(jobMetrics, never()).launched(any());
+  }
+
+  @Test
+  public void runAsJob_with_dedup_reuses_an_identical_job_that_completed_recently()
+      throws Exception {
+    // arrange
+    Job completed = Job.builder().id(31L).status("complete").build();
+    when(jobsRepository.findByActiveDedupKey(anyString())).thenReturn(Optional.empty());
+    ZonedDateTime before = ZonedDateTime.now();
+    when(jobsRepository.findFirstByDedupKeyAndStatusAndUpdatedAtAfterOrderByIdDesc(
+            anyString(), eq("complete"), any()))
+        .thenReturn(Optional.of(completed));
+
+    // act
+    Job job =
+        jobService.runAsJob(
+            TestJob.builder().sleepMs(5).build(),
+            null,
+            null,
+            JobDedupPolicy.builder().reuseCompletedForMs(60_000L).build());
+
+    // assert
+    assertSame(completed, job);
+    ArgumentCaptor<ZonedDateTime> after = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository)
+        .findFirstByDedupKeyAndStatusAndUpdatedAtAfterOrderByIdDesc(
+            anyString(), eq("complete"), after.capture());
+    assertFalse(after.getValue().isBefore(before.minusSeconds(60)));
+    assertTrue(after.getValue().isBefore(before.minusSeconds(59)));
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  public void runAsJob_with_dedup_returns_the_identical_job_launched_at_the_same_moment()
+      throws Exception {
+    // arrange
+    Job other = Job.builder().id(32L).status("running").build();
+    when(jobsRepository.findByActiveDedupKey(anyString()))
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.of(other));
+    when(jobsRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+    // act
+    Job job =
+        jobService.runAsJob(
+            TestJob.builder().sleepMs(5).build(), null, null, JobDedupPolicy.builder().build());
+
+    // assert
+    assertSame(other, job);
+    verify(self, never()).runJobAsync(any(), any());
+    verify(jobMetrics, never()).launched(any());
+  }
+
+  @Test
+  public void runAsJob_with_dedup_returns_the_identical_job_queued_at_the_same_moment()
+      throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    Job other = Job.builder().id(33L).status("queued").build();
+    when(jobsRepository.findByActiveDedupKey(anyString()))
+        .thenReturn(Optional.empty())
+        .thenReturn(Optional.of(other));
+    when(jobsRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+    // act
+    Job job =
+        jobService.runAsJob(
+            TestJob.builder().sleepMs(5).build(), null, null, JobDedupPolicy.builder().build());
+
+    // assert
+    assertSame(other, job);
+    verify(jobMetrics, never()).launched(any());
+  }
+
+  @Test
+  public void runAsJob_passes_on_a_failed_save_that_is_not_a_duplicate() throws Exception {
+    // arrange
+    DataIntegrityViolationException failure = new DataIntegrityViolationException("broken");
+    when(jobsRepository.save(any())).thenThrow(failure);
+    when(jobsRepository.findByActiveDedupKey(anyString())).thenReturn(Optional.empty());
+    TestJob testJob = TestJob.builder().sleepMs(5).build();
+
+    // act & assert
+    assertSame(failure, assertThrows(Exception.class, () -> jobService.runAsJob(testJob)));
+    assertSame(
+        failure,
+        assertThrows(
+            Exception.class,
+            () -> jobService.runAsJob(testJob, null, null, JobDedupPolicy.builder().build())));
+  }
+
+  @Test
+  public void runAsJob_runs_lambda_in_memory_even_in_database_mode() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    JobContextConsumer jobFunction = ctx -> {};
+
+    // act
+    Job job = jobService.runAsJob(jobFunction);
+
+    // assert
+    assertEquals("running", job.getStatus());
+    assertNull(job.getJobType());
+    verify(self, times(1)).runJobAsync(job, jobFunction);
+  }
+
+  @Test
+  public void runQueuedJob_rebuilds_job_and_hands_it_to_executor() throws Exception {
+    // arrange
+    Job job = claimedJob(8L, TestJob.class.getName(), "{\"fail\":false,\"sleepMs\":3}");
+
+    // act
+    jobService.runQueuedJob(job);
+
+    // assert
+    ArgumentCaptor<JobContextConsumer> captor = ArgumentCaptor.forClass(JobContextConsumer.class);
+    verify(self, times(1)).runJobAsync(eq(job), captor.capture());
+    TestJob testJob = (TestJob) captor.getValue();
+    assertFalse(testJob.getFail());
+    assertEquals(3, testJob.getSleepMs());
+    assertEquals(Set.of(8L), jobService.getLeasedJobIds());
+  }
+
+  @Test
+  public void runQueuedJob_puts_job_back_on_queue_when_executor_is_full() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    Job job = claimedJob(8L, TestJob.class.getName(), "{}");
+    doThrow(new TaskRejectedException("full")).when(self).runJobAsync(any(), any());
+
+    // act
+    jobService.runQueuedJob(job);
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    assertNull(job.getLeaseOwner());
+    assertNull(job.getLeaseExpiresAt());
+    verify(jobsRepository, times(1)).save(job);
+    assertTrue(jobService.getLeasedJobIds().isEmpty());
+    verify(jobMetrics, never()).finished(any());
+  }
+
+  @Test
+  public void runQueuedJob_fails_job_that_cannot_be_loaded() throws Exception {
+    // arrange
+    Job job = claimedJob(9L, "edu.ucsb.cs156.example.jobs.NoSuchJob", "{}");
+    when(jobLogLinesRepository.findAllByJobIdOrderBySeqDesc(9L, Limit.of(1)))
+        .thenReturn(List.of(JobLogLine.builder().jobId(9L).seq(4).build()));
+
+    // act
+    jobService.runQueuedJob(job);
+
+    // assert
+    assertEquals("error", job.getStatus());
+    assertNull(job.getLeaseOwner());
+    verify(jobsRepository, times(1)).save(job);
+    verify(self, never()).runJobAsync(any(), any());
+    JobLogLine line = savedBatches(1).get(0).get(0);
+    assertEquals(5, line.getSeq());
+    assertEquals("Job cannot be loaded: edu.ucsb.cs156.example.jobs.NoSuchJob", line.getLine());
+    verify(jobMetrics, times(1)).finished(job);
+  }
+
+  @Test
+  public void rerun_of_queued_job_appends_to_its_log_and_releases_its_lease() throws Exception {
+    // arrange
+    Job job = claimedJob(10L, TestJob.class.getName(), "{}");
+    when(jobLogLinesRepository.findAllByJobIdOrderBySeqDesc(10L, Limit.of(1)))
+        .thenReturn(List.of(JobLogLine.builder().jobId(10L).seq(2).build()));
+    jobService.runQueuedJob(job);
+
+    // act
+    jobService.runJobAsync(job, ctx -> ctx.log("again"));
+
+    // assert
+    assertEquals("complete", job.getStatus());
+    assertNull(job.getLeaseOwner());
+    assertNull(job.getLeaseExpiresAt());
+    assertEquals(3, savedBatches(1).get(0).get(0).getSeq());
+    assertTrue(jobService.getLeasedJobIds().isEmpty());
+  }
+
+  @Test
+  public void first_run_of_queued_job_starts_its_log_at_zero() throws Exception {
+    // arrange
+    Job job = claimedJob(11L, TestJob.class.getName(), "{}");
+    job.setAttempts(1);
+
+    // act
+    jobService.runJobAsync(job, ctx -> ctx.log("first"));
+
+    // assert
+    assertEquals(0, savedBatches(1).get(0).get(0).getSeq());
+  }
+
+  @Test
+  public void runPipeline_runs_each_step_as_a_child_of_a_job_that_is_never_retried()
+      throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "nodeId", "node-1");
+    ReflectionTestUtils.setField(jobService, "defaultRetryMaxAttempts", 3);
+    when(jobExecutor.getMaxPoolSize()).thenReturn(4);
+    TestJob testJob = TestJob.builder().sleepMs(0).build();
+    JobPipeline pipeline = new JobPipeline().step("import", testJob);
+    ArgumentCaptor<JobContextConsumer> function = ArgumentCaptor.forClass(JobContextConsumer.class);
+
+    // act
+    Job job = jobService.runPipeline(pipeline, 500L);
+    job.setId(5L);
+    verify(self, times(1)).runJobAsync(eq(job), function.capture());
+    jobService.runJobAsync(job, function.getValue());
+
+    // assert
+    assertEquals("complete", job.getStatus());
+    assertEquals(1, job.getRetryMaxAttempts());
+    assertEquals(500L, job.getTimeoutMs());
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    verify(jobsRepository, times(4)).save(saved.capture());
+    Job step = saved.getAllValues().get(1);
+    assertEquals(5L, step.getParentId());
+    assertEquals("import", step.getStepName());
+    assertEquals("complete", step.getStatus());
+    assertEquals(TestJob.class.getName(), step.getJobType());
+    assertEquals("node-1", step.getNodeId());
+    assertEquals(1, step.getAttempts());
+    assertEquals(1, step.getRetryMaxAttempts());
+    verify(jobMetrics, times(1)).launched(step);
+    verify(jobMetrics, times(1)).finished(step);
+  }
+
+  @Test
+  public void pipelineParallelism_defaults_to_the_size_of_the_job_executor() {
+    // arrange
+    when(jobExecutor.getMaxPoolSize()).thenReturn(4);
+
+    // act & assert
+    assertEquals(4, jobService.pipelineParallelism());
+    ReflectionTestUtils.setField(jobService, "pipelineMaxParallelSteps", 2);
+    assertEquals(2, jobService.pipelineParallelism());
+  }
+
+  @Test
+  public void saveStep_records_a_step_that_never_runs() {
+    // arrange
+    Job parent = Job.builder().id(5L).status("running").build();
+
+    // act
+    Job step = jobService.saveStep(parent, "aggregate", ctx -> {}, "skipped");
+
+    // assert
+    assertEquals(5L, step.getParentId());
+    assertEquals("aggregate", step.getStepName());
+    assertEquals("skipped", step.getStatus());
+    assertNull(step.getJobType());
+    assertNull(step.getNodeId());
+    verify(jobsRepository, times(1)).save(step);
+    verify(jobMetrics, times(1)).finished(step);
+    verify(jobMetrics, never()).launched(any());
+  }
+
+  @Test
+  public void cancelStep_stops_a_step_even_before_it_runs() {
+    // arrange
+    Job parent = Job.builder().id(5L).status("running").build();
+    Job step = jobService.saveStep(parent, "import", ctx -> {}, "running");
+    AtomicBoolean ran = new AtomicBoolean(false);
+
+    // act
+    jobService.cancelStep(step.getId());
+    jobService.cancelStep(step.getId() + 1);
+    jobService.runStep(step, ctx -> ran.set(true));
+
+    // assert
+    assertFalse(ran.get());
+    assertEquals("cancelled", step.getStatus());
+  }
+
+  @Test
+  public void runAsJob_records_timeout() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 5000L);
+
+    // act
+    Job explicit = jobService.runAsJob(ctx -> {}, 200L);
+    Job defaulted = jobService.runAsJob(ctx -> {});
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 0L);
+    Job unlimited = jobService.runAsJob(ctx -> {});
+
+    // assert
+    assertEquals(200L, explicit.getTimeoutMs());
+    assertEquals(5000L, defaulted.getTimeoutMs());
+    assertNull(unlimited.getTimeoutMs());
+  }
+
+  @Test
+  public void cancel_of_missing_job_throws() {
+    when(jobsRepository.findById(12L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> jobService.cancel(12L));
+  }
+
+  @Test
+  public void cancel_interrupts_running_job() throws Exception {
+    // arrange
+    Job job = Job.builder().id(12L).status("running").build();
+    when(jobsRepository.findById(12L)).thenReturn(Optional.of(job));
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean interruptLeftOver = new AtomicBoolean(true);
+    Thread worker =
+        new Thread(
+            () -> {
+              jobService.runJobAsync(
+                  job,
+                  ctx -> {
+                    started.countDown();
+                    Thread.sleep(60_000);
+                  });
+              interruptLeftOver.set(Thread.currentThread().isInterrupted());
+            });
+    worker.start();
+    started.await();
+
+    // act
+    boolean cancelled = jobService.cancel(12L);
+    worker.join(5_000);
+
+    // assert
+    assertTrue(cancelled);
+    assertEquals("cancelled", job.getStatus());
+    assertFalse(interruptLeftOver.get());
+    assertEquals("Job cancelled", savedBatches(1).get(0).get(0).getLine());
+    verify(jobLogStreamService, times(1)).finish(12L, "cancelled");
+  }
+
+  @Test
+  public void job_cancelled_while_waiting_for_a_worker_never_starts() throws Exception {
+    // arrange
+    Job job = jobService.runAsJob(ctx -> {});
+    when(jobsRepository.findById(job.getId())).thenReturn(Optional.of(job));
+    AtomicBoolean ran = new AtomicBoolean(false);
+
+    // act
+    assertTrue(jobService.cancel(job.getId()));
+    jobService.runJobAsync(job, ctx -> ran.set(true));
+
+    // assert
+    assertFalse(ran.get());
+    assertEquals("cancelled", job.getStatus());
+  }
+
+  @Test
+  public void cancel_of_queued_job_stops_it_before_it_starts() throws Exception {
+    // arrange
+    Job job = Job.builder().id(13L).status("queued").build();
+    when(jobsRepository.findById(13L)).thenReturn(Optional.of(job));
+    when(jobsRepository.cancelQueued(13L)).thenReturn(1);
+
+    // act & assert
+    assertTrue(jobService.cancel(13L));
+    assertEquals("Job cancelled before it started", savedBatches(1).get(0).get(0).getLine());
+    verify(jobLogStreamService, times(1)).finish(13L, "cancelled");
+    verify(jobsRepository, never()).requestCancel(13L);
+    assertEquals("cancelled", job.getStatus());
+    verify(jobMetrics, times(1)).finished(job);
+  }
+
+  @Test
+  public void cancel_of_job_running_elsewhere_flags_it() throws Exception {
+    // arrange
+    when(jobsRepository.findById(14L))
+        .thenReturn(Optional.of(Job.builder().id(14L).status("running").build()));
+    when(jobsRepository.requestCancel(14L)).thenReturn(1);
+
+    // act & assert
+    assertTrue(jobService.cancel(14L));
+  }
+
+  @Test
+  public void cancel_of_finished_job_does_nothing() throws Exception {
+    // arrange
+    when(jobsRepository.findById(15L))
+        .thenReturn(Optional.of(Job.builder().id(15L).status("complete").build()));
+
+    // act & assert
+    assertFalse(jobService.cancel(15L));
+    verify(jobLogLinesRepository, never()).saveAll(any());
+  }
+
+  @Test
+  public void enforceTimeouts_stops_only_jobs_past_their_timeout() throws Exception {
+    // arrange
+    Job slow = Job.builder().id(16L).status("running").timeoutMs(1L).build();
+    Job patient = Job.builder().id(17L).status("running").timeoutMs(60_000L).build();
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    JobContextConsumer waitForever =
+        ctx -> {
+          started.countDown();
+          release.await();
+        };
+    Thread slowWorker = new Thread(() -> jobService.runJobAsync(slow, waitForever));
+    Thread patientWorker = new Thread(() -> jobService.runJobAsync(patient, waitForever));
+    slowWorker.start();
+    patientWorker.start();
+    started.await();
+    Thread.sleep(5);
+
+    // act
+    jobService.enforceTimeouts();
+    slowWorker.join(5_000);
+
+    // assert
+    assertEquals("timed_out", slow.getStatus());
+    assertEquals("running", patient.getStatus());
+    assertEquals("Job timed out after 1 ms", savedBatches(1).get(0).get(0).getLine());
+
+    release.countDown();
+    patientWorker.join(5_000);
+    assertEquals("complete", patient.getStatus());
+  }
+
+  @Test
+  public void runAsJob_records_retry_policy() throws Exception {
+    // act
+    Job explicit =
+        jobService.runAsJob(
+            ctx -> {},
+            null,
+            JobRetryPolicy.builder().maxAttempts(4).backoffMs(200L).jitter(0.1).build());
+    Job partial =
+        jobService.runAsJob(ctx -> {}, null, JobRetryPolicy.builder().maxAttempts(2).build());
+    Job defaulted = jobService.runAsJob(ctx -> {});
+
+    // assert
+    assertEquals(4, explicit.getRetryMaxAttempts());
+    assertEquals(200L, explicit.getRetryBackoffMs());
+    assertEquals(0.1, explicit.getRetryJitter());
+    assertEquals(2, partial.getRetryMaxAttempts());
+    assertEquals(1000L, partial.getRetryBackoffMs());
+    assertEquals(0.5, partial.getRetryJitter());
+    assertEquals(1, defaulted.getRetryMaxAttempts());
+  }
+
+  @Test
+  public void failed_job_with_attempts_left_is_retried_after_its_backoff() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "nodeId", "node-1");
+    Job job = retryableJob(21L, 1, 3);
+    when(jobsRepository.startRetry(21L, "node-1")).thenReturn(1);
+    JobContextConsumer jobFunction =
+        ctx -> {
+          throw new Exception("database unavailable");
+        };
+
+    // act
+    jobService.runJobAsync(job, jobFunction);
+
+    // assert: the job waits for its retry without holding a worker
+    assertEquals("database unavailable", job.getLastError());
+    assertTrue(job.getNextAttemptAt().isAfter(ZonedDateTime.now().minusSeconds(1)));
+    assertEquals(
+        List.of("Attempt 1 of 3", "database unavailable", "Attempt 1 failed; retrying in 10 ms"),
+        savedBatches(2).stream().flatMap(List::stream).map(JobLogLine::getLine).toList());
+    verify(jobLogStreamService, never()).finish(anyLong(), anyString());
+    verify(jobLogArchiveService, never()).archiveLater(anyLong());
+    verify(jobMetrics, times(1)).ran(eq(job), anyLong());
+    verify(jobMetrics, never()).finished(any());
+
+    // and is then started again on this node
+    await().atMost(5, SECONDS).untilAsserted(() -> verify(self).runJobAsync(job, jobFunction));
+    assertEquals("running", job.getStatus());
+    assertEquals(2, job.getAttempts());
+    assertEquals("node-1", job.getNodeId());
+    assertNull(job.getNextAttemptAt());
+  }
+
+  @Test
+  public void failed_job_on_its_last_attempt_ends_in_error() throws Exception {
+    // arrange
+    Job job = retryableJob(22L, 3, 3);
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          throw new Exception("still down");
+        });
+
+    // assert
+    assertEquals("error", job.getStatus());
+    assertEquals("still down", job.getLastError());
+    assertNull(job.getNextAttemptAt());
+    verify(jobLogStreamService, times(1)).finish(22L, "error");
+    assertEquals(0, retryTimer().getTaskCount());
+  }
+
+  @Test
+  public void cancelled_job_is_not_retried() throws Exception {
+    // arrange
+    Job job = retryableJob(23L, 1, 3);
+    when(jobsRepository.findById(23L)).thenReturn(Optional.of(job));
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          jobService.cancel(23L);
+          ctx.checkpoint();
+        });
+
+    // assert
+    assertEquals("cancelled", job.getStatus());
+    verify(jobLogStreamService, times(1)).finish(23L, "cancelled");
+    assertEquals(0, retryTimer().getTaskCount());
+  }
+
+  @Test
+  public void failed_job_is_left_on_the_database_queue_to_be_retried() throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    Job job = retryableJob(24L, 1, 2);
+    job.setJobType(TestJob.class.getName());
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          throw new Exception("timeout");
+        });
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    assertTrue(job.getNextAttemptAt() != null);
+    verify(jobsRepository, times(1)).save(job);
+    assertEquals(0, retryTimer().getTaskCount());
+  }
+
+  @Test
+  public void failed_job_that_cannot_be_rebuilt_is_retried_on_the_timer_in_database_mode()
+      throws Exception {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "queueMode", JobService.DATABASE_QUEUE);
+    Job job = retryableJob(27L, 1, 2);
+    job.setRetryBackoffMs(60000);
+
+    // act
+    jobService.runJobAsync(
+        job,
+        ctx -> {
+          throw new Exception("timeout");
+        });
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    assertEquals(1, retryTimer().getQueue().size());
+  }
+
+  @Test
+  public void retry_of_job_cancelled_while_it_waited_does_nothing() throws Exception {
+    // arrange
+    Job job = retryableJob(25L, 1, 2);
+    job.setStatus("queued");
+    when(jobsRepository.startRetry(eq(25L), anyString())).thenReturn(0);
+
+    // act
+    jobService.retry(job, ctx -> {});
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  public void retry_is_rejected_when_executor_is_full() throws Exception {
+    // arrange
+    Job job = retryableJob(26L, 1, 2);
+    job.setStatus("queued");
+    when(jobsRepository.startRetry(eq(26L), anyString())).thenReturn(1);
+    doThrow(new TaskRejectedException("full")).when(self).runJobAsync(any(), any());
+
+    // act
+    jobService.retry(job, ctx -> {});
+
+    // assert
+    assertEquals("rejected", job.getStatus());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobLogStreamService, times(1)).finish(26L, "rejected");
+    verify(jobMetrics, times(1)).finished(job);
+    assertEquals("Job rejected: job queue is full", savedBatches(1).get(0).get(0).getLine());
+  }
+
+  @Test
+  public void retry_that_cannot_reach_the_database_is_logged() throws Exception {
+    // arrange
+    Job job = retryableJob(27L, 1, 2);
+    job.setStatus("queued");
+    when(jobsRepository.startRetry(eq(27L), anyString()))
+        .thenThrow(new IllegalStateException("no connection"));
+
+    // act
+    jobService.retry(job, ctx -> {});
+
+    // assert
+    assertEquals("queued", job.getStatus());
+    verify(self, never()).runJobAsync(any(), any());
+  }
+
+  @Test
+  public void retry_that_fails_once_started_is_recorded_as_an_error() throws Exception {
+    // arrange
+    Job job = retryableJob(28L, 1, 2);
+    job.setStatus("queued");
+    when(jobsRepository.startRetry(eq(28L), anyString())).thenReturn(1);
+    doThrow(new IllegalStateException("executor shut down")).when(self).runJobAsync(any(), any());
+
+    // act
+    jobService.retry(job, ctx -> {});
+
+    // assert
+    assertEquals("error", job.getStatus());
+    assertEquals("executor shut down", job.getLastError());
+    assertTrue(jobService.awaitRunningJobs(0));
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobMetrics, times(1)).finished(job);
+    verify(jobLogStreamService, times(1)).finish(28L, "error");
+  }
+
+  @Test
+  public void retry_delay_doubles_up_to_the_cap_and_is_cut_short_by_jitter() {
+    // arrange
+    Job job = retryableJob(28L, 3, 5);
+    job.setRetryBackoffMs(100);
+
+    // act & assert
+    assertEquals(400, jobService.retryDelayMs(job));
+    ReflectionTestUtils.setField(jobService, "maxRetryBackoffMs", 300L);
+    assertEquals(300, jobService.retryDelayMs(job));
+    job.setRetryJitter(0.5);
+    for (int i = 0; i < 20; i++) {
+      long delay = jobService.retryDelayMs(job);
+      assertTrue(delay >= 150 && delay <= 300, "delay " + delay);
+    }
+  }
+
+  @Test
+  public void jobs_launched_once_the_node_is_shutting_down_are_rejected() throws Exception {
+    // arrange
+    jobService.stopAcceptingJobs();
+
+    // act
+    Job job = jobService.runAsJob(ctx -> {});
+
+    // assert
+    assertTrue(jobService.isShuttingDown());
+    assertEquals("rejected", job.getStatus());
+    assertEquals("Job rejected: node is shutting down", savedBatches(1).get(0).get(0).getLine());
+    verify(self, never()).runJobAsync(any(), any());
+    assertTrue(jobService.awaitRunningJobs(0));
+  }
+
+  @Test
+  public void jobs_launched_before_the_node_started_shutting_down_still_run() throws Exception {
+    // arrange
+    Job job = jobService.runAsJob(ctx -> {});
+    jobService.stopAcceptingJobs();
+
+    // act
+    jobService.runJobAsync(job, ctx -> ctx.log("ran"));
+
+    // assert
+    assertEquals("complete", job.getStatus());
+    assertTrue(jobService.awaitRunningJobs(0));
+  }
+
+  @Test
+  public void awaitRunningJobs_gives_up_on_jobs_that_do_not_finish_in_time() throws Exception {
+    // arrange
+    Job job = jobService.runAsJob(ctx -> {});
+
+    // act & assert
+    assertFalse(jobService.awaitRunningJobs(50));
+
+    Thread.currentThread().interrupt();
+    assertFalse(jobService.awaitRunningJobs(60_000));
+    assertTrue(Thread.interrupted());
+
+    jobService.runJobAsync(job, ctx -> {});
+    assertTrue(jobService.awaitRunningJobs(60_000));
+  }
+
+  @Test
+  public void awaitRunningJobs_stops_jobs_past_their_timeout() throws Exception {
+    // arrange
+    Job job = jobService.runAsJob(ctx -> {}, 1L);
+    Thread worker = new Thread(() -> jobService.runJobAsync(job, ctx -> Thread.sleep(60_000)));
+    worker.start();
+
+    // act & assert
+    assertTrue(jobService.awaitRunningJobs(5_000));
+    worker.join(5_000);
+    assertEquals("timed_out", job.getStatus());
+  }
+
+  @Test
+  public void isRunningHere_only_while_the_job_runs_on_this_node() throws Exception {
+    // arrange
+    Job job = Job.builder().id(13L).status("running").build();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      release.await();
+                    }));
+
+    // act & assert
+    assertFalse(jobService.isRunningHere(13L));
+    worker.start();
+    started.await();
+    assertTrue(jobService.isRunningHere(13L));
+    release.countDown();
+    worker.join(5_000);
+    assertFalse(jobService.isRunningHere(13L));
+  }
+
+  @Test
+  public void interruptRunningJobs_stops_jobs_with_a_final_log_line() throws Exception {
+    // arrange
+    Job job = Job.builder().id(12L).status("running").build();
+    CountDownLatch started = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      Thread.sleep(60_000);
+                    }));
+    worker.start();
+    started.await();
+
+    // act
+    int interrupted = jobService.interruptRunningJobs();
+    worker.join(5_000);
+
+    // assert
+    assertEquals(1, interrupted);
+    assertEquals("interrupted", job.getStatus());
+    assertEquals(JobService.INTERRUPTED_MESSAGE, savedBatches(1).get(0).get(0).getLine());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobMetrics, times(1)).finished(job);
+    verify(jobLogStreamService, times(1)).finish(12L, "interrupted");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void markRemainingJobsInterrupted_records_jobs_that_did_not_stop() throws Exception {
+    // arrange
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              job.setId(job.getId() == 0 ? 30L : job.getId());
+              return job;
+            });
+    Job waiting = jobService.runAsJob(ctx -> {});
+    when(jobsRepository.markInterrupted(30L)).thenReturn(1);
+    Job stubborn = Job.builder().id(31L).status("running").build();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch ignoredInterrupt = new CountDownLatch(1);
+    Thread worker =
+        new Thread(
+            () ->
+                jobService.runJobAsync(
+                    stubborn,
+                    ctx -> {
+                      started.countDown();
+                      // ignores being interrupted
+                      while (release.getCount() > 0) {
+                        try {
+                          release.await();
+                        } catch (InterruptedException e) {
+                          ctx.log("still working");
+                          ignoredInterrupt.countDown();
+                        }
+                      }
+                    }));
+    worker.start();
+    started.await();
+    jobService.stopAcceptingJobs();
+    jobService.interruptRunningJobs();
+    ignoredInterrupt.await();
+
+    // act
+    int marked = jobService.markRemainingJobsInterrupted();
+    release.countDown();
+    worker.join(5_000);
+    jobService.runJobAsync(waiting, ctx -> {});
+
+    // assert
+    assertEquals(2, marked);
+    assertEquals("interrupted", waiting.getStatus());
+    verify(jobMetrics, times(1)).finished(waiting);
+    verify(jobLogStreamService, times(1)).finish(30L, "interrupted");
+    verify(jobsRepository, times(1)).markInterrupted(31L);
+    verify(jobMetrics, never()).finished(stubborn);
+    verify(jobsRepository, never()).save(stubborn);
+    ArgumentCaptor<Iterable<JobLogLine>> batches = ArgumentCaptor.forClass(Iterable.class);
+    verify(jobLogLinesRepository, atLeastOnce()).saveAll(batches.capture());
+    List<String> lines = new ArrayList<>();
+    for (Iterable<JobLogLine> batch : batches.getAllValues()) {
+      batch.forEach(
+          line -> {
+            if (line.getJobId() == 31L) lines.add(line.getLine());
+          });
+    }
+    assertEquals(List.of("still working", JobService.INTERRUPTED_MESSAGE), lines);
+  }
+
+  @Test
+  public void shutdown_stops_retry_timer() {
+    jobService.shutdown();
+
+    assertTrue(retryTimer().isShutdown());
+  }
+
+  private Job retryableJob(long id, int attempts, int maxAttempts) {
+    return Job.builder()
+        .id(id)
+        .status("running")
+        .attempts(attempts)
+        .retryMaxAttempts(maxAttempts)
+        .retryBackoffMs(10)
+        .build();
+  }
+
+  private ScheduledThreadPoolExecutor retryTimer() {
+    return (ScheduledThreadPoolExecutor) ReflectionTestUtils.getField(jobService, "retryTimer");
+  }
+
+  private Job claimedJob(long id, String jobType, String params) {
+    return Job.builder()
+        .id(id)
+        .status("running")
+        .jobType(jobType)
+        .params(params)
+        .leaseOwner("node")
+        .leaseExpiresAt(ZonedDateTime.now())
+        .attempts(2)
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<List<JobLogLine>> savedBatches(int count) {
+    ArgumentCaptor<Iterable<JobLogLine>> captor = ArgumentCaptor.forClass(Iterable.class);
+    verify(jobLogLinesRepository, times(count)).saveAll(captor.capture());
+    List<List<JobLogLine>> batches = new ArrayList<>();
+    for (Iterable<JobLogLine> batch : captor.getAllValues()) {
+      List<JobLogLine> lines = new ArrayList<>();
+      batch.forEach(lines::add);
+      batches.add(lines);
+    }
+    return batches;
+  }
+}
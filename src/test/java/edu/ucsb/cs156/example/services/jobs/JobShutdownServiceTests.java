@@ -0,0 +1,87 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobShutdownServiceTests {
+
+  @Mock private JobService jobService;
+
+  @InjectMocks private JobShutdownService jobShutdownService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobShutdownService, "gracePeriodMs", 2000L);
+    ReflectionTestUtils.setField(jobShutdownService, "interruptWaitMs", 500L);
+  }
+
+  @Test
+  public void runs_from_start_until_stop() {
+    assertFalse(jobShutdownService.isRunning());
+    jobShutdownService.start();
+    assertTrue(jobShutdownService.isRunning());
+
+    jobShutdownService.stop();
+    assertFalse(jobShutdownService.isRunning());
+  }
+
+  @Test
+  public void jobs_that_finish_within_the_grace_period_are_left_to_finish() {
+    // arrange
+    when(jobService.awaitRunningJobs(2000L)).thenReturn(true);
+
+    // act
+    jobShutdownService.stop();
+
+    // assert
+    InOrder order = inOrder(jobService);
+    order.verify(jobService).stopAcceptingJobs();
+    order.verify(jobService).awaitRunningJobs(2000L);
+    verify(jobService, never()).interruptRunningJobs();
+    verify(jobService, never()).markRemainingJobsInterrupted();
+  }
+
+  @Test
+  public void jobs_still_running_after_the_grace_period_are_interrupted() {
+    // arrange
+    when(jobService.awaitRunningJobs(2000L)).thenReturn(false);
+    when(jobService.awaitRunningJobs(500L)).thenReturn(true);
+
+    // act
+    jobShutdownService.stop();
+
+    // assert
+    verify(jobService, times(1)).interruptRunningJobs();
+    verify(jobService, never()).markRemainingJobsInterrupted();
+  }
+
+  @Test
+  public void jobs_that_do_not_stop_when_interrupted_are_marked_interrupted() {
+    // arrange
+    when(jobService.awaitRunningJobs(2000L)).thenReturn(false);
+    when(jobService.awaitRunningJobs(500L)).thenReturn(false);
+
+    // act
+    jobShutdownService.stop();
+
+    // assert
+    InOrder order = inOrder(jobService);
+    order.verify(jobService).interruptRunningJobs();
+    order.verify(jobService).awaitRunningJobs(500L);
+    order.verify(jobService).markRemainingJobsInterrupted();
+  }
+}